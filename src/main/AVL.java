@@ -1,5 +1,4 @@
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 
 /**
  * Classe représentant un noeud dans un arbre AVL.
@@ -16,6 +15,7 @@ class AVLNode {
     boolean dirtyFlag = false; // Indicateur pour savoir si la page a été modifiée
     int pin_count; // Nombre d'utilisations en cours de la page
     MyLinkedList.Cellule<PageId> pointeurListe; // Pointeur vers l'emplacement dans la JunkFile (MyLinkedList)
+    BufferPool pool;    // Sous-pool du BufferManager auquel appartient le buffer de la page
 
     /**
      * Constructeur pour un noeud AVL.
@@ -229,6 +229,8 @@ public class AVL{
                 // Le noeud à supprimer a été trouvé !
                 if (deletedNode[0] == null) {
                     deletedNode[0] = new AVLNode(node.id, node.buffer, node.dirtyFlag, node.pointeurListe); // Capture le noeud supprimé (et son buffer associé)
+                    deletedNode[0].pin_count = node.pin_count;
+                    deletedNode[0].pool = node.pool;
                     node.pointeurListe = null;
                 }
                 // Si le noeud a un seul enfant ou aucun enfant
@@ -243,7 +245,10 @@ public class AVL{
                 AVLNode temp = minValueNode(node.right);
                 node.id = temp.id; // Copier les valeurs du successeur
                 node.buffer = temp.buffer; // Copier le buffer du successeur
-                node.pointeurListe = temp.pointeurListe; // Copier le buffer du successeur
+                node.pointeurListe = temp.pointeurListe; // Copier le pointeur de junkFile du successeur
+                node.dirtyFlag = temp.dirtyFlag;    // Copier l'état du successeur
+                node.pin_count = temp.pin_count;
+                node.pool = temp.pool;
                 node.right = deleteNode(node.right, temp.id, deletedNode); // Suppression récursive du successeur
             }
         }
@@ -256,14 +261,14 @@ public class AVL{
 
     /**
      * Sauvegarde tous les buffers modifiés (dirtyFlag = true) dans le gestionnaire de disque,
-     * puis vide les buffers en les ajoutant à la liste des buffers vides.
+     * puis rend chaque buffer vide à son sous-pool.
      * 
      * @param dskm Le gestionnaire de disque pour écrire les pages modifiées
-     * @param emptyBuffer Liste des buffers vides pour les réutiliser
+     * @param defaut Sous-pool qui récupère les buffers des noeuds sans sous-pool
      * @throws Exception Si une erreur survient lors de l'écriture des pages
      */
-    public void dump(DiskManager dskm, ArrayList<ByteBuffer> emptyBuffer) throws Exception{
-        dump(dskm, root, emptyBuffer);   // Vider l'arbre
+    public void dump(DiskManager dskm, BufferPool defaut) throws Exception{
+        dump(dskm, root, defaut);   // Vider l'arbre
         root = null;    // Réinitialiser la racine de l'arbre
     }
 
@@ -272,23 +277,22 @@ public class AVL{
      * 
      * @param dskm Le gestionnaire de disque pour écrire les pages modifiées
      * @param node Le noeud actuel de l'arbre
-     * @param emptyBuffer Liste des buffers vides pour les réutiliser
+     * @param defaut Sous-pool qui récupère les buffers des noeuds sans sous-pool
      * @throws Exception Si une erreur survient lors de l'écriture des pages
      */
-    private void dump(DiskManager dskm, AVLNode node, ArrayList<ByteBuffer> emptyBuffer) throws Exception {
+    private void dump(DiskManager dskm, AVLNode node, BufferPool defaut) throws Exception {
         if(node != null){
             // Si le buffer est marqué comme modifié, l'écrire sur le disque
             if (node.dirtyFlag) {
                 dskm.WritePage(node.id, node.buffer); // Écrire le buffer modifié
             }
 
-            // Vider le buffer et l'ajouter à la liste des buffers vides
-            node.buffer.clear();
-            emptyBuffer.add(node.buffer);
+            // Vider le buffer et le rendre à son sous-pool
+            ((node.pool == null) ? defaut : node.pool).rendreBuffer(node.buffer);
 
             // Parcourir récursivement les sous-arbres gauche et droit
-            dump(dskm, node.left, emptyBuffer);
-            dump(dskm, node.right, emptyBuffer);
+            dump(dskm, node.left, defaut);
+            dump(dskm, node.right, defaut);
         }
     }
 
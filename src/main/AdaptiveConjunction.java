@@ -0,0 +1,101 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Prédicat d'une conjonction de conditions, évaluées dans l'ordre qui rejette un record au moindre coût.
+ * Dès qu'une condition est fausse les suivantes ne sont pas évaluées : il vaut mieux commencer par les conditions
+ * peu coûteuses (comparaisons d'entiers) et très sélectives, et finir par les comparaisons de chaînes.
+ *
+ * <p>Les conditions sont triées par coût / (1 - taux de passage) croissant. À la construction du plan, le taux
+ * de passage est la sélectivité estimée de chaque condition ; ensuite, tous les {@link #PERIODE} records,
+ * l'ordre est recalculé avec les taux observés, si bien qu'une estimation fausse est vite corrigée.
+ * Les compteurs sont divisés par deux à chaque fois pour suivre un changement de distribution au fil du parcours.</p>
+ *
+ * @author Mael Lecene
+ */
+public class AdaptiveConjunction implements Predicate<IRecord> {
+    /** Nombre de records évalués entre deux réordonnancements. */
+    static final int PERIODE = 1024;
+    /** Poids de l'estimation initiale, en nombre d'évaluations, face aux taux observés. */
+    private static final int POIDS_ESTIMATION = 16;
+
+    private ArrayList<Predicate<IRecord>> tests = new ArrayList<>();    // Prédicats compilés, dans l'ordre des conditions
+    private double[] couts;     // Coût estimé d'une évaluation de chaque condition
+    private double[] evaluations;   // Nombre (pondéré) d'évaluations de chaque condition
+    private double[] succes;    // Nombre (pondéré) d'évaluations vraies de chaque condition
+    private Integer[] ordre;    // Ordre d'évaluation courant, par numéro de condition
+    private int nbRecords;      // Records évalués depuis le dernier réordonnancement
+
+    /**
+     * Compile les conditions et les ordonne d'après leur coût et leur sélectivité estimés.
+     *
+     * @param conditions Les conditions, toutes devant être vraies.
+     * @param schema Le schéma des records évalués.
+     */
+    public AdaptiveConjunction(List<Condition> conditions, TupleSchema schema) {
+        int n = conditions.size();
+        couts = new double[n];
+        evaluations = new double[n];
+        succes = new double[n];
+        ordre = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            Condition cond = conditions.get(i);
+            tests.add(cond.compile(schema));
+            couts[i] = cond.estimerCout(schema);
+            // L'estimation compte comme quelques évaluations déjà observées
+            evaluations[i] = POIDS_ESTIMATION;
+            succes[i] = POIDS_ESTIMATION * cond.estimerSelectivite();
+            ordre[i] = i;
+        }
+        reordonner();
+    }
+
+    /**
+     * Évalue les conditions dans l'ordre courant, en s'arrêtant à la première fausse.
+     *
+     * @param record Le record à tester.
+     * @return true si toutes les conditions sont vraies.
+     */
+    @Override
+    public boolean test(IRecord record) {
+        if (++nbRecords >= PERIODE) {
+            for (int i = 0; i < ordre.length; i++) {
+                evaluations[i] /= 2;
+                succes[i] /= 2;
+            }
+            reordonner();
+            nbRecords = 0;
+        }
+        for (int i : ordre) {
+            evaluations[i]++;
+            if (!tests.get(i).test(record))
+                return false;
+            succes[i]++;
+        }
+        return true;
+    }
+
+    /**
+     * Trie les conditions par coût / (1 - taux de passage) croissant : une condition toujours vraie passe en dernier.
+     */
+    private void reordonner() {
+        Arrays.sort(ordre, (a, b) -> Double.compare(rang(a), rang(b)));
+    }
+
+    /**
+     * @return Le coût moyen, pour une condition, de chaque record qu'elle rejette.
+     */
+    private double rang(int i) {
+        double rejet = 1 - succes[i] / evaluations[i];
+        return couts[i] / Math.max(rejet, 1e-6);
+    }
+
+    /**
+     * @return Les numéros des conditions, dans l'ordre où elles sont évaluées.
+     */
+    public int[] getOrdre() {
+        return Arrays.stream(ordre).mapToInt(Integer::intValue).toArray();
+    }
+}
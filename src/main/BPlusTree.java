@@ -99,6 +99,15 @@ class BPlusTreeLeaf extends BPlusTreeNode{
 		return null;
 	}
 	
+	/**
+	 * Récupère les entrées de la feuille, dans l'ordre croissant des clés
+	 * 
+	 * @return la liste des entrées (clé, liste de Rids)
+	 */
+	public ArrayList<Pair<Comparable<Object>, ArrayList<RecordId>>> getEntrees() {
+		return rec;
+	}
+	
 	public void addEntrees(ArrayList<Pair<Comparable<Object>, ArrayList<RecordId>>> entrees) {
 		rec.addAll(entrees);
 	}
@@ -139,6 +148,27 @@ class BPlusTreeLeaf extends BPlusTreeNode{
 		}
 	}
 	
+	/**
+	 * Retire un RecordId d'une entrée de la feuille, et l'entrée elle-même si elle n'a plus de RecordId
+	 * 
+	 * @param cle Clé de l'entrée
+	 * @param reference RecordId à retirer
+	 * @return true si le RecordId était dans la feuille
+	 */
+	public boolean removeEntree(Comparable<Object> cle, RecordId reference) {
+		for(int i = 0; i < rec.size(); i++) {
+			if(cle.compareTo(rec.get(i).getFirst()) == 0) {
+				boolean retire = rec.get(i).getSecond().remove(reference);
+				// Les clés des branches restent des séparateurs valables, la feuille n'est pas fusionnée
+				if(rec.get(i).getSecond().isEmpty()) {
+					rec.remove(i);
+				}
+				return retire;
+			}
+		}
+		return false;
+	}
+	
 	//Méthodes de Node
 	public Comparable<Object> getCle(int index) throws ArrayIndexOutOfBoundsException{
 		if(index > getTaille()) {
@@ -365,6 +395,58 @@ public class BPlusTree {
 		}
 	}
 	
+	/**
+	 * Retire une entrée du B+Tree (record supprimé)
+	 * 
+	 * @param entree Clé de l'entrée à retirer
+	 * @param reference RecordId de l'entrée à retirer
+	 * @return true si l'entrée était dans l'arbre
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean removeRecord(Object entree, RecordId reference) {
+		Comparable<Object> cle = (Comparable<Object>) entree;
+		// Recherche la feuille où se trouve la clé
+		BPlusTreeLeaf feuille = rechercherFeuille(cle, racine);
+		return feuille.removeEntree(cle, reference);
+	}
+	
+	/**
+	 * Récupère l'ordre du B+Tree
+	 * 
+	 * @return l'ordre du B+Tree
+	 */
+	public int getOrdre() {
+		return ordre;
+	}
+	
+	/**
+	 * Récupère toutes les entrées du B+Tree dans l'ordre croissant des clés, en parcourant les feuilles de gauche à droite
+	 * 
+	 * @return la liste des entrées (clé, liste de Rids)
+	 */
+	public ArrayList<Pair<Comparable<Object>, ArrayList<RecordId>>> getEntrees() {
+		ArrayList<Pair<Comparable<Object>, ArrayList<RecordId>>> entrees = new ArrayList<>();
+		collecterEntrees(racine, entrees);
+		return entrees;
+	}
+	
+	/**
+	 * Ajoute les entrées des feuilles d'un sous-arbre, de gauche à droite
+	 * 
+	 * @param noeud Racine du sous-arbre
+	 * @param entrees Liste qui reçoit les entrées
+	 */
+	private void collecterEntrees(BPlusTreeNode noeud, ArrayList<Pair<Comparable<Object>, ArrayList<RecordId>>> entrees) {
+		if(noeud instanceof BPlusTreeLeaf) {
+			entrees.addAll(((BPlusTreeLeaf) noeud).getEntrees());
+			return;
+		}
+		// Une branche a un fils de plus que de clés
+		for(int i = 0; i <= noeud.getTaille(); i++) {
+			collecterEntrees(noeud.getFils(i), entrees);
+		}
+	}
+	
 	/**
 	 * Récupère la liste des RecordId d'une clé
 	 * 
@@ -1,20 +1,24 @@
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Classe représentant un gestionnaire de buffers pour la gestion des pages dans une base de données.
  * Le BufferManager gère un pool de buffers, fournit des méthodes pour récupérer et libérer des pages, 
  * ainsi que pour gérer les politiques de remplacement des buffers. Il utilise un arbre AVL pour stocker les 
  * pages en mémoire et une liste de junkFile pour gérer les pages à libérer lorsque le pool est plein.
+ * Les cadres sont répartis en sous-pools nommés ({@link BufferPool}) : le pool DEFAULT pour les pages de données
+ * et le pool KEEP, plus petit, pour les pages d'en-tête et d'index qui ne doivent pas être évincées par les pages de données.
  * @author Mael Lecene
  * @author Maëlys Adamczak
  */
 public class BufferManager {
+    public static final String DEFAULT = "DEFAULT";    // Nom du sous-pool des pages de données
+    public static final String KEEP = "KEEP";  // Nom du sous-pool des pages d'en-tête et d'index
+
     private DBConfig dbc;  // Configuration de la base de données
     private DiskManager dskM;  // Gestionnaire des disques
-    private AVL cadre = new AVL();  // Pool de buffers (structure de l'arbre AVL)
-    private MyLinkedList<PageId> junkFile = new MyLinkedList<>(); // Liste des éléments à libérer (pages qui ne sont plus utilisées)
-    private ArrayList<ByteBuffer> emptyBuffer = new ArrayList<>();  // Pile des buffers vides disponibles
+    private AVL cadre = new AVL();  // Pool de buffers (structure de l'arbre AVL), commun à tous les sous-pools
+    private HashMap<String, BufferPool> pools = new HashMap<>();  // Sous-pools nommés
     private int nbAllocFrame = 0;   // Nombre de frame occupé dans l'AVL
 
     /**
@@ -30,26 +34,45 @@ public class BufferManager {
     }
 
     /**
-     * Retourne le ByteBuffer d'une page donnée par son PageId.
+     * Retourne le ByteBuffer d'une page donnée par son PageId en la chargeant dans le pool DEFAULT.
      * 
      * @param id L'identifiant de la page à récupérer.
      * @return Le ByteBuffer de la page.
      * @throws Exception Si une erreur survient lors de la récupération de la page.
      */
     public ByteBuffer getPage(PageId id) throws Exception {
+        return getPage(id, DEFAULT);
+    }
+
+    /**
+     * Retourne le ByteBuffer d'une page donnée par son PageId.
+     * Si la page n'est pas en mémoire elle est chargée dans le sous-pool demandé,
+     * si elle y est déjà elle reste dans le sous-pool où elle a été chargée.
+     * 
+     * @param id L'identifiant de la page à récupérer.
+     * @param poolName Le nom du sous-pool (KEEP ou DEFAULT).
+     * @return Le ByteBuffer de la page.
+     * @throws Exception Si une erreur survient lors de la récupération de la page.
+     */
+    public ByteBuffer getPage(PageId id, String poolName) throws Exception {
         AVLNode node = cadre.search(id); // Recherche si la pageId est présente dans le buffer pool
 
         // Si la page n'est pas dans le buffer pool
         if (node == null) {
+            BufferPool pool = getPool(poolName);
+
         	// Si le cadre est plein, on doit libérer de l'espace selon la politique de remplacement
-            if (emptyBuffer.isEmpty())
-                makeSpace();    // Libère de l'espace
+            if (pool.getEmptyBufferSize() == 0)
+                makeSpace(pool);    // Libère de l'espace
 
         	// Recupere le dernier buffer vide
-            ByteBuffer tmp = emptyBuffer.remove(emptyBuffer.size()-1);;  // recupère le dernier buffer vide
+            ByteBuffer tmp = pool.prendreBuffer();
             dskM.ReadPage(id, tmp);
-            cadre.insert(new AVLNode(id, tmp)); // Insère le nouveau noeud dans l'arbre
+            node = new AVLNode(id, tmp);
+            node.pool = pool;
+            cadre.insert(node); // Insère le nouveau noeud dans l'arbre
             nbAllocFrame++; // L'AVL à une frame de plus
+            pool.nbAllocFrame++;
 
             return tmp;
         }
@@ -60,14 +83,16 @@ public class BufferManager {
         	// Si la page était dans junkFile, on l'enlève
             if(node.pointeurListe != null) {
                 nbAllocFrame++;
-                suppJunk(node); // Retire de junkFile
+                node.pool.nbAllocFrame++;
+                node.pool.suppJunk(node.pointeurListe); // Retire de junkFile
+                node.pointeurListe = null;
             }
             return buffer;  // Retourne le buffer
         }
     }
 
     /**
-     * Libère une page en l'ajoutant à la junkFile.
+     * Libère une page en l'ajoutant à la junkFile de son sous-pool.
      * 
      * @param id L'identifiant de la page à libérer.
      * @param valdirty Indique si la page a été modifiée (dirty).
@@ -86,7 +111,8 @@ public class BufferManager {
             noeud.pin_count--;
             if(noeud.pin_count == 0) {
                 nbAllocFrame--; // Une frame de moins qui ne peut pas etre enlevé
-                ajoutJunk(noeud);   // L'ajoute à la junkFile
+                noeud.pool.nbAllocFrame--;
+                noeud.pointeurListe = noeud.pool.ajoutJunk(noeud.id);   // L'ajoute à la junkFile
             }
         }
         // Si tout c'est bien passé return true
@@ -94,24 +120,24 @@ public class BufferManager {
     }
 
     /**
-     * Ajoute un PageId dans la liste de ceux qui peuvent être supprimés.
+     * Retire une page du buffer pool sans l'écrire, parce qu'elle a été rendue au DiskManager.
      * 
-     * @param node Le noeud à ajouter à la junkFile.
+     * @param id L'identifiant de la page.
+     * @return true si la page était chargée.
+     * @throws IllegalStateException Si la page est encore utilisée.
      */
-    private void ajoutJunk(AVLNode node) {
-        node.pointeurListe = junkFile.add(node.id);   // Ajoute le PageId dans la junkFile
-    }
-
-    /**
-     * Enlève un PageId de la liste de ceux qui peuvent être supprimés.
-     * 
-     * @param elmt La liste des éléments à enlever.
-     * @throws Exception Si une erreur survient lors de la suppression de l'élément.
-     */
-    private void suppJunk(AVLNode node) throws Exception {
-        // Retirer la première cellule de la junkFile
-        junkFile.remove(node.pointeurListe.getValue());
-        node.pointeurListe = null;
+    public boolean discardPage(PageId id) throws IllegalStateException {
+        AVLNode noeud = cadre.search(id);
+        if (noeud == null)
+            return false;
+        if (noeud.pin_count > 0)
+            throw new IllegalStateException("La page " + id + " ne peut pas être retirée du buffer pool, elle est encore utilisée");
+
+        noeud.pool.suppJunk(noeud.pointeurListe);
+        noeud.pointeurListe = null;
+        noeud = cadre.delete(id);   // L'AVL peut recopier un autre noeud dans celui trouvé : seul le noeud rendu est sûr
+        noeud.pool.rendreBuffer(noeud.buffer);
+        return true;
     }
 
     /**
@@ -120,50 +146,54 @@ public class BufferManager {
      * @throws Exception Si une erreur survient lors de l'écriture des buffers.
      */
     public void flushBuffers() throws Exception{
-        cadre.dump(dskM, emptyBuffer);  // Écrit les buffers en mémoire
+        cadre.dump(dskM, getPool(DEFAULT));  // Écrit les buffers en mémoire, chaque buffer retourne dans son sous-pool
+
+        // Plus aucune page n'est chargée
+        for (BufferPool pool : pools.values())
+            pool.reset();
+        nbAllocFrame = 0;
     }
 
     /**
-     * Selon la politique de remplacement, choisit l'élément à supprimer et écrit son buffer si nécessaire.
+     * Selon la politique de remplacement du sous-pool, choisit l'élément à supprimer et écrit son buffer si nécessaire.
+     * 
+     * @param pool Le sous-pool dans lequel il faut libérer un cadre.
      */
-    private void makeSpace() throws Exception {
-        ByteBuffer buffer = null; // Pointeur vers le buffer
-        PageId id = null; // Identifiant de la page à éjecter
-        AVLNode noeud = null;   // noeud de la page dans l'AVL
-
-        switch (DBConfig.bm_policy){
-            case "MRU":
-                id = junkFile.getTail().getValue();  // Prendre le dernier élément de la junkFile
-                noeud = cadre.delete(id);  // Enlève la frame associée dans le bufferPool
-                junkFile.removeFromTail();  // Supprime le premier élément
-                break;
-            case "LRU":
-                id = junkFile.remove().getValue();  // Prendre le premier élément de la junkFile
-                noeud = cadre.delete(id);  // Enlève la frame associée dans le bufferPool
-                break;
-            default:
-                throw new Exception("La politique de remplacement '"+DBConfig.bm_policy+"' n'a pas d'implémentation");
-        }
+    private void makeSpace(BufferPool pool) throws Exception {
+        PageId id = pool.selectVictim();  // Identifiant de la page à éjecter
+        AVLNode noeud = (id == null) ? null : cadre.delete(id);   // Enlève la frame associée dans le bufferPool
+
         // Si on ne trouve aucun noeud libérable
         if (noeud == null)
-            throw new IllegalStateException("erreur critique, plus d'espace disponible dans la buffer pool: occupation = "+nbAllocFrame+"/"+DBConfig.bm_buffercount);
+            throw new IllegalStateException("erreur critique, plus d'espace disponible dans le pool "+pool.getName()+": occupation = "+pool.getNbAllocFrame()+"/"+pool.getSize());
 
-        buffer = noeud.buffer;
         // Si la page a été modifié
         if(noeud.dirtyFlag)
-            dskM.WritePage(id, buffer); // L'écrit en mémoire
+            dskM.WritePage(id, noeud.buffer); // L'écrit en mémoire
 
-        buffer.clear(); // Réinitialise le buffer
-        emptyBuffer.add(buffer); // Récupère le buffer vide ici
+        pool.rendreBuffer(noeud.buffer); // Récupère le buffer vide ici
     }
 
     /**
-     * Alloue un certain nombre de buffers.
+     * Alloue les sous-pools et leurs buffers.
+     * Si aucun cadre n'est réservé au pool KEEP, les demandes KEEP sont servies par le pool DEFAULT.
      */
     private void initBufferPool(){
-        // Alloue n buffers dans la pile
-        for(int i = 0; i < DBConfig.bm_buffercount; i++)
-            emptyBuffer.add(ByteBuffer.allocate(DBConfig.pagesize));    // Ajoute dans la pile un buffer de la taille d'une page
+        pools.put(DEFAULT, new BufferPool(DEFAULT, DBConfig.bm_buffercount));
+
+        if (DBConfig.bm_keepbuffercount > 0)
+            pools.put(KEEP, new BufferPool(KEEP, DBConfig.bm_keepbuffercount));
+    }
+
+    /**
+     * Récupère un sous-pool par son nom. Un nom inconnu retombe sur le pool DEFAULT.
+     * 
+     * @param poolName Le nom du sous-pool.
+     * @return Le sous-pool correspondant.
+     */
+    public BufferPool getPool(String poolName) {
+        BufferPool pool = pools.get(poolName);
+        return (pool == null) ? pools.get(DEFAULT) : pool;
     }
 
     /**
@@ -185,12 +215,12 @@ public class BufferManager {
     }
     
     /**
-     * Récupère le nombre de buffers vides restants
+     * Récupère le nombre de buffers vides restants du pool DEFAULT
      * 
      * @return le nombre de buffers vides restants
      */
     public int getEmptyBufferSize() {
-    	return emptyBuffer.size();
+    	return getPool(DEFAULT).getEmptyBufferSize();
     }
     
     /**
@@ -203,11 +233,11 @@ public class BufferManager {
     }
     
     /**
-     * Récupère le pointeur vers le premier élément de la JunkFile
+     * Récupère le pointeur vers le premier élément de la JunkFile du pool DEFAULT
      * 
      * @return le pointeur vers le premier élément de la JunkFile
      */
     public MyLinkedList<PageId> getJunkFile() {
-    	return junkFile;
+    	return getPool(DEFAULT).getJunkFile();
     }
-}
\ No newline at end of file
+}
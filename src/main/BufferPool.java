@@ -0,0 +1,147 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Classe représentant un sous-pool nommé du BufferManager.
+ * Chaque sous-pool possède ses propres cadres (buffers), sa propre junkFile et sa propre politique de remplacement.
+ * Une page chargée dans un sous-pool ne peut être éjectée que pour faire de la place à une page du même sous-pool :
+ * le trafic des pages de données ne peut donc jamais évincer les pages d'en-tête gardées dans le pool KEEP.
+ * @author Mael Lecene
+ */
+public class BufferPool {
+    private String name;    // Nom du sous-pool (KEEP, DEFAULT, ...)
+    private int size;   // Nombre de cadres du sous-pool
+    private MyLinkedList<PageId> junkFile = new MyLinkedList<>(); // Liste des pages libérables de ce sous-pool
+    private ArrayList<ByteBuffer> emptyBuffer = new ArrayList<>();  // Pile des buffers vides du sous-pool
+    int nbAllocFrame = 0;   // Nombre de frame occupé par ce sous-pool
+
+    /**
+     * Constructeur qui alloue tous les buffers du sous-pool.
+     *
+     * @param name Le nom du sous-pool.
+     * @param size Le nombre de cadres du sous-pool.
+     */
+    BufferPool(String name, int size) {
+        this.name = name;
+        this.size = size;
+
+        // Alloue n buffers dans la pile
+        for (int i = 0; i < size; i++)
+            emptyBuffer.add(ByteBuffer.allocate(DBConfig.pagesize));    // Ajoute dans la pile un buffer de la taille d'une page
+    }
+
+    /**
+     * Retourne la politique de remplacement du sous-pool.
+     * Le pool DEFAULT suit bm_policy, le pool KEEP suit bm_keeppolicy (LRU si elle n'est pas définie).
+     *
+     * @return La politique de remplacement à appliquer.
+     */
+    public String getPolicy() {
+        if (BufferManager.KEEP.equals(name))
+            return (DBConfig.bm_keeppolicy == null || DBConfig.bm_keeppolicy.isEmpty()) ? "LRU" : DBConfig.bm_keeppolicy;
+
+        return DBConfig.bm_policy;
+    }
+
+    /**
+     * Selon la politique de remplacement, retire de la junkFile la page à éjecter.
+     *
+     * @return L'identifiant de la page à éjecter ou null si aucune page n'est libérable.
+     * @throws Exception Si la politique de remplacement n'a pas d'implémentation.
+     */
+    PageId selectVictim() throws Exception {
+        // Si aucune page n'est libérable
+        if (junkFile.isEmpty())
+            return null;
+
+        switch (getPolicy()) {
+            case "MRU":
+                return junkFile.removeFromTail().getValue();    // Prendre le dernier élément de la junkFile
+            case "LRU":
+                return junkFile.remove().getValue();  // Prendre le premier élément de la junkFile
+            default:
+                throw new Exception("La politique de remplacement '"+getPolicy()+"' n'a pas d'implémentation");
+        }
+    }
+
+    /**
+     * Ajoute une page dans la liste de celles qui peuvent être éjectées.
+     *
+     * @param id L'identifiant de la page à ajouter à la junkFile.
+     * @return La cellule de la page dans la junkFile, à garder pour l'en retirer.
+     */
+    MyLinkedList.Cellule<PageId> ajoutJunk(PageId id) {
+        return junkFile.add(id);   // Ajoute le PageId dans la junkFile
+    }
+
+    /**
+     * Enlève une page de la liste de celles qui peuvent être éjectées, en temps constant grâce à sa cellule.
+     *
+     * @param cellule La cellule de la page dans la junkFile.
+     */
+    void suppJunk(MyLinkedList.Cellule<PageId> cellule) {
+        junkFile.remove(cellule);
+    }
+
+    /**
+     * Rend un buffer vide au sous-pool.
+     *
+     * @param buffer Le buffer à rendre.
+     */
+    void rendreBuffer(ByteBuffer buffer) {
+        buffer.clear(); // Réinitialise le buffer
+        emptyBuffer.add(buffer);
+    }
+
+    /**
+     * Récupère un buffer vide du sous-pool.
+     *
+     * @return Un buffer vide.
+     */
+    ByteBuffer prendreBuffer() {
+        return emptyBuffer.remove(emptyBuffer.size()-1);
+    }
+
+    /**
+     * Réinitialise la junkFile et le compteur de frames après un vidage complet des buffers.
+     */
+    void reset() {
+        junkFile.clear();
+        nbAllocFrame = 0;
+    }
+
+    /**
+     * @return Le nom du sous-pool.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Le nombre de cadres du sous-pool.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return Le nombre de buffers vides restants dans le sous-pool.
+     */
+    public int getEmptyBufferSize() {
+        return emptyBuffer.size();
+    }
+
+    /**
+     * @return La junkFile du sous-pool.
+     */
+    public MyLinkedList<PageId> getJunkFile() {
+        return junkFile;
+    }
+
+    /**
+     * @return Le nombre de frames occupées par le sous-pool.
+     */
+    public int getNbAllocFrame() {
+        return nbAllocFrame;
+    }
+}
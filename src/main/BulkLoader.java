@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+
+/**
+ * Chargement parallèle d'un fichier CSV dans une relation (BULKINSERT).
+ * Le fichier est découpé en morceaux alignés sur les fins de ligne. Plusieurs threads lisent chacun un morceau,
+ * convertissent ses valeurs et encodent les records dans des images de data Pages.
+ * Un seul écrivain, le thread appelant, alloue ensuite les pages dans l'ordre du fichier et y copie les images :
+ * le DiskManager et le BufferManager ne sont jamais utilisés depuis plusieurs threads.
+ * Les valeurs entre guillemets ne doivent pas contenir de retour à la ligne, le découpage ne les reconnaîtrait pas.
+ * @author Mael Lecene
+ */
+public class BulkLoader {
+    public static final long CHUNK_SIZE = 4L * 1024 * 1024;  // Taille visée d'un morceau de fichier
+
+    /**
+     * Résultat d'un morceau : ses images de data Pages et, pour chacune, les records qu'elle contient.
+     */
+    private static class Morceau {
+        ArrayList<ByteBuffer> images = new ArrayList<>();
+        ArrayList<ArrayList<MyRecord>> records = new ArrayList<>();
+    }
+
+    private Relation relation;  // Relation qui reçoit les records
+    private int nbThreads;  // Nombre de threads de lecture
+    private long chunkSize; // Taille visée d'un morceau
+
+    /**
+     * Constructeur du chargeur.
+     *
+     * @param relation La relation qui reçoit les records.
+     * @param nbThreads Le nombre de threads de lecture, 0 pour un thread par processeur.
+     */
+    public BulkLoader(Relation relation, int nbThreads) {
+        this(relation, nbThreads, CHUNK_SIZE);
+    }
+
+    /**
+     * Constructeur du chargeur avec une taille de morceau donnée.
+     *
+     * @param relation La relation qui reçoit les records.
+     * @param nbThreads Le nombre de threads de lecture, 0 pour un thread par processeur.
+     * @param chunkSize La taille visée d'un morceau en octets.
+     */
+    public BulkLoader(Relation relation, int nbThreads, long chunkSize) {
+        this.relation = relation;
+        this.nbThreads = (nbThreads > 0) ? nbThreads : Runtime.getRuntime().availableProcessors();
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Charge un fichier CSV dans la relation.
+     *
+     * @param nomFichier Le chemin du fichier CSV.
+     * @param onInsert Appelé pour chaque record inséré avec son RecordId (maintenance des index), peut être null.
+     * @return Le nombre de records insérés.
+     * @throws Exception Si le fichier est invalide ou si l'écriture échoue. Les morceaux qui précèdent l'erreur restent insérés.
+     */
+    public long load(String nomFichier, BiConsumer<MyRecord, RecordId> onInsert) throws Exception {
+        ArrayList<long[]> morceaux = decouper(nomFichier);
+        ExecutorService pool = Executors.newFixedThreadPool(nbThreads);
+        ArrayDeque<Future<Morceau>> enCours = new ArrayDeque<>();   // Morceaux soumis, dans l'ordre du fichier
+        long nbRecords = 0;
+        int suivant = 0;    // Prochain morceau à soumettre
+
+        try {
+            while (suivant < morceaux.size() || !enCours.isEmpty()) {
+                // Garde un nombre borné de morceaux en mémoire
+                while (suivant < morceaux.size() && enCours.size() < nbThreads * 2) {
+                    long[] bornes = morceaux.get(suivant++);
+                    enCours.add(pool.submit(() -> encoder(nomFichier, bornes[0], bornes[1])));
+                }
+                // L'écrivain consomme les morceaux dans l'ordre
+                Morceau morceau = attendre(enCours.poll());
+                for (int i = 0; i < morceau.images.size(); i++) {
+                    PageId id = relation.appendDataPage(morceau.images.get(i));
+                    ArrayList<MyRecord> records = morceau.records.get(i);
+
+                    // Les records d'une image occupent les slots 1 à n
+                    for (int slot = 1; slot <= records.size(); slot++) {
+                        if (onInsert != null)
+                            onInsert.accept(records.get(slot - 1), new RecordId(slot, id));
+                    }
+                    nbRecords += records.size();
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return nbRecords;
+    }
+
+    /**
+     * Découpe le fichier en morceaux d'environ chunkSize octets qui se terminent par une fin de ligne.
+     *
+     * @param nomFichier Le chemin du fichier.
+     * @return La liste des bornes [début, fin[ des morceaux.
+     * @throws IOException Si le fichier ne peut pas être lu.
+     */
+    private ArrayList<long[]> decouper(String nomFichier) throws IOException {
+        ArrayList<long[]> morceaux = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(nomFichier), StandardOpenOption.READ)) {
+            long taille = channel.size();
+            ByteBuffer octets = ByteBuffer.allocate(4096);
+            long debut = 0;
+
+            while (debut < taille) {
+                long fin = Math.min(taille, debut + chunkSize);
+
+                // Avance jusqu'à la fin de la ligne en cours
+                boolean trouve = (fin == taille);
+                while (!trouve) {
+                    octets.clear();
+                    int lu = channel.read(octets, fin);
+                    if (lu <= 0) {
+                        fin = taille;
+                        break;
+                    }
+                    for (int i = 0; i < lu && !trouve; i++) {
+                        fin++;
+                        trouve = (octets.get(i) == '\n');
+                    }
+                }
+                morceaux.add(new long[] {debut, fin});
+                debut = fin;
+            }
+        }
+        return morceaux;
+    }
+
+    /**
+     * Lit un morceau du fichier et encode ses records dans des images de data Pages (exécuté par un thread de lecture).
+     *
+     * @param nomFichier Le chemin du fichier.
+     * @param debut Début du morceau.
+     * @param fin Fin du morceau.
+     * @return Les images du morceau et leurs records.
+     * @throws Exception Si une ligne est invalide.
+     */
+    private Morceau encoder(String nomFichier, long debut, long fin) throws Exception {
+        Morceau morceau = new Morceau();
+        ByteBuffer image = null;
+        ArrayList<MyRecord> records = null;
+
+        try (CsvRecordReader reader = new CsvRecordReader(relation, nomFichier, debut, fin)) {
+            while (reader.hasNext()) {
+                MyRecord record = reader.next();
+
+                // Commence une nouvelle image si la courante est pleine
+                if (image == null || relation.writeRecordInPageImage(record, image) == 0) {
+                    image = relation.newPageImage(); // Slot directory vide : 0 slot, espace libre au début
+                    records = new ArrayList<>();
+                    morceau.images.add(image);
+                    morceau.records.add(records);
+                    // Un record qui ne tient pas dans une page vide ne tiendra dans aucune
+                    if (relation.writeRecordInPageImage(record, image) == 0)
+                        throw new IllegalArgumentException("Le record " + record.printValue() + " est trop grand pour une page de " + DBConfig.pagesize + " octets");
+                }
+                records.add(record);
+            }
+        }
+        return morceau;
+    }
+
+    /**
+     * Attend le résultat d'un morceau et fait remonter l'erreur de son thread.
+     *
+     * @param future Le résultat attendu.
+     * @return Le morceau encodé.
+     * @throws Exception L'erreur rencontrée par le thread de lecture.
+     */
+    private Morceau attendre(Future<Morceau> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+}
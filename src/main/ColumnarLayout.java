@@ -0,0 +1,226 @@
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Organisation PAX d'une data Page pour une relation STORAGE=COLUMNAR.
+ * Le début de la page est découpé en une minipage par colonne, chacune pouvant recevoir 'capacite' valeurs
+ * de largeur fixe : 4 octets pour INT et REAL, 12 pour DATE, et pour CHAR et VARCHAR la position et la longueur
+ * de la chaîne, écrite dans un tas qui suit les minipages (ou 4 octets pour le code d'une colonne avec dictionnaire). Le slot directory reste celui des pages par ligne :
+ * le slot i donne le numéro de ligne du record (sa place dans chaque minipage) et sa taille,
+ * si bien que les RecordId ne dépendent pas de l'organisation de la page.
+ * L'espace libre de la page est celui du tas, compté comme pour une page par ligne.
+ * @author Mael Lecene
+ */
+public class ColumnarLayout {
+    private Relation relation;  // Relation décrite
+    private int[] largeur;  // Largeur d'une valeur dans la minipage de chaque colonne
+    private int[] minipage; // Position de la minipage de chaque colonne dans la page
+    private int capacite;   // Nombre de lignes d'une page
+    private int debutTas;   // Position du tas des chaînes, à la suite des minipages
+    private int largeurLigne;   // Octets d'une ligne dans les minipages
+
+    /**
+     * Calcule l'organisation des pages d'une relation.
+     * La capacité d'une page est choisie pour que le tas puisse recevoir des chaînes remplies en moyenne à moitié.
+     *
+     * @param relation La relation dont les attributs sont connus.
+     */
+    public ColumnarLayout(Relation relation) {
+        this.relation = relation;
+        int nbColonnes = relation.getNbAttribut();
+        largeur = new int[nbColonnes];
+        minipage = new int[nbColonnes];
+
+        largeurLigne = 0;
+        int tasEstime = 0;  // Octets d'une ligne dans le tas, estimés
+        for (int i = 0; i < nbColonnes; i++) {
+            switch (relation.getType(i)) {
+                case INT:
+                case REAL:
+                    largeur[i] = 4;
+                    break;
+                case DATE:
+                    largeur[i] = 12;
+                    break;
+                default:
+                    if (relation.getDictionary(i) != null) {
+                        largeur[i] = 4; // Code de la valeur, rien dans le tas
+                        break;
+                    }
+                    largeur[i] = 8; // Position et longueur dans le tas
+                    int max = (relation.getEncoding() == RecordEncoding.COMPACT) ? relation.getLength(i) : relation.getLength(i) * 2;
+                    tasEstime += max / 2;
+            }
+            largeurLigne += largeur[i];
+        }
+        // Chaque ligne occupe aussi un slot de 8 octets
+        capacite = Math.max(1, (DBConfig.pagesize - 8) / (largeurLigne + 8 + tasEstime));
+
+        int pos = 0;
+        for (int i = 0; i < nbColonnes; i++) {
+            minipage[i] = pos;
+            pos += capacite * largeur[i];
+        }
+        debutTas = pos;
+    }
+
+    /**
+     * Retourne le nombre de lignes d'une page.
+     *
+     * @return La capacité d'une page.
+     */
+    public int getCapacite() {
+        return capacite;
+    }
+
+    /**
+     * Retourne le nombre d'octets occupés par une ligne dans les minipages.
+     *
+     * @return La largeur d'une ligne.
+     */
+    public int getLargeurLigne() {
+        return largeurLigne;
+    }
+
+    /**
+     * Retourne la position du tas des chaînes, qui est aussi le début de l'espace libre d'une page vide.
+     *
+     * @return La position du tas.
+     */
+    public int getDebutTas() {
+        return debutTas;
+    }
+
+    /**
+     * Retourne la position de la valeur d'une ligne dans la minipage d'une colonne.
+     *
+     * @param ligne Le numéro de ligne.
+     * @param colonne L'index de la colonne.
+     * @return La position de la valeur dans la page.
+     */
+    public int valuePos(int ligne, int colonne) {
+        return minipage[colonne] + ligne * largeur[colonne];
+    }
+
+    /**
+     * Calcule la place d'un record dans le tas.
+     *
+     * @param record Le record.
+     * @return Le nombre d'octets de ses chaînes.
+     */
+    public int heapSize(MyRecord record) {
+        int taille = 0;
+        for (int i = 0; i < record.size(); i++) {
+            if ((record.getType(i) == DataType.CHAR || record.getType(i) == DataType.VARCHAR) && relation.getDictionary(i) == null)
+                taille += relation.getEncoding().sizeOf((String) record.getValue(i));
+        }
+        return taille;
+    }
+
+    /**
+     * Écrit un record dans une ligne de la page et ses chaînes au début de l'espace libre.
+     *
+     * @param record Le record à écrire.
+     * @param buffer Le buffer de la page.
+     * @param ligne Le numéro de ligne du record.
+     * @return Le nombre d'octets écrits dans le tas.
+     */
+    public int writeRecord(MyRecord record, ByteBuffer buffer, int ligne) {
+        int tas = buffer.getInt(DBConfig.pagesize - 4);   // Début de l'espace libre
+        int debut = tas;
+
+        for (int i = 0; i < relation.getNbAttribut(); i++) {
+            int pos = valuePos(ligne, i);
+            switch (relation.getType(i)) {
+                case INT:
+                    buffer.putInt(pos, (int) record.getValue(i));
+                    break;
+                case REAL:
+                    buffer.putFloat(pos, (float) record.getValue(i));
+                    break;
+                case DATE:
+                    Date date = (Date) record.getValue(i);
+                    buffer.putInt(pos, date.getDay());
+                    buffer.putInt(pos + 4, date.getMonth());
+                    buffer.putInt(pos + 8, date.getYear());
+                    break;
+                default:
+                    if (relation.getDictionary(i) != null) {
+                        buffer.putInt(pos, relation.getDictionary(i).encode((String) record.getValue(i)));
+                        break;
+                    }
+                    int taille = relation.writeString(buffer, tas, (String) record.getValue(i));
+                    buffer.putInt(pos, tas);
+                    buffer.putInt(pos + 4, taille);
+                    tas += taille;
+            }
+        }
+        return tas - debut;
+    }
+
+    /**
+     * Compacte le tas d'une page : les chaînes des lignes restantes sont recopiées les unes à la suite des autres
+     * à partir du début du tas, ce qui rend d'un seul tenant la place des chaînes des records supprimés.
+     *
+     * @param buffer Le buffer de la page.
+     * @param lignes Les lignes des records restants.
+     */
+    public void compactHeap(ByteBuffer buffer, List<Integer> lignes) {
+        byte[] copie = new byte[buffer.getInt(DBConfig.pagesize - 4) - debutTas];
+        int tas = 0;
+        for (int ligne : lignes) {
+            for (int i = 0; i < relation.getNbAttribut(); i++) {
+                if (largeur[i] != 8)
+                    continue;   // Seules les chaînes sans dictionnaire sont dans le tas
+                int pos = valuePos(ligne, i);
+                int taille = buffer.getInt(pos + 4);
+                buffer.duplicate().position(buffer.getInt(pos)).get(copie, tas, taille);
+                buffer.putInt(pos, debutTas + tas);
+                tas += taille;
+            }
+        }
+        buffer.duplicate().position(debutTas).put(copie, 0, tas);
+        buffer.putInt(DBConfig.pagesize - 4, debutTas + tas);
+    }
+
+    /**
+     * Lit un record à partir de sa ligne dans la page.
+     *
+     * @param record Le record à remplir.
+     * @param buffer Le buffer de la page.
+     * @param ligne Le numéro de ligne du record.
+     */
+    public void readRecord(MyRecord record, ByteBuffer buffer, int ligne) {
+        for (int i = 0; i < relation.getNbAttribut(); i++) {
+            int pos = valuePos(ligne, i);
+            switch (relation.getType(i)) {
+                case INT:
+                    record.add(buffer.getInt(pos), DataType.INT);
+                    break;
+                case REAL:
+                    record.add(buffer.getFloat(pos), DataType.REAL);
+                    break;
+                case DATE:
+                    record.add(new Date(buffer.getInt(pos), buffer.getInt(pos + 4), buffer.getInt(pos + 8)), DataType.DATE);
+                    break;
+                default:
+                    if (relation.getDictionary(i) != null)
+                        record.add(relation.getDictionary(i).decode(buffer.getInt(pos)), relation.getType(i));
+                    else
+                        record.add(readString(buffer, pos), relation.getType(i));
+            }
+        }
+    }
+
+    /**
+     * Lit une chaîne à partir de son entrée dans une minipage.
+     *
+     * @param buffer Le buffer de la page.
+     * @param pos La position de l'entrée (position et longueur de la chaîne dans le tas).
+     * @return La chaîne.
+     */
+    public String readString(ByteBuffer buffer, int pos) {
+        int debut = buffer.getInt(pos);
+        return relation.readString(buffer, debut, debut + buffer.getInt(pos + 4));
+    }
+}
@@ -1,13 +1,22 @@
+import java.util.List;
+import java.util.function.Predicate;
+
 /**
  * Classe représentant une condition dans une requête SQL, par exemple : 
  * "age > 30" ou "nom = 'John'".
  * @author Mael Lecene
  */
 public class Condition {
+    private static final int NON_CODE = Integer.MIN_VALUE;  // Résultat de compareCodes quand les codes ne suffisent pas
 
     private final Pair<String, Integer> terme1; // Premier terme de la condition (ex: 'age')
     private final String operateur; // L'opérateur de comparaison (ex: '=', '>', '<', etc.)
     private final Pair<String, Integer> terme2; // Deuxième terme de la condition (ex: '30' ou 'John')
+    private final Pair<Object, DataType> constante1; // Valeur du terme 1 s'il s'agit d'une constante, analysée une seule fois
+    private final Pair<Object, DataType> constante2; // Valeur du terme 2 s'il s'agit d'une constante, analysée une seule fois
+    private StringDictionary dictionnaire;  // Dernier dictionnaire dans lequel la constante a été cherchée
+    private int code;   // Code de la constante dans ce dictionnaire, -1 si elle en est absente
+    private int tailleDictionnaire; // Taille du dictionnaire lors de la recherche, pour refaire une recherche infructueuse s'il a grandi
 
     /**
      * Constructeur de la classe Condition.
@@ -22,6 +31,24 @@ public class Condition {
         this.terme1.setFirst(terme1.getFirst().toUpperCase());  // Convertir le terme1 en majuscules pour normaliser la casse
         this.operateur = operateur;  // Affecter l'opérateur
         this.terme2.setFirst(terme2.getFirst().toUpperCase());  // Convertir le terme1 en majuscules pour normaliser la casse
+        this.constante1 = analyserConstante(this.terme1);
+        this.constante2 = analyserConstante(this.terme2);
+    }
+
+    /**
+     * Analyse un terme constant une fois pour toutes, plutôt qu'à chaque évaluation.
+     * 
+     * @param terme Le terme à analyser.
+     * @return La valeur de la constante, ou null si le terme est un attribut ou une constante invalide.
+     */
+    private Pair<Object, DataType> analyserConstante(Pair<String, Integer> terme) {
+        if (terme.getSecond() != -1)
+            return null;
+        try {
+            return parseConstant(terme.getFirst());
+        } catch (IllegalArgumentException e) {
+            return null;    // L'erreur sera signalée à l'évaluation
+        }
     }
 
     /**
@@ -32,32 +59,396 @@ public class Condition {
      * @return true si la condition est satisfaite, sinon false.
      * @throws Exception Si une erreur survient lors de l'évaluation de la condition.
      */
-    public boolean evaluate(MyRecord record) throws Exception {
+    public boolean evaluate(IRecord record) throws Exception {
+        // Égalité sur une colonne avec dictionnaire : comparaison des codes, sans décoder la chaîne
+        if (operateur.equals("=") || operateur.equals("<>")) {
+            int codes = compareCodes(record);
+            if (codes != NON_CODE)
+                return test(codes);
+        }
+
+        // Deux termes numériques : comparaison directe des valeurs, sans créer d'objet
+        if (isNumeric(terme1, constante1, record) && isNumeric(terme2, constante2, record))
+            return test(Double.compare(getNumber(terme1, constante1, record), getNumber(terme2, constante2, record)));
+
         // Récupérer les valeurs des termes 1 et 2 de la condition
-        Pair<Object, DataType> value1 = getValue(terme1, record);
-        Pair<Object, DataType> value2 = getValue(terme2, record);
+        Pair<Object, DataType> value1 = getValue(terme1, constante1, record);
+        Pair<Object, DataType> value2 = getValue(terme2, constante2, record);
 
         // Comparer les deux valeurs avec le type de données du premier terme
         return compare(value1.getFirst(), value2.getFirst(), value1.getSecond());
     }
 
+    /**
+     * Compile une conjonction de conditions en un seul prédicat, une fois pour toutes lors de la construction du plan.
+     * Plusieurs conditions sont évaluées dans l'ordre choisi par {@link AdaptiveConjunction}.
+     * 
+     * @param conditions Les conditions, toutes devant être vraies.
+     * @param schema Le schéma des records évalués, qui fixe le type de chaque colonne.
+     * @return Le prédicat, faux pour un record sur lequel une condition ne peut pas être évaluée.
+     */
+    public static Predicate<IRecord> compile(List<Condition> conditions, TupleSchema schema) {
+        switch (conditions.size()) {
+            case 0:
+                return record -> true;
+            case 1:
+                return conditions.get(0).compile(schema);
+            default:
+                // Les conditions les moins chères et les plus sélectives d'abord, ordre ajusté à l'exécution
+                return new AdaptiveConjunction(conditions, schema);
+        }
+    }
+
+    /**
+     * Estime la part des records qui satisfont la condition, sans connaître les valeurs de la relation.
+     *
+     * @return La sélectivité estimée, entre 0 et 1.
+     */
+    public double estimerSelectivite() {
+        if (operateur.equals("="))
+            return 0.1;
+        if (operateur.equals("<>"))
+            return 0.9;
+        return 1.0 / 3;
+    }
+
+    /**
+     * Estime le coût relatif d'une évaluation du prédicat compilé : une comparaison d'entiers coûte 1,
+     * une comparaison de chaînes doit lire et comparer des caractères, et les cas évalués par evaluate
+     * convertissent leurs valeurs en objets.
+     *
+     * @param schema Le schéma des records évalués.
+     * @return Le coût estimé d'une évaluation.
+     */
+    public double estimerCout(TupleSchema schema) {
+        DataType type1 = typeOf(terme1, constante1, schema), type2 = typeOf(terme2, constante2, schema);
+        if (type1 == DataType.INT && type2 == DataType.INT)
+            return 1;
+        if (isNumber(type1) && isNumber(type2))
+            return 1.5;
+        if (isText(type1) && isText(type2))
+            return 4;
+        return 10;
+    }
+
+    /**
+     * Compile la condition en un prédicat spécialisé pour le type de ses termes : les constantes sont déjà analysées,
+     * l'opérateur est résolu une seule fois et les valeurs sont comparées sans être converties en objets
+     * (entier avec entier, réel avec réel, chaîne avec chaîne, par leurs codes quand la colonne a un dictionnaire).
+     * Les autres cas (dates, types incompatibles) sont évalués par evaluate.
+     * 
+     * @param schema Le schéma des records évalués.
+     * @return Le prédicat, faux pour un record sur lequel la condition ne peut pas être évaluée.
+     */
+    public Predicate<IRecord> compile(TupleSchema schema) {
+        // Ramène la condition à la forme colonne opérateur terme, en retournant l'opérateur si besoin
+        Pair<String, Integer> t1 = terme1, t2 = terme2;
+        Pair<Object, DataType> c1 = constante1, c2 = constante2;
+        boolean inf, egal, sup;     // Résultat selon le signe de la comparaison
+        try {
+            inf = test(-1);
+            egal = test(0);
+            sup = test(1);
+        } catch (UnsupportedOperationException e) {
+            return compileEvaluate();   // L'erreur sera signalée à l'évaluation
+        }
+        if (t1.getSecond() < 0 && t2.getSecond() >= 0) {
+            t1 = terme2;
+            t2 = terme1;
+            c1 = constante2;
+            c2 = constante1;
+            boolean echange = inf;
+            inf = sup;
+            sup = echange;
+        }
+        DataType type1 = typeOf(t1, c1, schema), type2 = typeOf(t2, c2, schema);
+        if (t1.getSecond() < 0 || type1 == null || type2 == null)
+            return compileEvaluate();   // Deux constantes ou terme invalide
+
+        final boolean siInf = inf, siEgal = egal, siSup = sup;
+        final int i = t1.getSecond(), j = t2.getSecond();
+        boolean colonne = j >= 0;   // true pour une comparaison entre deux colonnes
+
+        // Entier avec entier
+        if (type1 == DataType.INT && type2 == DataType.INT) {
+            if (colonne)
+                return record -> signe(Integer.compare(record.getInt(i), record.getInt(j)), siInf, siEgal, siSup);
+            final int k = (Integer) c2.getFirst();
+            return record -> signe(Integer.compare(record.getInt(i), k), siInf, siEgal, siSup);
+        }
+
+        // Nombres dont l'un au moins est réel
+        if (isNumber(type1) && isNumber(type2)) {
+            final boolean reel1 = type1 == DataType.REAL, reel2 = type2 == DataType.REAL;
+            if (colonne)
+                return record -> signe(Double.compare(reel1 ? record.getFloat(i) : record.getInt(i), reel2 ? record.getFloat(j) : record.getInt(j)), siInf, siEgal, siSup);
+            final double k = ((Number) c2.getFirst()).doubleValue();
+            if (reel1)
+                return record -> signe(Double.compare(record.getFloat(i), k), siInf, siEgal, siSup);
+            return record -> signe(Double.compare(record.getInt(i), k), siInf, siEgal, siSup);
+        }
+
+        // Chaîne avec chaîne
+        if (isText(type1) && isText(type2)) {
+            boolean parCodes = operateur.equals("=") || operateur.equals("<>");
+            if (colonne)
+                return record -> {
+                    StringDictionary dico = parCodes ? record.getDictionary(i) : null;
+                    if (dico != null && dico == record.getDictionary(j))
+                        return signe(record.getCode(i) == record.getCode(j) ? 0 : 1, siInf, siEgal, siSup);
+                    return signe(record.getString(i).compareTo(record.getString(j)), siInf, siEgal, siSup);
+                };
+            final String k = (String) c2.getFirst();
+            return record -> {
+                StringDictionary dico = parCodes ? record.getDictionary(i) : null;
+                if (dico != null)
+                    return signe(record.getCode(i) == getCode(dico, k) ? 0 : 1, siInf, siEgal, siSup);
+                return signe(record.getString(i).compareTo(k), siInf, siEgal, siSup);
+            };
+        }
+        return compileEvaluate();
+    }
+
+    /**
+     * @return Un prédicat qui évalue la condition par evaluate, faux si elle ne peut pas être évaluée.
+     */
+    private Predicate<IRecord> compileEvaluate() {
+        return record -> {
+            try {
+                return evaluate(record);
+            } catch (Exception e) {
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Récupère le type d'un terme d'après le schéma des records évalués.
+     * 
+     * @return Le type du terme, ou null si le terme est une constante invalide ou une colonne hors du schéma.
+     */
+    private static DataType typeOf(Pair<String, Integer> terme, Pair<Object, DataType> constante, TupleSchema schema) {
+        if (terme.getSecond() < 0)
+            return (constante == null) ? null : constante.getSecond();
+        return (terme.getSecond() < schema.size()) ? schema.getType(terme.getSecond()) : null;
+    }
+
+    private static boolean isNumber(DataType type) {
+        return type == DataType.INT || type == DataType.REAL;
+    }
+
+    private static boolean isText(DataType type) {
+        return type == DataType.CHAR || type == DataType.VARCHAR;
+    }
+
+    /**
+     * Donne le résultat de la condition selon le signe d'une comparaison, l'opérateur ayant été résolu à la compilation.
+     */
+    private static boolean signe(int comparaison, boolean siInf, boolean siEgal, boolean siSup) {
+        return (comparaison < 0) ? siInf : (comparaison == 0 ? siEgal : siSup);
+    }
+
+    /**
+     * Retourne les deux colonnes d'une égalité entre colonnes, comme une condition de jointure "a.x = b.y".
+     *
+     * @return Les index des deux colonnes, ou null si la condition n'est pas une égalité entre deux colonnes.
+     */
+    public Pair<Integer, Integer> getEqualColumns() {
+        return operateur.equals("=") ? getColumns() : null;
+    }
+
+    /**
+     * Retourne les deux colonnes d'une comparaison entre colonnes, quel que soit l'opérateur.
+     *
+     * @return Les index des deux colonnes, ou null si l'un des termes est une constante.
+     */
+    public Pair<Integer, Integer> getColumns() {
+        if (terme1.getSecond() < 0 || terme2.getSecond() < 0)
+            return null;
+        return new Pair<>(terme1.getSecond(), terme2.getSecond());
+    }
+
+    /**
+     * Retourne la colonne la plus à droite utilisée par la condition, pour savoir à partir de quelle jointure
+     * toutes ses colonnes sont disponibles.
+     *
+     * @return Le plus grand index de colonne des deux termes, ou -1 si les deux termes sont des constantes.
+     */
+    public int getDerniereColonne() {
+        return Math.max(terme1.getSecond(), terme2.getSecond());
+    }
+
+    /**
+     * Crée la même condition sur des records dont les colonnes ont été réordonnées, quand les relations
+     * d'une jointure sont mises bout à bout dans un autre ordre.
+     *
+     * @param positions La nouvelle position de chaque colonne, indexée par son ancienne position.
+     * @return La condition avec les nouvelles positions, ou elle-même si aucune colonne ne change de place.
+     */
+    public Condition remap(int[] positions) {
+        int colonne1 = (terme1.getSecond() < 0) ? terme1.getSecond() : positions[terme1.getSecond()];
+        int colonne2 = (terme2.getSecond() < 0) ? terme2.getSecond() : positions[terme2.getSecond()];
+        if (colonne1 == terme1.getSecond() && colonne2 == terme2.getSecond())
+            return this;
+        return new Condition(new Pair<>(terme1.getFirst(), colonne1), operateur, new Pair<>(terme2.getFirst(), colonne2));
+    }
+
+    /**
+     * @return L'opérateur de comparaison de la condition.
+     */
+    public String getOperateur() {
+        return operateur;
+    }
+
+    /**
+     * Indique si un record d'une data Page peut satisfaire la condition, d'après les intervalles de valeurs de la page.
+     * Seules les comparaisons entre une colonne et une constante sont décidées ; dans le doute la réponse est true.
+     *
+     * @param zone Les intervalles des valeurs de la data Page.
+     * @return false si aucun record de la page ne peut satisfaire la condition.
+     */
+    public boolean mayMatch(ZoneMap.Zone zone) {
+        // Ramène la condition à la forme colonne opérateur constante
+        int colonne;
+        Pair<Object, DataType> constante;
+        String op = operateur;
+        if (terme1.getSecond() >= 0 && terme2.getSecond() == -1) {
+            colonne = terme1.getSecond();
+            constante = constante2;
+        }
+        else if (terme1.getSecond() == -1 && terme2.getSecond() >= 0) {
+            colonne = terme2.getSecond();
+            constante = constante1;
+            switch (operateur) {
+                case "<": op = ">"; break;
+                case ">": op = "<"; break;
+                case "<=": op = ">="; break;
+                case ">=": op = "<="; break;
+                default: break;
+            }
+        }
+        else
+            return true;
+
+        try {
+            Object c = constante.getFirst();
+            int parRapportMin = ZoneMap.compare(c, zone.getMin(colonne));
+            int parRapportMax = ZoneMap.compare(c, zone.getMax(colonne));
+            switch (op) {
+                case "=": return parRapportMin >= 0 && parRapportMax <= 0;
+                case "<": return parRapportMin > 0;     // Il faut une valeur plus petite que la constante
+                case "<=": return parRapportMin >= 0;
+                case ">": return parRapportMax < 0;     // Il faut une valeur plus grande que la constante
+                case ">=": return parRapportMax <= 0;
+                case "<>": return parRapportMin != 0 || parRapportMax != 0;
+                default: return true;
+            }
+        } catch (Exception e) {
+            return true;    // Constante invalide ou de type différent : l'évaluation en décidera
+        }
+    }
+
+    /**
+     * Compare par leurs codes les deux termes d'une égalité lorsque l'un est une colonne avec dictionnaire
+     * et l'autre une chaîne constante ou une colonne du même dictionnaire.
+     * 
+     * @param record L'enregistrement contenant les valeurs de la relation.
+     * @return 0 si les valeurs sont égales, 1 sinon, ou NON_CODE si les termes ne peuvent pas être comparés par leurs codes.
+     */
+    private int compareCodes(IRecord record) {
+        int index1 = terme1.getSecond();
+        int index2 = terme2.getSecond();
+        StringDictionary dico1 = (index1 >= 0 && index1 < record.size()) ? record.getDictionary(index1) : null;
+        StringDictionary dico2 = (index2 >= 0 && index2 < record.size()) ? record.getDictionary(index2) : null;
+
+        if (dico1 != null && dico1 == dico2)
+            return (record.getCode(index1) == record.getCode(index2)) ? 0 : 1;
+        if (dico1 != null && isString(constante2))
+            return (record.getCode(index1) == getCode(dico1, (String) constante2.getFirst())) ? 0 : 1;
+        if (dico2 != null && isString(constante1))
+            return (getCode(dico2, (String) constante1.getFirst()) == record.getCode(index2)) ? 0 : 1;
+        return NON_CODE;
+    }
+
+    /**
+     * Indique si une constante est une chaîne.
+     * 
+     * @param constante La valeur du terme, null s'il s'agit d'un attribut.
+     * @return true si la constante est une chaîne.
+     */
+    private boolean isString(Pair<Object, DataType> constante) {
+        return constante != null && constante.getSecond() == DataType.VARCHAR;
+    }
+
+    /**
+     * Cherche le code de la chaîne constante dans un dictionnaire, une seule fois tant que le dictionnaire ne change pas.
+     * Une chaîne absente a le code -1, qu'aucune valeur n'a.
+     * 
+     * @param dico Le dictionnaire de la colonne comparée.
+     * @param valeur La chaîne constante.
+     * @return Le code de la chaîne, ou -1.
+     */
+    private int getCode(StringDictionary dico, String valeur) {
+        if (dico != dictionnaire || (code < 0 && dico.size() != tailleDictionnaire)) {
+            tailleDictionnaire = dico.size();
+            code = dico.getCode(valeur);
+            dictionnaire = dico;
+        }
+        return code;
+    }
+
+    /**
+     * Indique si un terme a une valeur numérique (INT ou REAL).
+     * 
+     * @param terme Le terme à analyser.
+     * @param constante La valeur du terme s'il est constant.
+     * @param record L'enregistrement contenant les valeurs de la relation.
+     * @return true si la valeur du terme est numérique.
+     */
+    private boolean isNumeric(Pair<String, Integer> terme, Pair<Object, DataType> constante, IRecord record) {
+        DataType type;
+        if (terme.getSecond() == -1)
+            type = (constante == null) ? null : constante.getSecond();
+        else if (terme.getSecond() < record.size())
+            type = record.getType(terme.getSecond());
+        else
+            return false;   // L'erreur sera signalée par getValue
+        return type == DataType.INT || type == DataType.REAL;
+    }
+
+    /**
+     * Récupère la valeur numérique d'un terme dont isNumeric a vérifié le type.
+     * 
+     * @param terme Le terme à analyser.
+     * @param constante La valeur du terme s'il est constant.
+     * @param record L'enregistrement contenant les valeurs de la relation.
+     * @return La valeur du terme.
+     */
+    private double getNumber(Pair<String, Integer> terme, Pair<Object, DataType> constante, IRecord record) {
+        if (terme.getSecond() == -1)
+            return ((Number) constante.getFirst()).doubleValue();
+
+        int index = terme.getSecond();
+        return (record.getType(index) == DataType.INT) ? record.getInt(index) : record.getFloat(index);
+    }
+
     /**
      * Récupère la valeur d'un terme, qu'il s'agisse d'un attribut dans la relation
      * ou d'une constante.
      * 
      * @param terme Le terme à analyser (peut être une colonne ou une constante).
-     * @param relation La relation dans laquelle chercher l'attribut.
+     * @param constante La valeur du terme s'il est constant.
      * @param record L'enregistrement contenant les valeurs de la relation.
      * @return La valeur du terme et son type associé.
      * @throws Exception Si le terme n'est pas trouvé ou ne peut pas être évalué.
      */
-    private Pair<Object, DataType> getValue(Pair<String, Integer> terme, MyRecord record) throws IllegalArgumentException {
+    private Pair<Object, DataType> getValue(Pair<String, Integer> terme, Pair<Object, DataType> constante, IRecord record) throws IllegalArgumentException {
         // Crée une paire qui contient la valeur et le type du terme
         Pair<Object, DataType> value;
 
         // Si le terme est associé à aucune relation
         if (terme.getSecond() == -1) 
-            value = parseConstant(terme.getFirst());    // Récupère la valeur de la constante
+            value = constante;    // Valeur de la constante analysée à la construction
         else
             value = getAttrb(terme, record); // Récupère la valuer du l'attribut
 
@@ -77,9 +468,9 @@ public class Condition {
      * @param record L'enregistrement contenant les valeurs des attributs.
      * @return La paire (valeur, type) de l'attribut si trouvé, sinon null.
      */
-    private Pair<Object, DataType> getAttrb(Pair<String, Integer> terme, MyRecord record) {
+    private Pair<Object, DataType> getAttrb(Pair<String, Integer> terme, IRecord record) {
         try {
-            return record.get(terme.getSecond());   // Retourne l'objet équivalent dans le record
+            return new Pair<>(record.getValue(terme.getSecond()), record.getType(terme.getSecond()));   // Retourne l'objet équivalent dans le record
         } catch (Exception e) {
             // Si on trouve aucun correpsondance
         throw new IllegalArgumentException("aucun attribut n'a le nom de "+terme.getFirst()+" dans la relation "+terme.getSecond());
@@ -143,14 +534,25 @@ public class Condition {
         Comparable<Object> comp1 = (Comparable<Object>) value1;
         Comparable<Object> comp2 = (Comparable<Object>) value2;
 
+        return test(comp1.compareTo(comp2));
+    }
+
+    /**
+     * Applique l'opérateur au résultat d'une comparaison.
+     * 
+     * @param comparaison Le résultat de la comparaison : négatif, nul ou positif.
+     * @return true si la condition est satisfaite.
+     * @throws UnsupportedOperationException Si l'opérateur n'est pas pris en charge.
+     */
+    private boolean test(int comparaison) {
         // Exécution de la comparaison en fonction de l'opérateur spécifié
         switch (operateur) {
-            case "=": return comp1.compareTo(comp2) == 0;  // égalité
-            case "<": return comp1.compareTo(comp2) < 0;   // inférieur
-            case ">": return comp1.compareTo(comp2) > 0;   // supérieur
-            case "<=": return comp1.compareTo(comp2) <= 0;  // inférieur ou égal
-            case ">=": return comp1.compareTo(comp2) >= 0;  // supérieur ou égal
-            case "<>": return comp1.compareTo(comp2) != 0;  // différent
+            case "=": return comparaison == 0;  // égalité
+            case "<": return comparaison < 0;   // inférieur
+            case ">": return comparaison > 0;   // supérieur
+            case "<=": return comparaison <= 0;  // inférieur ou égal
+            case ">=": return comparaison >= 0;  // supérieur ou égal
+            case "<>": return comparaison != 0;  // différent
             default: throw new UnsupportedOperationException("Opérateur non supporté: " + operateur);
         }
     }
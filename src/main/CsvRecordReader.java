@@ -0,0 +1,332 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Lecteur de fichier CSV en flux pour le BULKINSERT.
+ * Le fichier est lu par blocs de taille fixe à travers un FileChannel et découpé par un analyseur écrit à la main
+ * (sans expression régulière) : la mémoire utilisée ne dépend pas de la taille du fichier.
+ * Chaque ligne est convertie directement dans les types de la relation et renvoyée sous forme de MyRecord.
+ * Format accepté : valeurs séparées par des virgules, espaces autour des valeurs ignorés,
+ * valeurs entre guillemets ("" pour un guillemet dans la valeur), lignes vides ignorées.
+ * @author Mael Lecene
+ */
+public class CsvRecordReader implements Iterator<MyRecord>, AutoCloseable {
+    public static final int BLOCK_SIZE = 64 * 1024;  // Taille des blocs lus dans le fichier
+
+    private Relation relation;  // Relation dont le schéma type les valeurs
+    private FileChannel channel;    // Canal de lecture du fichier
+    private ByteBuffer bytes = ByteBuffer.allocate(BLOCK_SIZE);   // Bloc d'octets lu dans le fichier
+    private CharBuffer chars = CharBuffer.allocate(BLOCK_SIZE);   // Bloc de caractères décodés
+    private CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private long position;  // Position de la prochaine lecture dans le fichier
+    private long debut; // Début de la portion de fichier lue
+    private long fin;   // Fin (exclue) de la portion de fichier lue
+    private boolean endOfFile = false;  // Vrai quand toute la portion de fichier a été lue
+    private boolean decodeTermine = false;  // Vrai quand le décodeur a rendu ses derniers caractères
+
+    private StringBuilder champ = new StringBuilder();  // Valeur en cours de lecture, réutilisée d'un champ à l'autre
+    private MyRecord next;  // Prochain record à renvoyer, null si pas encore lu
+    private int ligne = 0;  // Numéro de la ligne courante (pour les messages d'erreur)
+
+    /**
+     * Ouvre un fichier CSV pour le charger dans une relation.
+     *
+     * @param relation La relation qui recevra les records.
+     * @param nomFichier Le chemin du fichier CSV.
+     * @throws IOException Si le fichier ne peut pas être ouvert.
+     */
+    public CsvRecordReader(Relation relation, String nomFichier) throws IOException {
+        this(relation, nomFichier, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * Ouvre une portion d'un fichier CSV pour la charger dans une relation.
+     * La portion doit commencer au début d'une ligne et finir à la fin d'une ligne.
+     *
+     * @param relation La relation qui recevra les records.
+     * @param nomFichier Le chemin du fichier CSV.
+     * @param debut La position du premier octet de la portion.
+     * @param fin La position qui suit le dernier octet de la portion.
+     * @throws IOException Si le fichier ne peut pas être ouvert.
+     */
+    public CsvRecordReader(Relation relation, String nomFichier, long debut, long fin) throws IOException {
+        this.relation = relation;
+        this.channel = FileChannel.open(Paths.get(nomFichier), StandardOpenOption.READ);
+        this.debut = debut;
+        this.position = debut;
+        this.fin = Math.min(fin, channel.size());
+        chars.flip();   // Le bloc de caractères est vide au départ
+    }
+
+    /**
+     * Vérifie s'il reste une ligne non vide à lire.
+     *
+     * @return true s'il reste un record.
+     */
+    @Override
+    public boolean hasNext() {
+        if (next == null)
+            next = readRecord();
+        return next != null;
+    }
+
+    /**
+     * Renvoie le record de la prochaine ligne non vide.
+     *
+     * @return Le prochain record.
+     * @throws NoSuchElementException S'il n'y a plus de ligne.
+     */
+    @Override
+    public MyRecord next() {
+        if (!hasNext())
+            throw new NoSuchElementException("Fin du fichier CSV atteinte");
+
+        MyRecord rec = next;
+        next = null;
+        return rec;
+    }
+
+    /**
+     * Ferme le fichier.
+     *
+     * @throws IOException Si la fermeture échoue.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Lit une ligne non vide et la convertit en record.
+     *
+     * @return Le record lu ou null à la fin du fichier.
+     */
+    private MyRecord readRecord() {
+        int c;
+        // Saute les lignes vides et les espaces en début de ligne
+        do {
+            c = read();
+            if (c == '\n')
+                ligne++;
+        } while (c == '\n' || c == '\r' || c == ' ' || c == '\t');
+
+        if (c == -1)
+            return null;
+
+        ligne++;
+        MyRecord rec = new MyRecord();
+        int colonne = 0;
+
+        // Lit les champs un par un jusqu'à la fin de la ligne
+        while (true) {
+            c = readField(c);
+
+            if (colonne >= relation.getNbAttribut())
+                throw new IllegalArgumentException(ligne() + " : trop de valeurs, " + relation.getNbAttribut() + " attendues");
+            addValue(rec, colonne);
+            colonne++;
+
+            // Fin de ligne ou de fichier
+            if (c != ',')
+                break;
+            c = read();
+        }
+        if (colonne != relation.getNbAttribut())
+            throw new IllegalArgumentException(ligne() + " : " + colonne + " valeurs au lieu de " + relation.getNbAttribut());
+
+        return rec;
+    }
+
+    /**
+     * Lit un champ dans 'champ' à partir de son premier caractère.
+     *
+     * @param c Le premier caractère du champ.
+     * @return Le caractère qui termine le champ : ',', '\n' ou -1.
+     */
+    private int readField(int c) {
+        champ.setLength(0);
+
+        // Ignore les espaces avant la valeur
+        while (c == ' ' || c == '\t')
+            c = read();
+
+        // Valeur entre guillemets : tout est pris tel quel jusqu'au guillemet fermant
+        if (c == '"') {
+            while (true) {
+                c = read();
+                if (c == -1)
+                    throw new IllegalArgumentException(ligne() + " : guillemet non fermé");
+                if (c == '"') {
+                    c = read();
+                    if (c != '"')   // "" représente un guillemet dans la valeur
+                        break;
+                }
+                champ.append((char) c);
+            }
+            // Ignore ce qui suit le guillemet fermant jusqu'au séparateur
+            while (c != ',' && c != '\n' && c != -1)
+                c = read();
+            return c;
+        }
+        // Valeur sans guillemets
+        while (c != ',' && c != '\n' && c != -1) {
+            champ.append((char) c);
+            c = read();
+        }
+        // Ignore les espaces et le '\r' après la valeur
+        int fin = champ.length();
+        while (fin > 0 && Character.isWhitespace(champ.charAt(fin - 1)))
+            fin--;
+        champ.setLength(fin);
+        return c;
+    }
+
+    /**
+     * Convertit le champ lu dans le type de la colonne et l'ajoute au record.
+     *
+     * @param rec Le record en construction.
+     * @param colonne L'index de la colonne.
+     */
+    private void addValue(MyRecord rec, int colonne) {
+        DataType type = relation.getType(colonne);
+
+        try {
+            switch (type) {
+                case INT:
+                    rec.add(parseInt(champ, 0, champ.length()), type);
+                    break;
+                case REAL:
+                    rec.add(Float.parseFloat(champ.toString()), type);
+                    break;
+                case CHAR:
+                case VARCHAR:
+                    rec.add(champ.toString(), type);
+                    break;
+                case DATE:
+                    // Format JJ/MM/AAAA lu directement dans le champ
+                    if (champ.length() != 10 || champ.charAt(2) != '/' || champ.charAt(5) != '/')
+                        throw new IllegalArgumentException("Le format de la date doit être JJ/MM/AAAA.");
+                    rec.add(new Date(parseInt(champ, 0, 2), parseInt(champ, 3, 5), parseInt(champ, 6, 10)), type);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Ce type de données n'est pas pris en charge par le SGBD");
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(ligne() + " : valeur '" + champ + "' invalide pour la colonne " + relation.getNameAttribut(colonne));
+        }
+    }
+
+    /**
+     * Décrit la ligne courante pour les messages d'erreur.
+     *
+     * @return "Ligne n", précisé par le début de la portion si le fichier est lu par morceaux.
+     */
+    private String ligne() {
+        return (debut == 0) ? "Ligne " + ligne : "Ligne " + ligne + " du bloc débutant à l'octet " + debut;
+    }
+
+    /**
+     * Convertit une portion de chaîne en entier sans créer de String.
+     *
+     * @param s La chaîne.
+     * @param debut Position du premier caractère.
+     * @param fin Position après le dernier caractère.
+     * @return L'entier lu.
+     * @throws NumberFormatException Si la portion n'est pas un entier.
+     */
+    private static int parseInt(CharSequence s, int debut, int fin) throws NumberFormatException {
+        if (debut >= fin)
+            throw new NumberFormatException("Valeur vide");
+
+        boolean negatif = s.charAt(debut) == '-';
+        if (negatif || s.charAt(debut) == '+')
+            debut++;
+        if (debut >= fin)
+            throw new NumberFormatException("Valeur sans chiffre");
+
+        long valeur = 0;
+        for (int i = debut; i < fin; i++) {
+            int chiffre = s.charAt(i) - '0';
+            if (chiffre < 0 || chiffre > 9)
+                throw new NumberFormatException("Caractère invalide");
+            valeur = valeur * 10 + chiffre;
+            if (valeur > (long) Integer.MAX_VALUE + 1)
+                throw new NumberFormatException("Valeur trop grande");
+        }
+        valeur = negatif ? -valeur : valeur;
+        if (valeur > Integer.MAX_VALUE)
+            throw new NumberFormatException("Valeur trop grande");
+        return (int) valeur;
+    }
+
+    /**
+     * Lit le prochain caractère du fichier en rechargeant les blocs si nécessaire.
+     *
+     * @return Le caractère lu ou -1 à la fin du fichier.
+     */
+    private int read() {
+        if (!chars.hasRemaining() && !fill())
+            return -1;
+        return chars.get();
+    }
+
+    /**
+     * Recharge le bloc de caractères à partir du fichier.
+     *
+     * @return false si la fin du fichier est atteinte et qu'il ne reste aucun caractère.
+     */
+    private boolean fill() {
+        if (decodeTermine)
+            return false;
+
+        try {
+            chars.clear();
+            while (chars.position() == 0) {
+                // Lit un nouveau bloc d'octets sans dépasser la fin de la portion
+                if (!endOfFile && position >= fin)
+                    endOfFile = true;
+                else if (!endOfFile) {
+                    int limite = bytes.limit();
+                    if (fin - position < bytes.remaining())
+                        bytes.limit(bytes.position() + (int) (fin - position));
+
+                    int lu = channel.read(bytes, position);
+                    bytes.limit(limite);
+
+                    if (lu == -1)
+                        endOfFile = true;
+                    else
+                        position += lu;
+                }
+
+                bytes.flip();
+                CoderResult res = decoder.decode(bytes, chars, endOfFile);
+                if (res.isError())
+                    res.throwException();
+                bytes.compact();    // Garde les octets d'un caractère coupé entre deux blocs
+
+                if (endOfFile) {
+                    decoder.flush(chars);
+                    decodeTermine = true;
+                    break;
+                }
+            }
+            chars.flip();
+            return chars.hasRemaining();
+        } catch (IOException e) {
+            throw new IllegalStateException("Erreur de lecture du fichier CSV : " + e.getMessage());
+        }
+    }
+}
@@ -20,6 +20,11 @@ public class DBConfig {
     public static int dm_maxfilesize;  // Taille maximum d'un fichier en octet
     public static int bm_buffercount; // Nombre de buffers gérés par le BufferManager
     public static String bm_policy; // Politique de remplacement des buffers
+    public static int bm_keepbuffercount; // Nombre de buffers réservés au pool KEEP (pages d'en-tête), 0 pour ne pas en réserver
+    public static String bm_keeppolicy; // Politique de remplacement des buffers du pool KEEP
+    public static int bulk_threads; // Nombre de threads de lecture du BULKINSERT, 0 pour un par processeur
+    public static int join_buffercount; // Nombre de pages de mémoire d'une jointure par hachage, 0 pour bm_buffercount
+    public static int sort_buffercount; // Nombre de pages de mémoire d'un tri externe, 0 pour bm_buffercount
 
 
     /**
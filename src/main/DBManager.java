@@ -7,6 +7,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 
 /**
  * Classe représentant un gestionnaire de Base de données.
@@ -15,6 +16,8 @@ import java.util.HashMap;
  * @author Maëlys Adamczak
  */
 public class DBManager {
+	public static final int BULK_BATCH_SIZE = 4096; // Nombre de records insérés par lot lors d'un BULKINSERT
+
 	private HashMap<String, HashMap<String, Relation>> listeDatabase;
 	private HashMap<String, HashMap<Integer, BPlusTree>> listeIndex;
 	private HashMap<String, Relation> current;
@@ -90,13 +93,280 @@ public class DBManager {
      * @param valeurs liste des valeurs de la ligne
      */
     public void InsertIntoCurrentDatabase(String nomTable, String[] valeurs) throws Exception{
+    	// Récupère la table à modifier
+    	Relation rel = getTableForInsert(nomTable);
+    	// Initialise le record à insérer
+    	MyRecord rec = parseRecord(rel, valeurs);
+    	//Insère le record
+    	RecordId rid = rel.InsertRecord(rec);
+    	
+    	// Met à jour les index de la relation
+    	indexRecord(nomTable, rec, rid);
+    }
+
+    /**
+     * Insère plusieurs lignes dans la table en une seule passe sur les pages de données
+     * 
+     * @param nomTable nom de la table à ammender
+     * @param lignes liste des lignes, chacune étant la liste de ses valeurs
+     */
+    public void InsertIntoCurrentDatabase(String nomTable, ArrayList<String[]> lignes) throws Exception{
+    	// Récupère la table à modifier
+    	Relation rel = getTableForInsert(nomTable);
+
+    	// Vérifie toutes les lignes avant d'en insérer une seule
+    	ArrayList<MyRecord> records = new ArrayList<>();
+    	for(String[] valeurs : lignes) {
+    		records.add(parseRecord(rel, valeurs));
+    	}
+    	// Insère les records en lot et met à jour les index de la relation
+    	insertBatch(nomTable, rel, records);
+    }
+    
+    /**
+     * Insère toutes les lignes du fichiers dans la table donnée.
+     * Le fichier est lu en flux et inséré par lots de taille fixe : la mémoire utilisée ne dépend pas de sa taille.
+     * Au delà d'un morceau de BulkLoader, la lecture et l'encodage des pages sont répartis sur plusieurs threads.
+     * 
+     * @param nomTable nom de la table à ammender
+     * @param nomFichier nom de fichier contenant les valeurs à ajouter
+     */
+    public void BulkInsertIntoCurrentDatabase(String nomTable, String nomFichier) throws Exception {
+    	// Récupère la table à modifier
+    	Relation rel = getTableForInsert(nomTable);
+
+    	// Un gros fichier est découpé en morceaux lus et encodés en parallèle
+    	if (DBConfig.bulk_threads != 1 && Files.size(Paths.get(nomFichier)) > BulkLoader.CHUNK_SIZE) {
+    		new BulkLoader(rel, DBConfig.bulk_threads).load(nomFichier, (rec, rid) -> indexRecord(nomTable, rec, rid));
+    		return;
+    	}
+
+    	try (CsvRecordReader reader = new CsvRecordReader(rel, nomFichier)) {
+    		ArrayList<MyRecord> lot = new ArrayList<>(BULK_BATCH_SIZE);
+    		while (reader.hasNext()) {
+    			lot.add(reader.next());
+    			// Quand le lot est plein, l'insère puis le vide
+    			if (lot.size() == BULK_BATCH_SIZE) {
+    				insertBatch(nomTable, rel, lot);
+    				lot.clear();
+    			}
+    		}
+    		// Insère le dernier lot incomplet
+    		insertBatch(nomTable, rel, lot);
+    	}
+    }
+
+    /**
+     * Charge dans la table les pages d'un fichier écrit par CopyToFile (COPY FROM).
+     * Les images de pages sont écrites telles quelles sur le disque, sans passer par les records ni par le buffer.
+     *
+     * @param nomTable nom de la table à ammender
+     * @param nomFichier nom du fichier de copie
+     * @return le nombre de pages chargées
+     */
+    public int CopyFromFile(String nomTable, String nomFichier) throws Exception {
+    	// Récupère la table à modifier
+    	Relation rel = getTableForInsert(nomTable);
+    	ArrayList<PageId> pages = new TableCopy(dskm, bm).importTable(rel, nomFichier);
+
+    	// Les index doivent connaître l'emplacement des nouveaux records : seules les tables indexées relisent les pages
+    	if(listeIndex.get(nomTable.toUpperCase()).size() > 0) {
+    		for(PageId id : pages) {
+    			for(Pair<MyRecord, RecordId> rec : rel.getRecordsInDataPage(id)) {
+    				indexRecord(nomTable, rec.getFirst(), rec.getSecond());
+    			}
+    		}
+    	}
+    	return pages.size();
+    }
+
+    /**
+     * Supprime les lignes d'une table qui vérifient toutes les conditions (DELETE FROM)
+     * Les lignes supprimées sont aussi retirées des index de la table.
+     *
+     * @param nomTable nom de la table
+     * @param conditions conditions sur les colonnes de la table, toutes les lignes si la liste est vide
+     * @return le nombre de lignes supprimées
+     */
+    public int DeleteFromTable(String nomTable, ArrayList<Condition> conditions) throws Exception {
+    	Relation rel = getTableForInsert(nomTable);
+    	HashMap<Integer, BPlusTree> index = listeIndex.get(nomTable.toUpperCase());
+
+    	// Les records supprimés ne sont copiés que si des index doivent les oublier
+    	ArrayList<Pair<MyRecord, RecordId>> supprimes = (index.size() > 0) ? new ArrayList<>() : null;
+    	int nbSupprimes = rel.DeleteRecords(conditions, supprimes);
+
+    	if(supprimes != null) {
+    		for(Pair<MyRecord, RecordId> rec : supprimes) {
+    			for(int colonne : index.keySet()) {
+    				index.get(colonne).removeRecord(rec.getFirst().get(colonne).getFirst(), rec.getSecond());
+    			}
+    		}
+    	}
+    	return nbSupprimes;
+    }
+
+    /**
+     * Modifie les lignes d'une table qui vérifient toutes les conditions (UPDATE)
+     * Les lignes gardent leur RecordId, même quand elles sont déplacées : seuls les index
+     * des colonnes modifiées sont mis à jour.
+     *
+     * @param nomTable nom de la table
+     * @param valeurs nouvelle valeur textuelle de chaque colonne modifiée, par nom de colonne
+     * @param conditions conditions sur les colonnes de la table, toutes les lignes si la liste est vide
+     * @return le nombre de lignes modifiées
+     */
+    public int UpdateTable(String nomTable, HashMap<String, String> valeurs, ArrayList<Condition> conditions) throws Exception {
+    	Relation rel = getTableForInsert(nomTable);
+    	HashMap<Integer, Object> nouvelles = new HashMap<>();
+    	for(String nomColonne : valeurs.keySet()) {
+    		Integer colonne = rel.getNameToIndex().get(nomColonne);
+    		if(colonne == null) {
+    			throw new IllegalArgumentException("La colonne " + nomColonne + " n'existe pas dans la table " + nomTable);
+    		}
+    		nouvelles.put(colonne, parseValue(rel, colonne, valeurs.get(nomColonne)));
+    	}
+
+    	// Seuls les index des colonnes modifiées doivent changer de clé
+    	HashMap<Integer, BPlusTree> index = listeIndex.get(nomTable.toUpperCase());
+    	ArrayList<Integer> indexModifies = new ArrayList<>();
+    	for(int colonne : index.keySet()) {
+    		if(nouvelles.containsKey(colonne)) {
+    			indexModifies.add(colonne);
+    		}
+    	}
+    	ArrayList<Pair<MyRecord, RecordId>> anciens = (indexModifies.size() > 0) ? new ArrayList<>() : null;
+    	int nbModifies = rel.UpdateRecords(conditions, nouvelles, anciens);
+
+    	if(anciens != null) {
+    		for(Pair<MyRecord, RecordId> rec : anciens) {
+    			for(int colonne : indexModifies) {
+    				index.get(colonne).removeRecord(rec.getFirst().get(colonne).getFirst(), rec.getSecond());
+    				index.get(colonne).addRecord(nouvelles.get(colonne), rec.getSecond());
+    			}
+    		}
+    	}
+    	return nbModifies;
+    }
+
+    /**
+     * Réorganise les tables et rend au disque les pages inutilisées (VACUUM)
+     * Les records de chaque table sont regroupés dans le moins de data Pages possible, son répertoire
+     * est réécrit de façon dense et ses index sont reconstruits, les RecordId ayant changé.
+     * Les pages qui n'appartiennent plus à aucune table (tables et bases supprimées) sont ensuite rendues au DiskManager,
+     * puis les fichiers sont raccourcis des pages libres qui les terminent.
+     *
+     * @param nomTable nom de la table à réorganiser, ou null pour toutes les tables de la base courante
+     * @return le nombre de pages rendues au DiskManager
+     */
+    public int Vacuum(String nomTable) throws Exception {
+    	ArrayList<String> tables = new ArrayList<>();
+    	if(nomTable != null) {
+    		tables.add(getTableForInsert(nomTable).getRelationName());
+    	} else if(current != null) {
+    		tables.addAll(current.keySet());
+    	}
+
+    	int nbRendues = 0;
+    	for(String table : tables) {
+    		Relation rel = current.get(table.toUpperCase());
+    		nbRendues += rel.Vacuum();
+
+    		// Les index sont reconstruits à partir des nouveaux RecordId
+    		HashMap<Integer, BPlusTree> index = listeIndex.get(table.toUpperCase());
+    		if(index.size() > 0) {
+    			ArrayList<Pair<MyRecord, RecordId>> records = rel.GetAllRecords();
+    			for(int colonne : index.keySet()) {
+    				ArrayList<Pair<Object, RecordId>> entrees = new ArrayList<>();
+    				for(Pair<MyRecord, RecordId> rec : records) {
+    					entrees.add(new Pair<Object, RecordId>(rec.getFirst().get(colonne).getFirst(), rec.getSecond()));
+    				}
+    				index.put(colonne, new BPlusTree(entrees, index.get(colonne).getOrdre()));
+    			}
+    		}
+    	}
+    	return nbRendues + reclaimPages();
+    }
+
+    /**
+     * Rend au DiskManager les pages qui ne sont ni libres ni utilisées par une table d'une des bases,
+     * comme celles des tables supprimées, puis raccourcit les fichiers.
+     *
+     * @return le nombre de pages rendues
+     */
+    private int reclaimPages() throws Exception {
+    	HashSet<PageId> utilisees = new HashSet<>(dskm.freePage);
+    	for(HashMap<String, Relation> bdd : listeDatabase.values()) {
+    		for(Relation rel : bdd.values()) {
+    			utilisees.addAll(rel.getHeaderPages());
+    			utilisees.addAll(rel.getDataPages());
+    		}
+    	}
+
+    	int nbRendues = 0;
+    	for(int numero = 0; numero < dskm.getNbPages(); numero++) {
+    		PageId id = DiskManager.pageFromNumber(numero);
+    		if(!utilisees.contains(id)) {
+    			bm.discardPage(id);
+    			dskm.DeallocPage(id);
+    			nbRendues++;
+    		}
+    	}
+    	// Les pages libres de la fin des fichiers disparaissent aussi du buffer pool
+    	for(PageId id : dskm.ShrinkFiles()) {
+    		bm.discardPage(id);
+    	}
+    	return nbRendues;
+    }
+
+    /**
+     * Écrit les pages de la table dans un fichier de copie binaire (COPY TO)
+     *
+     * @param nomTable nom de la table à copier
+     * @param nomFichier nom du fichier créé
+     * @return le nombre de pages écrites
+     */
+    public int CopyToFile(String nomTable, String nomFichier) throws Exception {
+    	return new TableCopy(dskm, bm).exportTable(getTableForInsert(nomTable), nomFichier);
+    }
+
+    /**
+     * Insère un lot de records et met à jour les index de la table
+     * 
+     * @param nomTable nom de la table
+     * @param rel table dans laquelle insérer
+     * @param lot records à insérer
+     */
+    private void insertBatch(String nomTable, Relation rel, ArrayList<MyRecord> lot) throws Exception {
+    	ArrayList<RecordId> rids = rel.InsertRecords(lot.iterator());
+
+    	for(int i = 0; i < rids.size(); i++) {
+    		indexRecord(nomTable, lot.get(i), rids.get(i));
+    	}
+    }
+
+    /**
+     * Récupère une table de la Base de Données courante pour y insérer des lignes
+     * 
+     * @param nomTable nom de la table
+     * @return la table demandée
+     */
+    private Relation getTableForInsert(String nomTable) throws IllegalArgumentException {
     	// Vérifie si la Base de Données courante est définie
     	if(current == null) {
     		throw new IllegalArgumentException("La Base de Données de travail n'a pas été définie");
     	}
-    	// Récupère la table à modifier
-    	Relation rel = GetTableFromCurrentDatabase(nomTable);
+    	return GetTableFromCurrentDatabase(nomTable);
+    }
 
+    /**
+     * Convertit une ligne de valeurs textuelles en record selon le schéma de la table
+     * 
+     * @param rel table dans laquelle le record sera inséré
+     * @param valeurs liste des valeurs de la ligne
+     * @return le record correspondant
+     */
+    private MyRecord parseRecord(Relation rel, String[] valeurs) throws IllegalArgumentException {
 		// Vérifie qu'il y a le bon nombre de valeur à ajouter
     	if(valeurs.length != rel.getNbAttribut()) {
     		throw new IllegalArgumentException("Le nombre d'arguments n'est pas égal au nombre requis pour cette table : " + rel.getNbAttribut());
@@ -105,67 +375,58 @@ public class DBManager {
     	MyRecord rec = new MyRecord();
     	// Ajoute chaque valeur et le son type attendu dans le record
     	for(int i = 0; i < rel.getNbAttribut(); i++) {
-    		valeurs[i] = valeurs[i].trim(); // Enlever les espaces superflus autour de chaque valeurs
-    		// Retire les guillements
-            while(valeurs[i].startsWith("\"") || valeurs[i].endsWith("\"")) {
-            	if(valeurs[i].startsWith("\"")) {
-            		valeurs[i] = valeurs[i].substring(1, valeurs[i].length());
-            	}
-            	if(valeurs[i].endsWith("\"")) {
-            		valeurs[i] = valeurs[i].substring(0, valeurs[i].length()-1);
-            	}
-    			
-            }
-    		switch(rel.getType(i)) {
-    		case INT:
-                rec.add(Integer.valueOf(valeurs[i]), rel.getType(i));
-                break;
-            case REAL:
-                rec.add(Float.valueOf(valeurs[i]), rel.getType(i));
-                break;
-            case CHAR:
-            case VARCHAR:
-            	
-            	rec.add(valeurs[i], rel.getType(i));
-            	break;
-            case DATE:
-            	rec.add(Date.toDate(valeurs[i]), rel.getType(i));
-            	break;
-            default:
-               throw new IllegalArgumentException("Ce type de données n'est pas pris en charge par le SGBD");
-    		}
+    		rec.add(parseValue(rel, i, valeurs[i]), rel.getType(i));
     	}
-    	//Insère le record
-    	RecordId rid = rel.InsertRecord(rec);
-    	
-    	// Vérifie si la relation a des index
-    	if(listeIndex.get(nomTable.toUpperCase()).size() > 0) {
-    		for(int index : listeIndex.get(nomTable.toUpperCase()).keySet()) {
-    			listeIndex.get(nomTable.toUpperCase()).get(index).addRecord(rec.get(index).getFirst(), rid);
-    		}
+    	return rec;
+    }
+
+    /**
+     * Convertit une valeur textuelle selon le type d'une colonne de la table
+     * 
+     * @param rel table de la colonne
+     * @param colonne index de la colonne
+     * @param valeur valeur textuelle, éventuellement entre guillemets
+     * @return la valeur convertie
+     */
+    private Object parseValue(Relation rel, int colonne, String valeur) throws IllegalArgumentException {
+    	valeur = valeur.trim(); // Enlever les espaces superflus autour de la valeur
+    	// Retire les guillements
+        while(valeur.startsWith("\"") || valeur.endsWith("\"")) {
+        	if(valeur.startsWith("\"")) {
+        		valeur = valeur.substring(1, valeur.length());
+        	}
+        	if(valeur.endsWith("\"")) {
+        		valeur = valeur.substring(0, valeur.length()-1);
+        	}
+        }
+    	switch(rel.getType(colonne)) {
+    	case INT:
+    		return Integer.valueOf(valeur);
+    	case REAL:
+    		return Float.valueOf(valeur);
+    	case CHAR:
+    	case VARCHAR:
+    		return valeur.toUpperCase();
+    	case DATE:
+    		return Date.toDate(valeur);
+    	default:
+    		throw new IllegalArgumentException("Ce type de données n'est pas pris en charge par le SGBD");
     	}
     }
-    
+
     /**
-     * Insère toutes les lignes du fichiers dans la table donnée
+     * Ajoute un record inséré dans tous les index de sa table
      * 
-     * @param nomTable nom de la table à ammender
-     * @param nomFichier nom de fichier contenant les valeurs à ajouter
+     * @param nomTable nom de la table
+     * @param rec record inséré
+     * @param rid emplacement du record
      */
-    public void BulkInsertIntoCurrentDatabase(String nomTable, String nomFichier) throws Exception {
-    	// Lis le fichier contenant les données
-    	String insert = readFichier(nomFichier);
-
-    	// Sépare les données en lignes
-    	String[] lines = insert.split("\n");
-    	// Chaque ligne représente un insert
-    	for(String line : lines) {
-    		// Retire les espaces en trop 
-    		line = line.trim();
-    		// Extrait les valeurs séparées par des virgules
-    		String[] valeurs = line.split("\\s*,\\s*");
-            // Insert la ligne
-            InsertIntoCurrentDatabase(nomTable, valeurs);
+    private void indexRecord(String nomTable, MyRecord rec, RecordId rid) {
+    	// Vérifie si la relation a des index
+    	if(listeIndex.get(nomTable.toUpperCase()).size() > 0) {
+    		for(int index : listeIndex.get(nomTable.toUpperCase()).keySet()) {
+    			listeIndex.get(nomTable.toUpperCase()).get(index).addRecord(rec.get(index).getFirst(), rid);
+    		}
     	}
     }
     
@@ -349,6 +610,21 @@ public class DBManager {
         		database.append(")");
         	}
         	database.append(")");
+        	if(rel.getEncoding() != RecordEncoding.UTF16) {
+        		database.append(" ENCODING=").append(rel.getEncoding());
+        	}
+        	if(rel.getStorage() != StorageLayout.ROW) {
+        		database.append(" STORAGE=").append(rel.getStorage());
+        	}
+        	String dictionnaires = "";
+        	for(int i = 0; i < rel.getNbAttribut(); i++) {
+        		if(rel.getDictionary(i) != null) {
+        			dictionnaires += (dictionnaires.isEmpty() ? "" : ",") + rel.getNameAttribut(i);
+        		}
+        	}
+        	if(!dictionnaires.isEmpty()) {
+        		database.append(" DICTIONARY=").append(dictionnaires);
+        	}
         	System.out.println(database.toString());
         	database.setLength(0);
         }
@@ -378,6 +654,10 @@ public class DBManager {
                 	saveContent.append(relHPId.FileIdx);
                 	saveContent.append("; ");
                 	saveContent.append(relHPId.PageIdx);
+                	saveContent.append("; ");
+                	saveContent.append(rel.getEncoding());
+                	saveContent.append("; ");
+                	saveContent.append(rel.getStorage());
                 	saveContent.append("\n");
 
                 	for(int i = 0; i < rel.getNbAttribut(); i++) {
@@ -387,6 +667,15 @@ public class DBManager {
                 		saveContent.append(rel.getType(i));
                 		saveContent.append("; ");
                 		saveContent.append(rel.getLength(i));
+                		// Le dictionnaire de la colonne suit, une valeur entre guillemets par ligne dans l'ordre des codes
+                		if(rel.getDictionary(i) != null) {
+                			saveContent.append("; DICTIONARY");
+                			for(String valeur : rel.getDictionary(i).getValeurs()) {
+                				saveContent.append("\nValeur = \"");
+                				saveContent.append(valeur);
+                				saveContent.append("\"");
+                			}
+                		}
                 		saveContent.append("\n");
                 	}
                }
@@ -406,6 +695,7 @@ public class DBManager {
     public void loadState() throws IOException{
     	HashMap<String, Relation> DatabaseEnCours = null;
     	Relation RelationEnCours = null;
+    	StringDictionary DictionnaireEnCours = null;
 		String save = null;
 
 		if (Files.exists(Paths.get(DBConfig.dbpath + "/databases.save")))
@@ -424,6 +714,7 @@ public class DBManager {
         					 listeDatabase.put(parts[1].trim(), new HashMap<>());
         					 DatabaseEnCours = listeDatabase.get(parts[1].trim());
         					 RelationEnCours = null;
+        					 DictionnaireEnCours = null;
         					 break;
         					 
         				 case "Table":
@@ -431,13 +722,18 @@ public class DBManager {
         						 RemoveDatabases();
         						 throw new IOException("La sauvegarde n'est pas complète");
         					 }else {
-        						 String[] infos = parts[1].trim().split(";", 3);
+        						 String[] infos = parts[1].trim().split(";");
         						 String nomRel = infos[0].trim();
 								 listeIndex.put(nomRel, new HashMap<>());
         						 PageId headerPage = new PageId(Integer.parseInt(infos[1].trim()), Integer.parseInt(infos[2].trim()));
-        						 Relation rel = new Relation(nomRel, new ArrayList<>(), headerPage, dskm, bm);
+        						 // Les sauvegardes antérieures au format compact n'ont pas de format de records
+        						 RecordEncoding encoding = (infos.length > 3) ? RecordEncoding.valueOf(infos[3].trim()) : RecordEncoding.UTF16;
+        						 // Les sauvegardes antérieures aux pages colonnaires n'ont pas d'organisation
+        						 StorageLayout storage = (infos.length > 4) ? StorageLayout.valueOf(infos[4].trim()) : StorageLayout.ROW;
+        						 Relation rel = new Relation(nomRel, new ArrayList<>(), headerPage, dskm, bm, encoding, storage);
         						 DatabaseEnCours.put(nomRel, rel);
         						 RelationEnCours = rel;
+        						 DictionnaireEnCours = null;
         					 }
         					 break;
         					 
@@ -446,7 +742,7 @@ public class DBManager {
         						 RemoveDatabases();
         						 throw new IOException("La sauvegarde n'est pas complète");
         					 }else {
-        						 String[] infos = parts[1].trim().split(";", 3);
+        						 String[] infos = parts[1].trim().split(";", 4);
         						 DataType typeCol = DataType.valueOf(infos[1].trim());
         						 Data dataCol;
         						 if((typeCol == DataType.CHAR) || (typeCol == DataType.VARCHAR)) {
@@ -455,6 +751,23 @@ public class DBManager {
         							 dataCol = new Data(typeCol);
         						 }
         						 RelationEnCours.setOneAttribut(new Pair<>(infos[0].trim(), dataCol));
+        						 // Les valeurs du dictionnaire sont sur les lignes suivantes
+        						 DictionnaireEnCours = null;
+        						 if(infos.length > 3 && infos[3].trim().equals("DICTIONARY")) {
+        							 DictionnaireEnCours = new StringDictionary();
+        							 RelationEnCours.setDictionary(infos[0].trim(), DictionnaireEnCours);
+        						 }
+        					 }
+        					 break;
+
+        				 case "Valeur":
+        					 if(DictionnaireEnCours == null) {
+        						 RemoveDatabases();
+        						 throw new IOException("La sauvegarde n'est pas complète");
+        					 }else {
+        						 String valeur = parts[1].trim();
+        						 // Les guillemets conservent les espaces de la valeur
+        						 DictionnaireEnCours.encode(valeur.substring(1, valeur.length() - 1));
         					 }
         					 break;
         				 default:
@@ -513,4 +826,14 @@ public class DBManager {
     public HashMap<String, Relation> getCurrentDatabase(){
     	return current;
     }
+
+    /**
+     * Récupère les index d'une table
+     * 
+     * @param nomTable nom de la table
+     * @return les index de la table, par numéro de colonne (vide si la table n'a pas d'index)
+     */
+    public HashMap<Integer, BPlusTree> getIndex(String nomTable){
+    	return listeIndex.getOrDefault(nomTable.toUpperCase(), new HashMap<>());
+    }
 }
\ No newline at end of file
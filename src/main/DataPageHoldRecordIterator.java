@@ -1,4 +1,6 @@
 import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.function.Predicate;
 
 /**
  * Cette classe implémente un itérateur permettant de parcourir les records dans une page de données.
@@ -12,14 +14,16 @@ import java.nio.ByteBuffer;
  * @author Mael Lecene
  */
 public class DataPageHoldRecordIterator implements IRecordIterator {
-    // Variable de décalage pour accéder à l'offset des records dans la page de données
-    private int offsetRecord = 0; // Initialisation pour commencer avant la fin de la page de données
+    private int slot = 0; // Numéro du dernier slot lu dans le slot directory
     private int nbRecord; // Nombre total de records présents sur la page
 
     private Relation relation; // Relation associée à cet itérateur
     private BufferManager bm; // Gestionnaire de buffer pour accéder aux pages de données
     private ByteBuffer buffer; // Buffer contenant la page de données actuelle
     private PageId dataPageId; // Identifiant de la page de données courante
+    private RecordView view; // Vue réutilisée pour chaque record de la page
+    private Predicate<IRecord> predicat; // Conditions testées dans la page avant toute copie, ou null
+    private int[] colonnes; // Colonnes copiées par GetNextRecord, dans l'ordre de la relation, ou null pour toutes
 
     /**
      * Constructeur de la classe DataPageHoldRecordIterator.
@@ -38,30 +42,81 @@ public class DataPageHoldRecordIterator implements IRecordIterator {
         this.bm = bm;  // Initialisation du gestionnaire de buffer
         this.dataPageId = dataPageId;  // Initialisation de l'identifiant de la page de données
         this.buffer = buffer;
+        this.view = new RecordView(relation, buffer);
 
         // Extrait le nombre de records dans la page
         nbRecord = buffer.getInt(DBConfig.pagesize-8);
     }
 
+    /**
+     * Pousse une sélection et une projection dans la lecture de la page.
+     * Le prédicat est testé sur la vue du record, qui ne lit que les colonnes des conditions grâce à l'offset directory ;
+     * seuls les records retenus sont copiés par GetNextRecord, et seulement leurs colonnes demandées.
+     *
+     * @param predicat Les conditions que les records doivent satisfaire, ou null pour tous les garder.
+     * @param colonnes Masque des colonnes à copier, ou null pour toutes. Les colonnes copiées gardent l'ordre de la relation.
+     */
+    public void setFiltre(Predicate<IRecord> predicat, BitSet colonnes) {
+        this.predicat = predicat;
+        this.colonnes = (colonnes == null) ? null : colonnes.stream().toArray();
+    }
+
+    /**
+     * Avance au prochain slot du slot directory qui contient un record, en sautant ceux des records supprimés.
+     * Les pointeurs des records déplacés sont aussi sautés : chaque record déplacé est lu dans la page de sa copie.
+     * Les records qui ne satisfont pas le prédicat poussé sont sautés de la même façon.
+     *
+     * @return La position du record du slot, ou -1 s'il n'y a plus de records.
+     */
+    private int nextRecordPos() {
+        // Tant que tous les records de la page n'ont pas été parcourus
+        while (slot < nbRecord) {
+            slot++;
+            int slotOffset = DBConfig.pagesize - 8 - (slot * 8);
+            if (buffer.getInt(slotOffset + 4) > 0) {
+                int pos = Relation.recordPos(buffer.getInt(slotOffset));
+                if (predicat == null || predicat.test(view.moveTo(pos)))
+                    return pos;
+            }
+        }
+        return -1;
+    }
+
     /**
      * Cette méthode permet d'obtenir le prochain record de la page de données.
      * Elle vérifie d'abord si plus de records sont disponibles et, dans le cas contraire, retourne null.
-     * Si des records sont disponibles, elle lit la position du prochain record dans la page de données
-     * et extrait ce dernier (la logique d'extraction n'est pas encore implémentée ici).
+     * Si des records sont disponibles, elle lit la position du prochain record dans le slot directory
+     * et en extrait une copie, réduite aux colonnes demandées par setFiltre.
      * 
      * @return Le prochain record extrait de la page de données sous forme de MyRecord, ou null s'il n'y a plus de records.
      */
     public MyRecord GetNextRecord() {
-        // Si tous les records de la page ont été parcourus
-        if (nbRecord == 0)
+        int pos = nextRecordPos();
+        if (pos == -1)
             return null;
 
+        // Seules les colonnes projetées sont lues, directement à leur offset
+        if (colonnes != null)
+            return view.moveTo(pos).toRecord(colonnes);
+
         MyRecord res = new MyRecord();  // Variable pour stocker le record extrait
+        relation.readRecordFromBuffer(res, buffer, pos);
+        return res;
+    }
 
-        offsetRecord += relation.readRecordFromBuffer(res, buffer, offsetRecord);
-        nbRecord--;
+    /**
+     * Renvoie une vue sur le prochain record de la page, sans copier ses valeurs.
+     * La vue est la même d'un appel à l'autre et n'est valide que jusqu'au prochain appel.
+     *
+     * @return La vue positionnée sur le prochain record, ou null s'il n'y a plus de records.
+     */
+    @Override
+    public IRecord GetNextView() {
+        int pos = nextRecordPos();
+        if (pos == -1)
+            return null;
 
-        return res; // La méthode retourne actuellement null; ici, vous devez extraire les données et retourner le record
+        return view.moveTo(pos);
     }
 
     /**
@@ -70,7 +125,7 @@ public class DataPageHoldRecordIterator implements IRecordIterator {
      */
     public void Reset() {
         nbRecord = buffer.getInt(DBConfig.pagesize-8);
-        offsetRecord = 0;  // Réinitialisation de l'offset à 0 pour recommencer l'itération
+        slot = 0;  // Réinitialisation au premier slot pour recommencer l'itération
     }
 
     /**
@@ -81,6 +136,7 @@ public class DataPageHoldRecordIterator implements IRecordIterator {
     public void Close() {
         nbRecord = 0;
         buffer = null;  // Libère la référence au buffer, permettant au garbage collector de gérer la mémoire
+        view = null;
         bm.freePage(dataPageId, false);  // Libère la page de données via le gestionnaire de buffer
     }
 }
\ No newline at end of file
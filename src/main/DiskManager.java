@@ -1,8 +1,11 @@
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.io.RandomAccessFile;
 
@@ -78,12 +81,68 @@ public class DiskManager {
 
             // Écrire la page dans le fichier
             WritePage(id, buffer); // L'exception sera propagée à l'appelant
+            indexFile += DBConfig.pagesize; // Mettre à jour l'espace global (une page réutilisée ne l'agrandit pas)
         }
-        indexFile += DBConfig.pagesize; // Mettre à jour l'espace global
         cpt_page ++; // Mettre à jour l'espace global
         return id;
     }
 
+    /**
+     * Alloue un extent : nbPages pages consécutives prises à la fin de l'espace global, sans passer par les pages libres.
+     * Les pages ne sont pas initialisées, l'appelant doit les écrire (par exemple avec WritePages) avant de les lire.
+     * 
+     * @param nbPages Le nombre de pages à allouer.
+     * @return Les identifiants des pages allouées, dans l'ordre.
+     */
+    public ArrayList<PageId> AllocExtent(int nbPages) {
+        ArrayList<PageId> ids = new ArrayList<>(nbPages);
+        int pagesParFichier = DBConfig.dm_maxfilesize / DBConfig.pagesize;
+
+        for (int i = 0; i < nbPages; i++) {
+            int fileIdx = (int) (indexFile / DBConfig.dm_maxfilesize);
+            int pageIdx = (int) (indexFile / DBConfig.pagesize) - (fileIdx * pagesParFichier);
+            ids.add(new PageId(fileIdx, pageIdx));
+
+            indexFile += DBConfig.pagesize; // Mettre à jour l'espace global
+            cpt_page ++;
+        }
+        return ids;
+    }
+
+    /**
+     * Écrit plusieurs pages directement sur le disque, sans passer par le BufferManager.
+     * Chaque fichier n'est ouvert qu'une fois pour toutes les pages consécutives qui lui appartiennent.
+     * Les pages écrites ne doivent pas être chargées dans le BufferManager.
+     * 
+     * @param ids Les identifiants des pages.
+     * @param buffers Le contenu des pages, dans le même ordre.
+     * @throws Exception Si une écriture est incomplète ou échoue.
+     */
+    public void WritePages(List<PageId> ids, List<ByteBuffer> buffers) throws Exception {
+        if (ids.size() != buffers.size())
+            throw new IllegalArgumentException("Il faut autant de buffers que de pages à écrire");
+
+        int i = 0;
+        while (i < ids.size()) {
+            int fileIdx = ids.get(i).FileIdx;
+            String cheminFichier = DBConfig.dbpath + "BinData/F" + fileIdx + ".rsdb"; // Chemin du fichier contenant les pages
+
+            try (RandomAccessFile raf = new RandomAccessFile(cheminFichier, "rw");
+                 FileChannel channel = raf.getChannel()) {
+                // Écrit toutes les pages suivantes du même fichier
+                for (; i < ids.size() && ids.get(i).FileIdx == fileIdx; i++) {
+                    ByteBuffer buffer = buffers.get(i);
+                    buffer.clear(); // Nettoyer le buffer avant d'écrire
+                    int bytesWritten = channel.write(buffer, (long) ids.get(i).PageIdx * DBConfig.pagesize);
+
+                    // Vérifier si l'écriture a été complète
+                    if (bytesWritten != DBConfig.pagesize)
+                        throw new Exception("Erreur d'écriture : " + bytesWritten + " octets écrits au lieu de " + DBConfig.pagesize);
+                }
+            }
+        }
+    }
+
     /**
      * Lit le contenu d'une page à partir du disque et le place dans le buffer spécifié.
      * 
@@ -150,6 +209,75 @@ public class DiskManager {
         cpt_page --; // Mettre à jour l'espace global
     }
 
+    /**
+     * Retire de la fin de l'espace global les pages libres qui s'y trouvent, puis raccourcit les fichiers
+     * en conséquence : le dernier fichier utilisé est tronqué et ceux qui le suivent sont supprimés.
+     * Les pages retirées ne doivent plus être chargées dans le BufferManager.
+     * 
+     * @return Les pages retirées de la liste des pages libres.
+     * @throws IOException Si un fichier ne peut pas être tronqué.
+     */
+    public ArrayList<PageId> ShrinkFiles() throws IOException {
+        ArrayList<PageId> retirees = new ArrayList<>();
+        HashSet<PageId> libres = new HashSet<>(freePage);
+        int nbPages = getNbPages();
+        int dernierFichier = (nbPages == 0) ? -1 : pageFromNumber(nbPages - 1).FileIdx;
+
+        // Recule la fin de l'espace global tant que la dernière page est libre
+        while (nbPages > 0 && libres.contains(pageFromNumber(nbPages - 1))) {
+            retirees.add(pageFromNumber(nbPages - 1));
+            nbPages--;
+        }
+        freePage.removeAll(retirees);
+        indexFile = (long) nbPages * DBConfig.pagesize;
+
+        // Tronque le fichier de la dernière page et supprime les fichiers suivants
+        int fichier = 0;
+        if (nbPages > 0) {
+            PageId derniere = pageFromNumber(nbPages - 1);
+            fichier = derniere.FileIdx + 1;
+            Path chemin = Paths.get(DBConfig.dbpath + "BinData/F" + derniere.FileIdx + ".rsdb");
+            if (Files.exists(chemin) && Files.size(chemin) > (long) (derniere.PageIdx + 1) * DBConfig.pagesize) {
+                try (RandomAccessFile raf = new RandomAccessFile(chemin.toFile(), "rw")) {
+                    raf.setLength((long) (derniere.PageIdx + 1) * DBConfig.pagesize);
+                }
+            }
+        }
+        for (; fichier <= dernierFichier; fichier++)
+            Files.deleteIfExists(Paths.get(DBConfig.dbpath + "BinData/F" + fichier + ".rsdb"));
+        return retirees;
+    }
+
+    /**
+     * Retourne le nombre de pages de l'espace global, libres ou non.
+     * 
+     * @return Le nombre de pages allouées depuis le début de l'espace global.
+     */
+    public int getNbPages() {
+        return (int) (indexFile / DBConfig.pagesize);
+    }
+
+    /**
+     * Calcule le numéro global d'une page, son rang dans l'ordre d'allocation.
+     * 
+     * @param id L'identifiant de la page.
+     * @return Le numéro de la page.
+     */
+    public static int pageNumber(PageId id) {
+        return id.FileIdx * (DBConfig.dm_maxfilesize / DBConfig.pagesize) + id.PageIdx;
+    }
+
+    /**
+     * Retrouve l'identifiant d'une page à partir de son numéro global.
+     * 
+     * @param numero Le numéro de la page.
+     * @return L'identifiant de la page.
+     */
+    public static PageId pageFromNumber(int numero) {
+        int pagesParFichier = DBConfig.dm_maxfilesize / DBConfig.pagesize;
+        return new PageId(numero / pagesParFichier, numero % pagesParFichier);
+    }
+
     /**
      * Retourne le nombre actuel de pages allouées dans le système.
      * 
@@ -168,6 +296,7 @@ public class DiskManager {
 
         try (RandomAccessFile raf = new RandomAccessFile(cheminFichier, "rw");
              FileChannel channel = raf.getChannel()) {
+                raf.setLength(0);   // La liste des pages libres a pu raccourcir depuis la dernière sauvegarde
 
                 raf.writeLong(indexFile); // Sauvegarder l'espace global alloué
                 raf.writeInt(cpt_page); // Sauvegarder l'espace global alloué
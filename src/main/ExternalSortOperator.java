@@ -0,0 +1,348 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+
+/**
+ * Opérateur de tri externe : renvoie les records de son entrée dans l'ordre de une ou plusieurs colonnes,
+ * croissant ou décroissant pour chacune (ORDER BY).
+ *
+ * <p>L'entrée est lue par morceaux qui tiennent dans la mémoire accordée au tri (sort_buffercount pages).
+ * Si toute l'entrée tient dans un morceau, elle est triée et renvoyée depuis la mémoire. Sinon chaque morceau
+ * trié est écrit dans une relation temporaire (un run), page après page, puis les runs sont fusionnés
+ * k à k avec une file de priorité, k étant le nombre de pages de mémoire moins une. S'il y a plus de runs
+ * que k, des passes de fusion intermédiaires réécrivent des runs plus longs jusqu'à pouvoir fusionner en une fois.</p>
+ *
+ * <p>Les valeurs sont comparées comme dans les conditions : les nombres par leur valeur, les autres valeurs
+ * par leur ordre naturel.</p>
+ *
+ * @author Mael Lecene
+ */
+public class ExternalSortOperator implements IRecordIterator {
+
+    /**
+     * Position de lecture dans un run pendant une fusion.
+     */
+    private static class Curseur {
+        private final selectOperator scan;  // Parcours du run
+        private Tuple courant;              // Prochain tuple du run
+
+        Curseur(selectOperator scan) {
+            this.scan = scan;
+        }
+    }
+
+    private IRecordIterator entree;     // Records à trier
+    private int[] colonnes;             // Colonnes du tri, par ordre de priorité
+    private boolean[] decroissant;      // true pour les colonnes triées par ordre décroissant
+    private BufferManager bm;
+    private Comparator<IRecord> comparateur;
+
+    private TupleSchema schema;         // Schéma des records de l'entrée
+    private boolean ouvert;             // true une fois l'entrée lue et triée
+    private ArrayList<Tuple> trie;      // Résultat trié quand l'entrée tient en mémoire
+    private int index;                  // Prochain tuple du résultat en mémoire
+    private ArrayList<Relation> runs = new ArrayList<>();   // Runs en cours de fusion
+    private PriorityQueue<Curseur> fusion;  // Curseurs des runs, ordonnés par leur tuple courant
+    private int nbRuns;                 // Nombre de runs écrits par la lecture de l'entrée
+
+    /**
+     * Constructeur de l'opérateur de tri externe, dans l'ordre croissant de toutes les colonnes.
+     *
+     * @param entree L'opérateur dont les records sont triés.
+     * @param colonnes Les colonnes du tri, la première étant la plus importante.
+     * @param bm Le gestionnaire de buffer, qui reçoit les runs.
+     * @throws IllegalArgumentException Si aucune colonne n'est donnée.
+     */
+    public ExternalSortOperator(IRecordIterator entree, int[] colonnes, BufferManager bm) throws IllegalArgumentException {
+        this(entree, colonnes, new boolean[colonnes.length], bm);
+    }
+
+    /**
+     * Constructeur de l'opérateur de tri externe.
+     *
+     * @param entree L'opérateur dont les records sont triés.
+     * @param colonnes Les colonnes du tri, la première étant la plus importante.
+     * @param decroissant Pour chaque colonne, true si elle est triée par ordre décroissant.
+     * @param bm Le gestionnaire de buffer, qui reçoit les runs.
+     * @throws IllegalArgumentException Si aucune colonne n'est donnée, ou pas autant de sens que de colonnes.
+     */
+    public ExternalSortOperator(IRecordIterator entree, int[] colonnes, boolean[] decroissant, BufferManager bm) throws IllegalArgumentException {
+        if (colonnes.length == 0)
+            throw new IllegalArgumentException("Le tri doit porter sur au moins une colonne");
+        this.entree = entree;
+        this.colonnes = colonnes;
+        this.decroissant = decroissant;
+        this.bm = bm;
+        this.comparateur = comparator(colonnes, decroissant);
+    }
+
+    /**
+     * Construit la comparaison de deux records sur une suite de colonnes.
+     *
+     * @param colonnes Les colonnes, la première étant la plus importante.
+     * @return Le comparateur.
+     */
+    public static Comparator<IRecord> comparator(int[] colonnes) {
+        return comparator(colonnes, new boolean[colonnes.length]);
+    }
+
+    /**
+     * Construit la comparaison de deux records sur une suite de colonnes, chacune dans un sens.
+     *
+     * @param colonnes Les colonnes, la première étant la plus importante.
+     * @param decroissant Pour chaque colonne, true si l'ordre est décroissant.
+     * @return Le comparateur.
+     * @throws IllegalArgumentException Si le nombre de sens n'est pas le nombre de colonnes.
+     */
+    public static Comparator<IRecord> comparator(int[] colonnes, boolean[] decroissant) {
+        if (decroissant.length != colonnes.length)
+            throw new IllegalArgumentException("Un sens de tri est attendu pour chacune des " + colonnes.length + " colonnes");
+        return (r1, r2) -> {
+            for (int i = 0; i < colonnes.length; i++) {
+                int comp = ZoneMap.compare(r1.getValue(colonnes[i]), r2.getValue(colonnes[i]));
+                if (comp != 0)
+                    return decroissant[i] ? -comp : comp;
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * @return Les colonnes du tri, la première étant la plus importante.
+     */
+    public int[] getColonnes() {
+        return colonnes;
+    }
+
+    /**
+     * @return Pour chaque colonne du tri, true si elle est triée par ordre décroissant.
+     */
+    public boolean[] getDecroissant() {
+        return decroissant;
+    }
+
+    /**
+     * @return Le nombre de runs écrits sur le disque, 0 si l'entrée a été triée en mémoire.
+     */
+    public int getNbRuns() {
+        return nbRuns;
+    }
+
+    /**
+     * Récupère une copie du prochain record trié.
+     */
+    @Override
+    public MyRecord GetNextRecord() {
+        IRecord res = GetNextView();
+        return (res == null) ? null : res.toRecord();
+    }
+
+    /**
+     * Récupère le prochain record trié. L'entrée est lue et triée au premier appel.
+     * Le tuple renvoyé n'est pas une vue : il reste valide après les appels suivants.
+     */
+    @Override
+    public IRecord GetNextView() {
+        try {
+            if (!ouvert)
+                open();
+
+            if (fusion == null)
+                return (index < trie.size()) ? trie.get(index++) : null;
+
+            Curseur curseur = fusion.poll();
+            if (curseur == null)
+                return null;
+            Tuple res = curseur.courant;
+            if (advance(curseur))
+                fusion.add(curseur);
+            return res;
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur dans GetNextRecord : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lit l'entrée par morceaux de la taille de la mémoire, écrit chaque morceau trié dans un run
+     * si l'entrée ne tient pas en mémoire, et prépare la fusion finale.
+     *
+     * @throws Exception Si un run ne peut pas être écrit ou lu.
+     */
+    private void open() throws Exception {
+        int nbPages = (DBConfig.sort_buffercount > 0) ? DBConfig.sort_buffercount : DBConfig.bm_buffercount;
+        long memoire = (long) nbPages * DBConfig.pagesize;
+        int k = Math.max(2, nbPages - 1);   // Nombre de runs fusionnés à la fois, une page de lecture par run
+        ouvert = true;
+        trie = new ArrayList<>();
+        index = 0;
+
+        long taille = 0;
+        IRecord record;
+        while ((record = entree.GetNextView()) != null) {
+            if (schema == null)
+                schema = TupleSchema.of(record);
+            Tuple tuple = Tuple.of(record, schema);
+            trie.add(tuple);
+            taille += tuple.getMemorySize();
+
+            // Mémoire pleine : le morceau trié part dans un run
+            if (taille > memoire) {
+                trie.sort(comparateur);
+                runs.add(writeRun(trie.iterator()));
+                trie.clear();
+                taille = 0;
+            }
+        }
+        trie.sort(comparateur);
+        if (runs.isEmpty())
+            return;     // Tout tient en mémoire
+
+        if (!trie.isEmpty())
+            runs.add(writeRun(trie.iterator()));
+        trie = null;
+        nbRuns = runs.size();
+
+        // Passes intermédiaires : k runs sont fusionnés en un seul, jusqu'à pouvoir tout fusionner en une fois
+        while (runs.size() > k) {
+            ArrayList<Relation> suivants = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += k) {
+                ArrayList<Relation> groupe = new ArrayList<>(runs.subList(i, Math.min(i + k, runs.size())));
+                PriorityQueue<Curseur> file = openRuns(groupe);
+                suivants.add(writeRun(new Iterator<Tuple>() {
+                    public boolean hasNext() {
+                        return !file.isEmpty();
+                    }
+
+                    public Tuple next() {
+                        Curseur curseur = file.poll();
+                        Tuple res = curseur.courant;
+                        try {
+                            if (advance(curseur))
+                                file.add(curseur);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e.getMessage());
+                        }
+                        return res;
+                    }
+                }));
+                for (Relation run : groupe)
+                    run.DropPages();
+            }
+            runs = suivants;
+        }
+        fusion = openRuns(runs);
+    }
+
+    /**
+     * Ouvre un curseur sur chacun des runs d'une fusion.
+     *
+     * @param groupe Les runs à fusionner.
+     * @return La file des curseurs qui ont au moins un tuple, ordonnée par leur tuple courant.
+     * @throws Exception Si un run ne peut pas être lu.
+     */
+    private PriorityQueue<Curseur> openRuns(ArrayList<Relation> groupe) throws Exception {
+        PriorityQueue<Curseur> file = new PriorityQueue<>(groupe.size(), (c1, c2) -> comparateur.compare(c1.courant, c2.courant));
+        for (Relation run : groupe) {
+            Curseur curseur = new Curseur(new selectOperator(new PageDirectoryIterator(run, bm), run, new ArrayList<>(), bm));
+            if (advance(curseur))
+                file.add(curseur);
+        }
+        return file;
+    }
+
+    /**
+     * Avance un curseur sur le tuple suivant de son run. Le parcours est fermé à la fin du run.
+     *
+     * @param curseur Le curseur.
+     * @return false si le run est terminé.
+     * @throws Exception Si la page suivante du run ne peut pas être lue.
+     */
+    private boolean advance(Curseur curseur) throws Exception {
+        IRecord suivant = curseur.scan.GetNextView();
+        if (suivant == null) {
+            curseur.scan.Close();
+            curseur.courant = null;
+            return false;
+        }
+        curseur.courant = Tuple.of(suivant, schema);
+        return true;
+    }
+
+    /**
+     * Écrit une suite de tuples triés dans un nouveau run. Les data Pages sont remplies dans l'ordre
+     * et ajoutées à la suite, pour qu'un parcours du run relise les tuples dans le même ordre.
+     *
+     * @param tuples Les tuples, dans l'ordre du tri.
+     * @return Le run.
+     * @throws Exception Si une page ne peut pas être allouée ou écrite.
+     */
+    private Relation writeRun(Iterator<Tuple> tuples) throws Exception {
+        Relation run = null;
+        ByteBuffer image = null;
+        boolean vide = true;    // true tant que l'image ne contient aucun record
+
+        while (tuples.hasNext()) {
+            Tuple tuple = tuples.next();
+            if (run == null) {
+                run = Relation.createTemporary("SORTRUN" + runs.size(), tuple, DiskManager.getInstance(), bm);
+                image = run.newPageImage();
+            }
+            MyRecord record = tuple.toRecord();
+            if (run.writeRecordInPageImage(record, image) == 0) {
+                run.appendDataPage(image);
+                image = run.newPageImage();
+                run.writeRecordInPageImage(record, image);
+            }
+            vide = false;
+        }
+        if (!vide)
+            run.appendDataPage(image);
+        return run;
+    }
+
+    /**
+     * Rend les pages des runs encore ouverts.
+     */
+    private void dropRuns() {
+        try {
+            if (fusion != null)
+                for (Curseur curseur : fusion)
+                    curseur.scan.Close();
+            for (Relation run : runs)
+                run.DropPages();
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur lors de la libération des runs : " + e.getMessage());
+        }
+        runs = new ArrayList<>();
+        fusion = null;
+    }
+
+    /**
+     * Réinitialise l'opérateur. Un résultat trié en mémoire est simplement relu depuis le début ;
+     * sinon les runs sont rendus et l'entrée sera relue et triée au prochain appel.
+     */
+    @Override
+    public void Reset() {
+        if (trie != null && fusion == null) {
+            index = 0;
+            return;
+        }
+        dropRuns();
+        entree.Reset();
+        trie = null;
+        nbRuns = 0;
+        ouvert = false;
+    }
+
+    /**
+     * Ferme l'opérateur et son entrée, et rend les pages des runs.
+     */
+    @Override
+    public void Close() {
+        dropRuns();
+        entree.Close();
+        trie = null;
+    }
+}
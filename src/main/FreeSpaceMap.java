@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Carte de l'espace libre (free-space map) d'une relation.
+ * Chaque data Page de la relation y est rangée dans un seau selon son nombre d'octets libres,
+ * ce qui permet de trouver en temps constant une page capable de recevoir un record sans parcourir les header Pages.
+ * La carte est une copie en mémoire des entrées des header Pages : elle doit être mise à jour à chaque
+ * modification de l'espace libre d'une data Page.
+ * @author Mael Lecene
+ */
+public class FreeSpaceMap {
+    public static final int NB_BUCKETS = 32;   // Nombre de seaux
+
+    /**
+     * Entrée de la carte : une data Page et l'emplacement de son entrée dans les header Pages.
+     */
+    public static class Entry {
+        PageId dataPageId;  // Identifiant de la data Page
+        PageId headerPageId;    // Header Page contenant l'entrée de la data Page
+        int offset; // Position des octets libres de la data Page dans sa header Page
+        int freeBytes;  // Nombre d'octets libres de la data Page
+        int bucket; // Seau dans lequel l'entrée est rangée
+        MyLinkedList.Cellule<Entry> cellule;    // Cellule de l'entrée dans la liste de son seau
+
+        Entry(PageId dataPageId, PageId headerPageId, int offset, int freeBytes) {
+            this.dataPageId = dataPageId;
+            this.headerPageId = headerPageId;
+            this.offset = offset;
+            this.freeBytes = freeBytes;
+        }
+
+        /**
+         * @return L'identifiant de la data Page.
+         */
+        public PageId getDataPageId() {
+            return dataPageId;
+        }
+
+        /**
+         * @return L'identifiant de la header Page contenant l'entrée.
+         */
+        public PageId getHeaderPageId() {
+            return headerPageId;
+        }
+
+        /**
+         * @return La position des octets libres dans la header Page.
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * @return Le nombre d'octets libres de la data Page.
+         */
+        public int getFreeBytes() {
+            return freeBytes;
+        }
+    }
+
+    private ArrayList<MyLinkedList<Entry>> buckets = new ArrayList<>();  // Seaux d'entrées classées par espace libre
+    private HashMap<PageId, Entry> entries = new HashMap<>();   // Accès direct à l'entrée d'une data Page
+    private int bucketWidth;    // Nombre d'octets couverts par un seau
+
+    /**
+     * Constructeur d'une carte vide, dimensionnée selon la taille des pages.
+     */
+    public FreeSpaceMap() {
+        bucketWidth = Math.max(1, (DBConfig.pagesize + NB_BUCKETS - 1) / NB_BUCKETS);  // Arrondi supérieur
+
+        for (int i = 0; i < NB_BUCKETS; i++)
+            buckets.add(new MyLinkedList<>());
+    }
+
+    /**
+     * Ajoute une data Page à la carte.
+     *
+     * @param dataPageId L'identifiant de la data Page.
+     * @param headerPageId La header Page contenant son entrée.
+     * @param offset La position de ses octets libres dans la header Page.
+     * @param freeBytes Son nombre d'octets libres.
+     * @return L'entrée créée.
+     */
+    public Entry add(PageId dataPageId, PageId headerPageId, int offset, int freeBytes) {
+        Entry entry = new Entry(dataPageId, headerPageId, offset, freeBytes);
+        entries.put(dataPageId, entry);
+        ranger(entry);
+        return entry;
+    }
+
+    /**
+     * Cherche une data Page ayant au moins le nombre d'octets libres demandé.
+     * Les seaux supérieurs à celui de la demande n'ont qu'à être non vides ; dans le seau de la demande,
+     * les entrées sont parcourues de la dernière arrivée à la première jusqu'à en trouver une qui convient.
+     *
+     * @param needed Le nombre d'octets nécessaires.
+     * @return Une entrée convenable ou null si aucune page n'a assez de place.
+     */
+    public Entry find(int needed) {
+        int first = bucketOf(needed);
+
+        // Tous les seaux au dessus de celui de 'needed' ont forcément assez de place
+        for (int b = first + 1; b < NB_BUCKETS; b++) {
+            if (! buckets.get(b).isEmpty())
+                return buckets.get(b).getRoot().getSuivant().getValue();    // Premier élément après la sentinelle
+        }
+        // Le seau de 'needed' contient des pages plus ou moins pleines, on cherche la plus récente qui convient
+        MyLinkedList<Entry> seau = buckets.get(first);
+        for (MyLinkedList.Cellule<Entry> c = seau.getTail(); c != seau.getRoot(); c = c.getPrecedent()) {
+            if (c.getValue().freeBytes >= needed)
+                return c.getValue();
+        }
+
+        return null;
+    }
+
+    /**
+     * Met à jour l'espace libre d'une entrée et la change de seau si nécessaire.
+     *
+     * @param entry L'entrée à mettre à jour.
+     * @param freeBytes Le nouveau nombre d'octets libres.
+     */
+    public void update(Entry entry, int freeBytes) {
+        entry.freeBytes = freeBytes;
+
+        if (bucketOf(freeBytes) != entry.bucket) {
+            buckets.get(entry.bucket).remove(entry.cellule);    // Retrait en temps constant
+            ranger(entry);
+        }
+    }
+
+    /**
+     * Retire une data Page de la carte.
+     *
+     * @param dataPageId L'identifiant de la data Page.
+     */
+    public void remove(PageId dataPageId) {
+        Entry entry = entries.remove(dataPageId);
+
+        if (entry != null)
+            buckets.get(entry.bucket).remove(entry.cellule);
+    }
+
+    /**
+     * Récupère l'entrée d'une data Page.
+     *
+     * @param dataPageId L'identifiant de la data Page.
+     * @return Son entrée ou null si la page n'est pas dans la carte.
+     */
+    public Entry get(PageId dataPageId) {
+        return entries.get(dataPageId);
+    }
+
+    /**
+     * @return Le nombre de data Pages référencées.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Range une entrée dans le seau correspondant à son espace libre.
+     *
+     * @param entry L'entrée à ranger.
+     */
+    private void ranger(Entry entry) {
+        entry.bucket = bucketOf(entry.freeBytes);
+        entry.cellule = buckets.get(entry.bucket).add(entry);
+    }
+
+    /**
+     * Calcule le seau d'un nombre d'octets libres.
+     *
+     * @param freeBytes Le nombre d'octets libres.
+     * @return L'index du seau.
+     */
+    private int bucketOf(int freeBytes) {
+        return Math.min(NB_BUCKETS - 1, Math.max(0, freeBytes / bucketWidth));
+    }
+}
@@ -0,0 +1,358 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Opérateur de jointure par hachage pour les jointures avec au moins une égalité entre une colonne
+ * de chaque relation ("R.a = S.b").
+ * Une table de hachage est construite sur l'une des deux entrées (de préférence la plus petite), l'autre
+ * est lue une seule fois et chacun de ses records n'est comparé qu'aux records qui ont la même clé.
+ *
+ * <p>Si l'entrée de construction dépasse la mémoire accordée à la jointure (join_buffercount pages),
+ * l'opérateur passe en partitionnement GRACE : les deux entrées sont réparties selon le hachage de leur clé
+ * dans des relations temporaires, écrites par le BufferManager, puis chaque paire de partitions est jointe
+ * en mémoire. Une partition trop grande à cause de clés très répétées est chargée malgré tout.</p>
+ *
+ * <p>Toutes les conditions de jointure sont vérifiées sur les paires trouvées. Les tuples produits ont
+ * toujours les colonnes de gauche suivies de celles de droite, quelle que soit l'entrée de construction.</p>
+ *
+ * @author Mael Lecene
+ */
+public class HashJoinOperator implements IRecordIterator {
+    private Pair<IRecordIterator, IRecordIterator> operateurs;  // Les deux entrées à joindre
+    private ArrayList<Condition> joinConditions;
+    private Predicate<IRecord> predicat;    // Conditions de jointure compilées
+    private boolean buildGauche;    // true si la table de hachage est construite sur l'entrée de gauche
+    private BufferManager bm;
+    private int[] clesBuild;    // Colonnes de la clé dans l'entrée de construction
+    private int[] clesProbe;    // Colonnes de la clé dans l'entrée lue
+
+    private HashMap<List<Object>, ArrayList<Tuple>> table;  // Records de construction, par valeur de la clé
+    private TupleSchema buildSchema;    // Schéma des records de construction
+    private TupleSchema probeSchema;    // Schéma des records lus
+    private TupleSchema joinSchema;     // Schéma des tuples résultats, construit avec la première paire
+    private JoinedRecord candidat = new JoinedRecord();   // Paire en cours d'évaluation, réutilisée
+
+    private Relation[] buildPartitions;  // Partitions de l'entrée de construction, null tant que tout tient en mémoire
+    private Relation[] probePartitions;  // Partitions de l'entrée lue
+    private int partition;          // Partition en cours de jointure
+    private IRecordIterator probeIt;    // Records lus : l'entrée elle-même ou une partition
+    private boolean ouvert;         // true une fois la table de hachage construite
+
+    private IRecord probeRecord;    // Record lu en cours, copié en Tuple s'il est à gauche
+    private ArrayList<Tuple> correspondances;   // Records de construction de même clé que le record lu
+    private int indexCorrespondance;    // Prochaine correspondance à évaluer
+
+    /**
+     * Constructeur de l'opérateur de jointure par hachage.
+     *
+     * @param operateurs Les entrées de gauche et de droite.
+     * @param conditions Les conditions de jointure, avec les index des colonnes des deux entrées mises bout à bout.
+     * @param nbColonnesGauche Le nombre de colonnes de l'entrée de gauche.
+     * @param buildGauche true pour construire la table de hachage sur l'entrée de gauche, false pour celle de droite.
+     * @param bm Le gestionnaire de buffer, qui reçoit les partitions en cas de débordement.
+     * @throws IllegalArgumentException Si aucune condition n'est une égalité entre une colonne de chaque entrée.
+     */
+    public HashJoinOperator(Pair<IRecordIterator, IRecordIterator> operateurs, ArrayList<Condition> conditions, int nbColonnesGauche, boolean buildGauche, BufferManager bm) throws IllegalArgumentException {
+        this.operateurs = operateurs;
+        this.joinConditions = conditions;
+        this.buildGauche = buildGauche;
+        this.bm = bm;
+
+        // Colonnes de la clé de chaque côté, en index locaux à l'entrée
+        ArrayList<Integer> gauche = new ArrayList<>();
+        ArrayList<Integer> droite = new ArrayList<>();
+        for (Condition cond : conditions) {
+            Pair<Integer, Integer> colonnes = cond.getEqualColumns();
+            if (colonnes == null)
+                continue;
+            int a = colonnes.getFirst(), b = colonnes.getSecond();
+            if (a < nbColonnesGauche && b >= nbColonnesGauche) {
+                gauche.add(a);
+                droite.add(b - nbColonnesGauche);
+            }
+            else if (b < nbColonnesGauche && a >= nbColonnesGauche) {
+                gauche.add(b);
+                droite.add(a - nbColonnesGauche);
+            }
+        }
+        if (gauche.isEmpty())
+            throw new IllegalArgumentException("Aucune condition d'égalité entre les deux relations, la jointure par hachage est impossible");
+
+        int[] colonnesGauche = gauche.stream().mapToInt(Integer::intValue).toArray();
+        int[] colonnesDroite = droite.stream().mapToInt(Integer::intValue).toArray();
+        clesBuild = buildGauche ? colonnesGauche : colonnesDroite;
+        clesProbe = buildGauche ? colonnesDroite : colonnesGauche;
+    }
+
+    /**
+     * Indique si une jointure peut être faite par hachage : au moins une condition doit être une égalité
+     * entre une colonne de gauche et une colonne de droite.
+     *
+     * @param conditions Les conditions de jointure.
+     * @param nbColonnesGauche Le nombre de colonnes de l'entrée de gauche.
+     * @return true si HashJoinOperator peut faire la jointure.
+     */
+    public static boolean canJoin(List<Condition> conditions, int nbColonnesGauche) {
+        for (Condition cond : conditions) {
+            Pair<Integer, Integer> colonnes = cond.getEqualColumns();
+            if (colonnes != null && (colonnes.getFirst() < nbColonnesGauche) != (colonnes.getSecond() < nbColonnesGauche))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Récupère une copie du prochain tuple de la jointure.
+     */
+    @Override
+    public MyRecord GetNextRecord() {
+        IRecord res = GetNextView();
+        return (res == null) ? null : res.toRecord();
+    }
+
+    /**
+     * Récupère le prochain tuple de la jointure.
+     * La table de hachage est construite au premier appel ; chaque record lu n'est ensuite évalué
+     * qu'avec les records de construction qui ont la même clé.
+     */
+    @Override
+    public IRecord GetNextView() {
+        try {
+            if (!ouvert)
+                build();
+
+            while (true) {
+                // Évalue les correspondances restantes du record lu
+                while (correspondances != null && indexCorrespondance < correspondances.size()) {
+                    Tuple build = correspondances.get(indexCorrespondance++);
+                    Tuple gauche = buildGauche ? build : (Tuple) probeRecord;
+                    IRecord droite = buildGauche ? probeRecord : build;
+                    if (!satifyConditions(candidat.set(gauche, droite)))
+                        continue;
+                    if (joinSchema == null)
+                        joinSchema = gauche.getSchema().concat(TupleSchema.of(droite));
+                    return Tuple.concat(gauche, droite, joinSchema);
+                }
+
+                // Record suivant de l'entrée lue, ou de la partition suivante
+                IRecord record = (probeIt == null) ? null : probeIt.GetNextView();
+                if (record == null) {
+                    if (buildPartitions != null && nextPartition())
+                        continue;
+                    correspondances = null;
+                    return null;
+                }
+                if (probeSchema == null)
+                    probeSchema = TupleSchema.of(record);
+
+                correspondances = table.get(key(record, clesProbe));
+                indexCorrespondance = 0;
+                // Copié s'il est à gauche, car Tuple.concat attend un Tuple
+                probeRecord = (correspondances != null && !buildGauche) ? Tuple.of(record, probeSchema) : record;
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur dans GetNextRecord : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lit toute l'entrée de construction dans la table de hachage. Si elle dépasse la mémoire accordée,
+     * les deux entrées sont réparties dans des partitions et la première paire de partitions est chargée.
+     *
+     * @throws Exception Si une partition ne peut pas être écrite.
+     */
+    private void build() throws Exception {
+        IRecordIterator buildIt = buildGauche ? operateurs.getFirst() : operateurs.getSecond();
+        IRecordIterator probeInput = buildGauche ? operateurs.getSecond() : operateurs.getFirst();
+        long memoire = (long) ((DBConfig.join_buffercount > 0) ? DBConfig.join_buffercount : DBConfig.bm_buffercount) * DBConfig.pagesize;
+        long taille = 0;
+        table = new HashMap<>();
+        ouvert = true;
+
+        IRecord record;
+        while ((record = buildIt.GetNextView()) != null) {
+            if (buildSchema == null)
+                buildSchema = TupleSchema.of(record);
+
+            if (buildPartitions != null) {
+                partitionOf(buildPartitions, record, clesBuild).InsertRecord(record.toRecord());
+                continue;
+            }
+
+            Tuple tuple = Tuple.of(record, buildSchema);
+            table.computeIfAbsent(key(tuple, clesBuild), k -> new ArrayList<>()).add(tuple);
+            taille += tuple.getMemorySize();
+
+            // Débordement : la table est vidée dans les partitions de construction
+            if (taille > memoire) {
+                int nbPartitions = Math.max(2, (int) (memoire / DBConfig.pagesize) - 1);
+                buildPartitions = new Relation[nbPartitions];
+                for (int i = 0; i < nbPartitions; i++)
+                    buildPartitions[i] = Relation.createTemporary("HASHBUILD" + i, tuple, DiskManager.getInstance(), bm);
+                for (ArrayList<Tuple> tuples : table.values())
+                    for (Tuple t : tuples)
+                        partitionOf(buildPartitions, t, clesBuild).InsertRecord(t.toRecord());
+                table.clear();
+            }
+        }
+
+        if (buildPartitions == null) {
+            probeIt = probeInput;
+            return;
+        }
+
+        // L'entrée lue est répartie avec la même fonction de hachage
+        while ((record = probeInput.GetNextView()) != null) {
+            if (probePartitions == null) {
+                probePartitions = new Relation[buildPartitions.length];
+                for (int i = 0; i < probePartitions.length; i++)
+                    probePartitions[i] = Relation.createTemporary("HASHPROBE" + i, record, DiskManager.getInstance(), bm);
+            }
+            partitionOf(probePartitions, record, clesProbe).InsertRecord(record.toRecord());
+        }
+        partition = -1;
+        nextPartition();
+    }
+
+    /**
+     * Charge la paire de partitions suivante : la partition de construction dans la table de hachage,
+     * et un parcours de la partition lue correspondante. Les paires dont un côté est vide sont sautées.
+     *
+     * @return false s'il ne reste plus de partition.
+     * @throws Exception Si une partition ne peut pas être lue.
+     */
+    private boolean nextPartition() throws Exception {
+        if (probeIt != null)
+            probeIt.Close();
+        probeIt = null;
+        table.clear();
+        if (probePartitions == null)
+            return false;   // Entrée lue vide
+
+        while (++partition < buildPartitions.length) {
+            selectOperator buildIt = scan(buildPartitions[partition]);
+            IRecord record;
+            while ((record = buildIt.GetNextView()) != null) {
+                Tuple tuple = Tuple.of(record, buildSchema);
+                table.computeIfAbsent(key(tuple, clesBuild), k -> new ArrayList<>()).add(tuple);
+            }
+            buildIt.Close();
+
+            if (!table.isEmpty()) {
+                probeIt = scan(probePartitions[partition]);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Crée un parcours de tous les records d'une partition.
+     *
+     * @param relation La partition.
+     * @return L'opérateur de parcours.
+     * @throws Exception Si la header Page de la partition ne peut pas être lue.
+     */
+    private selectOperator scan(Relation relation) throws Exception {
+        return new selectOperator(new PageDirectoryIterator(relation, bm), relation, new ArrayList<>(), bm);
+    }
+
+    /**
+     * Retourne la partition d'un record, d'après le hachage de sa clé.
+     * Le hachage est mélangé pour que les clés d'une même partition ne tombent pas dans les mêmes cases de la table.
+     *
+     * @param partitions Les partitions d'une entrée.
+     * @param record Le record.
+     * @param cles Les colonnes de la clé.
+     * @return La partition qui doit recevoir le record.
+     */
+    private static Relation partitionOf(Relation[] partitions, IRecord record, int[] cles) {
+        int h = key(record, cles).hashCode() * 0x9E3779B1;
+        return partitions[Math.floorMod(h ^ (h >>> 15), partitions.length)];
+    }
+
+    /**
+     * Construit la clé de hachage d'un record. Les nombres sont ramenés en réels,
+     * comme dans Condition, pour qu'un INT et un REAL de même valeur aient la même clé.
+     *
+     * @param record Le record.
+     * @param cles Les colonnes de la clé.
+     * @return Les valeurs de la clé.
+     */
+    private static List<Object> key(IRecord record, int[] cles) {
+        ArrayList<Object> cle = new ArrayList<>(cles.length);
+        for (int colonne : cles) {
+            Object valeur = record.getValue(colonne);
+            cle.add((valeur instanceof Number) ? (Object) ((Number) valeur).doubleValue() : valeur);
+        }
+        return cle;
+    }
+
+    /**
+     * Vérifie si un enregistrement satisfait toutes les conditions spécifiées.
+     *
+     * @param record Enregistrement à vérifier.
+     * @return true si toutes les conditions sont satisfaites, sinon false.
+     */
+    private boolean satifyConditions(IRecord record) {
+        // Conditions compilées une seule fois, avec le schéma de la première paire évaluée
+        if (predicat == null)
+            predicat = Condition.compile(joinConditions, TupleSchema.of(record));
+        return predicat.test(record);
+    }
+
+    /**
+     * Rend les pages des partitions temporaires.
+     */
+    private void dropPartitions() {
+        try {
+            if (buildPartitions != null && probeIt != null)
+                probeIt.Close();
+            for (Relation[] partitions : new Relation[][] { buildPartitions, probePartitions })
+                if (partitions != null)
+                    for (Relation relation : partitions)
+                        relation.DropPages();
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur lors de la libération des partitions : " + e.getMessage());
+        }
+        buildPartitions = null;
+        probePartitions = null;
+    }
+
+    /**
+     * @return Le nombre de partitions utilisées, 0 si la table de hachage a tenu en mémoire.
+     */
+    public int getNbPartitions() {
+        return (buildPartitions == null) ? 0 : buildPartitions.length;
+    }
+
+    /**
+     * Réinitialise l'opérateur : les partitions sont rendues et la table sera reconstruite au prochain appel.
+     */
+    @Override
+    public void Reset() {
+        dropPartitions();
+        operateurs.getFirst().Reset();
+        operateurs.getSecond().Reset();
+        table = null;
+        probeIt = null;
+        correspondances = null;
+        ouvert = false;
+    }
+
+    /**
+     * Ferme l'opérateur de jointure et ses deux entrées, et rend les pages des partitions.
+     */
+    @Override
+    public void Close() {
+        dropPartitions();
+        operateurs.getFirst().Close();
+        operateurs.getSecond().Close();
+        table = null;
+        probeIt = null;
+        correspondances = null;
+        probeRecord = null;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * L'interface IRecord donne accès aux valeurs d'un tuple, qu'il soit construit en mémoire (MyRecord)
+ * ou lu directement dans une data Page (RecordView).
+ * Les accesseurs typés permettent de lire une valeur sans la convertir en objet.
+ * @author Mael Lecene
+ */
+public interface IRecord {
+
+    /**
+     * Retourne le nombre de valeurs du tuple.
+     *
+     * @return Le nombre de valeurs.
+     */
+    int size();
+
+    /**
+     * Retourne la valeur à l'index donné sous forme d'objet.
+     *
+     * @param index L'index de la valeur.
+     * @return La valeur.
+     */
+    Object getValue(int index);
+
+    /**
+     * Retourne le type de la valeur à l'index donné.
+     *
+     * @param index L'index de la valeur.
+     * @return Le type de la valeur.
+     */
+    DataType getType(int index);
+
+    /**
+     * Retourne la valeur entière à l'index donné.
+     *
+     * @param index L'index d'une valeur de type INT.
+     * @return La valeur.
+     */
+    int getInt(int index);
+
+    /**
+     * Retourne la valeur réelle à l'index donné.
+     *
+     * @param index L'index d'une valeur de type REAL.
+     * @return La valeur.
+     */
+    float getFloat(int index);
+
+    /**
+     * Retourne la chaîne à l'index donné.
+     *
+     * @param index L'index d'une valeur de type CHAR ou VARCHAR.
+     * @return La chaîne.
+     */
+    String getString(int index);
+
+    /**
+     * Retourne le dictionnaire de la colonne à l'index donné, si la valeur est lue sous forme de code.
+     * Deux valeurs du même dictionnaire sont égales si et seulement si leurs codes le sont.
+     *
+     * @param index L'index d'une valeur de type CHAR ou VARCHAR.
+     * @return Le dictionnaire de la colonne, ou null si la valeur n'est pas codée.
+     */
+    default StringDictionary getDictionary(int index) {
+        return null;
+    }
+
+    /**
+     * Retourne le code de la chaîne à l'index donné, sans la décoder.
+     *
+     * @param index L'index d'une valeur dont getDictionary n'est pas null.
+     * @return Le code de la valeur dans son dictionnaire.
+     */
+    default int getCode(int index) {
+        throw new UnsupportedOperationException("La valeur " + index + " n'est pas codée par un dictionnaire");
+    }
+
+    /**
+     * Retourne le tuple sous forme de MyRecord indépendant de la page dont il est issu.
+     *
+     * @return Un MyRecord contenant les mêmes valeurs.
+     */
+    MyRecord toRecord();
+}
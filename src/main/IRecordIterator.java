@@ -13,6 +13,17 @@ public interface IRecordIterator {
      */
     MyRecord GetNextRecord();
 
+    /**
+     * Retourne le record courant sans forcément le copier et avance le curseur de l'itérateur d'un cran.
+     * Le résultat peut être une vue sur une page : il n'est valide que jusqu'au prochain appel à l'itérateur.
+     * Par défaut la vue est simplement le record renvoyé par GetNextRecord.
+     *
+     * @return le record courant ou null s'il n'y a plus de record.
+     */
+    default IRecord GetNextView() {
+        return GetNextRecord();
+    }
+
     /**
      * Ferme l'itérateur, signalant qu'il n'est plus utilisé.
      * Cette méthode libère les ressources associées à l'itérateur, le cas échéant.
@@ -0,0 +1,241 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.function.Predicate;
+
+/**
+ * Opérateur de jointure par boucles imbriquées avec index, pour les jointures avec une égalité
+ * ("R.a = S.b") sur une colonne indexée par un B+Tree de la relation interne.
+ * La relation interne n'est jamais parcourue : pour chaque record externe, l'index est sondé avec
+ * sa valeur de jointure et seuls les records de même clé sont lus, par leur RecordId.
+ * Joindre une petite relation filtrée à une grande relation indexée ne lit ainsi que les pages utiles.
+ *
+ * <p>Les conditions internes de la relation interne sont vérifiées sur les records lus, puis toutes
+ * les conditions de jointure sur la paire. Les tuples produits ont toujours les colonnes de gauche
+ * suivies de celles de droite, que la relation interne soit à gauche ou à droite.</p>
+ *
+ * @author Mael Lecene
+ */
+public class IndexNestedLoopJoinOperator implements IRecordIterator {
+    private IRecordIterator externe;    // Entrée externe, lue une seule fois
+    private Relation interne;           // Relation interne, lue par son index
+    private BPlusTree index;            // Index de la colonne de jointure de la relation interne
+    private int colonneExterne;         // Colonne de jointure dans l'entrée externe
+    private DataType typeCle;           // Type de la colonne indexée, qui fixe la classe des clés
+    private boolean interneADroite;     // true si la relation interne est l'entrée de droite
+    private Predicate<IRecord> predicatInterne;     // Conditions propres à la relation interne, compilées
+    private ArrayList<Condition> joinConditions;
+    private Predicate<IRecord> predicat;    // Conditions de jointure compilées
+
+    private IRecord outerRecord;    // Record externe courant, vue valide jusqu'à la lecture du suivant
+    private Tuple outerTuple;       // Copie du record externe courant, faite au premier résultat
+    private ArrayList<RecordId> rids;   // RecordId des records internes de même clé que le record externe
+    private int indexRid;           // Prochain RecordId à lire
+    private int nbSondages;         // Nombre de recherches dans l'index depuis le dernier Reset
+
+    private TupleSchema outerSchema;    // Schéma des records externes
+    private TupleSchema innerSchema;    // Schéma des records internes
+    private TupleSchema joinSchema;     // Schéma des tuples résultats, construit avec la première paire
+    private JoinedRecord candidat = new JoinedRecord();   // Paire en cours d'évaluation, réutilisée
+
+    /**
+     * Constructeur de l'opérateur de jointure avec index.
+     *
+     * @param externe L'entrée externe.
+     * @param interne La relation interne.
+     * @param index L'index B+Tree d'une colonne de la relation interne.
+     * @param colonneIndex L'index de la colonne indexée dans la relation interne.
+     * @param conditionsInternes Les conditions propres à la relation interne.
+     * @param joinConditions Les conditions de jointure, avec les index des colonnes des deux entrées mises bout à bout.
+     * @param nbColonnesGauche Le nombre de colonnes de l'entrée de gauche.
+     * @param interneADroite true si la relation interne est l'entrée de droite, false si elle est à gauche.
+     * @throws IllegalArgumentException Si aucune condition n'est une égalité entre la colonne indexée et l'entrée externe.
+     */
+    public IndexNestedLoopJoinOperator(IRecordIterator externe, Relation interne, BPlusTree index, int colonneIndex,
+            ArrayList<Condition> conditionsInternes, ArrayList<Condition> joinConditions, int nbColonnesGauche, boolean interneADroite) throws IllegalArgumentException {
+        this.externe = externe;
+        this.interne = interne;
+        this.index = index;
+        this.typeCle = interne.getType(colonneIndex);
+        this.interneADroite = interneADroite;
+        this.predicatInterne = Condition.compile(conditionsInternes, TupleSchema.of(interne));
+        this.joinConditions = joinConditions;
+
+        colonneExterne = colonneExterne(joinConditions, nbColonnesGauche, colonneIndex, interneADroite);
+        if (colonneExterne < 0)
+            throw new IllegalArgumentException("Aucune condition d'égalité sur la colonne indexée, la jointure avec index est impossible");
+    }
+
+    /**
+     * Cherche une colonne indexée de la relation interne qui est égale à une colonne de l'autre entrée.
+     *
+     * @param conditions Les conditions de jointure.
+     * @param nbColonnesGauche Le nombre de colonnes de l'entrée de gauche.
+     * @param index Les index de la relation interne, par numéro de colonne.
+     * @param interneADroite true si la relation interne est l'entrée de droite.
+     * @return Le numéro de la colonne indexée dans la relation interne, ou -1 si la jointure avec index est impossible.
+     */
+    public static int getColonneIndexee(ArrayList<Condition> conditions, int nbColonnesGauche, HashMap<Integer, BPlusTree> index, boolean interneADroite) {
+        for (int colonne : index.keySet())
+            if (colonneExterne(conditions, nbColonnesGauche, colonne, interneADroite) >= 0)
+                return colonne;
+        return -1;
+    }
+
+    /**
+     * Cherche la colonne de l'entrée externe égale à une colonne de la relation interne.
+     *
+     * @return Le numéro de la colonne dans l'entrée externe, ou -1 s'il n'y en a pas.
+     */
+    private static int colonneExterne(ArrayList<Condition> conditions, int nbColonnesGauche, int colonneInterne, boolean interneADroite) {
+        int cible = interneADroite ? nbColonnesGauche + colonneInterne : colonneInterne;
+        for (Condition cond : conditions) {
+            Pair<Integer, Integer> colonnes = cond.getEqualColumns();
+            if (colonnes == null)
+                continue;
+            int autre;
+            if (colonnes.getFirst() == cible)
+                autre = colonnes.getSecond();
+            else if (colonnes.getSecond() == cible)
+                autre = colonnes.getFirst();
+            else
+                continue;
+            // L'autre colonne doit appartenir à l'entrée externe
+            if (interneADroite && autre < nbColonnesGauche)
+                return autre;
+            if (!interneADroite && autre >= nbColonnesGauche)
+                return autre - nbColonnesGauche;
+        }
+        return -1;
+    }
+
+    /**
+     * Convertit une valeur de l'entrée externe en clé du B+Tree, dont les clés ont la classe du type de la colonne indexée.
+     *
+     * @param valeur La valeur de jointure du record externe.
+     * @return La clé à chercher, ou null si aucune clé de l'index ne peut lui être égale.
+     */
+    private Object toCle(Object valeur) {
+        switch (typeCle) {
+            case INT:
+                if (!(valeur instanceof Number))
+                    return null;
+                double nombre = ((Number) valeur).doubleValue();
+                // Un réel non entier n'est égal à aucune clé entière
+                return (nombre == (int) nombre) ? Integer.valueOf((int) nombre) : null;
+            case REAL:
+                return (valeur instanceof Number) ? Float.valueOf(((Number) valeur).floatValue()) : null;
+            case CHAR:
+            case VARCHAR:
+                return (valeur instanceof String) ? valeur : null;
+            case DATE:
+                return (valeur instanceof Date) ? valeur : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Récupère une copie du prochain enregistrement satisfaisant les conditions de jointure.
+     *
+     * @return Le prochain enregistrement valide, ou null si aucun enregistrement valide n'est trouvé.
+     */
+    @Override
+    public MyRecord GetNextRecord() {
+        IRecord res = GetNextView();
+        return (res == null) ? null : res.toRecord();
+    }
+
+    /**
+     * Récupère le prochain tuple satisfaisant les conditions de jointure.
+     * Les records internes de même clé que le record externe courant sont lus un à un ;
+     * quand il n'y en a plus, l'index est sondé avec le record externe suivant.
+     *
+     * @return Le prochain tuple valide, ou null à la fin de l'entrée externe.
+     */
+    @Override
+    public IRecord GetNextView() {
+        MyRecord innerRecord;
+        try {
+            while (true) {
+                // Record externe suivant, sondé dans l'index
+                if (rids == null || indexRid >= rids.size()) {
+                    outerRecord = externe.GetNextView();
+                    if (outerRecord == null)
+                        return null;
+                    outerTuple = null;
+                    Object cle = toCle(outerRecord.getValue(colonneExterne));
+                    rids = (cle == null) ? null : index.getRecordId(cle);
+                    indexRid = 0;
+                    nbSondages++;
+                    continue;
+                }
+
+                innerRecord = interne.getRecordInDataPage(rids.get(indexRid++));
+                if (innerRecord == null || !predicatInterne.test(innerRecord))
+                    continue;
+                IRecord gauche = interneADroite ? outerRecord : innerRecord;
+                IRecord droite = interneADroite ? innerRecord : outerRecord;
+                if (satifyConditions(candidat.set(gauche, droite)))
+                    break;
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur dans GetNextRecord : " + e.getMessage());
+        }
+
+        if (outerSchema == null)
+            outerSchema = TupleSchema.of(outerRecord);
+        if (innerSchema == null)
+            innerSchema = TupleSchema.of(innerRecord);
+        if (joinSchema == null)
+            joinSchema = interneADroite ? outerSchema.concat(innerSchema) : innerSchema.concat(outerSchema);
+        if (outerTuple == null)
+            outerTuple = Tuple.of(outerRecord, outerSchema);    // Copié une fois, pour tous ses résultats
+        return interneADroite
+            ? Tuple.concat(outerTuple, innerRecord, joinSchema)
+            : Tuple.concat(Tuple.of(innerRecord, innerSchema), outerTuple, joinSchema);
+    }
+
+    /**
+     * Vérifie si un enregistrement satisfait toutes les conditions de jointure.
+     *
+     * @param record Enregistrement à vérifier.
+     * @return true si toutes les conditions sont satisfaites, sinon false.
+     */
+    private boolean satifyConditions(IRecord record) {
+        // Conditions compilées une seule fois, avec le schéma de la première paire évaluée
+        if (predicat == null)
+            predicat = Condition.compile(joinConditions, TupleSchema.of(record));
+        return predicat.test(record);
+    }
+
+    /**
+     * @return Le nombre de recherches dans l'index depuis le dernier Reset, une par record externe.
+     */
+    public int getNbSondages() {
+        return nbSondages;
+    }
+
+    /**
+     * Reprend la jointure au début de l'entrée externe.
+     */
+    @Override
+    public void Reset() {
+        externe.Reset();
+        outerRecord = null;
+        outerTuple = null;
+        rids = null;
+        indexRid = 0;
+        nbSondages = 0;
+    }
+
+    /**
+     * Ferme l'opérateur et son entrée externe. Aucune page de la relation interne n'est gardée entre deux appels.
+     */
+    @Override
+    public void Close() {
+        externe.Close();
+        outerRecord = null;
+        outerTuple = null;
+        rids = null;
+    }
+}
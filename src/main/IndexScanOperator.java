@@ -0,0 +1,96 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+/**
+ * Opérateur de parcours d'une relation à travers l'index B+Tree d'une de ses colonnes.
+ * Les records sont renvoyés dans l'ordre croissant de la colonne indexée, ce qui permet à une jointure
+ * par tri-fusion de se passer de trier cette entrée.
+ * Chaque record est lu par son RecordId : contrairement à un selectOperator, les pages ne sont pas
+ * lues dans l'ordre physique.
+ *
+ * @author Mael Lecene
+ */
+public class IndexScanOperator implements IRecordIterator {
+    private Relation relation;      // Relation parcourue
+    private BPlusTree index;        // Index de la colonne
+    private int colonne;            // Colonne indexée
+    private Predicate<IRecord> predicat;    // Conditions que doivent satisfaire les records renvoyés, compilées
+
+    private Iterator<Pair<Comparable<Object>, ArrayList<RecordId>>> entrees;   // Entrées de l'index pas encore lues
+    private Iterator<RecordId> rids;    // RecordId de l'entrée en cours
+
+    /**
+     * Constructeur de l'opérateur de parcours par index.
+     *
+     * @param relation La relation parcourue.
+     * @param index L'index B+Tree de la colonne.
+     * @param colonne L'index de la colonne indexée dans la relation.
+     * @param conditions Les conditions que doivent satisfaire les records renvoyés.
+     */
+    public IndexScanOperator(Relation relation, BPlusTree index, int colonne, ArrayList<Condition> conditions) {
+        this.relation = relation;
+        this.index = index;
+        this.colonne = colonne;
+        this.predicat = Condition.compile(conditions, TupleSchema.of(relation));
+        Reset();
+    }
+
+    /**
+     * @return L'index de la colonne dans l'ordre de laquelle les records sont renvoyés.
+     */
+    public int getColonne() {
+        return colonne;
+    }
+
+    /**
+     * Récupère le prochain record dans l'ordre de l'index qui satisfait les conditions.
+     *
+     * @return Le prochain record, ou null s'il n'y en a plus.
+     */
+    @Override
+    public MyRecord GetNextRecord() {
+        try {
+            while (true) {
+                while (rids == null || !rids.hasNext()) {
+                    if (!entrees.hasNext())
+                        return null;
+                    rids = entrees.next().getSecond().iterator();
+                }
+                MyRecord record = relation.getRecordInDataPage(rids.next());
+                if (record != null && satifyConditions(record))
+                    return record;
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur dans GetNextRecord : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Vérifie si un enregistrement satisfait toutes les conditions spécifiées.
+     *
+     * @param record Enregistrement à vérifier.
+     * @return true si toutes les conditions sont satisfaites, sinon false.
+     */
+    private boolean satifyConditions(IRecord record) {
+        return predicat.test(record);
+    }
+
+    /**
+     * Reprend le parcours à la plus petite clé de l'index.
+     */
+    @Override
+    public void Reset() {
+        entrees = index.getEntrees().iterator();
+        rids = null;
+    }
+
+    /**
+     * Ferme l'opérateur. Aucune page n'est gardée entre deux appels.
+     */
+    @Override
+    public void Close() {
+        entrees = null;
+        rids = null;
+    }
+}
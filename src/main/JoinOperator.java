@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.function.Predicate;
 
 /**
  * L'opérateur de jointure représente une opération de jointure entre deux relations en utilisant des conditions spécifiées.
@@ -10,7 +11,11 @@ import java.util.ArrayList;
 public class JoinOperator implements IRecordIterator {
     private Pair<IRecordIterator, IRecordIterator> operateurs; // Les deux relations à joindre représenté par lurs select
     private ArrayList<Condition> joinConditions;
-    private MyRecord outerRecord; // Le tuple courant de la relation interieur
+    private Predicate<IRecord> predicat;    // Conditions de jointure compilées
+    private Tuple outerRecord; // Le tuple courant de la relation exterieur
+    private TupleSchema outerSchema;    // Schéma des tuples de la relation extérieur
+    private TupleSchema joinSchema;     // Schéma des tuples résultats, construit avec la première paire
+    private JoinedRecord candidat = new JoinedRecord();   // Paire en cours d'évaluation, réutilisée
 
     /**
      * Constructeur de l'opérateur de jointure orientée page pour produit cartésien.
@@ -20,48 +25,68 @@ public class JoinOperator implements IRecordIterator {
         joinConditions = conditions;
 
         // Initialise le tuple externe 
-        outerRecord = this.operateurs.getFirst().GetNextRecord();
+        IRecord first = this.operateurs.getFirst().GetNextView();
 
-        if (outerRecord == null)
+        if (first == null)
             throw new IllegalStateException("L'une des relations est vide, on ne peut pas faire de produit cartésien");
+
+        outerSchema = TupleSchema.of(first);
+        outerRecord = Tuple.of(first, outerSchema);
     }
 
     /**
-     * Récupère le prochain tuple résultant du produit cartésien des relations.
+     * Récupère une copie du prochain tuple résultant du produit cartésien des relations.
      */
     @Override
     public MyRecord GetNextRecord() {
-        MyRecord res;   // Record resultant de la fusion
+        IRecord res = GetNextView();
+        return (res == null) ? null : res.toRecord();
+    }
+
+    /**
+     * Récupère le prochain tuple résultant du produit cartésien des relations.
+     * Les conditions sont évaluées sur la paire candidate : seul un résultat retenu est construit.
+     */
+    @Override
+    public IRecord GetNextView() {
+        // Relation externe vide ou entièrement parcourue
+        if (outerRecord == null) return null;
+
+        IRecord innerRecord;
 
         do {
             try {
-                res = new MyRecord();
-
                 // Récupère le prochain record de la relation interne
-                MyRecord innerRecord = operateurs.getSecond().GetNextRecord();
+                innerRecord = operateurs.getSecond().GetNextView();
 
                 // Si il est null on est au bout de la relation interne
                 if (innerRecord == null) {
                     // Récupère le record suivant dans la relation externe
-                    outerRecord = operateurs.getFirst().GetNextRecord();
+                    IRecord next = operateurs.getFirst().GetNextView();
 
                     // Si il est null on est au bout de la relation externe
-                    if (outerRecord == null) return null;    // Fin de l'iterateur
+                    if (next == null) {
+                        outerRecord = null;
+                        return null;    // Fin de l'iterateur
+                    }
+                    outerRecord = Tuple.of(next, outerSchema);  // Copié car gardé pendant tout le parcours interne
 
                     // Si la relation externe n'est pas null reset la relation interne
                     operateurs.getSecond().Reset();
                     // Récupère le prochain record de la relation interne
-                    innerRecord = operateurs.getSecond().GetNextRecord();
-                }
-                res.addAll(outerRecord);
-                res.addAll(innerRecord);
+                    innerRecord = operateurs.getSecond().GetNextView();
 
+                    // Une relation interne vide ne produit aucun tuple
+                    if (innerRecord == null) return null;
+                }
             } catch (Exception e) {
                 throw new RuntimeException(e.getMessage());
             }
-        } while (!satifyConditions(res)); // Continue tant que les conditions ne sont pas satisfaites.
+        } while (!satifyConditions(candidat.set(outerRecord, innerRecord))); // Continue tant que les conditions ne sont pas satisfaites.
 
-        return res;  // Retourne le record resultat
+        if (joinSchema == null)
+            joinSchema = outerSchema.concat(TupleSchema.of(innerRecord));
+        return Tuple.concat(outerRecord, innerRecord, joinSchema);  // Retourne le tuple resultat
     }
 
     /**
@@ -71,20 +96,11 @@ public class JoinOperator implements IRecordIterator {
      * @param relation Relation associée à l'enregistrement.
      * @return true si toutes les conditions sont satisfaites, sinon false.
      */
-    private boolean satifyConditions(MyRecord record) {
-        // Parcourt toutes les conditions.
-        for (Condition cond : joinConditions) {
-            try {
-                // Si une condition n'est pas satisfaite, retourne false.
-                if (!cond.evaluate(record))
-                    return false;
-            } catch (Exception e) {
-                // Retourne false en cas d'erreur d'évaluation.
-                return false;
-            }
-        }
-        // Retourne true si toutes les conditions sont satisfaites.
-        return true;
+    private boolean satifyConditions(IRecord record) {
+        // Conditions compilées une seule fois, avec le schéma de la première paire évaluée
+        if (predicat == null)
+            predicat = Condition.compile(joinConditions, TupleSchema.of(record));
+        return predicat.test(record);
     }
 
     /**
@@ -95,7 +111,8 @@ public class JoinOperator implements IRecordIterator {
         try {
             operateurs.getFirst().Reset();
             operateurs.getSecond().Reset();
-            outerRecord = operateurs.getFirst().GetNextRecord();
+            IRecord first = operateurs.getFirst().GetNextView();
+            outerRecord = (first == null) ? null : Tuple.of(first, outerSchema);
         } catch (Exception e) {
             System.out.println("Erreur lors de la réinitialisation : " + e.getMessage());
         }
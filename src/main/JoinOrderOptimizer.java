@@ -0,0 +1,441 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Optimiseur de l'ordre des jointures : choisit l'ordre dans lequel les relations d'une requête sont ajoutées
+ * à l'arbre de jointures (arbre linéaire à gauche) et l'algorithme de chaque jointure, d'après un coût estimé
+ * en pages lues et écrites. L'ordre de la clause FROM n'a donc plus d'influence sur le plan.
+ *
+ * <p>Les cardinalités sont estimées à partir du nombre de pages et de records de chaque relation et de la
+ * sélectivité des conditions : une égalité entre deux relations garde 1 / max(|R|, |S|) des paires
+ * (l'une des colonnes est supposée être une clé), une égalité avec une constante 1/10, une inégalité 1/3 et
+ * une différence 9/10. Jusqu'à SEUIL_PROGRAMMATION_DYNAMIQUE relations, tous les ordres sont comparés par
+ * programmation dynamique sur les sous-ensembles de relations ; au-delà, l'ordre est construit de façon
+ * gloutonne en ajoutant à chaque étape la relation dont la jointure coûte le moins.</p>
+ *
+ * @author Mael Lecene
+ */
+public class JoinOrderOptimizer {
+    public static final int SEUIL_PROGRAMMATION_DYNAMIQUE = 10;  // Nombre maximal de relations de la recherche exhaustive
+
+    /**
+     * Algorithmes de jointure que l'optimiseur peut choisir.
+     */
+    public enum Algorithme {
+        BOUCLES,    // Boucles imbriquées (JoinOperator)
+        HACHAGE,    // Jointure par hachage (HashJoinOperator)
+        TRI_FUSION, // Jointure par tri-fusion (SortMergeJoinOperator)
+        INDEX       // Boucles imbriquées avec l'index de la relation ajoutée (IndexNestedLoopJoinOperator)
+    }
+
+    /**
+     * Jointure choisie pour ajouter une relation au résultat des précédentes.
+     */
+    public static class Jointure {
+        private final Algorithme algorithme;
+        private final boolean buildGauche;  // true si la table de hachage est construite sur l'entrée de gauche
+        private final int colonneIndex;     // Colonne indexée de la relation ajoutée, pour une jointure avec index ou une tri-fusion qui la lit par son index
+        private final double cout;          // Coût estimé, en pages
+
+        Jointure(Algorithme algorithme, boolean buildGauche, int colonneIndex, double cout) {
+            this.algorithme = algorithme;
+            this.buildGauche = buildGauche;
+            this.colonneIndex = colonneIndex;
+            this.cout = cout;
+        }
+
+        /**
+         * @return L'algorithme de la jointure.
+         */
+        public Algorithme getAlgorithme() {
+            return algorithme;
+        }
+
+        /**
+         * @return true si la table de hachage est construite sur l'entrée de gauche.
+         */
+        public boolean isBuildGauche() {
+            return buildGauche;
+        }
+
+        /**
+         * @return La colonne indexée de la relation ajoutée, -1 si la jointure n'utilise pas d'index.
+         * Pour une tri-fusion, la relation ajoutée est lue dans l'ordre de cet index au lieu d'être triée.
+         */
+        public int getColonneIndex() {
+            return colonneIndex;
+        }
+
+        /**
+         * @return Le coût estimé de la jointure, en pages.
+         */
+        public double getCout() {
+            return cout;
+        }
+    }
+
+    private List<Relation> relations;   // Relations, dans l'ordre de la requête
+    private ArrayList<Condition> joinConditions;
+    private HashMap<String, HashMap<Integer, BPlusTree>> index;
+    private int[] debut;            // Première colonne de chaque relation, dans l'ordre de la requête
+    private long[] masques;         // Relations utilisées par chaque condition de jointure
+
+    private double[] nbRecords;     // Nombre estimé de records de chaque relation
+    private double[] nbRecordsFiltres;  // Nombre estimé de records après les conditions internes
+    private double[] nbPages;       // Nombre de data Pages de chaque relation
+    private double[] largeur;       // Place estimée d'un record de chaque relation, en octets
+
+    private int[] ordre;            // Relations dans l'ordre des jointures
+    private Jointure[] jointures;   // Jointure i : ajout de la relation ordre[i], la case 0 reste vide
+    private double cout;            // Coût total estimé du plan
+
+    /**
+     * Construit l'optimiseur et cherche le meilleur plan.
+     *
+     * @param relations      Liste des relations, dans l'ordre de la requête.
+     * @param joinConditions Les conditions de jointure, avec les index des colonnes des relations mises bout à bout dans l'ordre de la requête.
+     * @param innerConditions Conditions internes à chaque relation.
+     * @param index          Index B+Tree de chaque relation, par numéro de colonne.
+     * @throws IllegalArgumentException Si la requête n'a pas au moins deux relations.
+     * @throws Exception Si les statistiques d'une relation ne peuvent pas être lues.
+     */
+    public JoinOrderOptimizer(List<Relation> relations, ArrayList<Condition> joinConditions,
+            HashMap<String, ArrayList<Condition>> innerConditions, HashMap<String, HashMap<Integer, BPlusTree>> index) throws Exception {
+        if (relations.size() < 2 || relations.size() > 62)
+            throw new IllegalArgumentException("L'ordre des jointures se choisit entre 2 et 62 relations, " + relations.size() + " données");
+        this.relations = relations;
+        this.joinConditions = joinConditions;
+        this.index = index;
+
+        int n = relations.size();
+        debut = new int[n];
+        nbRecords = new double[n];
+        nbRecordsFiltres = new double[n];
+        nbPages = new double[n];
+        largeur = new double[n];
+        for (int i = 0; i < n; i++) {
+            Relation relation = relations.get(i);
+            debut[i] = (i == 0) ? 0 : debut[i-1] + relations.get(i-1).getNbAttribut();
+            nbRecords[i] = relation.estimerNbRecords();
+            nbPages[i] = relation.getDataPages().size();
+            largeur[i] = (nbRecords[i] > 0) ? nbPages[i] * DBConfig.pagesize / nbRecords[i] : DBConfig.pagesize;
+
+            nbRecordsFiltres[i] = nbRecords[i];
+            for (Condition cond : innerConditions.getOrDefault(relation.getRelationName(), new ArrayList<>()))
+                nbRecordsFiltres[i] *= cond.estimerSelectivite();
+        }
+
+        masques = new long[joinConditions.size()];
+        for (int k = 0; k < masques.length; k++) {
+            Pair<Integer, Integer> colonnes = termes(joinConditions.get(k));
+            if (colonnes.getFirst() >= 0)
+                masques[k] |= 1L << relationDe(colonnes.getFirst());
+            if (colonnes.getSecond() >= 0)
+                masques[k] |= 1L << relationDe(colonnes.getSecond());
+        }
+
+        if (n <= SEUIL_PROGRAMMATION_DYNAMIQUE)
+            programmationDynamique();
+        else
+            rechercheGloutonne();
+    }
+
+    /**
+     * @return Les positions des relations dans l'ordre des jointures choisi.
+     */
+    public int[] getOrdre() {
+        return ordre;
+    }
+
+    /**
+     * @return Les relations dans l'ordre des jointures choisi.
+     */
+    public ArrayList<Relation> getRelationsOrdonnees() {
+        ArrayList<Relation> ordonnees = new ArrayList<>();
+        for (int r : ordre)
+            ordonnees.add(relations.get(r));
+        return ordonnees;
+    }
+
+    /**
+     * @param i Numéro de la jointure, de 1 au nombre de relations - 1.
+     * @return La jointure qui ajoute la i-ème relation de l'ordre choisi au résultat des précédentes.
+     */
+    public Jointure getJointure(int i) {
+        return jointures[i];
+    }
+
+    /**
+     * @return Le coût total estimé du plan, en pages.
+     */
+    public double getCout() {
+        return cout;
+    }
+
+    /**
+     * Calcule la place de chaque colonne quand les relations sont mises bout à bout dans l'ordre choisi.
+     *
+     * @return La nouvelle position de chaque colonne, indexée par sa position dans l'ordre de la requête.
+     */
+    public int[] getPositions() {
+        int[] positions = new int[debut[debut.length-1] + relations.get(relations.size()-1).getNbAttribut()];
+        int nouveauDebut = 0;
+        for (int r : ordre) {
+            for (int k = 0; k < relations.get(r).getNbAttribut(); k++)
+                positions[debut[r] + k] = nouveauDebut + k;
+            nouveauDebut += relations.get(r).getNbAttribut();
+        }
+        return positions;
+    }
+
+    /**
+     * Compare tous les ordres linéaires à gauche : le meilleur plan d'un ensemble de relations est le meilleur plan
+     * d'un de ses sous-ensembles privé d'une relation, suivi de la jointure avec cette relation.
+     */
+    private void programmationDynamique() {
+        int n = relations.size();
+        double[] meilleur = new double[1 << n];     // Coût du meilleur plan de chaque ensemble
+        int[] derniere = new int[1 << n];           // Dernière relation ajoutée par ce plan
+        Jointure[] jointureDe = new Jointure[1 << n];
+        Arrays.fill(meilleur, Double.POSITIVE_INFINITY);
+        for (int r = 0; r < n; r++) {
+            meilleur[1 << r] = nbPages[r];  // Lecture de la première relation
+            derniere[1 << r] = r;
+        }
+
+        // Un sous-ensemble a toujours une valeur plus petite que l'ensemble, il est donc traité avant lui
+        for (int ensemble = 1; ensemble < (1 << n); ensemble++) {
+            if (Integer.bitCount(ensemble) < 2)
+                continue;
+            for (int r = 0; r < n; r++) {
+                if ((ensemble & (1 << r)) == 0)
+                    continue;
+                int gauche = ensemble ^ (1 << r);
+                Jointure jointure = meilleureJointure(gauche, r);
+                if (meilleur[gauche] + jointure.getCout() < meilleur[ensemble]) {
+                    meilleur[ensemble] = meilleur[gauche] + jointure.getCout();
+                    derniere[ensemble] = r;
+                    jointureDe[ensemble] = jointure;
+                }
+            }
+        }
+
+        // Reconstruit l'ordre en retirant les relations de la dernière à la première
+        ordre = new int[n];
+        jointures = new Jointure[n];
+        int ensemble = (1 << n) - 1;
+        cout = meilleur[ensemble];
+        for (int i = n-1; i >= 0; i--) {
+            ordre[i] = derniere[ensemble];
+            jointures[i] = (i == 0) ? null : jointureDe[ensemble];
+            ensemble ^= 1 << ordre[i];
+        }
+    }
+
+    /**
+     * Construit l'ordre pas à pas : la relation la plus petite après ses conditions internes d'abord,
+     * puis à chaque étape celle dont la jointure avec les relations déjà choisies coûte le moins.
+     */
+    private void rechercheGloutonne() {
+        int n = relations.size();
+        ordre = new int[n];
+        jointures = new Jointure[n];
+        for (int r = 1; r < n; r++)
+            if (nbRecordsFiltres[r] < nbRecordsFiltres[ordre[0]])
+                ordre[0] = r;
+        long choisies = 1L << ordre[0];
+        cout = nbPages[ordre[0]];
+
+        for (int i = 1; i < n; i++) {
+            int suivante = -1;
+            for (int r = 0; r < n; r++) {
+                if ((choisies & (1L << r)) != 0)
+                    continue;
+                Jointure jointure = meilleureJointure(choisies, r);
+                if (suivante < 0 || jointure.getCout() < jointures[i].getCout()
+                    || (jointure.getCout() == jointures[i].getCout()
+                        && cardinalite(choisies | (1L << r)) < cardinalite(choisies | (1L << suivante)))) {
+                    suivante = r;
+                    jointures[i] = jointure;
+                }
+            }
+            ordre[i] = suivante;
+            choisies |= 1L << suivante;
+            cout += jointures[i].getCout();
+        }
+    }
+
+    /**
+     * Choisit l'algorithme le moins coûteux pour joindre une relation au résultat d'un ensemble de relations.
+     * Les coûts comptent la lecture de la relation ajoutée et les pages écrites puis relues par la jointure ;
+     * l'entrée de gauche arrive de la jointure précédente sans être relue.
+     *
+     * @param gauche Ensemble des relations déjà jointes.
+     * @param r      Relation ajoutée.
+     * @return La jointure la moins coûteuse.
+     */
+    Jointure meilleureJointure(long gauche, int r) {
+        double cardGauche = cardinalite(gauche);
+        double pagesGauche = pages(cardGauche, largeur(gauche));
+        double pagesDroite = pages(nbRecordsFiltres[r], largeur[r]);
+
+        // Conditions évaluées par cette jointure, entre une colonne de chaque côté
+        boolean egalite = false, comparaison = false;
+        int colonneIndex = -1;
+        double selectiviteIndex = 1;
+        int colonneTri = -1;    // Colonne de la relation ajoutée sur laquelle une tri-fusion la trie
+        HashMap<Integer, BPlusTree> indexRelation = index.getOrDefault(relations.get(r).getRelationName(), new HashMap<>());
+        for (int k = 0; k < masques.length; k++) {
+            if ((masques[k] & (1L << r)) == 0 || (masques[k] & ~(gauche | (1L << r))) != 0)
+                continue;
+            Condition cond = joinConditions.get(k);
+            Pair<Integer, Integer> colonnes = cond.getColumns();
+            if (colonnes == null || (relationDe(colonnes.getFirst()) == r) == (relationDe(colonnes.getSecond()) == r))
+                continue;
+            if (cond.getOperateur().equals("=")) {
+                egalite = true;
+                int colonne = (relationDe(colonnes.getFirst()) == r ? colonnes.getFirst() : colonnes.getSecond()) - debut[r];
+                if (indexRelation.containsKey(colonne) && selectivite(cond) <= selectiviteIndex) {
+                    colonneIndex = colonne;
+                    selectiviteIndex = selectivite(cond);
+                }
+            }
+            if (!cond.getOperateur().equals("<>")) {
+                // La tri-fusion trie chaque entrée sur sa colonne de la première comparaison
+                if (!comparaison)
+                    colonneTri = (relationDe(colonnes.getFirst()) == r ? colonnes.getFirst() : colonnes.getSecond()) - debut[r];
+                comparaison = true;
+            }
+        }
+
+        // Boucles imbriquées : la relation ajoutée est relue pour chaque record de gauche
+        Jointure meilleure = new Jointure(Algorithme.BOUCLES, false, -1, nbPages[r] * Math.max(1, cardGauche));
+        if (egalite) {
+            // Hachage : partitionnement sur le disque si la plus petite entrée ne tient pas en mémoire
+            double partitions = (Math.min(pagesGauche, pagesDroite) > memoire(DBConfig.join_buffercount)) ? 2 * (pagesGauche + pagesDroite) : 0;
+            meilleure = moinsChere(meilleure, new Jointure(Algorithme.HACHAGE, pagesGauche < pagesDroite, -1, nbPages[r] + partitions));
+        }
+        if (comparaison) {
+            // Tri-fusion : la relation ajoutée est triée, ou lue dans l'ordre de son index (une page par record)
+            double droite = nbPages[r] + coutTri(pagesDroite);
+            int colonneTriIndex = -1;
+            if (indexRelation.containsKey(colonneTri) && nbRecords[r] < droite) {
+                droite = nbRecords[r];
+                colonneTriIndex = colonneTri;
+            }
+            meilleure = moinsChere(meilleure, new Jointure(Algorithme.TRI_FUSION, false, colonneTriIndex, droite + coutTri(pagesGauche)));
+        }
+        if (colonneIndex >= 0) {
+            // Index : une page lue par record correspondant, au moins une par recherche
+            double parRecherche = Math.max(1, nbRecords[r] * selectiviteIndex);
+            meilleure = moinsChere(meilleure, new Jointure(Algorithme.INDEX, false, colonneIndex, Math.max(1, cardGauche) * parRecherche));
+        }
+        return meilleure;
+    }
+
+    /**
+     * @return La jointure de plus petit coût, la première en cas d'égalité.
+     */
+    private static Jointure moinsChere(Jointure a, Jointure b) {
+        return (b.getCout() < a.getCout()) ? b : a;
+    }
+
+    /**
+     * Estime le nombre de records du résultat de la jointure d'un ensemble de relations, quel que soit leur ordre.
+     *
+     * @param ensemble Ensemble des relations.
+     * @return Le nombre estimé de records.
+     */
+    double cardinalite(long ensemble) {
+        double cardinalite = 1;
+        for (int r = 0; r < relations.size(); r++)
+            if ((ensemble & (1L << r)) != 0)
+                cardinalite *= nbRecordsFiltres[r];
+        for (int k = 0; k < masques.length; k++)
+            if ((masques[k] & ~ensemble) == 0)
+                cardinalite *= selectivite(joinConditions.get(k));
+        return cardinalite;
+    }
+
+    /**
+     * @return La place estimée d'un record du résultat de la jointure d'un ensemble de relations, en octets.
+     */
+    private double largeur(long ensemble) {
+        double total = 0;
+        for (int r = 0; r < relations.size(); r++)
+            if ((ensemble & (1L << r)) != 0)
+                total += largeur[r];
+        return total;
+    }
+
+    /**
+     * Estime la sélectivité d'une condition de jointure.
+     * Une égalité entre deux relations garde 1 / max(|R|, |S|) des paires, l'une des colonnes étant supposée être une clé.
+     *
+     * @param cond La condition.
+     * @return La part estimée des records qui satisfont la condition.
+     */
+    private double selectivite(Condition cond) {
+        Pair<Integer, Integer> colonnes = cond.getEqualColumns();
+        if (colonnes != null) {
+            int a = relationDe(colonnes.getFirst()), b = relationDe(colonnes.getSecond());
+            if (a != b)
+                return 1.0 / Math.max(1, Math.max(nbRecords[a], nbRecords[b]));
+        }
+        return cond.estimerSelectivite();
+    }
+
+    /**
+     * @return Le nombre de pages occupées par un nombre de records d'une certaine place, au moins une.
+     */
+    private static double pages(double nbRecords, double largeur) {
+        return Math.max(1, Math.ceil(nbRecords * largeur / DBConfig.pagesize));
+    }
+
+    /**
+     * Estime les pages écrites puis relues par le tri externe d'une entrée : rien si elle tient en mémoire,
+     * sinon l'entrée entière à chaque passe (écriture des runs puis passes de fusion).
+     *
+     * @param pages Le nombre de pages de l'entrée.
+     * @return Le coût du tri, en pages.
+     */
+    private static double coutTri(double pages) {
+        int memoire = memoire(DBConfig.sort_buffercount);
+        if (pages <= memoire)
+            return 0;
+        double passes = 1 + Math.ceil(Math.log(pages / memoire) / Math.log(Math.max(2, memoire - 1)));
+        return 2 * pages * passes;
+    }
+
+    /**
+     * @param nbCadres Le nombre de pages de mémoire configuré, 0 pour bm_buffercount.
+     * @return Le nombre de pages de mémoire d'un opérateur.
+     */
+    private static int memoire(int nbCadres) {
+        return (nbCadres > 0) ? nbCadres : DBConfig.bm_buffercount;
+    }
+
+    /**
+     * @return Les deux colonnes d'une condition, -1 pour une constante.
+     */
+    private static Pair<Integer, Integer> termes(Condition cond) {
+        Pair<Integer, Integer> colonnes = cond.getColumns();
+        if (colonnes != null)
+            return colonnes;
+        // Une seule colonne : c'est la plus à droite des deux termes
+        return new Pair<>(cond.getDerniereColonne(), -1);
+    }
+
+    /**
+     * @param colonne Index d'une colonne dans l'ordre de la requête.
+     * @return La position de la relation de cette colonne.
+     */
+    private int relationDe(int colonne) {
+        int r = debut.length - 1;
+        while (debut[r] > colonne)
+            r--;
+        return r;
+    }
+}
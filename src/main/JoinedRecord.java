@@ -0,0 +1,73 @@
+/**
+ * Vue sur la concaténation de deux records, utilisée par les jointures pour évaluer les conditions
+ * d'une paire candidate sans construire le tuple résultat.
+ * Une même vue est repositionnée sur chaque paire ; seules les paires retenues sont copiées dans un Tuple.
+ * @author Mael Lecene
+ */
+public class JoinedRecord implements IRecord {
+    private IRecord gauche; // Record de gauche (relation externe)
+    private IRecord droite; // Record de droite (relation interne)
+    private int nbGauche;   // Nombre de colonnes du record de gauche
+
+    /**
+     * Positionne la vue sur une nouvelle paire de records.
+     *
+     * @param gauche Le record de gauche.
+     * @param droite Le record de droite.
+     * @return Cette vue.
+     */
+    public JoinedRecord set(IRecord gauche, IRecord droite) {
+        this.gauche = gauche;
+        this.droite = droite;
+        this.nbGauche = gauche.size();
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return nbGauche + droite.size();
+    }
+
+    @Override
+    public DataType getType(int index) {
+        return (index < nbGauche) ? gauche.getType(index) : droite.getType(index - nbGauche);
+    }
+
+    @Override
+    public int getInt(int index) {
+        return (index < nbGauche) ? gauche.getInt(index) : droite.getInt(index - nbGauche);
+    }
+
+    @Override
+    public float getFloat(int index) {
+        return (index < nbGauche) ? gauche.getFloat(index) : droite.getFloat(index - nbGauche);
+    }
+
+    @Override
+    public String getString(int index) {
+        return (index < nbGauche) ? gauche.getString(index) : droite.getString(index - nbGauche);
+    }
+
+    @Override
+    public StringDictionary getDictionary(int index) {
+        return (index < nbGauche) ? gauche.getDictionary(index) : droite.getDictionary(index - nbGauche);
+    }
+
+    @Override
+    public int getCode(int index) {
+        return (index < nbGauche) ? gauche.getCode(index) : droite.getCode(index - nbGauche);
+    }
+
+    @Override
+    public Object getValue(int index) {
+        return (index < nbGauche) ? gauche.getValue(index) : droite.getValue(index - nbGauche);
+    }
+
+    @Override
+    public MyRecord toRecord() {
+        MyRecord record = new MyRecord();
+        for (int i = 0; i < size(); i++)
+            record.add(getValue(i), getType(i));
+        return record;
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * Opérateur de limite (LIMIT n) : renvoie les n premiers records de son entrée, puis s'arrête
+ * sans lire la suite de l'entrée.
+ *
+ * @author Mael Lecene
+ */
+public class LimitOperator implements IRecordIterator {
+    private IRecordIterator entree;     // Records limités
+    private int limite;                 // Nombre de records renvoyés au plus
+    private int nbRenvoyes;             // Nombre de records renvoyés depuis le dernier Reset
+
+    /**
+     * Constructeur de l'opérateur de limite.
+     *
+     * @param entree L'opérateur dont les records sont renvoyés.
+     * @param limite Le nombre de records renvoyés au plus.
+     * @throws IllegalArgumentException Si la limite est négative.
+     */
+    public LimitOperator(IRecordIterator entree, int limite) throws IllegalArgumentException {
+        if (limite < 0)
+            throw new IllegalArgumentException("La limite doit être positive : " + limite);
+        this.entree = entree;
+        this.limite = limite;
+    }
+
+    /**
+     * Récupère une copie du prochain record, tant que la limite n'est pas atteinte.
+     */
+    @Override
+    public MyRecord GetNextRecord() {
+        IRecord res = GetNextView();
+        return (res == null) ? null : res.toRecord();
+    }
+
+    /**
+     * Récupère le prochain record de l'entrée, ou null une fois la limite atteinte.
+     */
+    @Override
+    public IRecord GetNextView() {
+        if (nbRenvoyes >= limite)
+            return null;
+        IRecord res = entree.GetNextView();
+        if (res != null)
+            nbRenvoyes++;
+        return res;
+    }
+
+    /**
+     * Reprend l'entrée depuis le début.
+     */
+    @Override
+    public void Reset() {
+        entree.Reset();
+        nbRenvoyes = 0;
+    }
+
+    /**
+     * Ferme l'opérateur et son entrée.
+     */
+    @Override
+    public void Close() {
+        entree.Close();
+    }
+}
@@ -224,6 +224,31 @@ public class MyLinkedList<T> {
             throw new IllegalStateException("Impossible de supprimer "+t+" car cette valeur n'est pas dans la liste");
     }
 
+    /**
+     * Retire de la liste un noeud dont on possède déjà la référence.
+     * Contrairement à {@link #remove(Object)}, aucune recherche n'est nécessaire : la suppression est en temps constant.
+     *
+     * @param node Le noeud à supprimer (il doit appartenir à cette liste).
+     */
+    public void remove(Cellule<T> node) {
+        if (node == null || node.getSuivant() == null)
+            throw new IllegalStateException("Impossible de supprimer un noeud qui n'est pas dans la liste");
+
+        size--; // Décrémenter la taille de la liste
+
+        // Si le noeud à supprimer est le dernier, mettre à jour `tail`
+        if (node == tail)
+            tail = node.getPrecedent();
+
+        // Relier le noeud précédent au suivant du noeud à supprimer
+        node.getPrecedent().setSuivant(node.getSuivant());
+        node.getSuivant().setPrecedent(node.getPrecedent());
+
+        // Déconnecter le noeud de la liste
+        node.setSuivant(null);
+        node.setPrecedent(null);
+    }
+
     /**
      * Retire le dernier élément de la liste.
      * Utilise le pointeur `tail` pour supprimer l'élément à la fin de la liste en temps constant.
@@ -9,7 +9,7 @@ import java.util.Objects;
  * 
  * @author Mael Lecene
  */
-public class MyRecord extends ArrayList<Pair<Object, DataType>> {
+public class MyRecord extends ArrayList<Pair<Object, DataType>> implements IRecord {
 
 	/**
      * Constructeur par défaut qui initialise une liste vide.
@@ -150,6 +150,45 @@ public class MyRecord extends ArrayList<Pair<Object, DataType>> {
         return this.get(index).getSecond();
     }
 
+    /**
+     * Retourne la valeur entière à l'index donné dans le tuple.
+     *
+     * @param index L'index d'une valeur de type INT.
+     * @return La valeur.
+     */
+    public int getInt(int index){
+        return (Integer) this.getValue(index);
+    }
+
+    /**
+     * Retourne la valeur réelle à l'index donné dans le tuple.
+     *
+     * @param index L'index d'une valeur de type REAL.
+     * @return La valeur.
+     */
+    public float getFloat(int index){
+        return ((Number) this.getValue(index)).floatValue();
+    }
+
+    /**
+     * Retourne la chaîne à l'index donné dans le tuple.
+     *
+     * @param index L'index d'une valeur de type CHAR ou VARCHAR.
+     * @return La chaîne.
+     */
+    public String getString(int index){
+        return (String) this.getValue(index);
+    }
+
+    /**
+     * Un MyRecord est déjà indépendant de toute page.
+     *
+     * @return Ce record.
+     */
+    public MyRecord toRecord(){
+        return this;
+    }
+
     /**
      * 
      * @return La taille du tuple en octet.
@@ -159,10 +198,18 @@ public class MyRecord extends ArrayList<Pair<Object, DataType>> {
 
         // Parcour chaque entrée du tuple
         for(int i = 0; i < this.size(); i++){
+            // Une chaîne avec dictionnaire n'occupe que son code
+            if((this.getType(i) == DataType.CHAR || this.getType(i) == DataType.VARCHAR) && relation.getDictionary(i) != null){
+                sum += Integer.BYTES;
+            }
             // Si c'est un varchar on prend la taille dans le record
-            if(this.getType(i) == DataType.VARCHAR){
+            else if(this.getType(i) == DataType.VARCHAR){
                 String tmp = (String)this.getValue(i);
-                sum += tmp.length()*2;  // Taille fois 2 car 1char = 2octets
+                sum += relation.getEncoding().sizeOf(tmp);  // Taille selon le format des chaînes de la relation
+            }
+            // En format compact un char n'est pas complété, sa taille est celle de sa valeur
+            else if(this.getType(i) == DataType.CHAR && relation.getEncoding() == RecordEncoding.COMPACT){
+                sum += RecordEncoding.COMPACT.sizeOf((String)this.getValue(i));
             }
             // Sinno on regarde dans la relation
             else{
@@ -1,4 +1,5 @@
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * Cette classe permet d'itérer sur les pages de données d'une relation dans une base de données
@@ -14,6 +15,9 @@ public class PageDirectoryIterator {
     private int offsetDataPage = 4;        // Décalage pour accéder aux pages de données dans les entêtes
     private int nbDataPage;                 // Nombre total de pages de données
     private int cptDataPage;                // compteur pages de données déjà traité
+    private List<Condition> conditions;     // Conditions des records cherchés, pour sauter des pages grâce à la carte des zones
+    private ZoneMap zones;                  // Carte des zones de la relation, null si aucune page n'est sautée
+    private int nbPagesSautees;             // Nombre de pages sautées depuis le début du parcours
 
 
     /**
@@ -29,27 +33,52 @@ public class PageDirectoryIterator {
 
         PageId tmp = relation.getHeaderPageId();    // Récupère l'@ de la première hearder Page
 
-        currentPageId.FileIdx = tmp.FileIdx;
-        currentPageId.PageIdx = tmp.PageIdx;
+        // Nouvelle instance : le BufferManager garde la référence du PageId, il ne faut donc jamais la modifier
+        currentPageId = new PageId(tmp.FileIdx, tmp.PageIdx);
 
-        nbDataPage = bm.getPage(relation.getHeaderPageId()).getInt(0);  // Récupération du nombre de pages de données
+        nbDataPage = bm.getPage(relation.getHeaderPageId(), BufferManager.KEEP).getInt(0);  // Récupération du nombre de pages de données
         bm.freePage(relation.getHeaderPageId(), false);
 
         cptDataPage = nbDataPage;
     }
 
+    /**
+     * Restreint le parcours aux pages qui peuvent contenir un record satisfaisant toutes les conditions :
+     * les pages dont les intervalles de valeurs les excluent sont sautées sans être chargées.
+     * @param conditions Les conditions sur les colonnes de la relation, une liste vide pour ne rien sauter.
+     * @throws Exception Si la carte des zones ne peut pas être construite.
+     */
+    public void setConditions(List<Condition> conditions) throws Exception {
+        this.conditions = conditions;
+        zones = (conditions == null || conditions.isEmpty()) ? null : relation.getZoneMap();
+    }
+
     /**
      * Cette méthode permet de récupérer l'identifiant de la page de données suivante.
      * @return L'identifiant de la page de données suivante ou null si la fin des pages est atteinte.
      */
     PageId GetNextDataPageId() {
+        PageId res = nextDataPageId();
+        // Saute les pages qui ne peuvent contenir aucun record cherché
+        while (res != null && zones != null && !zones.mayContain(res, conditions)) {
+            nbPagesSautees++;
+            res = nextDataPageId();
+        }
+        return res;
+    }
+
+    /**
+     * Lit dans les header Pages l'identifiant de la page de données suivante.
+     * @return L'identifiant de la page de données suivante ou null si la fin des pages est atteinte.
+     */
+    private PageId nextDataPageId() {
         // Si on a parcouru toutes les pages de données
         if (cptDataPage == 0)
             return null;
 
         try {
             // Charge la header Page courrante
-            ByteBuffer buffer = bm.getPage(currentPageId);
+            ByteBuffer buffer = bm.getPage(currentPageId, BufferManager.KEEP);
 
             // Récupère l'@ de la prochaine data Page
             PageId res = new PageId(
@@ -66,8 +95,7 @@ public class PageDirectoryIterator {
             // Si le décalage dépasse la taille restante de la page d'entête, on passe à la page suivante
             if (offsetDataPage > (DBConfig.pagesize - (8 + 12))) {
                 offsetDataPage = 0;      // Réinitialisation du décalage
-                currentPageId.FileIdx = buffer.getInt(DBConfig.pagesize-8); // Passage à la page d'entête suivante
-                currentPageId.PageIdx = buffer.getInt(DBConfig.pagesize-4);  // Passage à la page d'entête suivante
+                currentPageId = new PageId(buffer.getInt(DBConfig.pagesize-8), buffer.getInt(DBConfig.pagesize-4)); // Passage à la page d'entête suivante
             }
             return res;  // Retourne l'identifiant de la page de données trouvée
 
@@ -84,11 +112,11 @@ public class PageDirectoryIterator {
      */
     public void Reset() {
         PageId tmp = relation.getHeaderPageId();
-        currentPageId.FileIdx = tmp.FileIdx;    // Réinitialisation du compteur de pages d'entêtes
-        currentPageId.PageIdx = tmp.PageIdx;    // Réinitialisation du compteur de pages d'entêtes
+        currentPageId = new PageId(tmp.FileIdx, tmp.PageIdx);    // Réinitialisation du compteur de pages d'entêtes
 
         offsetDataPage = 4;  // Réinitialisation du décalage pour les pages de données
         cptDataPage = nbDataPage;
+        nbPagesSautees = 0;
     }
 
     /**
@@ -104,6 +132,14 @@ public class PageDirectoryIterator {
         offsetDataPage = 4;
         nbDataPage = 0; // Indiquer qu'il n'y a plus de pages à parcourir
         cptDataPage = 0;
+        zones = null;
+    }
+
+    /**
+     * @return Le nombre de pages sautées grâce à la carte des zones depuis le début du parcours.
+     */
+    public int getNbPagesSautees() {
+        return nbPagesSautees;
     }
 
     public BufferManager getBm() {
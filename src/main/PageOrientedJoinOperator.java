@@ -1,11 +1,17 @@
 import java.util.ArrayList;
+import java.util.function.Predicate;
 
 /**
- * Classe représentant un opérateur de jointure orientée page, utilisé pour effectuer
+ * Classe représentant un opérateur de jointure par blocs de pages (block nested loop), utilisé pour effectuer
  * une jointure entre deux relations (une externe et une interne), en parcourant les pages
  * et les tuples à l'aide d'itérateurs de pages et de tuples.
  * Cet opérateur est conçu pour supporter des conditions de jointure sur les tuples.
- * 
+ *
+ * Avec B cadres du BufferManager accordés à la jointure, un bloc de B-2 pages de la relation externe
+ * reste épinglé pendant qu'une page interne est lue (le dernier cadre sert aux header Pages) :
+ * chaque page interne est comparée à tout le bloc, si bien que la relation interne n'est parcourue
+ * qu'une fois par bloc au lieu d'une fois par tuple externe.
+ *
  * @author Mael Lecene
  */
 public class PageOrientedJoinOperator implements IRecordIterator {
@@ -16,21 +22,50 @@ public class PageOrientedJoinOperator implements IRecordIterator {
     // Iterateur de data page de la relation interne
     private PageDirectoryIterator innerPageIt;
 
-    // Iterateur de tuple de la relation extérieur
-    private DataPageHoldRecordIterator outerTupleIt;
+    // Iterateurs de tuple des pages du bloc externe, pages épinglées pendant tout le parcours interne
+    private ArrayList<DataPageHoldRecordIterator> bloc = new ArrayList<>();
+    private int indexBloc;  // Page du bloc dont le tuple externe courant est issu
     // Iterateur de tuple de la relation interne
     private DataPageHoldRecordIterator innerTupleIt;
 
+    private int nbPagesBloc;    // Nombre de pages externes par bloc
+    private int nbParcoursInternes; // Nombre de parcours de la relation interne, un par bloc
+
     private ArrayList<Condition> joinConditions;
-    private MyRecord outerRecord; // Le tuple courant de la relation extérieur
+    private Predicate<IRecord> predicat;    // Conditions de jointure compilées
+    private IRecord outerRecord; // Le tuple courant de la relation extérieur, vue sur sa page épinglée
+    private Tuple outerTuple;   // Copie du tuple externe courant, faite au premier résultat
+    private TupleSchema outerSchema;    // Schéma des tuples de la relation extérieur
+    private TupleSchema joinSchema;     // Schéma des tuples résultats, construit avec la première paire
+    private JoinedRecord candidat = new JoinedRecord();   // Paire en cours d'évaluation, réutilisée
 
     /**
-     * Constructeur de l'opérateur de jointure orientée page pour produit cartésien.
+     * Constructeur de l'opérateur de jointure par blocs, avec tous les cadres du pool des pages de données.
      */
     public PageOrientedJoinOperator(PageDirectoryIterator outerPageIt, PageDirectoryIterator innerPageIt, ArrayList<Condition> conditions) throws Exception {
+        this(outerPageIt, innerPageIt, conditions, DBConfig.bm_buffercount - DBConfig.bm_keepbuffercount);
+    }
+
+    /**
+     * Constructeur de l'opérateur de jointure par blocs.
+     *
+     * @param outerPageIt Itérateur de pages de la relation externe.
+     * @param innerPageIt Itérateur de pages de la relation interne.
+     * @param conditions Conditions de jointure.
+     * @param nbCadres Nombre de cadres du BufferManager accordés à la jointure (au moins 3, au plus les cadres du pool des pages de données).
+     * @throws IllegalArgumentException Si le nombre de cadres est inférieur à 3 ou dépasse les cadres du pool des pages de données.
+     */
+    public PageOrientedJoinOperator(PageDirectoryIterator outerPageIt, PageDirectoryIterator innerPageIt, ArrayList<Condition> conditions, int nbCadres) throws Exception {
+        if (nbCadres < 3)
+            throw new IllegalArgumentException("Une jointure par blocs a besoin d'au moins 3 cadres, " + nbCadres + " demandés");
+        // Les cadres du pool KEEP sont réservés aux pages d'en-tête : le bloc ne peut pas les épingler
+        int nbCadresDisponibles = DBConfig.bm_buffercount - DBConfig.bm_keepbuffercount;
+        if (nbCadres > nbCadresDisponibles)
+            throw new IllegalArgumentException("Une jointure par blocs a au plus " + nbCadresDisponibles + " cadres, " + nbCadres + " demandés");
         this.outerPageIt = outerPageIt; // Initialisation des relations à joindre
         this.innerPageIt = innerPageIt; // Initialisation des relations à joindre
         joinConditions = conditions;
+        nbPagesBloc = nbCadres - 2;
 
         // Récupère le bm
         this.bm = innerPageIt.getBm();
@@ -40,84 +75,164 @@ public class PageOrientedJoinOperator implements IRecordIterator {
     }
 
     /**
-     * Récupère le prochain enregistrement satisfaisant les conditions de jointure.
-     * 
-     * Cette méthode parcourt les tuples externes et internes pour trouver la première
-     * correspondance valide selon les conditions de jointure.
-     * 
+     * Récupère une copie du prochain enregistrement satisfaisant les conditions de jointure.
+     *
      * @return Le prochain enregistrement valide, ou null si aucun enregistrement
      *         valide n'est trouvé.
      */
     @Override
     public MyRecord GetNextRecord() {
-        MyRecord res;
+        IRecord res = GetNextView();
+        return (res == null) ? null : res.toRecord();
+    }
+
+    /**
+     * Récupère le prochain tuple satisfaisant les conditions de jointure.
+     *
+     * Pour chaque page interne, chaque tuple du bloc externe est comparé à chaque tuple de la page ;
+     * la page interne suivante n'est lue qu'une fois tout le bloc parcouru, et le bloc suivant
+     * qu'une fois toute la relation interne parcourue. Les paires candidates sont évaluées
+     * directement dans les pages et seul le tuple retenu est construit.
+     *
+     * @return Le prochain tuple valide, ou null si aucun tuple valide n'est trouvé.
+     */
+    @Override
+    public IRecord GetNextView() {
+        if (outerRecord == null)
+            return null;    // Fin de la jointure
+
+        IRecord innRecord;
         try {
             // Boucle principale pour trouver le prochain enregistrement qui satisfait les conditions
-            do {
-                res = new MyRecord();   // Réinitialise res
-                MyRecord innRecord = innerTupleIt.GetNextRecord();
+            while (true) {
+                innRecord = innerTupleIt.GetNextView();
 
-                // Si on est au bout d'une data Page de la relation interne
+                // Si on est au bout de la page interne pour ce tuple externe
                 if (innRecord == null) {
-                    PageId id2 = innerPageIt.GetNextDataPageId();
-
-                    // Si on est au bout de la relation interne
-                    if (id2 == null) {
-                        outerRecord = outerTupleIt.GetNextRecord();
-
-                        // Si on est au bout de la data Page externe
-                        if (outerRecord == null) {
-                            PageId id1 = outerPageIt.GetNextDataPageId();
-
-                            // Si on est au bout de la relation externe
-                            if (id1 == null)
-                                return null;
-
-                            outerTupleIt.Close();
-                            outerTupleIt = new DataPageHoldRecordIterator(outerPageIt.getRelation(), bm.getPage(id1), bm, id1);
-                            outerRecord = outerTupleIt.GetNextRecord();
-                        }
-                        innerPageIt.Reset();
-                        id2 = innerPageIt.GetNextDataPageId();
-                    }
-                    innerTupleIt.Close();
-                    innerTupleIt = new DataPageHoldRecordIterator(innerPageIt.getRelation(), bm.getPage(id2), bm, id2);
-                    innRecord = innerTupleIt.GetNextRecord();
+                    if (!nextOuterRecord())
+                        return null;
                 }
-                res.addAll(outerRecord);
-                res.addAll(innRecord);
-
-            } while(!satifyConditions(res));
+                else if (satifyConditions(candidat.set(outerRecord, innRecord)))
+                    break;
+            }
         } catch (Exception e) {
             // Gestion centralisée des erreurs
             throw new RuntimeException("Erreur dans GetNextRecord : " + e.getMessage());
         }
-        return res;
+        if (outerSchema == null)
+            outerSchema = TupleSchema.of(outerRecord);
+        if (outerTuple == null)
+            outerTuple = Tuple.of(outerRecord, outerSchema);    // Copié une fois, pour tous ses résultats sur la page
+        if (joinSchema == null)
+            joinSchema = outerSchema.concat(TupleSchema.of(innRecord));
+        return Tuple.concat(outerTuple, innRecord, joinSchema);
     }
 
     /**
-     * Vérifie si un enregistrement satisfait toutes les conditions spécifiées.
-     * 
-     * @param record   Enregistrement à vérifier.
-     * @param relation Relation associée à l'enregistrement.
-     * @return true si toutes les conditions sont satisfaites, sinon false.
+     * Passe au tuple externe suivant et recommence la page interne courante.
+     * À la fin du bloc, passe à la page interne suivante ; à la fin de la relation interne, au bloc suivant.
+     *
+     * @return false si toute la relation externe a été parcourue.
+     * @throws Exception Si une page ne peut pas être chargée.
      */
-    private boolean satifyConditions(MyRecord record) {
-        // Parcourt toutes les conditions.
-        for (Condition cond : joinConditions) {
-            try {
-                // Si une condition n'est pas satisfaite, retourne false.
-                if (!cond.evaluate(record))
+    private boolean nextOuterRecord() throws Exception {
+        outerTuple = null;
+        outerRecord = nextInBloc();
+
+        // Fin du bloc : page interne suivante, comparée au bloc depuis son début
+        if (outerRecord == null) {
+            PageId innerId = innerPageIt.GetNextDataPageId();
+
+            // Fin de la relation interne : bloc externe suivant, relation interne depuis le début
+            if (innerId == null) {
+                if (!loadBloc())
                     return false;
-            } catch (Exception e) {
-                System.out.println("erreur dans l'évaluation des conditions "+e.getMessage());
-                return false;
+                innerPageIt.Reset();
+                nbParcoursInternes++;
+                innerId = innerPageIt.GetNextDataPageId();
+            }
+            else {
+                for (DataPageHoldRecordIterator it : bloc)
+                    it.Reset();
+                indexBloc = 0;
             }
+            innerTupleIt.Close();
+            innerTupleIt = new DataPageHoldRecordIterator(innerPageIt.getRelation(), bm.getPage(innerId), bm, innerId);
+            outerRecord = nextInBloc();
+            if (outerRecord == null)
+                return nextOuterRecord();   // Bloc sans aucun tuple
         }
-        // Retourne true si toutes les conditions sont satisfaites.
+        innerTupleIt.Reset();
         return true;
     }
 
+    /**
+     * Récupère le tuple suivant du bloc externe, page après page.
+     *
+     * @return Une vue sur le tuple, ou null à la fin du bloc.
+     */
+    private IRecord nextInBloc() {
+        while (indexBloc < bloc.size()) {
+            IRecord record = bloc.get(indexBloc).GetNextView();
+            if (record != null)
+                return record;
+            indexBloc++;
+        }
+        return null;
+    }
+
+    /**
+     * Libère les pages du bloc externe courant et épingle les pages suivantes de la relation externe.
+     *
+     * @return false s'il ne reste plus de page externe.
+     * @throws Exception Si une page ne peut pas être chargée.
+     */
+    private boolean loadBloc() throws Exception {
+        closeBloc();
+        PageId id;
+        while (bloc.size() < nbPagesBloc && (id = outerPageIt.GetNextDataPageId()) != null)
+            bloc.add(new DataPageHoldRecordIterator(outerPageIt.getRelation(), bm.getPage(id), bm, id));
+        indexBloc = 0;
+        return !bloc.isEmpty();
+    }
+
+    /**
+     * Libère les pages du bloc externe.
+     */
+    private void closeBloc() {
+        for (DataPageHoldRecordIterator it : bloc)
+            it.Close();
+        bloc.clear();
+    }
+
+    /**
+     * Vérifie si un enregistrement satisfait toutes les conditions spécifiées.
+     *
+     * @param record   Enregistrement à vérifier.
+     * @param relation Relation associée à l'enregistrement.
+     * @return true si toutes les conditions sont satisfaites, sinon false.
+     */
+    private boolean satifyConditions(IRecord record) {
+        // Conditions compilées une seule fois, avec le schéma de la première paire évaluée
+        if (predicat == null)
+            predicat = Condition.compile(joinConditions, TupleSchema.of(record));
+        return predicat.test(record);
+    }
+
+    /**
+     * @return Le nombre de pages externes d'un bloc.
+     */
+    public int getNbPagesBloc() {
+        return nbPagesBloc;
+    }
+
+    /**
+     * @return Le nombre de parcours de la relation interne depuis le dernier Reset, un par bloc externe.
+     */
+    public int getNbParcoursInternes() {
+        return nbParcoursInternes;
+    }
+
 /**
      * Réinitialise l'opérateur de jointure en réinitialisant tous les itérateurs.
      */
@@ -127,21 +242,26 @@ public class PageOrientedJoinOperator implements IRecordIterator {
             // Reset les opérateurs de data Page
             outerPageIt.Reset();
             innerPageIt.Reset();
+            if (innerTupleIt != null)
+                innerTupleIt.Close();
 
-            // Charge les 1er data Page Id
-            PageId outerId = outerPageIt.GetNextDataPageId();
+            // Charge le 1er bloc et la 1er data Page interne
+            boolean outerVide = !loadBloc();
             PageId innerId = innerPageIt.GetNextDataPageId();
 
             // Si on a une null c'est une erreur
-            if (outerId == null || innerId == null)
+            if (outerVide || innerId == null)
                 throw new IllegalStateException("l'une des 2 relations est vide");
 
-            // Initialise les itérateurs de tuple
-            outerTupleIt = new DataPageHoldRecordIterator(outerPageIt.getRelation(), bm.getPage(outerId), bm, outerId);
+            // Initialise l'itérateur de tuple interne
             innerTupleIt = new DataPageHoldRecordIterator(innerPageIt.getRelation(), bm.getPage(innerId), bm, innerId);
+            nbParcoursInternes = 1;
 
             // Initialise le 1er tuple externe
-            outerRecord = outerTupleIt.GetNextRecord();
+            outerTuple = null;
+            outerRecord = nextInBloc();
+            if (outerRecord == null)
+                nextOuterRecord();  // 1er bloc sans aucun tuple
 
         } catch (Exception e) {
             throw new RuntimeException("Erreur lors de la réinitialisation : " + e.getMessage());
@@ -157,15 +277,16 @@ public class PageOrientedJoinOperator implements IRecordIterator {
         try {
             outerPageIt.Close();
             innerPageIt.Close();
-        
-            outerTupleIt.Close();
+
+            closeBloc();
             innerTupleIt.Close();
-        
+
             joinConditions = null;
             outerRecord = null;
+            outerTuple = null;
             bm = null;
         } catch (Exception e) {
             throw new RuntimeException("Erreur lors de la fermeture : " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -31,8 +31,8 @@ public class ProjectOperator implements IRecordIterator {
      */
     @Override
     public MyRecord GetNextRecord() {
-        // Obtient le prochain record de l'opérateur fils (SELECT)
-        MyRecord record = scanner.GetNextRecord();
+        // Obtient une vue sur le prochain record de l'opérateur fils (SELECT) : seules les colonnes projetées sont lues
+        IRecord record = scanner.GetNextView();
 
         // Si le record est null, cela signifie qu'il n'y a plus de records à traiter.
         if (record == null)
@@ -43,9 +43,8 @@ public class ProjectOperator implements IRecordIterator {
 
         // Parcourt les indices des attributs que l'on souhaite conserver dans le record.
         for (int index : attrbWeWant) {
-            // Ajoute l'attribut de l'index sélectionné dans le nouveau record.
-            // get(index).getFirst() récupère la valeur de l'attribut et get(index).getSecond() récupère son type.
-            res.add(record.get(index).getFirst(), record.get(index).getSecond());
+            // Ajoute l'attribut de l'index sélectionné dans le nouveau record avec son type.
+            res.add(record.getValue(index), record.getType(index));
         }
         // Retourne le record projeté (avec seulement les attributs souhaités).
         return res;
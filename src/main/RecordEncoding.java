@@ -0,0 +1,46 @@
+/**
+ * Enumération représentant les formats d'écriture des records dans les data Pages.
+ * Le format est choisi à la création de la table (option ENCODING=) et ne change plus ensuite.
+ * @author Mael Lecene
+ */
+public enum RecordEncoding {
+    /**
+     * Format historique : chaînes en UTF-16 (2 octets par caractère), CHAR complétés jusqu'à leur taille.
+     */
+    UTF16,
+
+    /**
+     * Format compact : chaînes en UTF-8 (1 octet par caractère ASCII), CHAR non complétés.
+     * La longueur de chaque chaîne est donnée par l'offset directory du record.
+     */
+    COMPACT;
+
+    /**
+     * Calcule la taille en octets d'une chaîne dans ce format, sans l'encoder.
+     *
+     * @param str La chaîne.
+     * @return Le nombre d'octets occupés par la chaîne.
+     */
+    public int sizeOf(String str) {
+        if (this == UTF16)
+            return str.length() * 2;    // 1 char = 2 octets
+
+        int taille = 0;
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < 0x80)
+                taille += 1;
+            else if (c < 0x800)
+                taille += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                taille += 4;    // Une paire de substitution forme un seul caractère de 4 octets
+                i++;
+            }
+            else if (Character.isSurrogate(c))
+                taille += 1;    // Une substitution isolée est remplacée par '?'
+            else
+                taille += 3;
+        }
+        return taille;
+    }
+}
@@ -1,3 +1,5 @@
+import java.util.Objects;
+
 /**
  * Représente un identifiant de record dans une page de la base de données.
  * Il contient un index de slot ainsi qu'un identifiant de page, permettant de localiser
@@ -22,4 +24,31 @@ public class RecordId {
         slotIdx = sidx;
         pageIdx = pidx;
     }
+
+    /**
+     * Deux RecordId sont égaux s'ils désignent le même slot de la même page.
+     *
+     * @param o L'objet à comparer avec l'instance courante.
+     * @return true si l'objet donné désigne le même record, false sinon.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+
+        RecordId rid = (RecordId) o;
+        return slotIdx == rid.slotIdx && Objects.equals(pageIdx, rid.pageIdx);
+    }
+
+    /**
+     * Code de hachage cohérent avec equals.
+     *
+     * @return Un code de hachage pour l'objet RecordId.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(slotIdx, pageIdx);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,131 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Vue d'un record directement dans le buffer de sa data Page, sans copie.
+ * Les valeurs ne sont lues qu'à la demande, grâce à l'offset directory du record
+ * (ou aux minipages pour une relation COLUMNAR) : un tuple rejeté par une condition
+ * ne coûte que la lecture des colonnes testées.
+ * Une même vue est repositionnée d'un record à l'autre ; elle n'est valide que tant que la page reste épinglée
+ * et que l'itérateur qui l'a renvoyée n'a pas avancé. toRecord() en fait une copie indépendante.
+ * @author Mael Lecene
+ */
+public class RecordView implements IRecord {
+    private Relation relation;  // Relation qui donne le schéma et le format des records
+    private ByteBuffer buffer;  // Buffer de la data Page
+    private ColumnarLayout pax; // Organisation des pages si la relation est COLUMNAR, sinon null
+    private int pos;    // Position du début du record (son offset directory) dans le buffer, ou sa ligne si COLUMNAR
+
+    /**
+     * Constructeur d'une vue sur les records d'une data Page.
+     *
+     * @param relation La relation à laquelle appartiennent les records.
+     * @param buffer Le buffer de la data Page.
+     */
+    public RecordView(Relation relation, ByteBuffer buffer) {
+        this.relation = relation;
+        this.buffer = buffer;
+        if (relation.getStorage() == StorageLayout.COLUMNAR)
+            this.pax = relation.getColumnarLayout();
+    }
+
+    /**
+     * Positionne la vue sur un autre record de la page.
+     *
+     * @param pos La position du début du record dans le buffer (son numéro de ligne si la relation est COLUMNAR).
+     * @return Cette vue.
+     */
+    public RecordView moveTo(int pos) {
+        this.pos = pos;
+        return this;
+    }
+
+    /**
+     * Retourne la position de la valeur d'une colonne, lue dans l'offset directory ou calculée dans sa minipage.
+     *
+     * @param index L'index de la colonne.
+     * @return La position de la valeur dans le buffer.
+     */
+    private int offset(int index) {
+        if (pax != null)
+            return pax.valuePos(pos, index);
+        return buffer.getInt(pos + index * Integer.BYTES);
+    }
+
+    @Override
+    public int size() {
+        return relation.getNbAttribut();
+    }
+
+    @Override
+    public DataType getType(int index) {
+        return relation.getType(index);
+    }
+
+    @Override
+    public int getInt(int index) {
+        return buffer.getInt(offset(index));
+    }
+
+    @Override
+    public float getFloat(int index) {
+        return buffer.getFloat(offset(index));
+    }
+
+    @Override
+    public String getString(int index) {
+        StringDictionary dictionnaire = relation.getDictionary(index);
+        if (dictionnaire != null)
+            return dictionnaire.decode(getCode(index));
+        if (pax != null)
+            return pax.readString(buffer, offset(index));
+        return relation.readString(buffer, offset(index), offset(index + 1));
+    }
+
+    @Override
+    public StringDictionary getDictionary(int index) {
+        return relation.getDictionary(index);
+    }
+
+    @Override
+    public int getCode(int index) {
+        return buffer.getInt(offset(index));
+    }
+
+    @Override
+    public Object getValue(int index) {
+        switch (getType(index)) {
+            case INT:
+                return getInt(index);
+            case REAL:
+                return getFloat(index);
+            case CHAR:
+            case VARCHAR:
+                return getString(index);
+            case DATE:
+                int debut = offset(index);
+                return new Date(buffer.getInt(debut), buffer.getInt(debut + 4), buffer.getInt(debut + 8));
+            default:
+                throw new IllegalArgumentException("Type non pris en charge pour la lecture.");
+        }
+    }
+
+    @Override
+    public MyRecord toRecord() {
+        MyRecord record = new MyRecord();
+        relation.readRecordFromBuffer(record, buffer, pos);
+        return record;
+    }
+
+    /**
+     * Copie certaines colonnes du record, lues directement à leur offset : les autres colonnes ne sont pas décodées.
+     *
+     * @param colonnes Les index des colonnes à copier, dans l'ordre voulu.
+     * @return Un MyRecord contenant les valeurs de ces colonnes.
+     */
+    public MyRecord toRecord(int[] colonnes) {
+        MyRecord record = new MyRecord();
+        for (int index : colonnes)
+            record.add(getValue(index), getType(index));
+        return record;
+    }
+}
@@ -1,7 +1,11 @@
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Représente une relation dans une base de données, gérant ses attributs (colonnes), 
@@ -10,13 +14,21 @@ import java.nio.ByteBuffer;
  * @author Mael Lecene
  */
 public class Relation {
-    
+    // Part d'une data Page occupée par des records supprimés au-delà de laquelle la page est compactée dès la suppression
+    public static final double COMPACTION_THRESHOLD = 0.25;
+
     private String relationName;    // Nom de la relation
     private ArrayList<Pair<String, Data>> attribut; // Liste des attributs (nom et type de chaque colonne)
     private PageId headerPageId;    // Identifiant de la première page d'en-tête de la relation
     private PageId LastHeaderPageId;    // Identifiant de la dernière page d'en-tête de la relation
     private DiskManager dskm;       // Gestionnaire de disque pour l'allocation et la gestion des pages
     private BufferManager bm;       // Gestionnaire de buffer pour la gestion des pages en mémoire
+    private FreeSpaceMap fsm;       // Carte de l'espace libre des data Pages, construite au premier besoin
+    private ZoneMap zoneMap;        // Intervalles des valeurs de chaque data Page, construits au premier besoin
+    private RecordEncoding encoding;    // Format d'écriture des records dans les data Pages
+    private StorageLayout storage;  // Organisation des records dans les data Pages
+    private ColumnarLayout pax;     // Organisation PAX des pages, calculée au premier besoin (relation COLUMNAR)
+    private ArrayList<StringDictionary> dictionnaires;  // Dictionnaire de chaque colonne, null si ses valeurs sont écrites telles quelles
 
     // Map pour liée le nom d'un attributs à son index dans la liste des attributs
     private HashMap<String, Integer> nameToIndex;
@@ -32,6 +44,35 @@ public class Relation {
      * @param bm Le gestionnaire de buffer.
      */
     public Relation(String relationName, ArrayList<Pair<String, Data>> attribut, PageId headerPageId, DiskManager dsmk, BufferManager bm) throws IllegalArgumentException{
+        this(relationName, attribut, headerPageId, dsmk, bm, RecordEncoding.UTF16);
+    }
+
+    /**
+     * Constructeur avec initialisation des attributs et du format des records.
+     * 
+     * @param relationName Le nom de la relation.
+     * @param attribut La liste des attributs de la relation (nom et type).
+     * @param headerPageId L'identifiant de la première page de la relation.
+     * @param dsmk Le gestionnaire de disque.
+     * @param bm Le gestionnaire de buffer.
+     * @param encoding Le format d'écriture des records dans les data Pages.
+     */
+    public Relation(String relationName, ArrayList<Pair<String, Data>> attribut, PageId headerPageId, DiskManager dsmk, BufferManager bm, RecordEncoding encoding) throws IllegalArgumentException{
+        this(relationName, attribut, headerPageId, dsmk, bm, encoding, StorageLayout.ROW);
+    }
+
+    /**
+     * Constructeur avec initialisation des attributs, du format et de l'organisation des records.
+     * 
+     * @param relationName Le nom de la relation.
+     * @param attribut La liste des attributs de la relation (nom et type).
+     * @param headerPageId L'identifiant de la première page de la relation.
+     * @param dsmk Le gestionnaire de disque.
+     * @param bm Le gestionnaire de buffer.
+     * @param encoding Le format d'écriture des records dans les data Pages.
+     * @param storage L'organisation des records dans les data Pages.
+     */
+    public Relation(String relationName, ArrayList<Pair<String, Data>> attribut, PageId headerPageId, DiskManager dsmk, BufferManager bm, RecordEncoding encoding, StorageLayout storage) throws IllegalArgumentException{
         // Test si le nom est valide
         if(SGBD.isValidName(relationName))
             this.relationName = relationName.toUpperCase();
@@ -40,11 +81,14 @@ public class Relation {
 
         this.attribut = new ArrayList<>();
         this.nameToIndex = new HashMap<>();
+        this.dictionnaires = new ArrayList<>();
 
         setAttribut(attribut);  // Appelle le setter pour vérifier et init les attributs
         this.headerPageId = headerPageId;
         this.dskm = dsmk;
         this.bm = bm;
+        this.encoding = encoding;
+        this.storage = storage;
         LastHeaderPageId = headerPageId;    // La dernière header Page est initialisé à la 1er
     }
 
@@ -83,6 +127,22 @@ public class Relation {
                     case CHAR:
                     case VARCHAR:
                         String str = (String) record.getValue(i);
+
+                        // Colonne avec dictionnaire : seul le code de la valeur est écrit
+                        StringDictionary dictionnaire = dictionnaires.get(i);
+                        if (dictionnaire != null) {
+                            buffer.putInt(posValue, dictionnaire.encode(str));
+                            posValue += Integer.BYTES;
+                            break;
+                        }
+
+                        // Format compact : les octets UTF-8 sont copiés d'un bloc, sans complément pour les CHAR
+                        if (encoding == RecordEncoding.COMPACT) {
+                            byte[] octets = str.getBytes(StandardCharsets.UTF_8);
+                            buffer.duplicate().position(posValue).put(octets);
+                            posValue += octets.length;
+                            break;
+                        }
                         int nbCharWrite = 0;    // Nombre de caractères écrits
 
                         for (int j = 0; j < str.length(); j++) {
@@ -135,6 +195,11 @@ public class Relation {
      * @return La taille totale de l'enregistrement lu.
      */
     public int readRecordFromBuffer(MyRecord record, ByteBuffer buffer, int pos) {
+        // En organisation colonnaire, la position donnée par le slot est le numéro de ligne du record
+        if (storage == StorageLayout.COLUMNAR) {
+            getColumnarLayout().readRecord(record, buffer, pos);
+            return 0;
+        }
         int lgRelation = getNbAttribut();  // Nombre d'attributs dans la relation
         int posValue = pos + (lgRelation + 1) * Integer.BYTES;  // Première valeur après l'offset directory
         int start = pos;    // Position de départ dans le buffer
@@ -156,18 +221,16 @@ public class Relation {
 
                     case CHAR:
                     case VARCHAR:
+                        // Colonne avec dictionnaire : la valeur est retrouvée à partir de son code
+                        if (dictionnaires.get(i) != null) {
+                            record.add(dictionnaires.get(i).decode(buffer.getInt(posValue)), getType(i));
+                            posValue += Integer.BYTES;
+                            break;
+                        }
                         // La chaine ce fini au début de la prochaine valeur donc recupere le prochain offset
                         int endOfString = buffer.getInt((pos + (i+1)*Integer.BYTES));
-                        StringBuilder str = new StringBuilder();
-                        char c;
-
-                        // Parcours du buffer jusqu'a la fin de la chaine
-                        while (endOfString > posValue) {
-                            c = buffer.getChar(posValue);
-                            str.append(c);
-                            posValue += Character.BYTES;  // Avance de 2 octets
-                        }
-                        record.add(str.toString().trim(), getType(i));
+
+                        record.add(readString(buffer, posValue, endOfString), getType(i));
                         posValue = endOfString;  // Mise à jour de la position
 
                         break;
@@ -195,6 +258,62 @@ public class Relation {
         }
     }
 
+    /**
+     * Lit une chaîne écrite dans un buffer selon le format des records de la relation.
+     *
+     * @param buffer Le buffer qui contient la chaîne.
+     * @param debut La position du premier octet de la chaîne.
+     * @param fin La position qui suit le dernier octet de la chaîne.
+     * @return La chaîne lue.
+     */
+    public String readString(ByteBuffer buffer, int debut, int fin) {
+        // Format compact : la chaîne est décodée d'un bloc
+        if (encoding == RecordEncoding.COMPACT)
+            return decodeUtf8(buffer, debut, fin - debut);
+
+        StringBuilder str = new StringBuilder((fin - debut) / 2);
+        // Parcours du buffer jusqu'a la fin de la chaine
+        for (int pos = debut; pos < fin; pos += Character.BYTES)
+            str.append(buffer.getChar(pos));
+        return str.toString().trim();   // Retire le complément des CHAR
+    }
+
+    /**
+     * Écrit une chaîne dans un buffer selon le format des records de la relation, sans complément.
+     *
+     * @param buffer Le buffer.
+     * @param pos La position du premier octet.
+     * @param str La chaîne à écrire.
+     * @return Le nombre d'octets écrits.
+     */
+    public int writeString(ByteBuffer buffer, int pos, String str) {
+        if (encoding == RecordEncoding.COMPACT) {
+            byte[] octets = str.getBytes(StandardCharsets.UTF_8);
+            buffer.duplicate().position(pos).put(octets);
+            return octets.length;
+        }
+        for (int i = 0; i < str.length(); i++)
+            buffer.putChar(pos + i * Character.BYTES, str.charAt(i));
+        return str.length() * Character.BYTES;
+    }
+
+    /**
+     * Décode une chaîne UTF-8 d'un buffer sans passer par un tableau intermédiaire quand le buffer en a un.
+     *
+     * @param buffer Le buffer qui contient la chaîne.
+     * @param pos La position du premier octet.
+     * @param taille Le nombre d'octets de la chaîne.
+     * @return La chaîne décodée.
+     */
+    private static String decodeUtf8(ByteBuffer buffer, int pos, int taille) {
+        if (buffer.hasArray())
+            return new String(buffer.array(), buffer.arrayOffset() + pos, taille, StandardCharsets.UTF_8);
+
+        byte[] octets = new byte[taille];
+        buffer.duplicate().position(pos).get(octets);
+        return new String(octets, StandardCharsets.UTF_8);
+    }
+
     /**
      * Ajoute une nouvelle page de données à la relation.
      * Alloue une nouvelle page, met à jour le nombre de pages dans la page d'en-tête 
@@ -207,7 +326,7 @@ public class Relation {
             // Alloue une nouvelle page
             PageId id = dskm.AllocPage();
             // Charge la 1er header Page en mémoire
-            ByteBuffer buffer = bm.getPage(headerPageId);
+            ByteBuffer buffer = bm.getPage(headerPageId, BufferManager.KEEP);
 
             // Calcul des limites des entrées pour chaque type de header Page
             int maxEntriesFirstHeader = (DBConfig.pagesize - 4 - 8) / 12; // Premières 4 octets pour le compteur + 8 pour l'@
@@ -224,7 +343,7 @@ public class Relation {
             // Si on a plusieurs header Page on peut libere la 1er
             if (! LastHeaderPageId.equals(headerPageId)) {
                 bm.freePage(headerPageId, true);    // Relache la 1er header Page a true
-                buffer = bm.getPage(LastHeaderPageId);  // Charge la dernière
+                buffer = bm.getPage(LastHeaderPageId, BufferManager.KEEP);  // Charge la dernière
                 
                 // Calcule l'offset pour ajouter la nouvelle entrée
                 offset = (nbDataPage - 1) - maxEntriesFirstHeader;
@@ -247,7 +366,7 @@ public class Relation {
 
                 // Initialise la nouvelle header page
                 // Charge dans le buffer
-                buffer = bm.getPage(LastHeaderPageId);
+                buffer = bm.getPage(LastHeaderPageId, BufferManager.KEEP);
                 buffer.putInt(DBConfig.pagesize-4, -1); // Indique qu'il n'y a pas de page suivante
 
                 // Remet l'offset à 0 dans la nouvelle page
@@ -256,17 +375,19 @@ public class Relation {
             // Écrit les informations de la nouvelle data page dans la dernière header Page
             buffer.putInt(offset, id.FileIdx);      // Fichier de la nouvelle page
             buffer.putInt(offset + 4, id.PageIdx);  // Index de la nouvelle page
-            buffer.putInt(offset + 8, DBConfig.pagesize - 8);  // octets libre -8 pour page directory
+            buffer.putInt(offset + 8, getEmptyPageFreeBytes());  // octets libre -8 pour page directory
             
             // Libère la dernière header page avec indication de modification
             bm.freePage(LastHeaderPageId, true);
 
+            // Référence la nouvelle data Page dans la carte de l'espace libre si elle est déjà construite
+            if (fsm != null)
+                fsm.add(id, new PageId(LastHeaderPageId.FileIdx, LastHeaderPageId.PageIdx), offset + 8, getEmptyPageFreeBytes());
+
             // Ecrit l'offset directory de la nouvelle data Page
             // Charge la nouvelle dataPage
             buffer = bm.getPage(id);
-
-            buffer.putInt(DBConfig.pagesize - 4, 0);    // Ecrit le début de l'espace disponible
-            buffer.putInt(DBConfig.pagesize - 8, 0);    // Ecrit le nombre de slot dedans
+            initDataPage(buffer);
             bm.freePage(id, true);  // Libere la page
 
             return id;
@@ -290,7 +411,7 @@ public class Relation {
 
         try {
             // Charger la 1er Header Page en mémoire
-            ByteBuffer buffer = bm.getPage(headerPageId);
+            ByteBuffer buffer = bm.getPage(headerPageId, BufferManager.KEEP);
             
             // Récupère le nombre de page référencé
             int nbDataPage = buffer.getInt(0);
@@ -324,7 +445,7 @@ public class Relation {
                 if (tempNextPage.PageIdx != -1) {
                     currentPage = tempNextPage;
                     // charge la header page chainé suivante
-                    buffer = bm.getPage(currentPage);
+                    buffer = bm.getPage(currentPage, BufferManager.KEEP);
                     offset = 0; // RAZ l'offset
                 }
                 // Sinon c'est la fin de la boucle
@@ -353,7 +474,7 @@ public class Relation {
 
         try {
             // Charger la 1er Header Page en mémoire
-            ByteBuffer buffer = bm.getPage(headerPageId);
+            ByteBuffer buffer = bm.getPage(headerPageId, BufferManager.KEEP);
             // Recupere le nombre de data Page
             int nbDataPage = buffer.getInt(0);
 
@@ -384,7 +505,7 @@ public class Relation {
                 // Si il y a du chainage
                 if(tempNextPage.PageIdx != -1)
                     // charge la header page chainé suivante
-                    buffer = bm.getPage(currentPage);
+                    buffer = bm.getPage(currentPage, BufferManager.KEEP);
 
                 offset = 0; // RAZ l'offset
             }
@@ -398,150 +519,1299 @@ public class Relation {
     }
 
     /**
-     * Insère un enregistrement dans la table. Si une page de données
-     * avec suffisamment d'espace est trouvée, l'enregistrement est inséré dans celle-ci.
-     * Sinon, une nouvelle page est ajoutée à la base de données.
+     * Insère un enregistrement dans la table. La data Page qui le reçoit est choisie en temps constant
+     * grâce à la carte de l'espace libre ; si aucune page n'a suffisamment d'espace,
+     * une nouvelle page est ajoutée à la relation.
      *
      * @param record L'enregistrement à insérer dans la base de données.
      * @return Un RecordId représentant l'identifiant unique de l'enregistrement inséré.
      * @throws Exception Si une erreur se produit lors de l'insertion de l'enregistrement.
     */
     public RecordId InsertRecord(MyRecord record) throws Exception {
-        // Calculer la taille du record son offset compris
-        int recordSize = record.getSizeOctet(this) + ((attribut.size()+1) * 4);   // taille du record + la taille de son l'offset directory
+        // Calculer la place du record dans la page
+        int recordSize = getRecordSize(record);
 
-        // Contient la header Page courante
-        PageId currentPage = new PageId();
-
-        // Contient le pageId de la data page ou l'on insère le record
+        // Contient le pageId de la data page ou l'on insère le record, tant qu'elle est chargée
         PageId dataPageId = null;
 
-        // header Page courante initialisé avec la 1er header Page
-        currentPage.FileIdx = headerPageId.FileIdx;
-        currentPage.PageIdx = headerPageId.PageIdx;
+        try {
+            // Un record plus grand qu'une data Page vide ne pourra jamais être inséré
+            checkRecordSize(recordSize);
+
+            // Cherche une data Page avec suffisamment d'espace pour le record et son slot
+            FreeSpaceMap.Entry entry = getFreeSpaceMap().find(recordSize + 8);
+
+            // Si aucune data page n'a suffisamment d'espace, en ajouter une nouvelle
+            if (entry == null)
+                entry = fsm.get(addDataPage());
+
+            // 1. Modifie la data Page
+            // Charge la data Page en mémoir
+            ByteBuffer buffer = bm.getPage(entry.getDataPageId());
+            dataPageId = entry.getDataPageId();
+            int nbSlots = writeRecordInDataPage(record, recordSize, buffer);
+            widenZone(dataPageId, record);
+            // Espace restant dans la page (nul pour une page colonnaire dont toutes les lignes sont prises)
+            int freeSpace = getFreeBytes(buffer);
+            // Libére la page après modification
+            bm.freePage(dataPageId, true); // True car la page a été modifiée
+            dataPageId = null;
+
+            // 2. Modifie l'entrée de la data Page dans sa header Page
+            buffer = bm.getPage(entry.getHeaderPageId(), BufferManager.KEEP);
+            buffer.putInt(entry.getOffset(), freeSpace);
+            // Libere la header Page dans laquelle on vient d'écrire
+            bm.freePage(entry.getHeaderPageId(), true);
+            fsm.update(entry, freeSpace);
+
+            // Retourne le RecordId du record composé d'un Page ID et l'index du slot
+            return new RecordId(nbSlots, entry.getDataPageId());
+
+        } catch(Exception e) {
+            e.printStackTrace();
+            System.out.println("README: "+e.getMessage());
+            // Libere la page de travail en cas d'erreur à faux pour ne pas trop propager d'erreur
+            if (dataPageId != null)
+                bm.freePage(dataPageId, false);
+        }
+        return null;    // Si on rencontre un problème retourne null
+    }
+
+    /**
+     * Insère une suite d'enregistrements dans la table.
+     * La data Page cible reste chargée tant qu'elle a de la place : elle est remplie séquentiellement
+     * et son entrée dans la header Page n'est mise à jour qu'une fois, quand on passe à la page suivante.
+     *
+     * @param records Les enregistrements à insérer.
+     * @return Les RecordId des enregistrements insérés, dans l'ordre de l'itérateur.
+     * @throws Exception Si un enregistrement ne peut pas être inséré, ceux qui le précèdent restent insérés.
+     */
+    public ArrayList<RecordId> InsertRecords(Iterator<MyRecord> records) throws Exception {
+        ArrayList<RecordId> rids = new ArrayList<>();
+        FreeSpaceMap.Entry entry = null;    // Entrée de la data Page en cours de remplissage
+        ByteBuffer buffer = null;   // Buffer de la data Page en cours de remplissage
+        int freeSpace = 0;  // Espace libre restant dans la data Page en cours
 
-        // offset de l'espace libre d'une data page dans sa header Page
-        int offset = 12;
         try {
-            // Charge la 1er Header Page en mémoire
-            ByteBuffer buffer = bm.getPage(headerPageId);
-            // Récupère le nombre de data Page
-            int nbDataPage = buffer.getInt(0);
-            int cpt = 0;    // Compte combien de data Page on été essayé
-
-            // Label pour quitter la boucle en la nommant
-            outerLoop:
-            // tant qu'il reste des header Page à explorer
-            while (cpt < nbDataPage) {
-                // Parcourir chaque entrée d'une header Page
-                while ((offset < DBConfig.pagesize - 8) && (cpt < nbDataPage)) {
-                	
-                    // Si l'espace libre >= à la taille du record + son offset directory
-                    if ((buffer.getInt(offset)) >= (recordSize + 8)) {
-                        // Récupère l'@ de la data Page
-                        dataPageId = new PageId();
-                        dataPageId.FileIdx = buffer.getInt(offset-8);
-                        dataPageId.PageIdx = buffer.getInt(offset-4);
-                        
-                        // Quitte la boucle nommé
-                        break outerLoop;
+            while (records.hasNext()) {
+                MyRecord record = records.next();
+                // Calculer la place du record dans la page
+                int recordSize = getRecordSize(record);
+
+                // Un record plus grand qu'une data Page vide ne pourra jamais être inséré
+                checkRecordSize(recordSize);
+
+                // Si la data Page courante est pleine, on passe à une autre
+                if (entry == null || freeSpace < (recordSize + 8)) {
+                    if (entry != null) {
+                        FreeSpaceMap.Entry pleine = entry;
+                        entry = null;   // Évite de la refermer dans le finally si closeDataPage échoue
+                        closeDataPage(pleine, freeSpace);
                     }
-                    // Avance dans la page de 12 pour sauter l'@ de la prochaine data Page et l'espace libre qu'on vient de lire
-                    offset += 12;
-                    cpt++;  // Incrémente le compteur de page
+
+                    // Cherche une data Page avec suffisamment d'espace ou en ajoute une
+                    FreeSpaceMap.Entry next = getFreeSpaceMap().find(recordSize + 8);
+                    if (next == null)
+                        next = fsm.get(addDataPage());
+
+                    buffer = bm.getPage(next.getDataPageId());
+                    entry = next;
+                    freeSpace = entry.getFreeBytes();
                 }
-                // Changement de header Page
-                // Extrait la prochaine @
-                PageId tempNextPage = new PageId(
-                    buffer.getInt(DBConfig.pagesize - 8),
-                    buffer.getInt(DBConfig.pagesize - 4)
-                );
-                
-                // Si il y a du chainage
-                if (tempNextPage.PageIdx != -1) {
-                    // Libère la header Page courante
-                    bm.freePage(currentPage, false);
-                    // charge la header page chainé suivante
-                    buffer = bm.getPage(tempNextPage);
-                    currentPage = tempNextPage;
+                int nbSlots = writeRecordInDataPage(record, recordSize, buffer);
+                widenZone(entry.getDataPageId(), record);
+                freeSpace = getFreeBytes(buffer);
+                rids.add(new RecordId(nbSlots, entry.getDataPageId()));
+            }
+        } finally {
+            // Enregistre l'état de la dernière data Page, même en cas d'erreur
+            if (entry != null)
+                closeDataPage(entry, freeSpace);
+        }
+        return rids;
+    }
+
+    /**
+     * Termine le remplissage d'une data Page : met à jour son entrée dans la header Page
+     * et dans la carte de l'espace libre, puis libère la data Page.
+     *
+     * @param entry L'entrée de la data Page.
+     * @param freeSpace L'espace libre restant dans la data Page.
+     * @throws Exception Si la header Page ne peut pas être chargée.
+     */
+    private void closeDataPage(FreeSpaceMap.Entry entry, int freeSpace) throws Exception {
+        try {
+            ByteBuffer header = bm.getPage(entry.getHeaderPageId(), BufferManager.KEEP);
+            header.putInt(entry.getOffset(), freeSpace);
+            bm.freePage(entry.getHeaderPageId(), true);
+            fsm.update(entry, freeSpace);
+        } finally {
+            bm.freePage(entry.getDataPageId(), true);
+        }
+    }
+
+    /**
+     * Écrit un record dans une data Page chargée et l'ajoute à son slot directory.
+     * Le slot d'un record supprimé est réutilisé s'il y en a un (pour une page colonnaire, sa ligne aussi) ;
+     * si les trous laissés par les suppressions empêchent d'écrire le record d'un bloc, la page est compactée.
+     * L'appelant doit avoir vérifié que la page a suffisamment de place.
+     *
+     * @param record Le record à écrire.
+     * @param recordSize La place du record, calculée par getRecordSize.
+     * @param buffer Le buffer de la data Page.
+     * @return Le numéro du slot du record.
+     * @throws Exception Si l'écriture du record échoue.
+     */
+    private int writeRecordInDataPage(MyRecord record, int recordSize, ByteBuffer buffer) throws Exception {
+        return writeRecordInSlot(record, recordSize, buffer, 0, false);
+    }
+
+    /**
+     * Écrit un record dans un slot libre d'une data Page chargée, choisi par l'appelant ou par findFreeSlot.
+     * Un record déplacé par une mise à jour est marqué par une position négative dans son slot :
+     * les parcours l'ignorent et il n'est atteint qu'à travers le pointeur laissé dans sa page d'origine.
+     *
+     * @param record Le record à écrire.
+     * @param recordSize La place du record, calculée par getRecordSize.
+     * @param buffer Le buffer de la data Page.
+     * @param slot Le numéro d'un slot libre, ou 0 pour le premier slot disponible.
+     * @param deplace Vrai si le record est la copie déplacée d'un record d'une autre page.
+     * @return Le numéro du slot du record.
+     * @throws Exception Si l'écriture du record échoue.
+     */
+    private int writeRecordInSlot(MyRecord record, int recordSize, ByteBuffer buffer, int slot, boolean deplace) throws Exception {
+        int nbSlots = buffer.getInt(DBConfig.pagesize - 8); // Nombre de slots
+        int choisi = (slot == 0) ? findFreeSlot(buffer) : slot;
+
+        // L'espace libre contigu ne compte pas les records supprimés : on les récupère en compactant la page
+        if (getContiguousFreeBytes(buffer) < recordSize + Math.max(0, choisi - nbSlots) * 8) {
+            compactDataPage(buffer);
+            nbSlots = buffer.getInt(DBConfig.pagesize - 8);
+            if (slot == 0)
+                choisi = findFreeSlot(buffer);
+        }
+        int freeStart = buffer.getInt(DBConfig.pagesize - 4); // Position de l'espace libre
+        int recordPos;  // Position du record, ou sa ligne pour une page colonnaire
+        int slotSize;   // Place du record dans la page
+
+        if (storage == StorageLayout.COLUMNAR) {
+            ColumnarLayout layout = getColumnarLayout();
+            recordPos = choisi - 1;   // Une ligne par slot
+            if (recordPos >= layout.getCapacite())
+                throw new Exception("la data Page colonnaire n'a plus de ligne libre");
+            if (layout.writeRecord(record, buffer, recordPos) != recordSize)
+                throw new Exception("échec de l'écriture du record dans le buffer");
+            slotSize = layout.getLargeurLigne() + recordSize;
+        }
+        else {
+            recordPos = freeStart;
+            // Écrire le record dans le buffer et si on écrit pas exactement la taille du record c'est un échec
+            if (writeRecordToBuffer(record, buffer, recordPos) != recordSize)
+                throw new Exception("échec de l'écriture du record dans le buffer");
+            slotSize = recordSize;
+        }
+
+        // Mettre à jour le Slot Directory
+        if (choisi > nbSlots)
+            buffer.putInt(DBConfig.pagesize - 8, choisi); // Ecris le nombre de slots incrémenté
+
+        // récupere la position d'écriture du slotOffset
+        int slotOffset = DBConfig.pagesize - 8 - (choisi * 8);
+        buffer.putInt(slotOffset, deplace ? -recordPos - 1 : recordPos); // Position du record
+        buffer.putInt(slotOffset + 4, slotSize); // Taille du record
+
+        // Actualise l'espace libre
+        buffer.putInt(DBConfig.pagesize - 4, freeStart + recordSize);
+        return choisi;
+    }
+
+    /**
+     * Retrouve la position d'un record à partir de celle écrite dans son slot,
+     * qui est négative pour la copie déplacée d'un record.
+     *
+     * @param pos La position lue dans le slot.
+     * @return La position du record, ou sa ligne pour une page colonnaire.
+     */
+    public static int recordPos(int pos) {
+        return (pos < 0) ? -pos - 1 : pos;
+    }
 
-                    offset = 8; // RAZ l'offset
+    /**
+     * Lit la destination du pointeur laissé dans son slot par un record déplacé.
+     * Le pointeur tient dans le slot : la position donne le numéro global de la page de la copie
+     * (dans l'ordre d'allocation du DiskManager) et la taille, négative, le slot de la copie.
+     * Il n'occupe donc aucune place dans la page.
+     *
+     * @param buffer Le buffer de la data Page d'origine.
+     * @param slotOffset La position du slot.
+     * @return L'identifiant de la copie déplacée.
+     */
+    private static RecordId readForward(ByteBuffer buffer, int slotOffset) {
+        return new RecordId(-buffer.getInt(slotOffset + 4), DiskManager.pageFromNumber(buffer.getInt(slotOffset)));
+    }
+
+    /**
+     * Remplace le contenu d'un slot par un pointeur vers la copie déplacée de son record.
+     *
+     * @param buffer Le buffer de la data Page d'origine.
+     * @param slotOffset La position du slot.
+     * @param cible L'identifiant de la copie déplacée.
+     */
+    private static void writeForward(ByteBuffer buffer, int slotOffset, RecordId cible) {
+        buffer.putInt(slotOffset, DiskManager.pageNumber(cible.pageIdx));
+        buffer.putInt(slotOffset + 4, -cible.slotIdx);
+    }
+
+    /**
+     * Cherche le slot qui recevra le prochain record d'une data Page.
+     *
+     * @param buffer Le buffer de la data Page.
+     * @return Le premier slot d'un record supprimé, ou le slot qui suit le dernier.
+     */
+    private int findFreeSlot(ByteBuffer buffer) {
+        int nbSlots = buffer.getInt(DBConfig.pagesize - 8);
+        for (int i = 1; i <= nbSlots; i++) {
+            if (buffer.getInt(DBConfig.pagesize - 8 - (i * 8) + 4) == 0)
+                return i;
+        }
+        return nbSlots + 1;
+    }
+
+    /**
+     * Compacte une data Page : les records restants sont recopiés les uns à la suite des autres,
+     * ce qui rassemble la place des records supprimés à la fin de l'espace libre,
+     * et les slots supprimés en fin de slot directory sont retirés.
+     * Les autres slots gardent leur numéro, les RecordId restent donc valables.
+     *
+     * @param buffer Le buffer de la data Page.
+     */
+    private void compactDataPage(ByteBuffer buffer) {
+        // Retire les slots supprimés en fin de slot directory
+        int nbSlots = buffer.getInt(DBConfig.pagesize - 8);
+        while (nbSlots > 0 && buffer.getInt(DBConfig.pagesize - 8 - (nbSlots * 8) + 4) == 0)
+            nbSlots--;
+        buffer.putInt(DBConfig.pagesize - 8, nbSlots);
+
+        if (storage == StorageLayout.COLUMNAR) {
+            // Les lignes restent en place, seules les chaînes du tas sont déplacées
+            ArrayList<Integer> lignes = new ArrayList<>();
+            for (int i = 1; i <= nbSlots; i++) {
+                int slotOffset = DBConfig.pagesize - 8 - (i * 8);
+                if (buffer.getInt(slotOffset + 4) > 0)
+                    lignes.add(recordPos(buffer.getInt(slotOffset)));
+            }
+            getColumnarLayout().compactHeap(buffer, lignes);
+            return;
+        }
+
+        // Recopie les records restants dans un tampon, l'ancienne page restant lisible pendant la copie
+        byte[] copie = new byte[buffer.getInt(DBConfig.pagesize - 4)];
+        ByteBuffer records = ByteBuffer.wrap(copie);
+        int pos = 0;
+        for (int i = 1; i <= nbSlots; i++) {
+            int slotOffset = DBConfig.pagesize - 8 - (i * 8);
+            int recordSize = buffer.getInt(slotOffset + 4);
+            if (recordSize <= 0)
+                continue;   // Slot libre, ou pointeur d'un record déplacé
+
+            int lu = buffer.getInt(slotOffset);
+            int ancienne = recordPos(lu);
+            buffer.duplicate().position(ancienne).get(copie, pos, recordSize);
+            // L'offset directory contient des positions absolues qui suivent le record
+            for (int k = 0; k <= getNbAttribut(); k++)
+                records.putInt(pos + k * 4, records.getInt(pos + k * 4) - ancienne + pos);
+            buffer.putInt(slotOffset, (lu < 0) ? -pos - 1 : pos);
+            pos += recordSize;
+        }
+        buffer.duplicate().position(0).put(copie, 0, pos);
+        buffer.putInt(DBConfig.pagesize - 4, pos);
+    }
+
+    /**
+     * Supprime un record de sa data Page : son slot est marqué libre (taille 0) et sa place
+     * est rendue à l'entrée de la page dans sa header Page et dans la carte de l'espace libre.
+     * Si le record a été déplacé par une mise à jour, sa copie est supprimée avec son pointeur.
+     *
+     * @param rid L'identifiant du record.
+     * @return true si le record existait.
+     * @throws Exception Si la data Page ou sa header Page ne peut pas être chargée.
+     */
+    public boolean DeleteRecord(RecordId rid) throws Exception {
+        FreeSpaceMap.Entry entry = getFreeSpaceMap().get(rid.pageIdx);
+        if (entry == null)
+            throw new IllegalArgumentException("La page " + rid.pageIdx + " n'appartient pas à la relation " + relationName);
+
+        ByteBuffer buffer = bm.getPage(rid.pageIdx);
+        RecordId copie = null;  // Copie déplacée du record, s'il en a une
+        if (rid.slotIdx >= 1 && rid.slotIdx <= buffer.getInt(DBConfig.pagesize - 8)) {
+            int slotOffset = DBConfig.pagesize - 8 - (rid.slotIdx * 8);
+            if (buffer.getInt(slotOffset + 4) < 0)
+                copie = readForward(buffer, slotOffset);
+        }
+        boolean supprime = rid.slotIdx >= 1 && rid.slotIdx <= buffer.getInt(DBConfig.pagesize - 8)
+                && deleteInDataPage(buffer, rid.slotIdx);
+        if (!supprime) {
+            bm.freePage(rid.pageIdx, false);
+            return false;
+        }
+        closeDeletePage(entry, buffer);
+
+        if (copie != null) {
+            buffer = bm.getPage(copie.pageIdx);
+            deleteInDataPage(buffer, copie.slotIdx);
+            closeDeletePage(fsm.get(copie.pageIdx), buffer);
+        }
+        return true;
+    }
+
+    /**
+     * Supprime les records qui vérifient toutes les conditions (DELETE FROM ... WHERE).
+     * Chaque data Page est parcourue une fois ; les conditions sont évaluées sur une vue du record,
+     * et seules les pages qui perdent des records sont réécrites.
+     * Un record déplacé est évalué à travers son pointeur, une fois sa page d'origine parcourue.
+     *
+     * @param conditions Les conditions sur les colonnes de la relation, toutes les lignes si la liste est vide.
+     * @param supprimes Reçoit une copie et l'identifiant de chaque record supprimé (pour les index), ou null.
+     * @return Le nombre de records supprimés.
+     * @throws Exception Si une page ne peut pas être chargée ou une condition évaluée.
+     */
+    public int DeleteRecords(List<Condition> conditions, List<Pair<MyRecord, RecordId>> supprimes) throws Exception {
+        FreeSpaceMap carte = getFreeSpaceMap();
+        int total = 0;
+
+        for (PageId id : getDataPages()) {
+            ByteBuffer buffer = bm.getPage(id);
+            int nbSupprimes = 0;
+            ArrayList<RecordId> deplaces = new ArrayList<>();   // Records de la page déplacés dans une autre
+            try {
+                RecordView view = new RecordView(this, buffer);
+                int nbSlots = buffer.getInt(DBConfig.pagesize - 8);
+                for (int i = 1; i <= nbSlots; i++) {
+                    int slotOffset = DBConfig.pagesize - 8 - (i * 8);
+                    int size = buffer.getInt(slotOffset + 4);
+                    if (size < 0)
+                        deplaces.add(new RecordId(i, id));
+                    // Les copies déplacées sont traitées depuis leur page d'origine
+                    if (size <= 0 || buffer.getInt(slotOffset) < 0)
+                        continue;
+
+                    view.moveTo(buffer.getInt(slotOffset));
+                    if (!satisfies(conditions, view))
+                        continue;
+
+                    if (supprimes != null)
+                        supprimes.add(new Pair<>(view.toRecord(), new RecordId(i, id)));
+                    deleteInDataPage(buffer, i);
+                    nbSupprimes++;
                 }
+            } finally {
+                // La page n'est réécrite que si elle a perdu des records, même si une condition a échoué
+                if (nbSupprimes == 0)
+                    bm.freePage(id, false);
+                else
+                    closeDeletePage(carte.get(id), buffer);
             }
-            // Si aucune data page n'a suffisamment d'espace, en ajouter une nouvelle
-            if (dataPageId == null) {
 
-                // Met de coter l'ancienne derniere header Page
-                PageId tmp = new PageId(
-                    LastHeaderPageId.FileIdx,
-                    LastHeaderPageId.PageIdx
-                );
-                // Ajoute une nouvelle data page APRES la dernière header Page !
-                dataPageId = addDataPage();
-                // Si on a une nouvelle header Page
-                if (! tmp.equals(LastHeaderPageId)) {
-
-                    bm.freePage(tmp, false);  // Libère l'ancienne header Page
-                    currentPage = LastHeaderPageId; // Met a jour current
-                    buffer = bm.getPage(currentPage);  // Charge la dernière header Page
-                    offset = 8; // RAZ l'offset
+            for (RecordId rid : deplaces) {
+                MyRecord record = getMovedRecordIf(rid, conditions);
+                if (record == null)
+                    continue;
+                if (supprimes != null)
+                    supprimes.add(new Pair<>(record, rid));
+                DeleteRecord(rid);
+                nbSupprimes++;
+            }
+            total += nbSupprimes;
+        }
+        return total;
+    }
+
+    /**
+     * Vérifie qu'un record satisfait toutes les conditions.
+     *
+     * @param conditions Les conditions sur les colonnes de la relation.
+     * @param record Le record ou une vue sur le record.
+     * @return true si toutes les conditions sont vraies (ou s'il n'y en a pas).
+     * @throws Exception Si une condition ne peut pas être évaluée.
+     */
+    private static boolean satisfies(List<Condition> conditions, IRecord record) throws Exception {
+        for (int c = 0; c < conditions.size(); c++) {
+            if (!conditions.get(c).evaluate(record))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lit un record déplacé à travers son pointeur s'il satisfait les conditions.
+     *
+     * @param rid L'identifiant du record dans sa page d'origine (celle du pointeur).
+     * @param conditions Les conditions sur les colonnes de la relation.
+     * @return Une copie du record, ou null s'il ne satisfait pas les conditions.
+     * @throws Exception Si une page ne peut pas être chargée.
+     */
+    private MyRecord getMovedRecordIf(RecordId rid, List<Condition> conditions) throws Exception {
+        ByteBuffer buffer = bm.getPage(rid.pageIdx);
+        RecordId copie;
+        try {
+            copie = readForward(buffer, DBConfig.pagesize - 8 - (rid.slotIdx * 8));
+        } finally {
+            bm.freePage(rid.pageIdx, false);
+        }
+
+        buffer = bm.getPage(copie.pageIdx);
+        try {
+            RecordView view = new RecordView(this, buffer);
+            view.moveTo(recordPos(buffer.getInt(DBConfig.pagesize - 8 - (copie.slotIdx * 8))));
+            return satisfies(conditions, view) ? view.toRecord() : null;
+        } finally {
+            bm.freePage(copie.pageIdx, false);
+        }
+    }
+
+    /**
+     * Marque libre le slot d'un record ou d'un pointeur.
+     *
+     * @param buffer Le buffer de la data Page.
+     * @param slot Le numéro du slot.
+     * @return true si le slot contenait un record.
+     */
+    private boolean deleteInDataPage(ByteBuffer buffer, int slot) {
+        int slotOffset = DBConfig.pagesize - 8 - (slot * 8);
+        if (buffer.getInt(slotOffset + 4) == 0)
+            return false;
+        buffer.putInt(slotOffset + 4, 0);
+        return true;
+    }
+
+    /**
+     * Remplace un record par une nouvelle version, en gardant son RecordId.
+     * Si la nouvelle version tient à la place de l'ancienne, le record est réécrit dans son slot ;
+     * sinon il est réécrit ailleurs dans la même page si elle a assez de place (la page est compactée au besoin).
+     * En dernier recours il est déplacé dans une autre page et son slot d'origine reçoit un pointeur vers la copie :
+     * les RecordId gardés par les index restent valables, et un record déjà déplacé ne l'est qu'une fois
+     * de plus (le pointeur est mis à jour, il n'y a jamais de chaîne de pointeurs).
+     *
+     * @param rid L'identifiant du record.
+     * @param record La nouvelle version du record.
+     * @return true si le record existait.
+     * @throws IllegalArgumentException Si la nouvelle version ne tient dans aucune page.
+     * @throws Exception Si une page ne peut pas être chargée ou écrite.
+     */
+    public boolean UpdateRecord(RecordId rid, MyRecord record) throws Exception {
+        int recordSize = getRecordSize(record);
+        checkRecordSize(recordSize);
+        FreeSpaceMap.Entry entry = getFreeSpaceMap().get(rid.pageIdx);
+        if (entry == null)
+            throw new IllegalArgumentException("La page " + rid.pageIdx + " n'appartient pas à la relation " + relationName);
+
+        ByteBuffer buffer = bm.getPage(rid.pageIdx);
+        int slotOffset = DBConfig.pagesize - 8 - (rid.slotIdx * 8);
+        if (rid.slotIdx < 1 || rid.slotIdx > buffer.getInt(DBConfig.pagesize - 8) || buffer.getInt(slotOffset + 4) == 0) {
+            bm.freePage(rid.pageIdx, false);
+            return false;
+        }
+
+        // Record déplacé : la mise à jour se fait dans la page de la copie
+        if (buffer.getInt(slotOffset + 4) < 0) {
+            RecordId copie = readForward(buffer, slotOffset);
+            bm.freePage(rid.pageIdx, false);
+
+            ByteBuffer page = bm.getPage(copie.pageIdx);
+            if (updateInDataPage(page, copie.slotIdx, record, recordSize)) {
+                widenZone(copie.pageIdx, record);
+                closeDataPage(fsm.get(copie.pageIdx), getFreeBytes(page));
+                return true;
+            }
+            bm.freePage(copie.pageIdx, false);
+
+            // La copie est déplacée à son tour, puis le pointeur est redirigé
+            RecordId nouvelle = insertMovedRecord(record, recordSize);
+            page = bm.getPage(copie.pageIdx);
+            deleteInDataPage(page, copie.slotIdx);
+            closeDeletePage(fsm.get(copie.pageIdx), page);
+
+            buffer = bm.getPage(rid.pageIdx);
+            writeForward(buffer, slotOffset, nouvelle);
+            bm.freePage(rid.pageIdx, true);
+            return true;
+        }
+
+        try {
+            // Sinon le record est déplacé et son slot reçoit le pointeur vers la copie
+            if (updateInDataPage(buffer, rid.slotIdx, record, recordSize))
+                widenZone(rid.pageIdx, record);
+            else
+                writeForward(buffer, slotOffset, insertMovedRecord(record, recordSize));
+        } catch (Exception e) {
+            bm.freePage(rid.pageIdx, false);
+            throw e;
+        }
+        closeDataPage(entry, getFreeBytes(buffer));
+        return true;
+    }
+
+    /**
+     * Met à jour les records qui vérifient toutes les conditions (UPDATE ... SET ... WHERE).
+     * Chaque data Page est parcourue une fois : les records dont la nouvelle version tient dans la page
+     * y sont réécrits pendant le parcours, les autres sont déplacés par UpdateRecord une fois la page libérée.
+     * Les copies déplacées sont ignorées par le parcours, un record n'est donc jamais mis à jour deux fois.
+     *
+     * @param conditions Les conditions sur les colonnes de la relation, toutes les lignes si la liste est vide.
+     * @param valeurs La nouvelle valeur de chaque colonne modifiée, par index de colonne.
+     * @param anciens Reçoit l'ancienne version et l'identifiant de chaque record modifié (pour les index), ou null.
+     * @return Le nombre de records modifiés.
+     * @throws Exception Si une page ne peut pas être chargée ou une condition évaluée.
+     */
+    public int UpdateRecords(List<Condition> conditions, Map<Integer, Object> valeurs, List<Pair<MyRecord, RecordId>> anciens) throws Exception {
+        FreeSpaceMap carte = getFreeSpaceMap();
+        int total = 0;
+
+        for (PageId id : getDataPages()) {
+            ByteBuffer buffer = bm.getPage(id);
+            boolean modifiee = false;
+            ArrayList<Pair<MyRecord, RecordId>> aDeplacer = new ArrayList<>(); // Nouvelles versions qui ne tiennent pas dans la page
+            ArrayList<RecordId> deplaces = new ArrayList<>();   // Records de la page déjà déplacés dans une autre
+            try {
+                RecordView view = new RecordView(this, buffer);
+                int nbSlots = buffer.getInt(DBConfig.pagesize - 8);
+                for (int i = 1; i <= nbSlots; i++) {
+                    int slotOffset = DBConfig.pagesize - 8 - (i * 8);
+                    int size = buffer.getInt(slotOffset + 4);
+                    if (size < 0)
+                        deplaces.add(new RecordId(i, id));
+                    if (size <= 0 || buffer.getInt(slotOffset) < 0)
+                        continue;
+
+                    view.moveTo(buffer.getInt(slotOffset));
+                    if (!satisfies(conditions, view))
+                        continue;
+
+                    MyRecord ancien = view.toRecord();
+                    MyRecord nouveau = withValues(ancien, valeurs);
+                    int recordSize = getRecordSize(nouveau);
+                    checkRecordSize(recordSize);
+                    if (anciens != null)
+                        anciens.add(new Pair<>(ancien, new RecordId(i, id)));
+                    if (updateInDataPage(buffer, i, nouveau, recordSize)) {
+                        widenZone(id, nouveau);
+                        modifiee = true;
+                    }
+                    else
+                        aDeplacer.add(new Pair<>(nouveau, new RecordId(i, id)));
+                    total++;
                 }
+            } finally {
+                if (modifiee)
+                    closeDataPage(carte.get(id), getFreeBytes(buffer));
+                else
+                    bm.freePage(id, false);
             }
-            // 'Buffer' contient la header Page dans laquelle on a la data Page qui va contenir le tuple
-            // 'offset' contient la position de l'espace libre de la data Page qu'on utilise
-            // 'currentPage' contient l'@ de la header Page
-            // 'dataPageId' contient l'@ de la data Page
-
-            // 1. Modifie la la header Page dans laquel la data Page choisie est
-            // Récupère le nb d'octets libre auquel on enlève l'espace du record
-            int freeSpace = buffer.getInt(offset) - (recordSize+8);
-            buffer.putInt(offset, freeSpace);
-
-            // Libere la header Page dans laquelle on va écrire
-            bm.freePage(currentPage, true);
-            
-            // 2. Modifie la data Page
-            // Charge la data Page en mémoir
-            buffer = bm.getPage(dataPageId);
-            
-            // Insére le record dans la page sélectionnée
-            int recordPos = buffer.getInt(DBConfig.pagesize - 4); // Position de l'espace libre
 
-            int writeSize = writeRecordToBuffer(record, buffer, recordPos);
+            for (Pair<MyRecord, RecordId> maj : aDeplacer)
+                UpdateRecord(maj.getSecond(), maj.getFirst());
+            for (RecordId rid : deplaces) {
+                MyRecord ancien = getMovedRecordIf(rid, conditions);
+                if (ancien == null)
+                    continue;
+                if (anciens != null)
+                    anciens.add(new Pair<>(ancien, rid));
+                UpdateRecord(rid, withValues(ancien, valeurs));
+                total++;
+            }
+        }
+        return total;
+    }
 
-            // Écrire le record dans le buffer et si on écrit pas exactement la taille du record c'est un échec
-            if (writeSize != recordSize)
+    /**
+     * Construit la nouvelle version d'un record.
+     *
+     * @param ancien Le record à modifier, qui n'est pas changé.
+     * @param valeurs La nouvelle valeur de chaque colonne modifiée, par index de colonne.
+     * @return Une copie du record avec les nouvelles valeurs.
+     */
+    private MyRecord withValues(MyRecord ancien, Map<Integer, Object> valeurs) {
+        MyRecord nouveau = new MyRecord();
+        for (int i = 0; i < ancien.size(); i++)
+            nouveau.add(valeurs.containsKey(i) ? valeurs.get(i) : ancien.getValue(i), getType(i));
+        return nouveau;
+    }
+
+    /**
+     * Réécrit un record dans sa data Page, sous le même slot.
+     * Pour une relation ROW, une nouvelle version qui n'est pas plus grande que l'ancienne est écrite à sa place ;
+     * sinon la place de l'ancienne version est libérée et le record est réécrit dans l'espace libre de la page.
+     * Si la page n'a pas assez de place, elle n'est pas modifiée.
+     *
+     * @param buffer Le buffer de la data Page.
+     * @param slot Le slot du record (ou de sa copie déplacée, qui le reste).
+     * @param record La nouvelle version du record.
+     * @param recordSize La place du record, calculée par getRecordSize.
+     * @return true si le record a été réécrit, false s'il doit être déplacé dans une autre page.
+     * @throws Exception Si l'écriture du record échoue.
+     */
+    private boolean updateInDataPage(ByteBuffer buffer, int slot, MyRecord record, int recordSize) throws Exception {
+        int slotOffset = DBConfig.pagesize - 8 - (slot * 8);
+        int lu = buffer.getInt(slotOffset);
+        int ancienneTaille = buffer.getInt(slotOffset + 4);
+
+        if (storage == StorageLayout.ROW && recordSize <= ancienneTaille) {
+            if (writeRecordToBuffer(record, buffer, recordPos(lu)) != recordSize)
                 throw new Exception("échec de l'écriture du record dans le buffer");
+            buffer.putInt(slotOffset + 4, recordSize);  // La fin de l'ancienne version est récupérée au compactage
+            return true;
+        }
 
-            // Si l'écriture à marché
-            // Mettre à jour le Slot Directory
-            int nbSlots = buffer.getInt(DBConfig.pagesize - 8); // Nombre de slots
-            nbSlots++;
-            buffer.putInt(DBConfig.pagesize - 8, nbSlots); // Ecris le nombre de slots incrémenté
+        // Pour une page colonnaire, la ligne du slot est réécrite et les chaînes vont dans le tas
+        buffer.putInt(slotOffset + 4, 0);
+        if (getFreeBytes(buffer) < recordSize) {
+            buffer.putInt(slotOffset + 4, ancienneTaille);
+            return false;
+        }
+        writeRecordInSlot(record, recordSize, buffer, slot, lu < 0);
+        return true;
+    }
 
-            // récupere la position d'écriture du slotOffset
-            int slotOffset = DBConfig.pagesize - 8 - (nbSlots * 8);
+    /**
+     * Insère la copie déplacée d'un record dans une data Page qui a la place de la recevoir.
+     *
+     * @param record Le record déplacé.
+     * @param recordSize La place du record, calculée par getRecordSize.
+     * @return L'identifiant de la copie.
+     * @throws Exception Si la copie ne peut pas être écrite.
+     */
+    private RecordId insertMovedRecord(MyRecord record, int recordSize) throws Exception {
+        FreeSpaceMap.Entry entry = getFreeSpaceMap().find(recordSize + 8);
+        if (entry == null)
+            entry = fsm.get(addDataPage());
 
-            buffer.putInt(slotOffset, recordPos); // Position du record
-            buffer.putInt(slotOffset + 4, recordSize); // Taille du record
+        ByteBuffer buffer = bm.getPage(entry.getDataPageId());
+        int slot;
+        try {
+            slot = writeRecordInSlot(record, recordSize, buffer, 0, true);
+            widenZone(entry.getDataPageId(), record);
+        } catch (Exception e) {
+            bm.freePage(entry.getDataPageId(), false);
+            throw e;
+        }
+        closeDataPage(entry, getFreeBytes(buffer));
+        return new RecordId(slot, entry.getDataPageId());
+    }
 
-            // Actualise l'espace libre et le nombre de slots
-            buffer.putInt(DBConfig.pagesize - 4, recordPos + recordSize);
-            // Libére la page après modification
-            bm.freePage(dataPageId, true); // True car la page a été modifiée
-           
-            bm.freePage(getHeaderPageId(), false);
-            // Retourne le RecordId du record composé d'un Page ID et l'index du slot
-            return new RecordId(nbSlots, dataPageId);
+    /**
+     * Remplace les destinations des pointeurs de records déplacés d'une image de data Page.
+     * Utilisé par la copie de table, dont le fichier désigne les pages par leur rang dans le fichier et non par leur PageId.
+     *
+     * @param image L'image de la data Page.
+     * @param remplacement Donne la nouvelle page de chaque destination.
+     */
+    public void remapForwards(ByteBuffer image, UnaryOperator<PageId> remplacement) {
+        int nbSlots = image.getInt(DBConfig.pagesize - 8);
+        for (int i = 1; i <= nbSlots; i++) {
+            int slotOffset = DBConfig.pagesize - 8 - (i * 8);
+            if (image.getInt(slotOffset + 4) >= 0)
+                continue;
+            RecordId cible = readForward(image, slotOffset);
+            writeForward(image, slotOffset, new RecordId(cible.slotIdx, remplacement.apply(cible.pageIdx)));
+        }
+    }
 
-        } catch(Exception e) {
-            e.printStackTrace();
-            System.out.println("README: "+e.getMessage());
-            // Libere les pages de travail en cas d'erreur à faux pour ne pas trop propager d'erreur
-            bm.freePage(dataPageId, false);
-            bm.freePage(LastHeaderPageId, false);
+    /**
+     * Termine les suppressions dans une data Page : la page est compactée si les records supprimés
+     * en occupent une trop grande part, puis son espace libre est mis à jour et elle est libérée.
+     *
+     * @param entry L'entrée de la data Page.
+     * @param buffer Le buffer de la data Page, chargé par l'appelant.
+     * @throws Exception Si la header Page ne peut pas être chargée.
+     */
+    private void closeDeletePage(FreeSpaceMap.Entry entry, ByteBuffer buffer) throws Exception {
+        if (getFreeBytes(buffer) - getContiguousFreeBytes(buffer) > DBConfig.pagesize * COMPACTION_THRESHOLD)
+            compactDataPage(buffer);
+        closeDataPage(entry, getFreeBytes(buffer));
+    }
+
+    /**
+     * Ajoute un record à une image de data Page construite hors du BufferManager (chargement parallèle).
+     * L'image a le même format qu'une data Page : records depuis le début, slot directory à la fin.
+     * Cette méthode ne touche à aucun état partagé et peut être appelée depuis plusieurs threads.
+     *
+     * @param record Le record à ajouter.
+     * @param image L'image de la data Page, de la taille d'une page.
+     * @return Le numéro du slot du record, ou 0 si l'image n'a plus assez de place.
+     * @throws Exception Si l'écriture du record échoue.
+     */
+    public int writeRecordInPageImage(MyRecord record, ByteBuffer image) throws Exception {
+        // Calculer la place du record dans la page
+        int recordSize = getRecordSize(record);
+
+        // Un record plus grand qu'une data Page vide ne pourra jamais être inséré
+        checkRecordSize(recordSize);
+
+        if (getFreeBytes(image) < (recordSize + 8))
+            return 0;
+
+        return writeRecordInDataPage(record, recordSize, image);
+    }
+
+    /**
+     * Ajoute à la relation une data Page dont le contenu a été construit à l'avance.
+     * La page est allouée comme par addDataPage, son contenu est copié dans son buffer
+     * et son entrée de header Page reçoit l'espace libre de l'image.
+     *
+     * @param image L'image de la data Page.
+     * @return L'identifiant de la nouvelle data Page.
+     * @throws Exception Si la page ne peut pas être allouée ou écrite.
+     */
+    public PageId appendDataPage(ByteBuffer image) throws Exception {
+        FreeSpaceMap carte = getFreeSpaceMap();
+        PageId id = addDataPage();
+        FreeSpaceMap.Entry entry = carte.get(id);
+
+        // Copie l'image dans le buffer de la nouvelle data Page
+        ByteBuffer buffer = bm.getPage(id);
+        buffer.duplicate().clear().put(image.duplicate().clear().limit(DBConfig.pagesize));    // Copie sur des vues, sans toucher aux positions
+        if (zoneMap != null)
+            zoneDataPage(id, buffer);
+
+        // Met à jour l'espace libre de la page dans sa header Page et dans la carte
+        int freeSpace = getFreeBytes(image);
+        closeDataPage(entry, freeSpace);
+
+        return id;
+    }
+
+    /**
+     * Référence dans les header Pages des data Pages déjà écrites sur le disque (chargement par COPY).
+     * Les entrées sont ajoutées à la suite de la dernière header Page ; les header Pages supplémentaires
+     * sont construites en mémoire et écrites directement dans un extent, sans passer par le BufferManager.
+     *
+     * @param ids Les identifiants des data Pages, dans l'ordre.
+     * @param freeBytes L'espace libre de chaque data Page.
+     * @throws Exception Si une header Page ne peut pas être lue ou écrite.
+     */
+    public void appendDataPages(List<PageId> ids, List<Integer> freeBytes) throws Exception {
+        FreeSpaceMap carte = getFreeSpaceMap();    // Garantit aussi que LastHeaderPageId est à jour
+        zoneMap = null; // Les pages chargées ne sont pas lues : la carte des zones sera reconstruite au besoin
+        int maxEntriesFirstHeader = (DBConfig.pagesize - 4 - 8) / 12; // Premières 4 octets pour le compteur + 8 pour l'@
+        int maxEntriesOtherHeader = (DBConfig.pagesize - 8) / 12; // 8 octets pour le chaînage
+
+        ByteBuffer first = bm.getPage(headerPageId, BufferManager.KEEP);
+        int nbDataPage = first.getInt(0);
+        int total = nbDataPage + ids.size();
+
+        // Nombre de header Pages nécessaires avant et après l'ajout
+        int headersAvant = nbHeaderPages(nbDataPage, maxEntriesFirstHeader, maxEntriesOtherHeader);
+        int headersApres = nbHeaderPages(total, maxEntriesFirstHeader, maxEntriesOtherHeader);
+        ArrayList<PageId> nouvelles = dskm.AllocExtent(headersApres - headersAvant);
+        ArrayList<ByteBuffer> images = new ArrayList<>();
+        for (int h = 0; h < nouvelles.size(); h++) {
+            ByteBuffer image = ByteBuffer.allocate(DBConfig.pagesize);
+            // Chaîne chaque nouvelle header Page vers la suivante, la dernière n'a pas de suivante
+            if (h + 1 < nouvelles.size()) {
+                image.putInt(DBConfig.pagesize - 8, nouvelles.get(h + 1).FileIdx);
+                image.putInt(DBConfig.pagesize - 4, nouvelles.get(h + 1).PageIdx);
+            }
+            else
+                image.putInt(DBConfig.pagesize - 4, -1);
+            images.add(image);
         }
-        return null;    // Si on rencontre un problème retourne null
+
+        PageId last = LastHeaderPageId;
+        ByteBuffer lastBuffer = last.equals(headerPageId) ? first : bm.getPage(last, BufferManager.KEEP);
+        try {
+            for (int i = 0; i < ids.size(); i++) {
+                int j = nbDataPage + i; // Rang de l'entrée dans le répertoire
+                PageId pageHeader;
+                ByteBuffer buffer;
+                int offset;
+
+                if (j < maxEntriesFirstHeader) {
+                    pageHeader = headerPageId;
+                    buffer = first;
+                    offset = 4 + (j * 12);
+                }
+                else {
+                    int rang = (j - maxEntriesFirstHeader) / maxEntriesOtherHeader + 1;    // Rang de la header Page
+                    offset = ((j - maxEntriesFirstHeader) % maxEntriesOtherHeader) * 12;
+                    // Soit la dernière header Page existante, soit une nouvelle
+                    if (rang < headersAvant) {
+                        pageHeader = last;
+                        buffer = lastBuffer;
+                    }
+                    else {
+                        pageHeader = nouvelles.get(rang - headersAvant);
+                        buffer = images.get(rang - headersAvant);
+                    }
+                }
+                buffer.putInt(offset, ids.get(i).FileIdx);
+                buffer.putInt(offset + 4, ids.get(i).PageIdx);
+                buffer.putInt(offset + 8, freeBytes.get(i));
+                carte.add(ids.get(i), pageHeader, offset + 8, freeBytes.get(i));
+            }
+            // Écrit les nouvelles header Pages puis les chaîne après la dernière existante
+            dskm.WritePages(nouvelles, images);
+            if (! nouvelles.isEmpty()) {
+                lastBuffer.putInt(DBConfig.pagesize - 8, nouvelles.get(0).FileIdx);
+                lastBuffer.putInt(DBConfig.pagesize - 4, nouvelles.get(0).PageIdx);
+                LastHeaderPageId = nouvelles.get(nouvelles.size() - 1);
+            }
+            first.putInt(0, total); // Mise à jour du nombre de data Pages
+        } finally {
+            if (! last.equals(headerPageId))
+                bm.freePage(last, true);
+            bm.freePage(headerPageId, true);
+        }
+    }
+
+    /**
+     * Réorganise les pages de la relation (VACUUM).
+     * Les records sont recopiés dans l'ordre des data Pages, les uns à la suite des autres et sans trou,
+     * en réutilisant les premières data Pages : une page n'est réécrite qu'une fois tous ses records lus,
+     * ce qui est toujours le cas puisque le remplissage séquentiel n'utilise jamais plus de pages que l'original.
+     * Les records déplacés par une mise à jour retrouvent une place ordinaire et leurs pointeurs disparaissent.
+     * Le répertoire est ensuite réécrit de façon dense, et les data Pages et header Pages
+     * devenues inutiles sont rendues au DiskManager.
+     * Les RecordId changent : les index de la relation doivent être reconstruits.
+     *
+     * @return Le nombre de pages rendues au DiskManager.
+     * @throws Exception Si une page ne peut pas être lue ou écrite.
+     */
+    public int Vacuum() throws Exception {
+        List<PageId> pages = getDataPages();
+        List<PageId> headers = getHeaderPages();
+        ArrayList<Integer> freeBytes = new ArrayList<>();   // Espace libre de chaque page réécrite
+        ByteBuffer image = newPageImage();
+
+        for (int j = 0; j < pages.size(); j++) {
+            // Les records de la page sont copiés avant qu'elle puisse être réécrite
+            ArrayList<MyRecord> records = new ArrayList<>();
+            ByteBuffer buffer = bm.getPage(pages.get(j));
+            try {
+                int nbSlots = buffer.getInt(DBConfig.pagesize - 8);
+                for (int i = 1; i <= nbSlots; i++) {
+                    int slotOffset = DBConfig.pagesize - 8 - (i * 8);
+                    if (buffer.getInt(slotOffset + 4) <= 0)
+                        continue;   // Slot libre, ou pointeur : le record est lu là où se trouve sa copie
+                    MyRecord record = new MyRecord();
+                    readRecordFromBuffer(record, buffer, recordPos(buffer.getInt(slotOffset)));
+                    records.add(record);
+                }
+            } finally {
+                bm.freePage(pages.get(j), false);
+            }
+
+            for (MyRecord record : records) {
+                if (writeRecordInPageImage(record, image) != 0)
+                    continue;
+                // L'image est pleine : elle remplace la première page qui n'a pas encore été réécrite
+                if (freeBytes.size() > j)
+                    throw new IllegalStateException("La réorganisation de " + relationName + " écraserait une page qui n'a pas été lue");
+                writePageImage(pages.get(freeBytes.size()), image);
+                freeBytes.add(getFreeBytes(image));
+                image = newPageImage();
+                writeRecordInPageImage(record, image);
+            }
+        }
+        if (image.getInt(DBConfig.pagesize - 8) > 0) {
+            writePageImage(pages.get(freeBytes.size()), image);
+            freeBytes.add(getFreeBytes(image));
+        }
+
+        // Réécrit le répertoire avec les seules pages gardées, dans le moins de header Pages possible
+        int maxEntriesFirstHeader = (DBConfig.pagesize - 4 - 8) / 12; // Premières 4 octets pour le compteur + 8 pour l'@
+        int maxEntriesOtherHeader = (DBConfig.pagesize - 8) / 12; // 8 octets pour le chaînage
+        int nbGardees = freeBytes.size();
+        int nbHeaders = nbHeaderPages(nbGardees, maxEntriesFirstHeader, maxEntriesOtherHeader);
+        int j = 0;  // Rang de l'entrée suivante
+        for (int h = 0; h < nbHeaders; h++) {
+            ByteBuffer buffer = bm.getPage(headers.get(h), BufferManager.KEEP);
+            int offset = 0;
+            int fin = maxEntriesOtherHeader;
+            if (h == 0) {
+                buffer.putInt(0, nbGardees);
+                offset = 4;
+                fin = maxEntriesFirstHeader;
+            }
+            for (int k = 0; k < fin && j < nbGardees; k++, j++) {
+                buffer.putInt(offset + k * 12, pages.get(j).FileIdx);
+                buffer.putInt(offset + k * 12 + 4, pages.get(j).PageIdx);
+                buffer.putInt(offset + k * 12 + 8, freeBytes.get(j));
+            }
+            // Chaîne vers la header Page suivante, la dernière n'a pas de suivante
+            if (h + 1 < nbHeaders) {
+                buffer.putInt(DBConfig.pagesize - 8, headers.get(h + 1).FileIdx);
+                buffer.putInt(DBConfig.pagesize - 4, headers.get(h + 1).PageIdx);
+            }
+            else
+                buffer.putInt(DBConfig.pagesize - 4, -1);
+            bm.freePage(headers.get(h), true);
+        }
+        LastHeaderPageId = headers.get(nbHeaders - 1);
+        fsm = null; // Reconstruite au prochain besoin
+        zoneMap = null;
+
+        // Rend les pages devenues inutiles
+        ArrayList<PageId> inutiles = new ArrayList<>(pages.subList(nbGardees, pages.size()));
+        inutiles.addAll(headers.subList(nbHeaders, headers.size()));
+        for (PageId id : inutiles) {
+            bm.discardPage(id);
+            dskm.DeallocPage(id);
+        }
+        return inutiles.size();
+    }
+
+    /**
+     * Copie une image de page dans le buffer d'une data Page.
+     *
+     * @param id L'identifiant de la data Page.
+     * @param image L'image de la page.
+     * @throws Exception Si la page ne peut pas être chargée.
+     */
+    private void writePageImage(PageId id, ByteBuffer image) throws Exception {
+        ByteBuffer buffer = bm.getPage(id);
+        buffer.duplicate().clear().put(image.duplicate().clear().limit(DBConfig.pagesize));
+        bm.freePage(id, true);
+    }
+
+    /**
+     * Récupère les header Pages de la relation, dans l'ordre du chaînage.
+     * Seules sont comptées les header Pages qui contiennent des entrées, comme pour la carte de l'espace libre.
+     *
+     * @return Les identifiants des header Pages, la première en tête.
+     * @throws Exception Si une header Page ne peut pas être chargée.
+     */
+    public List<PageId> getHeaderPages() throws Exception {
+        int maxEntriesFirstHeader = (DBConfig.pagesize - 4 - 8) / 12; // Premières 4 octets pour le compteur + 8 pour l'@
+        int maxEntriesOtherHeader = (DBConfig.pagesize - 8) / 12; // 8 octets pour le chaînage
+        ArrayList<PageId> headers = new ArrayList<>();
+        PageId currentPage = headerPageId;
+        ByteBuffer buffer = bm.getPage(currentPage, BufferManager.KEEP);
+        int nbHeaders = nbHeaderPages(buffer.getInt(0), maxEntriesFirstHeader, maxEntriesOtherHeader);
+
+        try {
+            headers.add(currentPage);
+            while (headers.size() < nbHeaders) {
+                PageId nextPage = new PageId(buffer.getInt(DBConfig.pagesize - 8), buffer.getInt(DBConfig.pagesize - 4));
+                bm.freePage(currentPage, false);
+                currentPage = nextPage;
+                buffer = bm.getPage(currentPage, BufferManager.KEEP);
+                headers.add(currentPage);
+            }
+        } finally {
+            bm.freePage(currentPage, false);
+        }
+        return headers;
+    }
+
+    /**
+     * Crée une relation temporaire pour les records d'un opérateur, par exemple les partitions d'une jointure.
+     * Elle n'est pas enregistrée dans une base de données : ses pages sont allouées par le DiskManager,
+     * passent par le BufferManager comme celles d'une table, et sont rendues par DropPages.
+     * Les records sont écrits au format compact, les chaînes pouvant occuper jusqu'à une page.
+     *
+     * @param nom Le nom de la relation.
+     * @param modele Un record dont les colonnes donnent celles de la relation.
+     * @param dskm Le gestionnaire de disque.
+     * @param bm Le gestionnaire de buffer.
+     * @return La relation temporaire, vide.
+     * @throws Exception Si la header Page ne peut pas être allouée.
+     */
+    public static Relation createTemporary(String nom, IRecord modele, DiskManager dskm, BufferManager bm) throws Exception {
+        ArrayList<Pair<String, Data>> colonnes = new ArrayList<>();
+        for (int i = 0; i < modele.size(); i++) {
+            DataType type = modele.getType(i);
+            Data data = (type == DataType.CHAR || type == DataType.VARCHAR) ? new Data(type, DBConfig.pagesize) : new Data(type);
+            colonnes.add(new Pair<>("C" + i, data));
+        }
+
+        PageId header = dskm.AllocPage();
+        ByteBuffer buffer = bm.getPage(header, BufferManager.KEEP);
+        buffer.putInt(0, 0);    // Une page rendue par un VACUUM n'est pas remise à zéro
+        buffer.putInt(DBConfig.pagesize - 4, -1);
+        bm.freePage(header, true);
+        return new Relation(nom, colonnes, header, dskm, bm, RecordEncoding.COMPACT, StorageLayout.ROW);
+    }
+
+    /**
+     * Rend toutes les pages de la relation, data Pages et header Pages, sans les écrire sur le disque.
+     * La relation ne doit plus être utilisée ensuite.
+     *
+     * @throws Exception Si une page est encore épinglée.
+     */
+    public void DropPages() throws Exception {
+        ArrayList<PageId> pages = new ArrayList<>(getDataPages());
+        pages.addAll(getHeaderPages());
+        for (PageId id : pages) {
+            bm.discardPage(id);
+            dskm.DeallocPage(id);
+        }
+        fsm = null;
+        zoneMap = null;
+    }
+
+    /**
+     * Calcule le nombre de header Pages utilisées pour un nombre de data Pages.
+     *
+     * @param nbDataPage Le nombre de data Pages.
+     * @param maxFirst Le nombre d'entrées de la 1er header Page.
+     * @param maxOther Le nombre d'entrées des autres header Pages.
+     * @return Le nombre de header Pages (au moins 1).
+     */
+    private static int nbHeaderPages(int nbDataPage, int maxFirst, int maxOther) {
+        if (nbDataPage <= maxFirst)
+            return 1;
+        return 1 + (nbDataPage - maxFirst + maxOther - 1) / maxOther;
+    }
+
+    /**
+     * Calcule l'espace libre d'une data Page selon la convention des header Pages :
+     * la taille de la page moins son en-tête, ses records et leurs slots.
+     * La place des records supprimés est comptée comme libre, l'insertion la récupère en compactant la page.
+     *
+     * @param buffer Le buffer de la data Page.
+     * @return Le nombre d'octets libres.
+     */
+    public int getFreeBytes(ByteBuffer buffer) {
+        int nbSlots = buffer.getInt(DBConfig.pagesize - 8);
+        boolean slotLibre = false;  // Vrai si un slot de record supprimé peut être réutilisé
+        int occupe = (storage == StorageLayout.COLUMNAR) ? getColumnarLayout().getDebutTas() : 0;
+        int largeurLigne = (storage == StorageLayout.COLUMNAR) ? getColumnarLayout().getLargeurLigne() : 0;
+
+        for (int i = 1; i <= nbSlots; i++) {
+            int size = buffer.getInt(DBConfig.pagesize - 8 - (i * 8) + 4);
+            if (size > 0)
+                occupe += size - largeurLigne;  // Seules les chaînes d'une ligne colonnaire sont dans le tas
+            else if (size == 0)
+                slotLibre = true;   // Les pointeurs des records déplacés n'occupent que leur slot
+        }
+        // Une page colonnaire dont toutes les lignes sont prises ne peut plus rien recevoir
+        if (storage == StorageLayout.COLUMNAR && !slotLibre && nbSlots >= getColumnarLayout().getCapacite())
+            return 0;
+        return DBConfig.pagesize - 8 - occupe - (nbSlots * 8);
+    }
+
+    /**
+     * Calcule l'espace libre d'une data Page entre la fin de ses records et son slot directory.
+     *
+     * @param buffer Le buffer de la data Page.
+     * @return Le nombre d'octets libres d'un seul tenant.
+     */
+    private int getContiguousFreeBytes(ByteBuffer buffer) {
+        int nbSlots = buffer.getInt(DBConfig.pagesize - 8);
+        int freeStart = buffer.getInt(DBConfig.pagesize - 4);
+        return DBConfig.pagesize - 8 - freeStart - (nbSlots * 8);
+    }
+
+    /**
+     * Estime le nombre de records de la relation en ne lisant qu'une seule data Page.
+     * Les octets occupés de chaque page sont connus par la carte de l'espace libre ; la place prise par un record
+     * (avec son slot) est mesurée sur la première data Page non vide.
+     *
+     * @return Le nombre estimé de records, 0 si la relation est vide.
+     * @throws Exception Si une page ne peut pas être chargée.
+     */
+    public long estimerNbRecords() throws Exception {
+        FreeSpaceMap carte = getFreeSpaceMap();
+        long occupe = 0;    // Octets occupés dans toutes les data Pages
+        PageId echantillon = null;  // Première data Page non vide
+        for (PageId id : getDataPages()) {
+            int octets = getEmptyPageFreeBytes() - carte.get(id).getFreeBytes();
+            occupe += octets;
+            if (echantillon == null && octets > 0)
+                echantillon = id;
+        }
+        if (echantillon == null)
+            return 0;
+
+        int nbRecords = 0;
+        int octets;
+        ByteBuffer buffer = bm.getPage(echantillon);
+        try {
+            int nbSlots = buffer.getInt(DBConfig.pagesize - 8);
+            for (int i = 1; i <= nbSlots; i++)
+                if (buffer.getInt(DBConfig.pagesize - 8 - (i * 8) + 4) > 0)
+                    nbRecords++;
+            octets = getEmptyPageFreeBytes() - getFreeBytes(buffer);
+        } finally {
+            bm.freePage(echantillon, false);
+        }
+        return Math.round((double) occupe * Math.max(1, nbRecords) / Math.max(1, octets));
+    }
+
+    /**
+     * Calcule l'espace libre d'une data Page vide.
+     *
+     * @return Le nombre d'octets libres d'une data Page qui vient d'être ajoutée.
+     */
+    public int getEmptyPageFreeBytes() {
+        if (storage == StorageLayout.COLUMNAR)
+            return DBConfig.pagesize - 8 - getColumnarLayout().getDebutTas();
+        return DBConfig.pagesize - 8;
+    }
+
+    /**
+     * Initialise l'en-tête d'une data Page vide : aucun slot, espace libre au début de la page
+     * (ou au début du tas pour une relation COLUMNAR).
+     *
+     * @param buffer Le buffer de la data Page.
+     */
+    public void initDataPage(ByteBuffer buffer) {
+        int freeStart = (storage == StorageLayout.COLUMNAR) ? getColumnarLayout().getDebutTas() : 0;
+        buffer.putInt(DBConfig.pagesize - 4, freeStart);
+        buffer.putInt(DBConfig.pagesize - 8, 0);
+    }
+
+    /**
+     * Crée une image de data Page vide, construite hors du BufferManager.
+     *
+     * @return L'image initialisée d'une data Page.
+     */
+    public ByteBuffer newPageImage() {
+        ByteBuffer image = ByteBuffer.allocate(DBConfig.pagesize);
+        initDataPage(image);
+        return image;
+    }
+
+    /**
+     * Calcule la place qu'un record occupe dans une data Page, sans son slot :
+     * le record et son offset directory pour une relation ROW, ses chaînes dans le tas pour une relation COLUMNAR
+     * (la ligne dans les minipages est réservée à la création de la page).
+     *
+     * @param record Le record.
+     * @return Le nombre d'octets à trouver dans l'espace libre de la page.
+     */
+    private int getRecordSize(MyRecord record) {
+        if (storage == StorageLayout.COLUMNAR)
+            return getColumnarLayout().heapSize(record);
+        return record.getSizeOctet(this) + ((attribut.size()+1) * 4);   // taille du record + la taille de son l'offset directory
+    }
+
+    /**
+     * Vérifie qu'un record peut tenir dans une data Page vide.
+     *
+     * @param recordSize La place du record, calculée par getRecordSize.
+     * @throws IllegalArgumentException Si le record ne tiendra dans aucune page.
+     */
+    private void checkRecordSize(int recordSize) throws IllegalArgumentException {
+        if ((recordSize + 8) > getEmptyPageFreeBytes())
+            throw new IllegalArgumentException("Le record de "+recordSize+" octets est trop grand pour une page de "+DBConfig.pagesize+" octets");
+    }
+
+    /**
+     * Récupère l'organisation PAX des pages de la relation, calculée au premier appel.
+     *
+     * @return L'organisation des pages colonnaires.
+     */
+    public ColumnarLayout getColumnarLayout() {
+        if (pax == null)
+            pax = new ColumnarLayout(this);
+        return pax;
+    }
+
+    /**
+     * Récupère la carte de l'espace libre de la relation.
+     * Elle est construite au premier appel en parcourant une seule fois le chaînage des header Pages,
+     * ce parcours permet aussi de retrouver la dernière header Page (qui n'est pas sauvegardée).
+     *
+     * @return La carte de l'espace libre.
+     * @throws Exception Si une erreur survient lors de la lecture des header Pages.
+     */
+    public FreeSpaceMap getFreeSpaceMap() throws Exception {
+        if (fsm != null)
+            return fsm;
+
+        FreeSpaceMap carte = new FreeSpaceMap();
+        PageId currentPage = headerPageId;  // Header Page courante
+        ByteBuffer buffer = bm.getPage(currentPage, BufferManager.KEEP);
+        int nbDataPage = buffer.getInt(0);  // Nombre de data Page référencées
+        int offset = 4; // Les entrées de la 1er header Page commencent après le compteur
+
+        try {
+            // Une header Page n'est chaînée que lorsqu'une entrée y a été écrite,
+            // la dernière header Page est donc celle qui contient la dernière entrée
+            while (carte.size() < nbDataPage) {
+                // Si la header Page courante est entièrement lue, passe à la suivante
+                if (offset > DBConfig.pagesize - (8+12)) {
+                    PageId nextPage = new PageId(
+                        buffer.getInt(DBConfig.pagesize - 8),
+                        buffer.getInt(DBConfig.pagesize - 4)
+                    );
+                    bm.freePage(currentPage, false);
+                    currentPage = nextPage;
+                    buffer = bm.getPage(currentPage, BufferManager.KEEP);
+                    offset = 0; // Les autres header Pages n'ont pas de compteur
+                }
+                // Référence la data Page de l'entrée courante
+                PageId dataPageId = new PageId(buffer.getInt(offset), buffer.getInt(offset + 4));
+                carte.add(dataPageId, currentPage, offset + 8, buffer.getInt(offset + 8));
+                offset += 12;
+            }
+        } finally {
+            bm.freePage(currentPage, false);
+        }
+        LastHeaderPageId = currentPage; // Corrige la dernière header Page
+        fsm = carte;
+        return fsm;
+    }
+
+    /**
+     * Récupère la carte des zones de la relation, construite à la première demande en lisant toutes les data Pages.
+     * Elle est ensuite tenue à jour par les insertions et les mises à jour.
+     *
+     * @return La carte des zones.
+     * @throws Exception Si une data Page ne peut pas être chargée.
+     */
+    public ZoneMap getZoneMap() throws Exception {
+        if (zoneMap != null)
+            return zoneMap;
+
+        ZoneMap carte = new ZoneMap(getNbAttribut());
+        zoneMap = carte;
+        try {
+            for (PageId id : getDataPages()) {
+                ByteBuffer buffer = bm.getPage(id);
+                try {
+                    zoneDataPage(id, buffer);
+                } finally {
+                    bm.freePage(id, false);
+                }
+            }
+        } catch (Exception e) {
+            zoneMap = null; // Une carte incomplète ferait sauter des pages utiles
+            throw e;
+        }
+        return carte;
+    }
+
+    /**
+     * Ajoute à la carte des zones les valeurs de tous les records écrits dans une data Page chargée,
+     * copies déplacées comprises puisque les parcours les lisent dans cette page.
+     *
+     * @param id L'identifiant de la data Page.
+     * @param buffer Le buffer de la data Page.
+     */
+    private void zoneDataPage(PageId id, ByteBuffer buffer) {
+        zoneMap.addEmpty(id);
+        int nbSlots = buffer.getInt(DBConfig.pagesize - 8);
+        for (int i = 1; i <= nbSlots; i++) {
+            int slotOffset = DBConfig.pagesize - 8 - (i * 8);
+            if (buffer.getInt(slotOffset + 4) <= 0)
+                continue;   // Slot libre ou pointeur
+            MyRecord record = new MyRecord();
+            readRecordFromBuffer(record, buffer, recordPos(buffer.getInt(slotOffset)));
+            zoneMap.add(id, record);
+        }
+    }
+
+    /**
+     * Élargit la zone d'une data Page à un record qui vient d'y être écrit, si la carte des zones a été construite.
+     *
+     * @param id L'identifiant de la data Page.
+     * @param record Le record écrit.
+     */
+    private void widenZone(PageId id, IRecord record) {
+        if (zoneMap != null)
+            zoneMap.add(id, record);
     }
 
     /**
@@ -568,6 +1838,8 @@ public class Relation {
 
     /**
      * Récupère tous les enregistrements d'une page de données donnée.
+     * Un record déplacé par une mise à jour est lu à travers son pointeur et renvoyé avec le RecordId
+     * de sa page d'origine ; sa copie est ignorée dans la page qui la contient.
      *
      * @param id L'identifiant de la page de données à traiter.
      * @return Une liste d'objets MyRecord représentant les enregistrements trouvés sur la page.
@@ -590,11 +1862,17 @@ public class Relation {
                 int recordPos = pageData.getInt(slotOffset);
                 int recordSize = pageData.getInt(slotOffset + 4);
 
-                // Si la taille est non nulle, cela signifie que le record existe
-                if (recordSize > 0){
-                    records.add(new Pair<MyRecord, RecordId>(new MyRecord(), new RecordId(slotOffset, id)));    // Initialise le tuple
+                // Le record a été déplacé : il est lu dans la page de sa copie
+                if (recordSize < 0)
+                    records.add(new Pair<MyRecord, RecordId>(getRecordInDataPage(readForward(pageData, slotOffset)), new RecordId(i + 1, id)));
+
+                // Si la taille est non nulle, cela signifie que le record existe (une position négative est celle d'une copie)
+                if (recordSize > 0 && recordPos >= 0){
+                    MyRecord rec = new MyRecord();    // Initialise le tuple
                     // Lire le record en utilisant une méthode de lecture depuis le buffer
-                    readRecordFromBuffer(records.get(i).getFirst(), pageData, recordPos);
+                    readRecordFromBuffer(rec, pageData, recordPos);
+                    // Le RecordId contient le numéro du slot (à partir de 1), comme celui renvoyé par InsertRecord
+                    records.add(new Pair<MyRecord, RecordId>(rec, new RecordId(i + 1, id)));
                 }
             }
         } finally {
@@ -607,26 +1885,32 @@ public class Relation {
     
     /**
      * Récupère l'enregistrement d'un emplacement donné
+     * Si le record a été déplacé, il est lu à travers le pointeur laissé dans son slot.
      * 
      * @param rid emplacement de l'enregistrement
      * @return Un object MyRecord représentant l'enregistrement trouvé à l'emplacement
      * @throws Exception Si une erreur se produit lors de la lecture des enregistrements depuis la page.
      */
     public MyRecord getRecordInDataPage(RecordId rid) throws Exception {
+        RecordId copie = null;  // Copie déplacée du record
         try {
             // Charger la page en mémoire
             ByteBuffer pageData = bm.getPage(rid.pageIdx);
+            // Position du slot à partir de son numéro
+            int slotOffset = DBConfig.pagesize - 8 - (rid.slotIdx * 8);
             // Lire la position et la taille du record depuis le Slot Directory
-            int recordPos = pageData.getInt(rid.slotIdx);
-            int recordSize = pageData.getInt(rid.slotIdx + 4);
+            int recordPos = pageData.getInt(slotOffset);
+            int recordSize = pageData.getInt(slotOffset + 4);
 
             // Si la taille est non nulle, cela signifie que le record existe
             if (recordSize > 0){
             	MyRecord rec = new MyRecord();    // Initialise le tuple
             	// Lire le record en utilisant une méthode de lecture depuis le buffer
-                readRecordFromBuffer(rec, pageData, recordPos);
+                readRecordFromBuffer(rec, pageData, recordPos(recordPos));
                 // Retourner le record
                 return rec;
+            }else if (recordSize < 0) {
+                copie = readForward(pageData, slotOffset);
             }else {
             	return null;
             }
@@ -634,6 +1918,7 @@ public class Relation {
             // Libérer la page après la lecture
             bm.freePage(rid.pageIdx, false); // False car pas de modification
         }
+        return getRecordInDataPage(copie);
     }
 
     /**
@@ -666,6 +1951,53 @@ public class Relation {
         return attribut.get(index).getSecond().getLength();
     }
 
+    /**
+     * Récupère le format d'écriture des records de la relation.
+     * 
+     * @return Le format des records.
+     */
+    public RecordEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Récupère le dictionnaire d'une colonne.
+     *
+     * @param index L'index de la colonne.
+     * @return Le dictionnaire de la colonne, ou null si ses valeurs sont écrites telles quelles.
+     */
+    public StringDictionary getDictionary(int index) {
+        return dictionnaires.get(index);
+    }
+
+    /**
+     * Encode une colonne CHAR ou VARCHAR avec un dictionnaire : les data Pages ne contiendront que les codes de ses valeurs.
+     * Le dictionnaire doit être choisi avant la première insertion (création de la table ou chargement du catalogue).
+     *
+     * @param nomColonne Le nom de la colonne.
+     * @param dictionnaire Le dictionnaire de la colonne, vide pour une nouvelle table.
+     * @throws IllegalArgumentException Si la colonne n'existe pas ou n'est pas une chaîne.
+     */
+    public void setDictionary(String nomColonne, StringDictionary dictionnaire) throws IllegalArgumentException {
+        Integer i = nameToIndex.get(nomColonne.toUpperCase());
+        if (i == null)
+            throw new IllegalArgumentException("La colonne " + nomColonne + " n'existe pas dans la relation " + relationName);
+        if (getType(i) != DataType.CHAR && getType(i) != DataType.VARCHAR)
+            throw new IllegalArgumentException("Seules les colonnes CHAR et VARCHAR peuvent avoir un dictionnaire : " + nomColonne);
+
+        dictionnaires.set(i, dictionnaire);
+        pax = null; // La largeur de la colonne dans les pages colonnaires change
+    }
+
+    /**
+     * Récupère l'organisation des records dans les data Pages.
+     *
+     * @return L'organisation des pages.
+     */
+    public StorageLayout getStorage() {
+        return storage;
+    }
+
     /**
      * Récupère le nombre d'attribut.
      *
@@ -756,7 +2088,9 @@ public class Relation {
         // Le type est verifier lors de la construction
         nameToIndex.put(attrb.getFirst(), index);
         attribut.add(attrb);
+        dictionnaires.add(null);
         index++;
+        pax = null; // L'organisation des pages dépend des attributs
     }
 
     /**
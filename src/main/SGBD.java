@@ -1,4 +1,5 @@
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
@@ -65,6 +66,10 @@ public class SGBD {
         COMMANDMAP.put("SELECT", this::processSELECTCommand);
         COMMANDMAP.put("INSERT INTO", this::processINSERTCommand);
         COMMANDMAP.put("BULKINSERT INTO", this::processBULKINSERTCommand);
+        COMMANDMAP.put("COPY", this::processCOPYCommand);
+        COMMANDMAP.put("DELETE FROM", this::processDELETECommand);
+        COMMANDMAP.put("UPDATE", this::processUPDATECommand);
+        COMMANDMAP.put("VACUUM", this::processVACUUMCommand);
         
         COMMANDMAP.put("CREATEINDEX ON", this::processCREATEINDEXCommand);
         COMMANDMAP.put("SELECTINDEX * FROM", this::processSELECTINDEXCommand);
@@ -250,6 +255,12 @@ public class SGBD {
             if (firstSpaceIndex != -1)
                 param = param.substring(firstSpaceIndex + 1).trim();  // Enlever le nom de la table
             
+            // Sépare les options de la table écrites après la liste des colonnes
+            HashMap<String, String> options = parseTableOptions(param.substring(param.lastIndexOf(')') + 1));
+            param = param.substring(0, param.lastIndexOf(')') + 1).trim();
+            RecordEncoding encoding = RecordEncoding.valueOf(options.getOrDefault("ENCODING", RecordEncoding.UTF16.name()));
+            StorageLayout storage = StorageLayout.valueOf(options.getOrDefault("STORAGE", StorageLayout.ROW.name()));
+
             // Étape 2: Enlever les parenthèses extérieures
             if (param.startsWith("(") && param.endsWith(")"))
                 param = param.substring(1, param.length() - 1).trim();  // Supprime les parenthèses extérieures
@@ -258,10 +269,17 @@ public class SGBD {
             ArrayList<Pair<String, Data>> attribut = parseRelation(param);
             // Initialisation de la header Page
             PageId hp = dskM.AllocPage();
-            bm.getPage(hp).putInt(DBConfig.pagesize -4, -1);
+            ByteBuffer header = bm.getPage(hp, BufferManager.KEEP);
+            header.putInt(0, 0);    // Une page rendue par un VACUUM n'est pas remise à zéro
+            header.putInt(DBConfig.pagesize -4, -1);
             bm.freePage(hp, true);
             // Instancie la relation avec les variables précédente
-            Relation relation = new Relation(name, attribut, hp, dskM, bm);
+            Relation relation = new Relation(name, attribut, hp, dskM, bm, encoding, storage);
+            // Colonnes dont les valeurs sont remplacées par leur code dans un dictionnaire
+            if (options.containsKey("DICTIONARY")) {
+                for (String colonne : options.get("DICTIONARY").split(","))
+                    relation.setDictionary(colonne.trim(), new StringDictionary());
+            }
 
             dbM.AddTableToCurrentDatabase(relation);  // Ajouter la table à la base de données actuelle
 
@@ -271,6 +289,39 @@ public class SGBD {
             }
     }
 
+    /**
+     * Convertit les options écrites après les colonnes d'un CREATE TABLE, de la forme CLE=VALEUR séparées par des espaces.
+     * @param arg la chaine des options, éventuellement vide.
+     * @return les options par clé.
+     * @throws IllegalArgumentException Si une option est mal écrite ou inconnue.
+     */
+    private HashMap<String, String> parseTableOptions(String arg) throws IllegalArgumentException {
+        HashMap<String, String> options = new HashMap<>();
+
+        for (String option : arg.trim().split("\\s+")) {
+            if (option.isEmpty())
+                continue;
+            String[] parts = option.split("=", 2);
+            if (parts.length != 2 || parts[1].isEmpty())
+                throw new IllegalArgumentException("Option de table invalide : " + option);
+
+            switch (parts[0]) {
+                case "ENCODING":
+                    RecordEncoding.valueOf(parts[1]);   // Vérifie que le format existe
+                    break;
+                case "STORAGE":
+                    StorageLayout.valueOf(parts[1]);    // Vérifie que l'organisation existe
+                    break;
+                case "DICTIONARY":
+                    break;  // Les colonnes sont vérifiées par la relation
+                default:
+                    throw new IllegalArgumentException("Option de table inconnue : " + parts[0]);
+            }
+            options.put(parts[0], parts[1]);
+        }
+        return options;
+    }
+
     /**
      * Assure une conversion d'une chaine de forme: (nom:type,nom:type(size)) en une liste d'attribut d'une relation.
      * @param arg la chaine à convertir.
@@ -404,23 +455,28 @@ public class SGBD {
     
     /**
      * Méthode pour traiter la commande INSERT
+     * Plusieurs lignes peuvent être insérées en une fois : VALUES (v1, v2), (v3, v4)
      */
     private void processINSERTCommand(String param) {
     	String[] parts = param.split("VALUES", 2);
     	String nomTable = parts[0].trim();
     	String values = parts[1].trim();
 
-    	if (values.startsWith("(") && values.endsWith(")")) {
-            values = values.substring(1, values.length() - 1).trim();
-            // Sépare la chaîne principale par les virgules
-            String[] listeValeur = values.split("\\s*,\\s*");
-        
-            // Parcourt chaque sous-chaîne (attribut) et traite les informations
-            for (String valeur : listeValeur) {
-                valeur = valeur.trim(); // Enlever les espaces superflus autour de chaque attribut
-            }
+    	// Découpe les lignes entre parenthèses
+    	ArrayList<String> tuples = splitTuples(values);
+
+    	if (tuples != null && !tuples.isEmpty()) {
+    		ArrayList<String[]> lignes = new ArrayList<>();
+    		for (String tuple : tuples) {
+                // Sépare la chaîne principale par les virgules
+    			lignes.add(tuple.trim().split("\\s*,\\s*"));
+    		}
             try {
-            	dbM.InsertIntoCurrentDatabase(nomTable, listeValeur);
+            	// Une seule ligne garde le chemin d'insertion simple
+            	if (lignes.size() == 1)
+            		dbM.InsertIntoCurrentDatabase(nomTable, lignes.get(0));
+            	else
+            		dbM.InsertIntoCurrentDatabase(nomTable, lignes);
             } catch(Exception e) {
             	System.out.println(e.getMessage());
             }
@@ -430,6 +486,39 @@ public class SGBD {
     		System.out.println("Format d'Insert non respecté");
     }
 
+    /**
+     * Découpe la partie VALUES d'un INSERT en lignes : "(a, b), (c, d)" donne ["a, b", "c, d"].
+     * Les parenthèses et virgules entre guillemets ne sont pas interprétées.
+     *
+     * @param values La chaîne qui suit le mot clé VALUES.
+     * @return La liste du contenu de chaque ligne, ou null si le format n'est pas respecté.
+     */
+    private ArrayList<String> splitTuples(String values) {
+    	ArrayList<String> tuples = new ArrayList<>();
+    	boolean inQuotes = false;   // Vrai si on est entre guillemets
+    	int debut = -1;     // Position de la parenthèse ouvrante de la ligne courante, -1 hors d'une ligne
+
+    	for (int i = 0; i < values.length(); i++) {
+    		char c = values.charAt(i);
+
+    		if (c == '"')
+    			inQuotes = !inQuotes;
+    		else if (inQuotes)
+    			continue;
+    		else if (c == '(' && debut == -1)
+    			debut = i;
+    		else if (c == ')' && debut != -1) {
+    			tuples.add(values.substring(debut + 1, i));
+    			debut = -1;
+    		}
+    		// Entre deux lignes, seules les virgules et les espaces sont acceptés
+    		else if (debut == -1 && c != ',' && !Character.isWhitespace(c))
+    			return null;
+    	}
+    	// Une parenthèse non fermée ou des guillemets non fermés invalident la commande
+    	return (debut == -1 && !inQuotes) ? tuples : null;
+    }
+
     /**
      * Méthode pour traiter la commande BULKINSERT
      */
@@ -446,6 +535,139 @@ public class SGBD {
             System.out.println("Le bulkinsert n'a pas fonctionné");
     	}
     }
+
+    /**
+     * Méthode pour traiter la commande COPY (copie binaire d'une table par pages)
+     * Syntaxe : COPY table FROM 'fichier' ou COPY table TO 'fichier'
+     */
+    private void processCOPYCommand(String param) {
+    	String[] parts = param.split("\\s+", 3);
+    	if(parts.length != 3 || (!parts[1].equals("FROM") && !parts[1].equals("TO"))) {
+    		System.out.println("Syntaxe : COPY table FROM 'fichier' ou COPY table TO 'fichier'");
+    		return;
+    	}
+    	String nomTable = parts[0].trim();
+    	String nomFichier = parts[2].trim().replace("'", "").replace("\"", "");
+    	try {
+    		if(parts[1].equals("FROM")) {
+    			int nbPages = dbM.CopyFromFile(nomTable, nomFichier);
+    			System.out.println(nbPages + " pages du fichier " + nomFichier + " ont été ajoutées à la table " + nomTable);
+    		} else {
+    			int nbPages = dbM.CopyToFile(nomTable, nomFichier);
+    			System.out.println(nbPages + " pages de la table " + nomTable + " ont été copiées dans " + nomFichier);
+    		}
+    	} catch(Exception e) {
+    		System.out.println(e.getMessage());
+    	}
+    }
+    
+    /**
+     * Méthode pour traiter la commande DELETE FROM
+     * Syntaxe : DELETE FROM table [alias] [WHERE alias.colonne = valeur AND ...]
+     * Sans alias, les colonnes sont préfixées par le nom de la table.
+     */
+    private void processDELETECommand(String param) {
+    	if(dbM.getCurrentDatabase() == null) {
+    		System.out.println("Erreur aucune database n'est défini");
+    		return;
+    	}
+    	Matcher matcher = Pattern.compile("^([A-Z0-9_]+)(?:\\s+(?!WHERE\\b)([A-Z0-9_]+))?(?:\\s+WHERE\\s+(.+))?$").matcher(param.trim());
+    	if(!matcher.matches()) {
+    		System.out.println("Syntaxe : DELETE FROM table [alias] [WHERE conditions]");
+    		return;
+    	}
+    	String nomTable = matcher.group(1);
+    	String alias = (matcher.group(2) != null) ? matcher.group(2) : nomTable;
+    	try {
+    		ArrayList<Condition> conditions = extractTableConditions(nomTable, alias, matcher.group(3));
+    		int nbSupprimes = dbM.DeleteFromTable(nomTable, conditions);
+    		System.out.println(nbSupprimes + " lignes ont été supprimées de la table " + nomTable);
+    	} catch(Exception e) {
+    		System.out.println(e.getMessage());
+    	}
+    }
+
+    /**
+     * Méthode pour traiter la commande UPDATE
+     * Syntaxe : UPDATE table [alias] SET colonne = valeur[, colonne = valeur ...] [WHERE conditions]
+     */
+    private void processUPDATECommand(String param) {
+    	if(dbM.getCurrentDatabase() == null) {
+    		System.out.println("Erreur aucune database n'est défini");
+    		return;
+    	}
+    	Matcher matcher = Pattern.compile("^([A-Z0-9_]+)(?:\\s+(?!SET\\b)([A-Z0-9_]+))?\\s+SET\\s+(.+?)(?:\\s+WHERE\\s+(.+))?$").matcher(param.trim());
+    	if(!matcher.matches()) {
+    		System.out.println("Syntaxe : UPDATE table [alias] SET colonne = valeur[, colonne = valeur ...] [WHERE conditions]");
+    		return;
+    	}
+    	String nomTable = matcher.group(1);
+    	String alias = (matcher.group(2) != null) ? matcher.group(2) : nomTable;
+    	try {
+    		HashMap<String, String> valeurs = new HashMap<>();
+    		// Les virgules entre guillemets font partie des valeurs
+    		for(String affectation : matcher.group(3).split(",(?=(?:[^\"]*\"[^\"]*\")*[^\"]*$)")) {
+    			String[] parts = affectation.split("=", 2);
+    			if(parts.length != 2) {
+    				throw new IllegalArgumentException("Affectation invalide : " + affectation.trim());
+    			}
+    			String nomColonne = parts[0].trim();
+    			if(nomColonne.startsWith(alias + ".")) {
+    				nomColonne = nomColonne.substring(alias.length() + 1);
+    			}
+    			valeurs.put(nomColonne, parts[1].trim());
+    		}
+    		ArrayList<Condition> conditions = extractTableConditions(nomTable, alias, matcher.group(4));
+    		int nbModifies = dbM.UpdateTable(nomTable, valeurs, conditions);
+    		System.out.println(nbModifies + " lignes ont été modifiées dans la table " + nomTable);
+    	} catch(Exception e) {
+    		System.out.println(e.getMessage());
+    	}
+    }
+
+    /**
+     * Méthode pour traiter la commande VACUUM
+     * Syntaxe : VACUUM [table], toutes les tables de la base courante si aucune n'est donnée
+     */
+    private void processVACUUMCommand(String param) {
+    	String nomTable = param.trim().isEmpty() ? null : param.trim();
+    	if(nomTable != null && !nomTable.matches("[A-Z0-9_]+")) {
+    		System.out.println("Syntaxe : VACUUM [table]");
+    		return;
+    	}
+    	try {
+    		int nbPages = dbM.Vacuum(nomTable);
+    		System.out.println(nbPages + " pages ont été libérées");
+    	} catch(Exception e) {
+    		System.out.println(e.getMessage());
+    	}
+    }
+
+    /**
+     * Extrait les conditions WHERE d'une commande qui ne porte que sur une table
+     * @param nomTable nom de la table
+     * @param alias alias de la table dans les conditions
+     * @param whereConditions partie WHERE, ou null s'il n'y en a pas
+     * @return les conditions sur les colonnes de la table
+     */
+    private ArrayList<Condition> extractTableConditions(String nomTable, String alias, String whereConditions) throws IllegalArgumentException {
+    	if(!dbM.tableExiste(nomTable)) {
+    		throw new IllegalArgumentException("La relation "+nomTable+" n'existe pas dans la base de donnée courante");
+    	}
+    	if(whereConditions == null) {
+    		return new ArrayList<>();
+    	}
+    	HashMap<String, String> assocAlliasToNom = new HashMap<>();
+    	assocAlliasToNom.put(alias, nomTable);
+    	HashMap<String, Integer> relationOffsets = new HashMap<>();
+    	relationOffsets.put(alias, 0);
+
+    	Pair<HashMap<String, ArrayList<Condition>>, ArrayList<Condition>> conditions = extractCondition(whereConditions, assocAlliasToNom, relationOffsets);
+    	if(!conditions.getSecond().isEmpty()) {
+    		throw new IllegalArgumentException("Les conditions ne peuvent porter que sur la table " + nomTable);
+    	}
+    	return conditions.getFirst().getOrDefault(nomTable, new ArrayList<>());
+    }
     
     /**
      * Méthode pour traiter la commande CREATEINDEX
@@ -481,6 +703,7 @@ public class SGBD {
 
     /**
      * Méthode pour traiter la commande SELECT.
+     * Syntaxe : SELECT attributs FROM tables [WHERE conditions] [ORDER BY alias.colonne [ASC|DESC], ...] [LIMIT n] [BLOCK=n]
      * @param param Commande SQL sans le mot-clé "SELECT".
      */
     private void processSELECTCommand(String param) {
@@ -503,6 +726,30 @@ public class SGBD {
             "$" // Fin de la chaîne
         );
          
+            // Option BLOCK=n écrite à la fin de la requête : nombre de cadres accordés à la jointure par blocs
+            int nbCadresJointure = 0;   // 0 pour tous les cadres du pool des pages de données
+            Matcher option = Pattern.compile("\\s+BLOCK=(\\d+)\\s*$", Pattern.CASE_INSENSITIVE).matcher(param);
+            if (option.find()) {
+                nbCadresJointure = Integer.parseInt(option.group(1));
+                param = param.substring(0, option.start());
+            }
+
+            // LIMIT n : nombre de records affichés au plus
+            int limite = -1;    // -1 pour tous les records
+            Matcher limit = Pattern.compile("\\s+LIMIT\\s+(\\d+)\\s*$", Pattern.CASE_INSENSITIVE).matcher(param);
+            if (limit.find()) {
+                limite = Integer.parseInt(limit.group(1));
+                param = param.substring(0, limit.start());
+            }
+
+            // ORDER BY alias.colonne [ASC|DESC], ... : colonnes du tri du résultat
+            String orderBy = null;
+            Matcher ordre = Pattern.compile("\\s+ORDER\\s+BY\\s+(.+)$", Pattern.CASE_INSENSITIVE).matcher(param);
+            if (ordre.find()) {
+                orderBy = ordre.group(1);
+                param = param.substring(0, ordre.start());
+            }
+
             // Compiler la regex
             Pattern pattern = Pattern.compile(selectReg, Pattern.CASE_INSENSITIVE);
             Matcher matcher = pattern.matcher(param);
@@ -540,6 +787,9 @@ public class SGBD {
                     }
                     // Extrait les noms des attributs à afficher et remplie le 
                     ArrayList<Integer> attrbToPrint = extractAttribut(attributs, assocAlliasToNom, nomToPrint, relationOffsets);
+                    // Colonnes du tri, avec true pour un ordre décroissant
+                    ArrayList<Pair<Integer, Boolean>> colonnesTri = (orderBy == null) ? new ArrayList<>()
+                        : extractOrderBy(orderBy, assocAlliasToNom, relationOffsets);
 
                     // Pair qui contient en 1 les conditions interne des tables et en second les conditions de jointures
                     Pair<HashMap<String, ArrayList<Condition>>, ArrayList<Condition>> conditions = new Pair<>(); 
@@ -564,9 +814,14 @@ public class SGBD {
                     //System.out.println("Conditions internes : " + internConditions);
                     //System.out.println("Conditions de jointure : " + joinConditions);
                     
-                    // Utilise l'algo de jointure orienté page sur 2 relations sans conditions interne
-                    if (relations.size() == 2 && internConditions.isEmpty()) {
-                        PageOrientedJoinOperator pageJoin = new PageOrientedJoinOperator(new PageDirectoryIterator(relations.get(0), bm), new PageDirectoryIterator(relations.get(1), bm), joinConditions);
+                    // Utilise l'algo de jointure orienté page sur 2 relations sans conditions interne ni comparaison entre elles
+                    if (relations.size() == 2 && internConditions.isEmpty() && colonnesTri.isEmpty() && limite < 0
+                        && !SortMergeJoinOperator.canJoin(joinConditions, relations.get(0).getNbAttribut())) {
+                        PageDirectoryIterator outerPageIt = new PageDirectoryIterator(relations.get(0), bm);
+                        PageDirectoryIterator innerPageIt = new PageDirectoryIterator(relations.get(1), bm);
+                        PageOrientedJoinOperator pageJoin = (nbCadresJointure > 0)
+                            ? new PageOrientedJoinOperator(outerPageIt, innerPageIt, joinConditions, nbCadresJointure)
+                            : new PageOrientedJoinOperator(outerPageIt, innerPageIt, joinConditions);
                         ProjectOperator projecectionOp = new ProjectOperator(pageJoin, attrbToPrint);
                         RecordPrinter printer = new RecordPrinter(projecectionOp, nomToPrint);
 
@@ -575,7 +830,11 @@ public class SGBD {
                     // Sinon Utilise le tree d'execution
                     else {
                         // Exécuter la commande avec les opérateurs relationnels
-                        TreeAlgebra planExec = new TreeAlgebra(relations, joinConditions, internConditions, attrbToPrint, nomToPrint, bm);
+                        // Index de chaque relation, pour les jointures qui peuvent les sonder
+                        HashMap<String, HashMap<Integer, BPlusTree>> index = new HashMap<>();
+                        for (Relation relation : relations)
+                            index.put(relation.getRelationName(), dbM.getIndex(relation.getRelationName()));
+                        TreeAlgebra planExec = new TreeAlgebra(relations, joinConditions, internConditions, index, attrbToPrint, nomToPrint, colonnesTri, limite, bm);
                         planExec.execute();   // Exécuter la commande avec les opérateurs relationnels
                     }
                 } catch(Exception e){
@@ -700,6 +959,31 @@ public class SGBD {
         return attributesToPrint;
     }
 
+    /**
+     * Méthode pour extraire les colonnes de l'ORDER BY.
+     *
+     * @param param Partie ORDER BY (ex. "aliasRel.col1 DESC, aliasRel.col2").
+     * @param assocAlliasToNom Association des alias de relations aux noms réels des relations.
+     * @param relationOffsets Décalage de chaque relation dans le record fusionné.
+     * @return L'index absolu de chaque colonne du tri, avec true si elle est triée par ordre décroissant.
+     * @throws IllegalArgumentException Si une colonne est mal formée ou inexistante.
+     */
+    private ArrayList<Pair<Integer, Boolean>> extractOrderBy(String param, HashMap<String, String> assocAlliasToNom, HashMap<String, Integer> relationOffsets) {
+        ArrayList<Pair<Integer, Boolean>> colonnes = new ArrayList<>();
+        Pattern pattern = Pattern.compile("^([a-zA-Z0-9_]+\\.[a-zA-Z0-9_]+)(?:\\s+(ASC|DESC))?$", Pattern.CASE_INSENSITIVE);
+
+        for (String terme : param.split("\\s*,\\s*")) {
+            Matcher matcher = pattern.matcher(terme.trim());
+            if (!matcher.matches())
+                throw new IllegalArgumentException("Colonne de tri mal formée : " + terme);
+
+            // Même résolution que les attributs du SELECT, sans les ajouter aux noms affichés
+            int index = extractAttribut(matcher.group(1), assocAlliasToNom, new ArrayList<>(), relationOffsets).get(0);
+            colonnes.add(new Pair<>(index, "DESC".equalsIgnoreCase(matcher.group(2))));
+        }
+        return colonnes;
+    }
+
     /**
      * Méthode pour extraire les conditions WHERE.
      * @param param Partie WHERE (ex. "aliasRel.col1 = 10 AND aliasRel.col2 > 20").
@@ -0,0 +1,321 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Opérateur de jointure par tri-fusion, pour les équi-jointures ("R.a = S.b") et les jointures de bande
+ * ("R.debut <= S.x AND S.x <= R.fin"), c'est-à-dire toute jointure dont une condition compare une colonne
+ * de chaque relation avec =, <, <=, > ou >=.
+ *
+ * <p>Une colonne de fusion est choisie dans l'une des entrées, l'entrée interne ; les conditions qui la comparent
+ * à des colonnes de l'autre entrée, l'entrée externe, donnent pour chaque record externe une borne basse
+ * et éventuellement une borne haute sur la colonne de fusion. L'entrée interne est triée sur la colonne de fusion,
+ * l'entrée externe sur la colonne de sa première borne basse : les bornes basses ne font alors que croître,
+ * si bien que seule une fenêtre des records internes est gardée en mémoire, chaque record interne étant lu une fois.</p>
+ *
+ * <p>Les entrées sont triées par des ExternalSortOperator, dont la mémoire est bornée. Une entrée déjà triée
+ * sur la bonne colonne, parcours d'un index B+Tree ou autre tri, est utilisée telle quelle.
+ * Toutes les conditions de jointure sont vérifiées sur les paires de la fenêtre. Les tuples produits ont
+ * toujours les colonnes de gauche suivies de celles de droite.</p>
+ *
+ * @author Mael Lecene
+ */
+public class SortMergeJoinOperator implements IRecordIterator {
+    private IRecordIterator outer;      // Entrée externe, triée sur sa première borne basse
+    private IRecordIterator inner;      // Entrée interne, triée sur la colonne de fusion
+    private boolean outerGauche;        // true si l'entrée externe est celle de gauche
+    private ArrayList<Condition> joinConditions;
+    private Predicate<IRecord> predicat;    // Conditions de jointure compilées
+    private int colonneFusion;          // Colonne de fusion dans l'entrée interne
+    private int[] bornesBasses;         // Colonnes externes qui bornent la colonne de fusion par en dessous
+    private int[] bornesHautes;         // Colonnes externes qui la bornent par au-dessus
+    private int nbTris;                 // Nombre d'entrées qui ont dû être triées
+
+    private TupleSchema outerSchema;    // Schéma des records externes
+    private TupleSchema innerSchema;    // Schéma des records internes
+    private TupleSchema joinSchema;     // Schéma des tuples résultats, construit avec la première paire
+    private JoinedRecord candidat = new JoinedRecord();   // Paire en cours d'évaluation, réutilisée
+
+    private ArrayDeque<Tuple> fenetre = new ArrayDeque<>(); // Records internes qui peuvent encore correspondre
+    private Tuple prochainInner;        // Prochain record interne pas encore dans la fenêtre
+    private boolean innerLu;            // true si le prochain record interne a été lu
+    private Tuple outerRecord;          // Record externe en cours
+    private Object borneHaute;          // Plus petite borne haute du record externe, null s'il n'en a pas
+    private Iterator<Tuple> candidats;  // Parcours de la fenêtre pour le record externe
+
+    /**
+     * Constructeur de l'opérateur de jointure par tri-fusion.
+     *
+     * @param operateurs Les entrées de gauche et de droite.
+     * @param conditions Les conditions de jointure, avec les index des colonnes des deux entrées mises bout à bout.
+     * @param nbColonnesGauche Le nombre de colonnes de l'entrée de gauche.
+     * @param bm Le gestionnaire de buffer, utilisé par les tris.
+     * @throws IllegalArgumentException Si aucune condition ne compare une colonne de chaque entrée.
+     */
+    public SortMergeJoinOperator(Pair<IRecordIterator, IRecordIterator> operateurs, ArrayList<Condition> conditions, int nbColonnesGauche, BufferManager bm) throws IllegalArgumentException {
+        this.joinConditions = conditions;
+
+        // Choix de la colonne de fusion : le plus grand terme de la première comparaison entre les deux entrées
+        Condition premiere = null;
+        for (Condition cond : conditions) {
+            if (isMergeable(cond, nbColonnesGauche)) {
+                premiere = cond;
+                break;
+            }
+        }
+        if (premiere == null)
+            throw new IllegalArgumentException("Aucune comparaison entre les deux relations, la jointure par tri-fusion est impossible");
+
+        Pair<Integer, Integer> colonnes = premiere.getColumns();
+        int fusion;
+        switch (premiere.getOperateur()) {
+            case "=":   // La colonne de droite de préférence
+                fusion = Math.max(colonnes.getFirst(), colonnes.getSecond());
+                break;
+            case ">":
+            case ">=":
+                fusion = colonnes.getFirst();
+                break;
+            default:
+                fusion = colonnes.getSecond();
+        }
+        boolean innerGauche = fusion < nbColonnesGauche;
+        outerGauche = !innerGauche;
+        int decalageInner = innerGauche ? 0 : nbColonnesGauche;
+        int decalageOuter = innerGauche ? nbColonnesGauche : 0;
+        colonneFusion = fusion - decalageInner;
+
+        // Bornes de la colonne de fusion, sous la forme "fusion op colonne externe"
+        ArrayList<Integer> basses = new ArrayList<>();
+        ArrayList<Integer> hautes = new ArrayList<>();
+        for (Condition cond : conditions) {
+            if (!isMergeable(cond, nbColonnesGauche))
+                continue;
+            Pair<Integer, Integer> c = cond.getColumns();
+            String op = cond.getOperateur();
+            int autre;
+            if (c.getFirst() == fusion)
+                autre = c.getSecond();
+            else if (c.getSecond() == fusion) {
+                autre = c.getFirst();
+                op = flip(op);
+            }
+            else
+                continue;
+            if (op.equals("=") || op.startsWith(">"))
+                basses.add(autre - decalageOuter);
+            if (op.equals("=") || op.startsWith("<"))
+                hautes.add(autre - decalageOuter);
+        }
+        bornesBasses = basses.stream().mapToInt(Integer::intValue).toArray();
+        bornesHautes = hautes.stream().mapToInt(Integer::intValue).toArray();
+
+        IRecordIterator entreeOuter = outerGauche ? operateurs.getFirst() : operateurs.getSecond();
+        IRecordIterator entreeInner = outerGauche ? operateurs.getSecond() : operateurs.getFirst();
+        outer = sorted(entreeOuter, bornesBasses[0], bm);
+        inner = sorted(entreeInner, colonneFusion, bm);
+    }
+
+    /**
+     * Indique si une jointure peut être faite par tri-fusion : au moins une condition doit comparer
+     * une colonne de gauche et une colonne de droite avec =, <, <=, > ou >=.
+     *
+     * @param conditions Les conditions de jointure.
+     * @param nbColonnesGauche Le nombre de colonnes de l'entrée de gauche.
+     * @return true si SortMergeJoinOperator peut faire la jointure.
+     */
+    public static boolean canJoin(List<Condition> conditions, int nbColonnesGauche) {
+        for (Condition cond : conditions)
+            if (isMergeable(cond, nbColonnesGauche))
+                return true;
+        return false;
+    }
+
+    /**
+     * Indique si une condition compare une colonne de chaque entrée avec un opérateur d'ordre.
+     *
+     * @param cond La condition.
+     * @param nbColonnesGauche Le nombre de colonnes de l'entrée de gauche.
+     * @return true si la condition peut guider la fusion.
+     */
+    private static boolean isMergeable(Condition cond, int nbColonnesGauche) {
+        Pair<Integer, Integer> colonnes = cond.getColumns();
+        return colonnes != null && !cond.getOperateur().equals("<>")
+            && (colonnes.getFirst() < nbColonnesGauche) != (colonnes.getSecond() < nbColonnesGauche);
+    }
+
+    /**
+     * Retourne l'opérateur qui donne la même condition quand on échange les deux termes.
+     *
+     * @param op L'opérateur.
+     * @return L'opérateur retourné.
+     */
+    private static String flip(String op) {
+        switch (op) {
+            case "<": return ">";
+            case ">": return "<";
+            case "<=": return ">=";
+            case ">=": return "<=";
+            default: return op;
+        }
+    }
+
+    /**
+     * Retourne une entrée triée sur une colonne : l'entrée elle-même si elle l'est déjà
+     * (parcours d'un index sur cette colonne ou tri dont c'est la première colonne), un tri externe sinon.
+     *
+     * @param entree L'entrée.
+     * @param colonne La colonne du tri.
+     * @param bm Le gestionnaire de buffer.
+     * @return L'entrée triée.
+     */
+    private IRecordIterator sorted(IRecordIterator entree, int colonne, BufferManager bm) {
+        if (entree instanceof IndexScanOperator && ((IndexScanOperator) entree).getColonne() == colonne)
+            return entree;
+        if (entree instanceof ExternalSortOperator && ((ExternalSortOperator) entree).getColonnes()[0] == colonne
+                && !((ExternalSortOperator) entree).getDecroissant()[0])
+            return entree;
+        nbTris++;
+        return new ExternalSortOperator(entree, new int[] { colonne }, bm);
+    }
+
+    /**
+     * @return Le nombre d'entrées que l'opérateur a dû trier, 0 si les deux étaient déjà triées.
+     */
+    public int getNbTris() {
+        return nbTris;
+    }
+
+    /**
+     * Récupère une copie du prochain tuple de la jointure.
+     */
+    @Override
+    public MyRecord GetNextRecord() {
+        IRecord res = GetNextView();
+        return (res == null) ? null : res.toRecord();
+    }
+
+    /**
+     * Récupère le prochain tuple de la jointure.
+     * Pour chaque record externe, la fenêtre est avancée jusqu'à sa borne basse et remplie jusqu'à sa borne haute,
+     * puis les records internes de la fenêtre sont évalués avec lui.
+     */
+    @Override
+    public IRecord GetNextView() {
+        try {
+            while (true) {
+                // Évalue les records de la fenêtre qui ne dépassent pas la borne haute
+                while (candidats != null && candidats.hasNext()) {
+                    Tuple interne = candidats.next();
+                    if (borneHaute != null && ZoneMap.compare(interne.getValue(colonneFusion), borneHaute) > 0)
+                        break;  // La fenêtre est triée : les suivants la dépassent aussi
+                    Tuple gauche = outerGauche ? outerRecord : interne;
+                    Tuple droite = outerGauche ? interne : outerRecord;
+                    if (!satifyConditions(candidat.set(gauche, droite)))
+                        continue;
+                    if (joinSchema == null)
+                        joinSchema = gauche.getSchema().concat(droite.getSchema());
+                    return Tuple.concat(gauche, droite, joinSchema);
+                }
+
+                // Record externe suivant
+                IRecord record = outer.GetNextView();
+                if (record == null) {
+                    candidats = null;
+                    return null;
+                }
+                if (outerSchema == null)
+                    outerSchema = TupleSchema.of(record);
+                outerRecord = Tuple.of(record, outerSchema);
+                advanceWindow();
+                candidats = fenetre.iterator();
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur dans GetNextRecord : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Avance la fenêtre pour le record externe en cours : les records internes sous sa borne basse en sortent
+     * (ils sont aussi sous celles des records externes suivants), ceux jusqu'à sa borne haute y entrent.
+     */
+    private void advanceWindow() {
+        Object borneBasse = outerRecord.getValue(bornesBasses[0]);
+        borneHaute = null;
+        for (int colonne : bornesHautes) {
+            Object valeur = outerRecord.getValue(colonne);
+            if (borneHaute == null || ZoneMap.compare(valeur, borneHaute) < 0)
+                borneHaute = valeur;
+        }
+
+        while (!fenetre.isEmpty() && ZoneMap.compare(fenetre.peekFirst().getValue(colonneFusion), borneBasse) < 0)
+            fenetre.pollFirst();
+
+        while (nextInner() != null) {
+            Object valeur = prochainInner.getValue(colonneFusion);
+            if (borneHaute != null && ZoneMap.compare(valeur, borneHaute) > 0)
+                break;
+            if (ZoneMap.compare(valeur, borneBasse) >= 0)
+                fenetre.addLast(prochainInner);
+            innerLu = false;
+        }
+    }
+
+    /**
+     * Lit le prochain record interne s'il ne l'a pas déjà été.
+     *
+     * @return Le prochain record interne, ou null si l'entrée interne est terminée.
+     */
+    private Tuple nextInner() {
+        if (!innerLu) {
+            IRecord record = inner.GetNextView();
+            if (record != null && innerSchema == null)
+                innerSchema = TupleSchema.of(record);
+            prochainInner = (record == null) ? null : Tuple.of(record, innerSchema);
+            innerLu = true;
+        }
+        return prochainInner;
+    }
+
+    /**
+     * Vérifie si un enregistrement satisfait toutes les conditions spécifiées.
+     *
+     * @param record Enregistrement à vérifier.
+     * @return true si toutes les conditions sont satisfaites, sinon false.
+     */
+    private boolean satifyConditions(IRecord record) {
+        // Conditions compilées une seule fois, avec le schéma de la première paire évaluée
+        if (predicat == null)
+            predicat = Condition.compile(joinConditions, TupleSchema.of(record));
+        return predicat.test(record);
+    }
+
+    /**
+     * Réinitialise l'opérateur de jointure en réinitialisant ses deux entrées triées.
+     */
+    @Override
+    public void Reset() {
+        outer.Reset();
+        inner.Reset();
+        fenetre.clear();
+        prochainInner = null;
+        innerLu = false;
+        outerRecord = null;
+        candidats = null;
+    }
+
+    /**
+     * Ferme l'opérateur de jointure et ses deux entrées, ce qui rend les pages des tris.
+     */
+    @Override
+    public void Close() {
+        outer.Close();
+        inner.Close();
+        fenetre.clear();
+        prochainInner = null;
+        outerRecord = null;
+        candidats = null;
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Enumération représentant l'organisation des records dans les data Pages.
+ * L'organisation est choisie à la création de la table (option STORAGE=) et ne change plus ensuite.
+ * @author Mael Lecene
+ */
+public enum StorageLayout {
+    /**
+     * Organisation par ligne : chaque record est écrit d'un bloc, précédé de son offset directory.
+     */
+    ROW,
+
+    /**
+     * Organisation PAX : dans chaque page, les valeurs sont regroupées par colonne dans des minipages,
+     * si bien qu'un parcours ne lit que les colonnes dont il a besoin.
+     */
+    COLUMNAR
+}
@@ -0,0 +1,83 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Dictionnaire d'une colonne CHAR ou VARCHAR déclarée avec l'option DICTIONARY=.
+ * Chaque valeur distincte reçoit un code entier, dans l'ordre de première apparition ;
+ * les data Pages ne contiennent que les codes (4 octets), et une égalité avec une constante
+ * se teste en comparant deux entiers.
+ * Les codes ne sont jamais réattribués : le dictionnaire ne fait que grandir et il est sauvegardé avec le catalogue.
+ * Les chargements parallèles (BULKINSERT) pouvant encoder en même temps, les accès sont synchronisés.
+ * @author Mael Lecene
+ */
+public class StringDictionary {
+    private ArrayList<String> valeurs;  // Valeur de chaque code
+    private HashMap<String, Integer> codes; // Code de chaque valeur
+
+    /**
+     * Construit un dictionnaire vide.
+     */
+    public StringDictionary() {
+        valeurs = new ArrayList<>();
+        codes = new HashMap<>();
+    }
+
+    /**
+     * Retourne le code d'une valeur, en l'ajoutant au dictionnaire si elle n'y est pas encore.
+     *
+     * @param valeur La valeur à encoder.
+     * @return Le code de la valeur.
+     */
+    public synchronized int encode(String valeur) {
+        Integer code = codes.get(valeur);
+        if (code != null)
+            return code;
+
+        valeurs.add(valeur);
+        codes.put(valeur, valeurs.size() - 1);
+        return valeurs.size() - 1;
+    }
+
+    /**
+     * Retourne le code d'une valeur sans modifier le dictionnaire.
+     *
+     * @param valeur La valeur cherchée.
+     * @return Le code de la valeur, ou -1 si elle n'a jamais été écrite.
+     */
+    public synchronized int getCode(String valeur) {
+        Integer code = codes.get(valeur);
+        return (code == null) ? -1 : code;
+    }
+
+    /**
+     * Retourne la valeur d'un code.
+     *
+     * @param code Le code lu dans une data Page.
+     * @return La valeur correspondante.
+     * @throws IllegalArgumentException Si le code n'existe pas.
+     */
+    public synchronized String decode(int code) throws IllegalArgumentException {
+        if (code < 0 || code >= valeurs.size())
+            throw new IllegalArgumentException("Le code " + code + " n'existe pas dans le dictionnaire");
+        return valeurs.get(code);
+    }
+
+    /**
+     * Retourne le nombre de valeurs distinctes du dictionnaire.
+     *
+     * @return Le nombre de codes attribués.
+     */
+    public synchronized int size() {
+        return valeurs.size();
+    }
+
+    /**
+     * Retourne une copie des valeurs, dans l'ordre des codes.
+     *
+     * @return Les valeurs du dictionnaire.
+     */
+    public synchronized List<String> getValeurs() {
+        return new ArrayList<>(valeurs);
+    }
+}
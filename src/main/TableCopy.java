@@ -0,0 +1,303 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Copie binaire d'une table par images de pages (COPY TO / COPY FROM).
+ * Le fichier contient les data Pages telles qu'elles sont sur le disque, ce qui permet de recharger une table
+ * sans décoder ni réencoder un seul record.
+ * Format : "MSGBDCPY", version, taille de page, format et organisation des records, schéma (nombre d'attributs puis type et longueur de chacun),
+ * nombre de pages, les dictionnaires des colonnes (nombre de valeurs ou -1, puis chaque valeur en UTF-8 précédée de sa longueur),
+ * puis les images des data Pages les unes à la suite des autres.
+ * Dans les images, la destination du pointeur d'un record déplacé est le rang de sa page dans le fichier
+ * et non son numéro de page, les pages recevant de nouveaux PageId au chargement.
+ * @author Mael Lecene
+ */
+public class TableCopy {
+    public static final byte[] MAGIC = {'M', 'S', 'G', 'B', 'D', 'C', 'P', 'Y'};    // Signature du format
+    public static final int VERSION = 1;    // Version du format
+    public static final int EXTENT_SIZE = 64;   // Nombre de pages chargées par extent
+
+    private DiskManager dskm;   // Gestionnaire de disque
+    private BufferManager bm;   // Gestionnaire de buffer
+
+    /**
+     * Constructeur de la copie de table.
+     *
+     * @param dskm Le gestionnaire de disque.
+     * @param bm Le gestionnaire de buffer.
+     */
+    public TableCopy(DiskManager dskm, BufferManager bm) {
+        this.dskm = dskm;
+        this.bm = bm;
+    }
+
+    /**
+     * Écrit toutes les data Pages d'une relation dans un fichier (COPY TO).
+     * Les pages sont lues à travers le BufferManager pour prendre en compte celles qui ne sont pas encore écrites.
+     *
+     * @param relation La relation à copier.
+     * @param nomFichier Le chemin du fichier créé.
+     * @return Le nombre de pages écrites.
+     * @throws Exception Si une page ne peut pas être lue ou le fichier écrit.
+     */
+    public int exportTable(Relation relation, String nomFichier) throws Exception {
+        List<PageId> pages = relation.getDataPages();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(nomFichier),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, entete(relation, pages.size()));
+            writeFully(channel, dictionnaires(relation));
+
+            // Rang de chaque page dans le fichier, pour les pointeurs des records déplacés
+            HashMap<PageId, Integer> rangs = new HashMap<>();
+            for (int i = 0; i < pages.size(); i++)
+                rangs.put(pages.get(i), i);
+            ByteBuffer image = ByteBuffer.allocate(DBConfig.pagesize);
+
+            for (PageId id : pages) {
+                ByteBuffer buffer = bm.getPage(id);
+                try {
+                    image.clear();
+                    image.duplicate().put(buffer.duplicate().clear().limit(DBConfig.pagesize));
+                } finally {
+                    bm.freePage(id, false);
+                }
+                relation.remapForwards(image, cible -> DiskManager.pageFromNumber(rangs.get(cible)));
+                writeFully(channel, image);
+            }
+        }
+        return pages.size();
+    }
+
+    /**
+     * Ajoute à une relation les data Pages d'un fichier écrit par exportTable (COPY FROM).
+     * Les pages sont écrites par extents directement sur le disque, puis référencées dans les header Pages.
+     *
+     * @param relation La relation qui reçoit les pages.
+     * @param nomFichier Le chemin du fichier à charger.
+     * @return Les identifiants des data Pages ajoutées.
+     * @throws Exception Si le fichier est invalide ou incompatible avec la relation.
+     */
+    public ArrayList<PageId> importTable(Relation relation, String nomFichier) throws Exception {
+        ArrayList<PageId> ajoutees = new ArrayList<>();
+
+        try (FileChannel channel = FileChannel.open(Paths.get(nomFichier), StandardOpenOption.READ)) {
+            long nbPages = verifierEntete(channel, relation);
+            fusionnerDictionnaires(channel, relation);
+
+            // Toutes les pages sont allouées d'avance : un pointeur peut désigner une page des extents suivants
+            ArrayList<PageId> pages = dskm.AllocExtent((int) nbPages);
+
+            while (ajoutees.size() < nbPages) {
+                int n = (int) Math.min(EXTENT_SIZE, nbPages - ajoutees.size());
+
+                // Lit un extent de pages dans le fichier
+                ArrayList<ByteBuffer> images = new ArrayList<>(n);
+                ArrayList<Integer> freeBytes = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    ByteBuffer image = ByteBuffer.allocate(DBConfig.pagesize);
+                    readFully(channel, image);
+                    relation.remapForwards(image, rang -> pages.get(DiskManager.pageNumber(rang)));
+                    images.add(image);
+                    freeBytes.add(relation.getFreeBytes(image));
+                }
+                // Écrit l'extent et le référence dans le répertoire de la relation
+                List<PageId> ids = pages.subList(ajoutees.size(), ajoutees.size() + n);
+                dskm.WritePages(ids, images);
+                relation.appendDataPages(ids, freeBytes);
+                ajoutees.addAll(ids);
+            }
+        }
+        return ajoutees;
+    }
+
+    /**
+     * Construit l'entête du fichier.
+     *
+     * @param relation La relation copiée.
+     * @param nbPages Le nombre de pages qui suivent.
+     * @return L'entête prêt à être écrit.
+     */
+    private ByteBuffer entete(Relation relation, long nbPages) {
+        ByteBuffer entete = ByteBuffer.allocate(MAGIC.length + 20 + relation.getNbAttribut() * 8 + 8);
+        entete.put(MAGIC);
+        entete.putInt(VERSION);
+        entete.putInt(DBConfig.pagesize);
+        entete.putInt(relation.getEncoding().ordinal());
+        entete.putInt(relation.getStorage().ordinal());
+        entete.putInt(relation.getNbAttribut());
+        for (int i = 0; i < relation.getNbAttribut(); i++) {
+            entete.putInt(relation.getType(i).ordinal());
+            entete.putInt(relation.getLength(i));
+        }
+        entete.putLong(nbPages);
+        entete.flip();
+        return entete;
+    }
+
+    /**
+     * Lit l'entête du fichier et vérifie qu'il correspond à la relation.
+     *
+     * @param channel Le fichier positionné au début.
+     * @param relation La relation qui reçoit les pages.
+     * @return Le nombre de pages du fichier.
+     * @throws Exception Si le fichier n'est pas une copie de table ou si son schéma diffère.
+     */
+    private long verifierEntete(FileChannel channel, Relation relation) throws Exception {
+        ByteBuffer entete = ByteBuffer.allocate(MAGIC.length + 20);
+        readFully(channel, entete);
+
+        for (byte b : MAGIC) {
+            if (entete.get() != b)
+                throw new IllegalArgumentException("Le fichier n'est pas une copie de table");
+        }
+        if (entete.getInt() != VERSION)
+            throw new IllegalArgumentException("Version de copie de table non supportée");
+        int pagesize = entete.getInt();
+        if (pagesize != DBConfig.pagesize)
+            throw new IllegalArgumentException("La copie utilise des pages de " + pagesize + " octets au lieu de " + DBConfig.pagesize);
+        if (entete.getInt() != relation.getEncoding().ordinal())
+            throw new IllegalArgumentException("La copie n'utilise pas le format de records " + relation.getEncoding());
+        if (entete.getInt() != relation.getStorage().ordinal())
+            throw new IllegalArgumentException("La copie n'utilise pas l'organisation de pages " + relation.getStorage());
+        int nbAttribut = entete.getInt();
+        if (nbAttribut != relation.getNbAttribut())
+            throw new IllegalArgumentException("La copie a " + nbAttribut + " colonnes au lieu de " + relation.getNbAttribut());
+
+        // Les types et longueurs doivent être identiques pour que les records soient lisibles
+        ByteBuffer schema = ByteBuffer.allocate(nbAttribut * 8 + 8);
+        readFully(channel, schema);
+        for (int i = 0; i < nbAttribut; i++) {
+            int type = schema.getInt();
+            int length = schema.getInt();
+            if (type != relation.getType(i).ordinal() || length != relation.getLength(i))
+                throw new IllegalArgumentException("La colonne " + relation.getNameAttribut(i) + " de la copie n'a pas le même type");
+        }
+        return schema.getLong();
+    }
+
+    /**
+     * Construit la section des dictionnaires : les pages ne contiennent que des codes,
+     * la copie n'est lisible qu'avec les valeurs correspondantes.
+     *
+     * @param relation La relation copiée.
+     * @return La section prête à être écrite.
+     */
+    private ByteBuffer dictionnaires(Relation relation) {
+        ArrayList<byte[]> valeurs = new ArrayList<>();
+        int taille = 0;
+        for (int i = 0; i < relation.getNbAttribut(); i++) {
+            taille += 4;
+            if (relation.getDictionary(i) == null)
+                continue;
+            for (String valeur : relation.getDictionary(i).getValeurs()) {
+                byte[] octets = valeur.getBytes(StandardCharsets.UTF_8);
+                valeurs.add(octets);
+                taille += 4 + octets.length;
+            }
+        }
+
+        ByteBuffer section = ByteBuffer.allocate(taille);
+        int v = 0;
+        for (int i = 0; i < relation.getNbAttribut(); i++) {
+            StringDictionary dictionnaire = relation.getDictionary(i);
+            if (dictionnaire == null) {
+                section.putInt(-1);
+                continue;
+            }
+            int n = dictionnaire.size();
+            section.putInt(n);
+            for (int j = 0; j < n; j++, v++) {
+                section.putInt(valeurs.get(v).length);
+                section.put(valeurs.get(v));
+            }
+        }
+        section.flip();
+        return section;
+    }
+
+    /**
+     * Lit les dictionnaires de la copie et les ajoute à ceux de la relation.
+     * Les codes des pages copiées doivent désigner les mêmes valeurs : chaque dictionnaire de la relation
+     * doit commencer comme celui de la copie (ou l'inverse), les valeurs manquantes sont ajoutées à la suite.
+     * Rien n'est modifié si une colonne n'est pas compatible.
+     *
+     * @param channel Le fichier positionné après l'entête.
+     * @param relation La relation qui reçoit les pages.
+     * @throws Exception Si les dictionnaires de la copie ne correspondent pas à ceux de la relation.
+     */
+    private void fusionnerDictionnaires(FileChannel channel, Relation relation) throws Exception {
+        ArrayList<List<String>> copies = new ArrayList<>();
+        ByteBuffer entier = ByteBuffer.allocate(4);
+
+        for (int i = 0; i < relation.getNbAttribut(); i++) {
+            entier.clear();
+            readFully(channel, entier);
+            int n = entier.getInt();
+            StringDictionary dictionnaire = relation.getDictionary(i);
+            if ((n < 0) != (dictionnaire == null))
+                throw new IllegalArgumentException("La colonne " + relation.getNameAttribut(i) + " de la copie n'a pas le même encodage");
+            if (n < 0) {
+                copies.add(null);
+                continue;
+            }
+
+            ArrayList<String> valeurs = new ArrayList<>(n);
+            for (int j = 0; j < n; j++) {
+                entier.clear();
+                readFully(channel, entier);
+                ByteBuffer octets = ByteBuffer.allocate(entier.getInt());
+                readFully(channel, octets);
+                valeurs.add(StandardCharsets.UTF_8.decode(octets).toString());
+            }
+            // Les valeurs communes doivent avoir les mêmes codes
+            List<String> actuelles = dictionnaire.getValeurs();
+            for (int j = 0; j < Math.min(n, actuelles.size()); j++) {
+                if (!valeurs.get(j).equals(actuelles.get(j)))
+                    throw new IllegalArgumentException("Le dictionnaire de la colonne " + relation.getNameAttribut(i) + " de la copie est incompatible");
+            }
+            copies.add(valeurs);
+        }
+
+        for (int i = 0; i < copies.size(); i++) {
+            if (copies.get(i) == null)
+                continue;
+            for (String valeur : copies.get(i))
+                relation.getDictionary(i).encode(valeur);
+        }
+    }
+
+    /**
+     * Lit exactement la place restante du buffer.
+     *
+     * @param channel Le fichier.
+     * @param buffer Le buffer à remplir, remis en lecture à la fin.
+     * @throws IOException Si le fichier est tronqué.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1)
+                throw new IOException("Fichier de copie tronqué");
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Écrit tout le contenu du buffer.
+     *
+     * @param channel Le fichier.
+     * @param buffer Le buffer à écrire.
+     * @throws IOException Si l'écriture échoue.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+}
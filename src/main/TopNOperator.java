@@ -0,0 +1,110 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Opérateur Top-N : renvoie les n premiers records de son entrée dans l'ordre d'une ou plusieurs colonnes
+ * (ORDER BY ... LIMIT n), sans trier toute l'entrée.
+ *
+ * <p>L'entrée est lue une fois en gardant les n meilleurs records dans un tas borné dont la racine est le moins bon :
+ * un record moins bon que la racine est rejeté sans être copié, sinon il la remplace. La mémoire ne dépasse jamais
+ * n tuples, si bien qu'aucun run n'est écrit sur le disque, contrairement à l'{@link ExternalSortOperator}.</p>
+ *
+ * @author Mael Lecene
+ */
+public class TopNOperator implements IRecordIterator {
+    private IRecordIterator entree;     // Records à trier
+    private int limite;                 // Nombre de records renvoyés au plus
+    private Comparator<IRecord> comparateur;
+
+    private TupleSchema schema;         // Schéma des records de l'entrée
+    private ArrayList<Tuple> resultat;  // Les n premiers records triés, construits au premier appel
+    private int index;                  // Prochain tuple du résultat
+
+    /**
+     * Constructeur de l'opérateur Top-N.
+     *
+     * @param entree L'opérateur dont les records sont triés.
+     * @param colonnes Les colonnes du tri, la première étant la plus importante.
+     * @param decroissant Pour chaque colonne, true si elle est triée par ordre décroissant.
+     * @param limite Le nombre de records renvoyés au plus.
+     * @throws IllegalArgumentException Si aucune colonne n'est donnée ou si la limite est négative.
+     */
+    public TopNOperator(IRecordIterator entree, int[] colonnes, boolean[] decroissant, int limite) throws IllegalArgumentException {
+        if (colonnes.length == 0)
+            throw new IllegalArgumentException("Le tri doit porter sur au moins une colonne");
+        if (limite < 0)
+            throw new IllegalArgumentException("La limite doit être positive : " + limite);
+        this.entree = entree;
+        this.limite = limite;
+        this.comparateur = ExternalSortOperator.comparator(colonnes, decroissant);
+    }
+
+    /**
+     * Récupère une copie du prochain record trié.
+     */
+    @Override
+    public MyRecord GetNextRecord() {
+        IRecord res = GetNextView();
+        return (res == null) ? null : res.toRecord();
+    }
+
+    /**
+     * Récupère le prochain record trié. L'entrée est lue au premier appel.
+     * Le tuple renvoyé n'est pas une vue : il reste valide après les appels suivants.
+     */
+    @Override
+    public IRecord GetNextView() {
+        if (resultat == null)
+            open();
+        return (index < resultat.size()) ? resultat.get(index++) : null;
+    }
+
+    /**
+     * Lit toute l'entrée en gardant ses n meilleurs records, puis les trie.
+     */
+    private void open() {
+        // Racine du tas : le moins bon des records gardés, le premier à être remplacé
+        PriorityQueue<Tuple> tas = new PriorityQueue<>(Math.max(1, limite), comparateur.reversed());
+        IRecord record;
+        while (limite > 0 && (record = entree.GetNextView()) != null) {
+            if (tas.size() < limite) {
+                if (schema == null)
+                    schema = TupleSchema.of(record);
+                tas.add(Tuple.of(record, schema));
+            }
+            // Seuls les records meilleurs que le moins bon gardé sont copiés
+            else if (comparateur.compare(record, tas.peek()) < 0) {
+                tas.poll();
+                tas.add(Tuple.of(record, schema));
+            }
+        }
+        resultat = new ArrayList<>(tas);
+        resultat.sort(comparateur);
+        index = 0;
+    }
+
+    /**
+     * @return Le nombre de records renvoyés au plus.
+     */
+    public int getLimite() {
+        return limite;
+    }
+
+    /**
+     * Réinitialise l'opérateur : le résultat, déjà en mémoire, est relu depuis le début.
+     */
+    @Override
+    public void Reset() {
+        index = 0;
+    }
+
+    /**
+     * Ferme l'opérateur et son entrée.
+     */
+    @Override
+    public void Close() {
+        entree.Close();
+        resultat = null;
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Tuple compact utilisé entre les opérateurs : les valeurs INT et REAL sont rangées dans des tableaux
+ * de types primitifs, les chaînes et les dates dans un tableau d'objets.
+ * Le type et la place de chaque colonne sont décrits par un TupleSchema partagé par tous les tuples du flux,
+ * si bien qu'un tuple ne coûte que quatre objets quel que soit son nombre de colonnes,
+ * et que la concaténation de deux tuples (jointure) se fait par copie de tableaux.
+ * Un tuple n'est jamais modifié après sa construction.
+ * @author Mael Lecene
+ */
+public class Tuple implements IRecord {
+    private static final int[] NO_INTS = new int[0];
+    private static final float[] NO_FLOATS = new float[0];
+    private static final Object[] NO_OBJETS = new Object[0];
+
+    private final TupleSchema schema;   // Schéma partagé du flux
+    private final int[] ints;   // Valeurs des colonnes INT
+    private final float[] floats;   // Valeurs des colonnes REAL
+    private final Object[] objets;  // Valeurs des colonnes CHAR, VARCHAR et DATE
+
+    /**
+     * Construit un tuple vide du schéma donné.
+     *
+     * @param schema Le schéma du tuple.
+     */
+    private Tuple(TupleSchema schema) {
+        this.schema = schema;
+        this.ints = (schema.getNbInts() == 0) ? NO_INTS : new int[schema.getNbInts()];
+        this.floats = (schema.getNbFloats() == 0) ? NO_FLOATS : new float[schema.getNbFloats()];
+        this.objets = (schema.getNbObjets() == 0) ? NO_OBJETS : new Object[schema.getNbObjets()];
+    }
+
+    /**
+     * Copie un record dans un tuple. Un tuple est renvoyé tel quel puisqu'il ne change jamais.
+     *
+     * @param record Le record à copier, éventuellement une vue sur une page.
+     * @param schema Le schéma des colonnes du record.
+     * @return Le tuple correspondant.
+     */
+    public static Tuple of(IRecord record, TupleSchema schema) {
+        if (record instanceof Tuple)
+            return (Tuple) record;
+
+        Tuple tuple = new Tuple(schema);
+        tuple.copier(record, 0);
+        return tuple;
+    }
+
+    /**
+     * Construit le tuple résultat d'une jointure : les colonnes de gauche suivies de celles de droite.
+     *
+     * @param gauche Le tuple de gauche.
+     * @param droite Le record de droite, éventuellement une vue sur une page.
+     * @param schema Le schéma concaténé, obtenu par TupleSchema.concat.
+     * @return Le tuple concaténé.
+     */
+    public static Tuple concat(Tuple gauche, IRecord droite, TupleSchema schema) {
+        Tuple tuple = new Tuple(schema);
+        System.arraycopy(gauche.ints, 0, tuple.ints, 0, gauche.ints.length);
+        System.arraycopy(gauche.floats, 0, tuple.floats, 0, gauche.floats.length);
+        System.arraycopy(gauche.objets, 0, tuple.objets, 0, gauche.objets.length);
+
+        // Les valeurs de droite suivent celles de gauche dans chaque tableau
+        if (droite instanceof Tuple) {
+            Tuple d = (Tuple) droite;
+            System.arraycopy(d.ints, 0, tuple.ints, gauche.ints.length, d.ints.length);
+            System.arraycopy(d.floats, 0, tuple.floats, gauche.floats.length, d.floats.length);
+            System.arraycopy(d.objets, 0, tuple.objets, gauche.objets.length, d.objets.length);
+        }
+        else
+            tuple.copier(droite, gauche.size());
+        return tuple;
+    }
+
+    /**
+     * Copie les valeurs d'un record dans les colonnes de ce tuple à partir d'une colonne donnée.
+     *
+     * @param record Le record à copier.
+     * @param premiereColonne La colonne du tuple qui reçoit la première valeur du record.
+     */
+    private void copier(IRecord record, int premiereColonne) {
+        for (int i = 0; i < record.size(); i++) {
+            int colonne = premiereColonne + i;
+            int position = schema.getPosition(colonne);
+
+            switch (schema.getType(colonne)) {
+                case INT:
+                    ints[position] = record.getInt(i);
+                    break;
+                case REAL:
+                    floats[position] = record.getFloat(i);
+                    break;
+                default:
+                    objets[position] = record.getValue(i);
+            }
+        }
+    }
+
+    /**
+     * Retourne le schéma du tuple.
+     *
+     * @return Le schéma partagé du tuple.
+     */
+    public TupleSchema getSchema() {
+        return schema;
+    }
+
+    @Override
+    public int size() {
+        return schema.size();
+    }
+
+    @Override
+    public DataType getType(int index) {
+        return schema.getType(index);
+    }
+
+    @Override
+    public int getInt(int index) {
+        return ints[schema.getPosition(index)];
+    }
+
+    @Override
+    public float getFloat(int index) {
+        return floats[schema.getPosition(index)];
+    }
+
+    @Override
+    public String getString(int index) {
+        return (String) objets[schema.getPosition(index)];
+    }
+
+    @Override
+    public Object getValue(int index) {
+        switch (schema.getType(index)) {
+            case INT:
+                return getInt(index);
+            case REAL:
+                return getFloat(index);
+            default:
+                return objets[schema.getPosition(index)];
+        }
+    }
+
+    /**
+     * Estime la place du tuple en mémoire, pour les opérateurs qui gardent des tuples dans une limite de pages
+     * (jointure par hachage, tri externe).
+     *
+     * @return Sa taille approximative en octets.
+     */
+    public int getMemorySize() {
+        int taille = 4 * (ints.length + floats.length);
+        for (int i = 0; i < size(); i++) {
+            switch (getType(i)) {
+                case INT:
+                case REAL:
+                    break;
+                case DATE:
+                    taille += 12;
+                    break;
+                default:
+                    taille += 4 + 2 * getString(i).length();   // 1 char = 2 octets
+            }
+        }
+        return taille;
+    }
+
+    @Override
+    public MyRecord toRecord() {
+        MyRecord record = new MyRecord();
+        for (int i = 0; i < size(); i++)
+            record.add(getValue(i), getType(i));
+        return record;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Schéma partagé par tous les Tuple d'un même flux : le type de chaque colonne
+ * et sa place dans le tableau de valeurs de son type (entiers, réels ou objets).
+ * Un seul schéma est construit par opérateur, les tuples n'en gardent qu'une référence.
+ * @author Mael Lecene
+ */
+public class TupleSchema {
+    private final DataType[] types;   // Type de chaque colonne
+    private final int[] position;     // Place de chaque colonne dans le tableau de son type
+    private final int nbInts;   // Nombre de colonnes INT
+    private final int nbFloats; // Nombre de colonnes REAL
+    private final int nbObjets; // Nombre de colonnes CHAR, VARCHAR et DATE
+
+    /**
+     * Construit le schéma d'une suite de types de colonnes.
+     *
+     * @param types Le type de chaque colonne.
+     */
+    public TupleSchema(DataType[] types) {
+        this.types = types;
+        this.position = new int[types.length];
+        int ints = 0, floats = 0, objets = 0;
+
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case INT:
+                    position[i] = ints++;
+                    break;
+                case REAL:
+                    position[i] = floats++;
+                    break;
+                default:
+                    position[i] = objets++;
+            }
+        }
+        nbInts = ints;
+        nbFloats = floats;
+        nbObjets = objets;
+    }
+
+    /**
+     * Construit le schéma des colonnes d'un record.
+     *
+     * @param record Le record modèle.
+     * @return Le schéma de ses colonnes.
+     */
+    public static TupleSchema of(IRecord record) {
+        if (record instanceof Tuple)
+            return ((Tuple) record).getSchema();
+
+        DataType[] types = new DataType[record.size()];
+        for (int i = 0; i < types.length; i++)
+            types[i] = record.getType(i);
+        return new TupleSchema(types);
+    }
+
+    /**
+     * Construit le schéma des records d'une relation.
+     *
+     * @param relation La relation.
+     * @return Le schéma de ses colonnes.
+     */
+    public static TupleSchema of(Relation relation) {
+        DataType[] types = new DataType[relation.getNbAttribut()];
+        for (int i = 0; i < types.length; i++)
+            types[i] = relation.getType(i);
+        return new TupleSchema(types);
+    }
+
+    /**
+     * Construit le schéma d'une jointure : les colonnes de ce schéma suivies de celles d'un autre.
+     * Dans chaque tableau de valeurs, les colonnes de droite suivent celles de gauche.
+     *
+     * @param droite Le schéma des colonnes de droite.
+     * @return Le schéma concaténé.
+     */
+    public TupleSchema concat(TupleSchema droite) {
+        DataType[] concat = new DataType[types.length + droite.types.length];
+        System.arraycopy(types, 0, concat, 0, types.length);
+        System.arraycopy(droite.types, 0, concat, types.length, droite.types.length);
+        return new TupleSchema(concat);
+    }
+
+    /**
+     * Retourne le nombre de colonnes.
+     *
+     * @return Le nombre de colonnes.
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * Retourne le type d'une colonne.
+     *
+     * @param index L'index de la colonne.
+     * @return Le type de la colonne.
+     */
+    public DataType getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * Retourne la place d'une colonne dans le tableau de valeurs de son type.
+     *
+     * @param index L'index de la colonne.
+     * @return La place de la colonne.
+     */
+    public int getPosition(int index) {
+        return position[index];
+    }
+
+    /**
+     * Retourne le nombre de colonnes INT.
+     *
+     * @return Le nombre de colonnes INT.
+     */
+    public int getNbInts() {
+        return nbInts;
+    }
+
+    /**
+     * Retourne le nombre de colonnes REAL.
+     *
+     * @return Le nombre de colonnes REAL.
+     */
+    public int getNbFloats() {
+        return nbFloats;
+    }
+
+    /**
+     * Retourne le nombre de colonnes stockées comme objets (CHAR, VARCHAR et DATE).
+     *
+     * @return Le nombre de colonnes objets.
+     */
+    public int getNbObjets() {
+        return nbObjets;
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Carte des zones (zone map) d'une relation : pour chaque data Page, la plus petite et la plus grande valeur
+ * de chaque colonne parmi les records écrits dans la page.
+ * Un parcours avec des conditions saute les pages dont les intervalles ne peuvent satisfaire l'une d'elles,
+ * sans les charger. Comme la carte de l'espace libre, elle est construite en mémoire au premier besoin puis
+ * tenue à jour par les écritures de la relation. Les suppressions ne rétrécissent pas les intervalles :
+ * ils restent assez larges pour contenir les records de la page, ce qui suffit pour ne jamais sauter une page utile.
+ * @author Mael Lecene
+ */
+public class ZoneMap {
+
+    /**
+     * Intervalles des valeurs d'une data Page, par colonne.
+     */
+    public static class Zone {
+        private Object[] min;   // Plus petite valeur de chaque colonne, null tant que la page n'a aucun record
+        private Object[] max;   // Plus grande valeur de chaque colonne
+
+        Zone(int nbColonnes) {
+            min = new Object[nbColonnes];
+            max = new Object[nbColonnes];
+        }
+
+        /**
+         * @return true si aucun record n'a été écrit dans la page.
+         */
+        public boolean isEmpty() {
+            return min.length == 0 || min[0] == null;
+        }
+
+        /**
+         * @param colonne L'index de la colonne.
+         * @return La plus petite valeur de la colonne dans la page.
+         */
+        public Object getMin(int colonne) {
+            return min[colonne];
+        }
+
+        /**
+         * @param colonne L'index de la colonne.
+         * @return La plus grande valeur de la colonne dans la page.
+         */
+        public Object getMax(int colonne) {
+            return max[colonne];
+        }
+    }
+
+    private HashMap<PageId, Zone> zones = new HashMap<>();  // Zone de chaque data Page connue
+    private int nbColonnes; // Nombre de colonnes de la relation
+
+    /**
+     * Construit une carte vide.
+     *
+     * @param nbColonnes Le nombre de colonnes de la relation.
+     */
+    public ZoneMap(int nbColonnes) {
+        this.nbColonnes = nbColonnes;
+    }
+
+    /**
+     * Déclare une data Page sans record : elle sera sautée par tous les parcours avec conditions.
+     *
+     * @param id L'identifiant de la data Page.
+     */
+    public void addEmpty(PageId id) {
+        zones.putIfAbsent(id, new Zone(nbColonnes));
+    }
+
+    /**
+     * Élargit les intervalles d'une data Page aux valeurs d'un record qui y est écrit.
+     *
+     * @param id L'identifiant de la data Page.
+     * @param record Le record écrit.
+     */
+    public void add(PageId id, IRecord record) {
+        Zone zone = zones.computeIfAbsent(id, k -> new Zone(nbColonnes));
+        for (int i = 0; i < nbColonnes; i++) {
+            Object valeur = record.getValue(i);
+            if (zone.min[i] == null || compare(valeur, zone.min[i]) < 0)
+                zone.min[i] = valeur;
+            if (zone.max[i] == null || compare(valeur, zone.max[i]) > 0)
+                zone.max[i] = valeur;
+        }
+    }
+
+    /**
+     * Retourne la zone d'une data Page.
+     *
+     * @param id L'identifiant de la data Page.
+     * @return Sa zone, ou null si la page n'est pas connue de la carte.
+     */
+    public Zone get(PageId id) {
+        return zones.get(id);
+    }
+
+    /**
+     * Indique si une data Page peut contenir un record qui satisfait toutes les conditions.
+     * Une page inconnue de la carte peut toujours en contenir un.
+     *
+     * @param id L'identifiant de la data Page.
+     * @param conditions Les conditions sur les colonnes de la relation.
+     * @return false si la page peut être sautée.
+     */
+    public boolean mayContain(PageId id, List<Condition> conditions) {
+        Zone zone = zones.get(id);
+        if (zone == null)
+            return true;
+        if (zone.isEmpty())
+            return false;
+        for (Condition condition : conditions) {
+            if (!condition.mayMatch(zone))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Le nombre de data Pages connues de la carte.
+     */
+    public int size() {
+        return zones.size();
+    }
+
+    /**
+     * Compare deux valeurs d'une même colonne, ou une valeur et une constante, comme le fait Condition :
+     * les nombres sont comparés par leur valeur, les autres valeurs par leur ordre naturel.
+     *
+     * @param valeur1 La première valeur.
+     * @param valeur2 La deuxième valeur.
+     * @return Le résultat de la comparaison.
+     * @throws IllegalArgumentException Si les valeurs ne sont pas comparables.
+     */
+    @SuppressWarnings("unchecked")  // Ignore les avertissements de type
+    public static int compare(Object valeur1, Object valeur2) throws IllegalArgumentException {
+        if (valeur1 instanceof Number && valeur2 instanceof Number)
+            return Double.compare(((Number) valeur1).doubleValue(), ((Number) valeur2).doubleValue());
+        if (valeur1 == null || valeur2 == null || valeur1.getClass() != valeur2.getClass() || !(valeur1 instanceof Comparable))
+            throw new IllegalArgumentException("Les valeurs " + valeur1 + " et " + valeur2 + " ne sont pas comparables");
+        return ((Comparable<Object>) valeur1).compareTo(valeur2);
+    }
+}
@@ -1,4 +1,6 @@
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.function.Predicate;
 
 /**
  * Opérateur de sélection implémentant les interfaces {@link Operateur} et {@link IRecordIterator}.
@@ -21,19 +23,47 @@ public class selectOperator implements IRecordIterator {
 
     // Liste des conditions à appliquer pour filtrer les enregistrements.
     private ArrayList<Condition> conditions;
+    // Conditions compilées pour les types des colonnes de la relation.
+    private Predicate<IRecord> predicat;
+    // Colonnes renvoyées, dans l'ordre de la relation, ou null pour toutes.
+    private BitSet colonnes;
 
     /**
-     * Constructeur pour l'opérateur de sélection.
+     * Constructeur pour l'opérateur de sélection, qui renvoie toutes les colonnes.
      *
      * @param pageIterator Itérateur pour parcourir les pages de la relation.
      * @param relation     Relation contenant les enregistrements.
      * @param bm           Gestionnaire de mémoire tampon.
      */
     public selectOperator(PageDirectoryIterator pageIterator, Relation relation, ArrayList<Condition> conditions, BufferManager bm) {
+        this(pageIterator, relation, conditions, null, bm);
+    }
+
+    /**
+     * Constructeur pour l'opérateur de sélection.
+     * Les conditions et le masque des colonnes sont poussés dans la lecture de chaque page :
+     * les conditions sont testées dans la page et seules les colonnes du masque des records retenus sont copiées.
+     *
+     * @param pageIterator Itérateur pour parcourir les pages de la relation.
+     * @param relation     Relation contenant les enregistrements.
+     * @param conditions   Conditions que les enregistrements doivent satisfaire.
+     * @param colonnes     Masque des colonnes renvoyées, dans l'ordre de la relation, ou null pour toutes.
+     * @param bm           Gestionnaire de mémoire tampon.
+     */
+    public selectOperator(PageDirectoryIterator pageIterator, Relation relation, ArrayList<Condition> conditions, BitSet colonnes, BufferManager bm) {
         this.pageIterator = pageIterator;
         this.relation = relation;
         this.bm = bm;
         this.conditions = conditions;
+        this.colonnes = colonnes;
+        this.predicat = Condition.compile(conditions, TupleSchema.of(relation));
+
+        // Les pages dont les intervalles de valeurs excluent les conditions ne seront pas lues
+        try {
+            pageIterator.setConditions(conditions);
+        } catch (Exception e) {
+            throw new RuntimeException("Erreur lors de la lecture de la carte des zones: " + e.getMessage());
+        }
 
         // Initialise les itérateurs pour démarrer la lecture.
         // Charge la première page et initialise un itérateur pour ses enregistrements.
@@ -45,7 +75,7 @@ public class selectOperator implements IRecordIterator {
         else {
             try {
                 // Crée un nouvel itérateur pour les enregistrements de la première page.
-                tupleIterator = new DataPageHoldRecordIterator(relation, bm.getPage(id), bm, id);
+                tupleIterator = newTupleIterator(id);
             } catch (Exception e) {
                 e.printStackTrace();
                 // Si une erreur survient, l'itérateur de tuples est nul.
@@ -56,21 +86,35 @@ public class selectOperator implements IRecordIterator {
     }
 
     /**
-     * Récupère le prochain enregistrement qui satisfait les conditions.
+     * Récupère une copie du prochain enregistrement qui satisfait les conditions.
      * 
      * @return Le prochain enregistrement valide ou null s'il n'y en a plus.
      */
     @Override
     public MyRecord GetNextRecord() {
+        IRecord record = GetNextView();
+        // Seuls les enregistrements retenus sont copiés hors de leur page
+        return (record == null) ? null : record.toRecord();
+    }
+
+    /**
+     * Récupère une vue sur le prochain enregistrement qui satisfait les conditions.
+     * Les conditions sont évaluées directement dans la page : les enregistrements rejetés ne sont jamais copiés.
+     * Si un masque de colonnes est donné, l'enregistrement est une copie de ces seules colonnes.
+     * 
+     * @return Le prochain enregistrement valide, valable jusqu'au prochain appel, ou null s'il n'y en a plus.
+     */
+    @Override
+    public IRecord GetNextView() {
         // Si la relation est vide, retourne null immédiatement
         if (tupleIterator == null) return null;
 
-        MyRecord record;
+        IRecord record;
 
         do {
             try {
                 // Tente de récupérer le prochain enregistrement.
-                record = tupleIterator.GetNextRecord();
+                record = nextInPage();
 
                 // Si aucun enregistrement n'est disponible dans l'itérateur actuel.
                 if (record == null) {
@@ -83,41 +127,41 @@ public class selectOperator implements IRecordIterator {
 
                     // Ferme l'itérateur actuel et crée un nouvel itérateur pour la nouvelle page.
                     tupleIterator.Close();
-                    tupleIterator = new DataPageHoldRecordIterator(relation, bm.getPage(id), bm, id);
+                    tupleIterator = newTupleIterator(id);
 
                     // Tente de récupérer le premier enregistrement de la nouvelle page.
-                    record = tupleIterator.GetNextRecord();
+                    record = nextInPage();
                 }
             } catch (Exception e) {
                 // Lève une exception en cas d'erreur.
                 throw new RuntimeException(e.getMessage());
             }
-        } while (!satifyConditions(record)); // Continue tant que les conditions ne sont pas satisfaites.
+        } while (record == null); // Continue tant qu'aucun enregistrement n'est retenu (une page peut être vide).
 
         return record;  // Retourne le record resultat
     }
 
     /**
-     * Vérifie si un enregistrement satisfait toutes les conditions spécifiées.
-     * 
-     * @param record   Enregistrement à vérifier.
-     * @param relation Relation associée à l'enregistrement.
-     * @return true si toutes les conditions sont satisfaites, sinon false.
+     * Crée l'itérateur d'une page, avec les conditions et le masque des colonnes de l'opérateur.
+     *
+     * @param id L'identifiant de la data Page.
+     * @return L'itérateur des enregistrements retenus de la page.
+     * @throws Exception Si la page ne peut pas être chargée.
      */
-    private boolean satifyConditions(MyRecord record) {
-        // Parcourt toutes les conditions.
-        for (Condition cond : conditions) {
-            try {
-                // Si une condition n'est pas satisfaite, retourne false.
-                if (!cond.evaluate(record))
-                    return false;
-            } catch (Exception e) {
-                // Retourne false en cas d'erreur d'évaluation.
-                return false;
-            }
-        }
-        // Retourne true si toutes les conditions sont satisfaites.
-        return true;
+    private DataPageHoldRecordIterator newTupleIterator(PageId id) throws Exception {
+        DataPageHoldRecordIterator it = new DataPageHoldRecordIterator(relation, bm.getPage(id), bm, id);
+        // Conditions compilées à la construction de l'opérateur, testées dans la page
+        it.setFiltre(predicat, colonnes);
+        return it;
+    }
+
+    /**
+     * Récupère le prochain enregistrement retenu de la page courante.
+     *
+     * @return Une vue sur l'enregistrement, ou une copie de ses colonnes projetées ; null à la fin de la page.
+     */
+    private IRecord nextInPage() {
+        return (colonnes == null) ? tupleIterator.GetNextView() : tupleIterator.GetNextRecord();
     }
 
     /**
@@ -125,6 +169,9 @@ public class selectOperator implements IRecordIterator {
      */
     @Override
     public void Reset() {
+        // Libère la page en cours de lecture
+        if (tupleIterator != null) tupleIterator.Close();
+
         // Réinitialise l'itérateur de pages.
         pageIterator.Reset();
 
@@ -137,7 +184,7 @@ public class selectOperator implements IRecordIterator {
         else {
             try {
                 // Crée un nouvel itérateur pour les enregistrements de la première page.
-                tupleIterator = new DataPageHoldRecordIterator(relation, bm.getPage(id), bm, id);
+                tupleIterator = newTupleIterator(id);
             } catch (Exception e) {
                 e.printStackTrace();
                 // Si une erreur survient, l'itérateur de tuples est nul.
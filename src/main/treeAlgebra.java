@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 
@@ -18,6 +19,10 @@ import java.util.List;
  *     <li>Création d'un opérateur SELECT pour chaque relation, 
  *     en appliquant les conditions internes associées.</li>
  *     <li>Construction des opérateurs de jointure pour combiner plusieurs relations.</li>
+ *     <li>Choix de l'ordre des jointures et de leurs algorithmes par un optimiseur fondé sur les coûts.</li>
+ *     <li>Lecture par son index B+Tree d'une relation jointe par une égalité sur une colonne indexée.</li>
+ *     <li>Lecture dans l'ordre de son index d'une relation jointe par tri-fusion, au lieu de la trier.</li>
+ *     <li>Tri du résultat (ORDER BY) par un tri externe, ou par un tas borné avec LIMIT.</li>
  *     <li>Application d'un opérateur de projection pour restreindre les attributs affichés.</li>
  *     <li>Affichage des résultats à l'aide d'un opérateur d'impression.</li>
  * </ul>
@@ -41,22 +46,72 @@ import java.util.List;
 public class TreeAlgebra {
     private RecordPrinter root; // L'opérateur en haut de l'arbre, chargé d'afficher les résultats.
 
+    /**
+     * Construit l'arbre d'exécution pour une requête, sans utiliser d'index.
+     *
+     * @param relations      Liste des relations impliquées.
+     * @param joinConditions Liste des conditions pour les jointures.
+     * @param innerConditions Conditions internes à chaque relation.
+     * @param attbToPrint    Liste des indices des attributs à projeter.
+     * @param attrbName      Liste des noms des attributs à afficher.
+     * @param bm             Instance du gestionnaire de buffers.
+     */
+    public TreeAlgebra(
+        ArrayList<Relation> relations, 
+        ArrayList<Condition> joinConditions, 
+        HashMap<String, ArrayList<Condition>> innerConditions, 
+        ArrayList<Integer> attbToPrint, 
+        ArrayList<String> attrbName, 
+        BufferManager bm
+    ) {
+        this(relations, joinConditions, innerConditions, new HashMap<>(), attbToPrint, attrbName, bm);
+    }
+
+    /**
+     * Construit l'arbre d'exécution pour une requête sans ORDER BY ni LIMIT.
+     *
+     * @param relations      Liste des relations impliquées.
+     * @param joinConditions Liste des conditions pour les jointures.
+     * @param innerConditions Conditions internes à chaque relation.
+     * @param index          Index B+Tree de chaque relation, par numéro de colonne.
+     * @param attbToPrint    Liste des indices des attributs à projeter.
+     * @param attrbName      Liste des noms des attributs à afficher.
+     * @param bm             Instance du gestionnaire de buffers.
+     */
+    public TreeAlgebra(
+        ArrayList<Relation> relations, 
+        ArrayList<Condition> joinConditions, 
+        HashMap<String, ArrayList<Condition>> innerConditions, 
+        HashMap<String, HashMap<Integer, BPlusTree>> index, 
+        ArrayList<Integer> attbToPrint, 
+        ArrayList<String> attrbName, 
+        BufferManager bm
+    ) {
+        this(relations, joinConditions, innerConditions, index, attbToPrint, attrbName, new ArrayList<>(), -1, bm);
+    }
+
     /**
      * Construit l'arbre d'exécution pour une requête.
      *
      * @param relations      Liste des relations impliquées.
      * @param joinConditions Liste des conditions pour les jointures.
      * @param innerConditions Conditions internes à chaque relation.
+     * @param index          Index B+Tree de chaque relation, par numéro de colonne.
      * @param attbToPrint    Liste des indices des attributs à projeter.
      * @param attrbName      Liste des noms des attributs à afficher.
+     * @param orderBy        Colonnes de l'ORDER BY, dans l'ordre de la requête, chacune avec true si elle est triée par ordre décroissant.
+     * @param limite         Nombre de records affichés au plus (LIMIT), ou -1 pour tous.
      * @param bm             Instance du gestionnaire de buffers.
      */
     public TreeAlgebra(
         ArrayList<Relation> relations, 
         ArrayList<Condition> joinConditions, 
         HashMap<String, ArrayList<Condition>> innerConditions, 
+        HashMap<String, HashMap<Integer, BPlusTree>> index, 
         ArrayList<Integer> attbToPrint, 
         ArrayList<String> attrbName, 
+        ArrayList<Pair<Integer, Boolean>> orderBy, 
+        int limite, 
         BufferManager bm
     ) {
         // Vérifie que la liste des relations n'est pas vide.
@@ -68,17 +123,38 @@ public class TreeAlgebra {
 
             // Cas 1 : Une seule relation (aucune jointure à effectuer).
             if (relations.size() == 1) {
+                // Seules les colonnes affichées ou triées sont copiées par le SELECT, dans l'ordre de la relation.
+                BitSet colonnes = new BitSet();
+                for (int attribut : attbToPrint)
+                    colonnes.set(attribut);
+                for (Pair<Integer, Boolean> tri : orderBy)
+                    colonnes.set(tri.getFirst());
+                int[] rangs = new int[colonnes.length()];
+                for (int attribut = colonnes.nextSetBit(0); attribut >= 0; attribut = colonnes.nextSetBit(attribut + 1))
+                    rangs[attribut] = colonnes.get(0, attribut).cardinality();   // Rang de la colonne parmi celles copiées
+
                 // Crée un opérateur SELECT pour la relation unique.
-                selectOperator select = createSelectOperator(relations.get(0), innerConditions, bm);
-                // Applique la projection sur l'opérateur SELECT.
-                projectionOp = new ProjectOperator(select, attbToPrint);
+                selectOperator select = createSelectOperator(relations.get(0), innerConditions, colonnes, bm);
+                // Trie et limite le résultat, puis applique la projection, qui remet les colonnes dans l'ordre demandé.
+                IRecordIterator resultat = createSortOperator(select, orderBy, rangs, limite, bm);
+                projectionOp = new ProjectOperator(resultat, remap(attbToPrint, rangs));
             }
             // Cas 2 : Plusieurs relations (jointures nécessaires).
             else {
+                // Choisit l'ordre des jointures et leurs algorithmes d'après leur coût estimé.
+                JoinOrderOptimizer optimiseur = new JoinOrderOptimizer(relations, joinConditions, innerConditions, index);
+
+                // Les colonnes sont mises bout à bout dans l'ordre choisi : conditions et projection suivent leurs colonnes.
+                int[] positions = optimiseur.getPositions();
+                ArrayList<Condition> conditions = new ArrayList<>();
+                for (Condition cond : joinConditions)
+                    conditions.add(cond.remap(positions));
+
                 // Crée l'opérateur de jointure combinant toutes les relations.
-                IRecordIterator joinOperator = createJoinOperator(relations, innerConditions, joinConditions, bm);
-                // Applique la projection sur le résultat des jointures.
-                projectionOp = new ProjectOperator(joinOperator, attbToPrint);
+                IRecordIterator joinOperator = createJoinOperator(optimiseur.getRelationsOrdonnees(), innerConditions, conditions, index, optimiseur, bm);
+                // Trie et limite le résultat des jointures, puis applique la projection.
+                IRecordIterator resultat = createSortOperator(joinOperator, orderBy, positions, limite, bm);
+                projectionOp = new ProjectOperator(resultat, remap(attbToPrint, positions));
             }
 
             // Configure l'affichage à partir de l'opérateur de projection.
@@ -90,15 +166,57 @@ public class TreeAlgebra {
         }
     }
 
+    /**
+     * Donne la nouvelle position de chaque attribut.
+     *
+     * @param attributs Les index des attributs dans l'ordre de la requête.
+     * @param positions La nouvelle position de chaque index.
+     * @return Les nouvelles positions des attributs.
+     */
+    private static ArrayList<Integer> remap(ArrayList<Integer> attributs, int[] positions) {
+        ArrayList<Integer> res = new ArrayList<>();
+        for (int attribut : attributs)
+            res.add(positions[attribut]);
+        return res;
+    }
+
+    /**
+     * Crée l'opérateur qui applique l'ORDER BY et le LIMIT de la requête.
+     * Avec un LIMIT, un tas borné garde les premiers records sans jamais écrire sur le disque ;
+     * sinon le tri externe borne sa mémoire en écrivant des runs.
+     *
+     * @param entree    L'opérateur dont les records sont triés.
+     * @param orderBy   Les colonnes du tri dans l'ordre de la requête, avec true pour un ordre décroissant.
+     * @param positions La position de chaque colonne de la requête dans les records de l'entrée.
+     * @param limite    Le nombre de records gardés au plus, ou -1 pour tous.
+     * @param bm        Le gestionnaire de buffers, qui reçoit les runs du tri externe.
+     * @return L'opérateur, ou l'entrée elle-même sans ORDER BY ni LIMIT.
+     */
+    private IRecordIterator createSortOperator(IRecordIterator entree, ArrayList<Pair<Integer, Boolean>> orderBy, int[] positions, int limite, BufferManager bm) {
+        if (orderBy.isEmpty())
+            return (limite < 0) ? entree : new LimitOperator(entree, limite);
+
+        int[] colonnes = new int[orderBy.size()];
+        boolean[] decroissant = new boolean[orderBy.size()];
+        for (int i = 0; i < colonnes.length; i++) {
+            colonnes[i] = positions[orderBy.get(i).getFirst()];
+            decroissant[i] = orderBy.get(i).getSecond();
+        }
+        if (limite >= 0)
+            return new TopNOperator(entree, colonnes, decroissant, limite);
+        return new ExternalSortOperator(entree, colonnes, decroissant, bm);
+    }
+
     /**
      * Crée un opérateur de sélection pour une relation.
      *
      * @param relation       La relation à sélectionner.
      * @param innerConditions Les conditions internes pour cette relation.
+     * @param colonnes       Le masque des colonnes renvoyées, ou null pour toutes.
      * @param bm             Le gestionnaire de buffers.
      * @return Un opérateur de sélection configuré.
      */
-    private selectOperator createSelectOperator(Relation relation, HashMap<String, ArrayList<Condition>> innerConditions, BufferManager bm) throws Exception {
+    private selectOperator createSelectOperator(Relation relation, HashMap<String, ArrayList<Condition>> innerConditions, BitSet colonnes, BufferManager bm) throws Exception {
         // Récupère les conditions internes associées à la relation. Si aucune condition n'existe, retourne une liste vide.
         ArrayList<Condition> conditions = innerConditions.getOrDefault(relation.getRelationName(), new ArrayList<>());
 
@@ -107,16 +225,20 @@ public class TreeAlgebra {
             new PageDirectoryIterator(relation, bm), 
             relation, 
             conditions, 
+            colonnes, 
             bm
         );
     }
 
     /**
-     * Crée un opérateur de jointure pour une liste de relations.
+     * Crée un opérateur de jointure pour une liste de relations, jointes dans l'ordre de la liste
+     * avec les algorithmes choisis par l'optimiseur.
      *
-     * @param relations      Liste des relations à joindre.
+     * @param relations      Liste des relations à joindre, dans l'ordre choisi par l'optimiseur.
      * @param innerConditions Conditions internes à chaque relation.
-     * @param joinConditions Liste des conditions pour les jointures.
+     * @param joinConditions Liste des conditions pour les jointures, avec les colonnes dans l'ordre des relations.
+     * @param index          Index B+Tree de chaque relation, par numéro de colonne.
+     * @param optimiseur     L'optimiseur qui a choisi l'ordre et les algorithmes.
      * @param bm             Le gestionnaire de buffers.
      * @return L'opérateur de jointure combiné.
      */
@@ -124,36 +246,117 @@ public class TreeAlgebra {
         List<Relation> relations, 
         HashMap<String, ArrayList<Condition>> innerConditions, 
         ArrayList<Condition> joinConditions, 
+        HashMap<String, HashMap<Integer, BPlusTree>> index, 
+        JoinOrderOptimizer optimiseur, 
         BufferManager bm
     ) throws Exception {
-        // Initialise une liste pour stocker les opérateurs SELECT de chaque relation.
-        List<IRecordIterator> selectOperators = new ArrayList<>();
-
-        // Parcourt chaque relation pour créer un opérateur SELECT.
-        for (Relation relation : relations)
-            // Ajoute un opérateur SELECT pour chaque relation, en appliquant les conditions internes.
-            selectOperators.add(createSelectOperator(relation, innerConditions, bm));
-
-        // Initialise l'opérateur de jointure avec le premier opérateur SELECT de la liste.
-        IRecordIterator joinOperator = selectOperators.get(0);
-
-        // Parcourt les relations restantes pour construire les jointures sauf la dernière
-        for (int i = 1; i < selectOperators.size()-1; i++) {
-            // Combine l'opérateur de jointure actuel avec le prochain opérateur SELECT.
-            joinOperator = new JoinOperator(
-                new Pair<>(joinOperator, selectOperators.get(i)), 
-                new ArrayList<>() // Conditions pour la jointure actuelle.
-            );
+        // Chaque condition est évaluée par la plus basse jointure qui dispose de toutes ses colonnes
+        ArrayList<ArrayList<Condition>> conditionsParJointure = placerConditions(relations, joinConditions);
+
+        // Initialise l'opérateur de jointure avec l'opérateur SELECT de la première relation.
+        IRecordIterator joinOperator = createSelectOperator(relations.get(0), innerConditions, null, bm);
+
+        // Ajoute les relations suivantes une à une
+        for (int i = 1; i < relations.size(); i++) {
+            Relation droite = relations.get(i);
+            JoinOrderOptimizer.Jointure jointure = optimiseur.getJointure(i);
+
+            // Une relation lue par son index n'a pas d'opérateur SELECT : son index est sondé pour chaque record de gauche
+            if (jointure.getAlgorithme() == JoinOrderOptimizer.Algorithme.INDEX) {
+                joinOperator = new IndexNestedLoopJoinOperator(joinOperator, droite, 
+                    index.get(droite.getRelationName()).get(jointure.getColonneIndex()), jointure.getColonneIndex(), 
+                    innerConditions.getOrDefault(droite.getRelationName(), new ArrayList<>()), 
+                    conditionsParJointure.get(i), debutColonnes(relations, i), true);
+            }
+            // Une relation lue dans l'ordre de son index arrive triée à la tri-fusion, qui ne la trie pas
+            else if (jointure.getAlgorithme() == JoinOrderOptimizer.Algorithme.TRI_FUSION && jointure.getColonneIndex() >= 0) {
+                joinOperator = createJoin(
+                    new Pair<>(joinOperator, new IndexScanOperator(droite, 
+                        index.get(droite.getRelationName()).get(jointure.getColonneIndex()), jointure.getColonneIndex(), 
+                        innerConditions.getOrDefault(droite.getRelationName(), new ArrayList<>()))), 
+                    conditionsParJointure.get(i), debutColonnes(relations, i), jointure, bm);
+            }
+            else {
+                joinOperator = createJoin(
+                    new Pair<>(joinOperator, createSelectOperator(droite, innerConditions, null, bm)), 
+                    conditionsParJointure.get(i), debutColonnes(relations, i), jointure, bm);
+            }
         }
-        // Combine l'opérateur de jointure actuel avec le prochain opérateur SELECT.
-        joinOperator = new JoinOperator(
-            new Pair<>(joinOperator, selectOperators.get(selectOperators.size()-1)), 
-            joinConditions // Conditions pour la jointure actuelle.
-        );
         // Retourne l'opérateur de jointure combiné.
         return joinOperator;
     }
 
+    /**
+     * Crée l'opérateur d'une jointure entre deux entrées, avec l'algorithme choisi par l'optimiseur.
+     *
+     * @param entrees          Les entrées de gauche et de droite.
+     * @param conditions       Les conditions de la jointure.
+     * @param nbColonnesGauche Le nombre de colonnes de l'entrée de gauche.
+     * @param jointure         La jointure choisie par l'optimiseur.
+     * @param bm               Le gestionnaire de buffers.
+     * @return L'opérateur de jointure.
+     */
+    private IRecordIterator createJoin(
+        Pair<IRecordIterator, IRecordIterator> entrees, 
+        ArrayList<Condition> conditions, 
+        int nbColonnesGauche, 
+        JoinOrderOptimizer.Jointure jointure, 
+        BufferManager bm
+    ) throws Exception {
+        switch (jointure.getAlgorithme()) {
+            case HACHAGE:
+                return new HashJoinOperator(entrees, conditions, nbColonnesGauche, jointure.isBuildGauche(), bm);
+            case TRI_FUSION:
+                return new SortMergeJoinOperator(entrees, conditions, nbColonnesGauche, bm);
+            default:
+                return new JoinOperator(entrees, conditions);
+        }
+    }
+
+    /**
+     * Calcule l'index de la première colonne d'une relation dans les records joints, les relations étant mises bout à bout.
+     * C'est aussi le nombre de colonnes de l'entrée de gauche de la jointure qui ajoute cette relation.
+     *
+     * @param relations Liste des relations, dans l'ordre des jointures.
+     * @param position  Position de la relation.
+     * @return L'index de la première colonne de la relation.
+     */
+    private static int debutColonnes(List<Relation> relations, int position) {
+        int debut = 0;
+        for (Relation relation : relations.subList(0, position))
+            debut += relation.getNbAttribut();
+        return debut;
+    }
+
+    /**
+     * Répartit les conditions de jointure entre les jointures de l'arbre : la jointure i ajoute la relation i
+     * au résultat des précédentes, et reçoit les conditions dont toutes les colonnes sont disponibles à ce niveau
+     * sans l'être à un niveau plus bas. Le résultat de la jointure i mettant bout à bout les relations 0 à i,
+     * chaque colonne y garde l'index qu'elle a dans le record complet : seul le nombre de colonnes
+     * de gauche change d'une jointure à l'autre.
+     *
+     * @param relations      Liste des relations, dans l'ordre des jointures.
+     * @param joinConditions Les conditions de jointure, avec les index des colonnes de toutes les relations mises bout à bout.
+     * @return Pour chaque jointure i (de 1 au nombre de relations - 1), ses conditions ; la case 0 reste vide.
+     */
+    static ArrayList<ArrayList<Condition>> placerConditions(List<Relation> relations, ArrayList<Condition> joinConditions) {
+        ArrayList<ArrayList<Condition>> conditionsParJointure = new ArrayList<>();
+        int[] finColonnes = new int[relations.size()];   // Index suivant la dernière colonne de chaque relation
+        for (int i = 0; i < relations.size(); i++) {
+            conditionsParJointure.add(new ArrayList<>());
+            finColonnes[i] = debutColonnes(relations, i) + relations.get(i).getNbAttribut();
+        }
+
+        for (Condition cond : joinConditions) {
+            // Plus basse jointure dont le résultat contient la colonne la plus à droite de la condition
+            int jointure = 1;
+            while (jointure < relations.size()-1 && cond.getDerniereColonne() >= finColonnes[jointure])
+                jointure++;
+            conditionsParJointure.get(jointure).add(cond);
+        }
+        return conditionsParJointure;
+    }
+
     /**
      * Exécute l'arbre d'exécution pour afficher les résultats.
      */
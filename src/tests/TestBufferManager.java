@@ -375,4 +375,37 @@ public class TestBufferManager {
         }
         assertTrue(i != 10000);
     }
-}
\ No newline at end of file
+
+    @Test // Les pages de données ne peuvent pas éjecter une page du pool KEEP
+    void testKeepPool() throws Exception {
+        int keepBufferCount = DBConfig.bm_keepbuffercount;
+        DBConfig.bm_keepbuffercount = 2;
+        DBConfig.bm_policy = "LRU";
+        bm = new BufferManager(dbConfig, dskM);
+
+        try {
+            // Charge une page d'en-tête dans le pool KEEP puis la libère
+            PageId header = dskM.AllocPage();
+            bm.getPage(header, BufferManager.KEEP);
+            bm.freePage(header, false);
+
+            // Elle est libérable dans le pool KEEP et pas dans le pool DEFAULT
+            assertEquals(1, bm.getPool(BufferManager.KEEP).getJunkFile().size());
+            assertEquals(0, bm.getJunkFile().size());
+
+            // Fait défiler plus de pages de données que le pool DEFAULT ne peut en contenir
+            for (int i = 0; i < DBConfig.bm_buffercount * 3; i++) {
+                PageId id = dskM.AllocPage();
+                bm.getPage(id);
+                bm.freePage(id, false);
+            }
+
+            // La page d'en-tête est toujours en mémoire
+            assertNotNull(bm.getCadre().search(header), "La page du pool KEEP a été éjectée");
+            assertEquals(BufferManager.KEEP, bm.getCadre().search(header).pool.getName());
+            assertEquals(DBConfig.bm_buffercount, bm.getPool(BufferManager.DEFAULT).getSize());
+        } finally {
+            DBConfig.bm_keepbuffercount = keepBufferCount;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+class TestBulkLoader {
+    DiskManager dskM;
+    DBConfig dbConfig;
+    BufferManager bm;
+    Relation relation;
+    Path fichier;
+
+    @BeforeEach
+    void init() throws Exception {
+        dskM = DiskManager.getInstance();
+        dskM.RAZ();
+        dbConfig = DBConfig.loadConfig("src/tests/config.txt"); // Recharger la configuration
+        bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
+
+        PageId headerPageId = dskM.AllocPage();
+        ByteBuffer buffer = bm.getPage(headerPageId);
+        buffer.putInt(DBConfig.pagesize - 4, -1); // Indique qu'il n'y a pas de page suivante
+        bm.freePage(headerPageId, true);
+
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        attributes.add(new Pair<>("id", new Data(DataType.INT)));
+        attributes.add(new Pair<>("nom", new Data(DataType.VARCHAR, 16)));
+        relation = new Relation("bulk", attributes, headerPageId, dskM, bm);
+
+        fichier = Files.createTempFile("bulk", ".csv");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(fichier);
+    }
+
+    @Test // Le chargement en morceaux parallèles insère toutes les lignes avec des RecordId valides
+    void testLoad() throws Exception {
+        int nbLignes = 500;
+        StringBuilder contenu = new StringBuilder();
+        for (int i = 0; i < nbLignes; i++)
+            contenu.append(i).append(",n").append(i).append('\n');
+        Files.write(fichier, contenu.toString().getBytes(StandardCharsets.UTF_8));
+
+        HashMap<Integer, RecordId> rids = new HashMap<>();
+        // Petits morceaux pour forcer plusieurs morceaux et plusieurs threads
+        long nb = new BulkLoader(relation, 4, 300).load(fichier.toString(), (rec, rid) -> rids.put((Integer) rec.getValue(0), rid));
+
+        assertEquals(nbLignes, nb);
+        assertEquals(nbLignes, rids.size());
+        assertEquals(nbLignes, relation.GetAllRecords().size());
+
+        // Chaque RecordId renvoyé désigne le bon record
+        for (int i = 0; i < nbLignes; i++)
+            assertEquals("N" + i, relation.getRecordInDataPage(rids.get(i)).getValue(1));
+
+        // Les inserts classiques réutilisent l'espace libre laissé par le chargement
+        MyRecord record = new MyRecord();
+        record.add(-1, DataType.INT);
+        record.add("x", DataType.VARCHAR);
+        assertNotNull(relation.InsertRecord(record));
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Une ligne invalide fait échouer le chargement
+    void testErreur() throws Exception {
+        Files.write(fichier, "1,a\n2\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> new BulkLoader(relation, 2, 2).load(fichier.toString(), null));
+    }
+}
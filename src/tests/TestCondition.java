@@ -7,6 +7,8 @@ import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
 
 public class TestCondition {
 
@@ -125,4 +127,111 @@ public class TestCondition {
         assertTrue(condition.evaluate(record), "La condition '< 20.0' doit être vraie.");
 
     }
+
+    @Test // Une condition évaluée sur une vue de page donne le même résultat que sur le record
+    public void testEvaluateOnRecordView() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(DBConfig.pagesize);
+        relation.writeRecordToBuffer(record, buffer, 0);
+        RecordView view = new RecordView(relation, buffer).moveTo(0);
+
+        Condition note = new Condition(new Pair<>("note", 3), ">=", new Pair<>("15.5", -1));
+        Condition id = new Condition(new Pair<>("id", 0), "<>", new Pair<>("1", -1));
+        Condition nom = new Condition(new Pair<>("nom", 1), "=", new Pair<>("\"Doe\"", -1));
+
+        assertEquals(note.evaluate(record), note.evaluate(view));
+        assertTrue(note.evaluate(view));
+        assertFalse(id.evaluate(view));
+        assertTrue(nom.evaluate(view));
+    }
+
+    @Test // Sur une colonne avec dictionnaire, l'égalité compare les codes et donne le même résultat que sur les chaînes
+    public void testEvaluateOnDictionaryCodes() throws Exception {
+        StringDictionary dictionnaire = new StringDictionary();
+        relation.setDictionary("nom", dictionnaire);
+        ByteBuffer buffer = ByteBuffer.allocate(DBConfig.pagesize);
+        int taille = relation.writeRecordToBuffer(record, buffer, 0);
+        RecordView view = new RecordView(relation, buffer).moveTo(0);
+        assertEquals(dictionnaire.getCode("DOE"), view.getCode(1));
+
+        Condition egal = new Condition(new Pair<>("nom", 1), "=", new Pair<>("\"Doe\"", -1));
+        Condition different = new Condition(new Pair<>("\"Doe\"", -1), "<>", new Pair<>("nom", 1));
+        Condition absent = new Condition(new Pair<>("nom", 1), "=", new Pair<>("\"Smith\"", -1));
+        Condition colonnes = new Condition(new Pair<>("nom", 1), "=", new Pair<>("nom", 1));
+
+        assertTrue(egal.evaluate(view));
+        assertFalse(different.evaluate(view));
+        assertFalse(absent.evaluate(view));
+        assertTrue(colonnes.evaluate(view));
+        assertEquals(egal.evaluate(record), egal.evaluate(view));
+
+        // Une valeur ajoutée au dictionnaire après une première recherche est retrouvée
+        MyRecord smith = new MyRecord();
+        smith.add(2, DataType.INT);
+        smith.add("Smith", DataType.VARCHAR);
+        smith.add("Will", DataType.CHAR);
+        smith.add(12f, DataType.REAL);
+        relation.writeRecordToBuffer(smith, buffer, taille);
+        assertTrue(absent.evaluate(view.moveTo(taille)));
+    }
+
+    @Test // Le prédicat compilé donne le même résultat que evaluate, pour chaque type et chaque opérateur
+    public void testCompileSameAsEvaluate() throws Exception {
+        StringDictionary dictionnaire = new StringDictionary();
+        relation.setDictionary("nom", dictionnaire);
+        ByteBuffer buffer = ByteBuffer.allocate(DBConfig.pagesize);
+        relation.writeRecordToBuffer(record, buffer, 0);
+        RecordView view = new RecordView(relation, buffer).moveTo(0);
+        TupleSchema schema = TupleSchema.of(relation);
+
+        String[][] termes = {
+            { "id", "0", "1", "-1" }, { "id", "0", "2", "-1" }, { "1", "-1", "id", "0" }, { "id", "0", "15.5", "-1" },
+            { "note", "3", "15.5", "-1" }, { "note", "3", "id", "0" }, { "20", "-1", "note", "3" }, { "note", "3", "note", "3" },
+            { "nom", "1", "\"Doe\"", "-1" }, { "nom", "1", "\"Smith\"", "-1" }, { "\"Doe\"", "-1", "nom", "1" },
+            { "prenom", "2", "\"John\"", "-1" }, { "nom", "1", "prenom", "2" }, { "prenom", "2", "nom", "1" },
+        };
+        for (String[] t : termes) {
+            for (String operateur : new String[] { "=", "<>", "<", "<=", ">", ">=" }) {
+                Condition condition = new Condition(new Pair<>(t[0], Integer.parseInt(t[1])), operateur, new Pair<>(t[2], Integer.parseInt(t[3])));
+                Predicate<IRecord> predicat = condition.compile(schema);
+                assertEquals(condition.evaluate(record), predicat.test(record), condition.toString());
+                assertEquals(condition.evaluate(view), predicat.test(view), condition + " sur la vue");
+            }
+        }
+
+        // Une conjonction est vraie si toutes ses conditions le sont, une constante invalide la rend fausse
+        Condition note = new Condition(new Pair<>("note", 3), ">=", new Pair<>("15.5", -1));
+        Condition id = new Condition(new Pair<>("id", 0), "<>", new Pair<>("1", -1));
+        Condition nom = new Condition(new Pair<>("nom", 1), "=", new Pair<>("\"Doe\"", -1));
+        Condition invalide = new Condition(new Pair<>("id", 0), "=", new Pair<>("abc", -1));
+        assertTrue(Condition.compile(List.of(), schema).test(view));
+        assertTrue(Condition.compile(List.of(note, nom), schema).test(view));
+        assertFalse(Condition.compile(List.of(note, nom, id), schema).test(view));
+        assertTrue(Condition.compile(List.of(note, nom, nom), schema).test(view));
+        assertFalse(Condition.compile(List.of(note, invalide), schema).test(view));
+    }
+
+    @Test // Les conditions bon marché et sélectives sont évaluées d'abord, puis l'ordre suit les taux de passage observés
+    public void testAdaptiveConjunction() {
+        TupleSchema schema = TupleSchema.of(relation);
+        Condition nom = new Condition(new Pair<>("nom", 1), "=", new Pair<>("\"Smith\"", -1));
+        Condition different = new Condition(new Pair<>("id", 0), "<>", new Pair<>("5", -1));
+        Condition inferieur = new Condition(new Pair<>("id", 0), "<", new Pair<>("10", -1));
+        AdaptiveConjunction conjonction = new AdaptiveConjunction(List.of(nom, different, inferieur), schema);
+
+        // Comparaison d'entiers d'abord, la chaîne ensuite, et <> qui ne rejette presque rien en dernier
+        assertArrayEquals(new int[] { 2, 0, 1 }, conjonction.getOrdre());
+
+        // id < 10 est toujours vrai et nom = "Smith" toujours faux : le test de la chaîne passe en premier
+        for (int i = 0; i < AdaptiveConjunction.PERIODE; i++)
+            assertFalse(conjonction.test(record));
+        assertEquals(0, conjonction.getOrdre()[0]);
+        assertEquals(2, conjonction.getOrdre()[2]);
+
+        MyRecord smith = new MyRecord();
+        smith.add(2, DataType.INT);
+        smith.add("Smith", DataType.VARCHAR);
+        smith.add("Will", DataType.CHAR);
+        smith.add(12.0f, DataType.REAL);
+        assertTrue(conjonction.test(smith));
+    }
 }
@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+class TestCsvRecordReader {
+    Relation relation;
+    Path fichier;
+
+    @BeforeEach
+    void init() throws Exception {
+        DBConfig.loadConfig("src/tests/config.txt");
+
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        attributes.add(new Pair<>("id", new Data(DataType.INT)));
+        attributes.add(new Pair<>("nom", new Data(DataType.VARCHAR, 32)));
+        attributes.add(new Pair<>("note", new Data(DataType.REAL)));
+        attributes.add(new Pair<>("naissance", new Data(DataType.DATE)));
+        relation = new Relation("csv", attributes, new PageId(0, 0), null, null);
+
+        fichier = Files.createTempFile("test", ".csv");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(fichier);
+    }
+
+    private ArrayList<MyRecord> lireTout(String contenu) throws IOException {
+        Files.write(fichier, contenu.getBytes(StandardCharsets.UTF_8));
+
+        ArrayList<MyRecord> records = new ArrayList<>();
+        try (CsvRecordReader reader = new CsvRecordReader(relation, fichier.toString())) {
+            while (reader.hasNext())
+                records.add(reader.next());
+        }
+        return records;
+    }
+
+    @Test // Valeurs typées, guillemets, espaces, lignes vides et fins de ligne Windows
+    void testFormat() throws IOException {
+        ArrayList<MyRecord> records = lireTout("1, Dupont , 2.5, 01/02/2000\r\n\n  -7,\"a, \"\"b\"\"\",0,31/12/1999\n");
+
+        assertEquals(2, records.size());
+        assertEquals(1, records.get(0).getValue(0));
+        assertEquals("DUPONT", records.get(0).getValue(1));
+        assertEquals(2.5f, records.get(0).getValue(2));
+        assertEquals(new Date(1, 2, 2000), records.get(0).getValue(3));
+
+        assertEquals(-7, records.get(1).getValue(0));
+        assertEquals("A, \"B\"", records.get(1).getValue(1));
+    }
+
+    @Test // Les lignes sont correctement lues de part et d'autre des blocs du fichier
+    void testGrosFichier() throws IOException {
+        StringBuilder contenu = new StringBuilder();
+        int nbLignes = 20000;   // Bien plus qu'un bloc de lecture
+        for (int i = 0; i < nbLignes; i++)
+            contenu.append(i).append(",é").append(i).append(',').append(i).append(".5,10/10/2010\n");
+
+        ArrayList<MyRecord> records = lireTout(contenu.toString());
+
+        assertEquals(nbLignes, records.size());
+        for (int i = 0; i < nbLignes; i++) {
+            assertEquals(i, records.get(i).getValue(0));
+            assertEquals("É" + i, records.get(i).getValue(1));
+        }
+    }
+
+    @Test // Les lignes invalides sont signalées avec leur numéro
+    void testErreurs() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> lireTout("1,a,1,01/01/2000\n2,b,1\n"));
+        assertTrue(e.getMessage().contains("Ligne 2"));
+
+        assertThrows(IllegalArgumentException.class, () -> lireTout("x,a,1,01/01/2000\n"));
+        assertThrows(IllegalArgumentException.class, () -> lireTout("1,\"a,1,01/01/2000\n"));
+        assertThrows(IllegalArgumentException.class, () -> lireTout("1,a,1,2000-01-01\n"));
+    }
+}
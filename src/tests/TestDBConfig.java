@@ -76,6 +76,16 @@ public class TestDBConfig{
         assertEquals(BM_POLICY, loadedConfig.bm_policy); // Vérifie la politique de remplacement
     }
 
+    @Test
+    public void testLoadShippedConfig(){
+        // Le fichier config.txt livré active le pool KEEP avec une politique implémentée
+        DBConfig loadedConfig = DBConfig.loadConfig("config.txt");
+        assertNotNull(loadedConfig); // Vérifie que la configuration chargée n'est pas nulle
+        assertEquals("LRU", loadedConfig.bm_policy); // Vérifie la politique de remplacement
+        assertEquals(4, loadedConfig.bm_keepbuffercount); // Vérifie le nombre de buffers du pool KEEP
+        assertEquals("LRU", loadedConfig.bm_keeppolicy); // Vérifie la politique du pool KEEP
+    }
+
     @Test
     public void testAssignValue() throws Exception{
         // Vérifie que les valeurs sont correctement assignées
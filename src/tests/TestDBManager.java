@@ -218,4 +218,27 @@ public class TestDBManager {
 			e.getMessage();
 		}
 	}
+
+	@Test // Les dictionnaires sont sauvegardés avec le catalogue et rechargés avec les mêmes codes
+	void testLoadSaveDictionary() throws Exception {
+		DBM.CreateDatabase("bdddico");
+		Relation rel = new Relation("relDico", new ArrayList<>(), new PageId(3, 0), dskM, bm);
+		rel.setOneAttribut(new Pair<>("statut", new Data(DataType.VARCHAR, 20)));
+		rel.setOneAttribut(new Pair<>("pays", new Data(DataType.CHAR, 10)));
+		StringDictionary dictionnaire = new StringDictionary();
+		dictionnaire.encode("ACTIF");
+		dictionnaire.encode(" EN PAUSE ");
+		dictionnaire.encode("");
+		rel.setDictionary("statut", dictionnaire);
+		DBM.SetCurrentDatabase("bdddico");
+		DBM.AddTableToCurrentDatabase(rel);
+		DBM.saveState();
+
+		DBM.loadState();
+		DBM.SetCurrentDatabase("bdddico");
+		Relation charge = DBM.GetTableFromCurrentDatabase("relDico");
+		assertNotNull(charge.getDictionary(0));
+		assertNull(charge.getDictionary(1));
+		assertEquals(dictionnaire.getValeurs(), charge.getDictionary(0).getValeurs());
+	}
 }
\ No newline at end of file
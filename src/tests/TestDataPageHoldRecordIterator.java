@@ -106,6 +106,25 @@ public class TestDataPageHoldRecordIterator {
         assertEquals(41, cpt);
     }
 
+    @Test // Les vues lisent les mêmes valeurs que les records copiés, directement dans la page
+    void testGetNextView() throws Exception {
+        PageId datPageId = pageIterator.GetNextDataPageId();
+        DataPageHoldRecordIterator iterator = new DataPageHoldRecordIterator(relation, bm.getPage(datPageId), bm, datPageId);
+        IRecord view;
+        int cpt = 0;
+
+        while ((view = iterator.GetNextView()) != null) {
+            MyRecord attendu = originalRec.get(cpt);
+            assertEquals(attendu.getValue(0), view.getInt(0));
+            assertEquals(attendu.getValue(1), view.getString(1));
+            assertEquals(attendu.getValue(2), view.getFloat(2));
+            assertEquals(attendu, view.toRecord());
+            cpt++;
+        }
+        assertEquals(41, cpt);
+        iterator.Close();
+    }
+
     @Test
     void testClose() throws Exception{
         PageId datPageId = pageIterator.GetNextDataPageId();
@@ -26,7 +26,8 @@ public class TestDiskManager {
 
     @AfterEach
     private void tearDown() throws IOException{
-        // Nettoyer après les tests en supprimant les fichiers générés
+        // Nettoyer après les tests en remettant le singleton à zéro et en supprimant les fichiers générés
+        dskM.RAZ();
         Files.deleteIfExists(Paths.get(DBConfig.dbpath + "dm.save"));
 
         for (int i = 0; i < 10; i++) // Nettoyer tous les fichiers de test
@@ -150,6 +151,39 @@ public class TestDiskManager {
         // Si le nombre de pages allouees vaut sa valeur de départ, c'est bon
         assertEquals(courant + cpt, dskM.getCurrentCountAllocPages()); // Vérifier le nombre actuel de pages allouées
     }
+
+    @Test // Les pages libres de la fin de l'espace global sont retirées et les fichiers raccourcis
+    void testShrinkFiles() throws Exception {
+        dskM.RAZ();
+        ArrayList<PageId> pages = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            pages.add(dskM.AllocPage());
+            dskM.WritePage(pages.get(i), ByteBuffer.allocate(DBConfig.pagesize));
+        }
+        assertEquals(7, dskM.getNbPages());
+        assertEquals(pages.get(6), DiskManager.pageFromNumber(6));
+        assertEquals(6, DiskManager.pageNumber(pages.get(6)));
+
+        // Une page libre au milieu de l'espace reste dans la liste des pages libres
+        dskM.DeallocPage(pages.get(1));
+        for (int i = 4; i < 7; i++)
+            dskM.DeallocPage(pages.get(i));
+        ArrayList<PageId> retirees = dskM.ShrinkFiles();
+
+        assertEquals(3, retirees.size());
+        assertEquals(4, dskM.getNbPages());
+        assertEquals(1, dskM.freePage.size());
+        assertEquals(pages.get(1), dskM.freePage.get(0));
+        int pagesParFichier = DBConfig.dm_maxfilesize / DBConfig.pagesize;
+        int dernierFichier = pages.get(3).FileIdx;
+        assertEquals((long) (pages.get(3).PageIdx + 1) * DBConfig.pagesize, Files.size(Paths.get(DBConfig.dbpath + "BinData/F" + dernierFichier + ".rsdb")));
+        for (int fichier = dernierFichier + 1; fichier <= 6 / pagesParFichier; fichier++)
+            assertFalse(Files.exists(Paths.get(DBConfig.dbpath + "BinData/F" + fichier + ".rsdb")));
+
+        // Les allocations suivantes reprennent la page libre, puis la fin de l'espace
+        assertEquals(pages.get(1), dskM.AllocPage());
+        assertEquals(pages.get(4), dskM.AllocPage());
+    }
 /*
     @Test // Test de la sauvegarde et du chargement de l'état
     void testSaveStateEtLoadState() throws Exception {
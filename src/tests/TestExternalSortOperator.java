@@ -0,0 +1,144 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+
+class TestExternalSortOperator {
+    DiskManager dskM;
+    DBConfig dbConfig;
+    BufferManager bm;
+    Relation relation;
+
+    @BeforeEach
+    void init() throws Exception {
+        dskM = DiskManager.getInstance();
+        dskM.RAZ();
+        dbConfig = DBConfig.loadConfig("src/tests/config.txt"); // Recharger la configuration
+        bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
+
+        PageId headerPageId = dskM.AllocPage();
+        ByteBuffer buffer = bm.getPage(headerPageId);
+        buffer.putInt(DBConfig.pagesize - 4, -1); // Indique qu'il n'y a pas de page suivante
+        bm.freePage(headerPageId, true);
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        attributes.add(new Pair<>("id", new Data(DataType.INT)));
+        attributes.add(new Pair<>("name", new Data(DataType.VARCHAR, 16)));
+        attributes.add(new Pair<>("value", new Data(DataType.REAL)));
+        relation = new Relation("relation", attributes, headerPageId, dskM, bm);
+
+        // Valeurs dans le désordre, avec des doublons
+        for (int i = 0; i < 200; i++) {
+            MyRecord record = new MyRecord();
+            record.add((i * 37) % 101, DataType.INT);
+            record.add("N" + (i % 13), DataType.VARCHAR);
+            record.add((float) i / 4, DataType.REAL);
+            relation.InsertRecord(record);
+        }
+    }
+
+    @AfterEach
+    void clean() {
+        DBConfig.sort_buffercount = 0;
+    }
+
+    private IRecordIterator scan() throws Exception {
+        return new selectOperator(new PageDirectoryIterator(relation, bm), relation, new ArrayList<>(), bm);
+    }
+
+    private ArrayList<MyRecord> readAll(IRecordIterator operateur) {
+        ArrayList<MyRecord> resultats = new ArrayList<>();
+        MyRecord record;
+        while ((record = operateur.GetNextRecord()) != null)
+            resultats.add(record);
+        return resultats;
+    }
+
+    // Résultat attendu : tous les records de la relation, triés en mémoire
+    private ArrayList<String> expected(int[] colonnes) throws Exception {
+        IRecordIterator select = scan();
+        ArrayList<MyRecord> records = readAll(select);
+        select.Close();
+        records.sort(ExternalSortOperator.comparator(colonnes));
+        ArrayList<String> attendus = new ArrayList<>();
+        for (MyRecord record : records)
+            attendus.add(record.toString());
+        return attendus;
+    }
+
+    private void assertSorted(ArrayList<MyRecord> records, int[] colonnes) {
+        Comparator<IRecord> comparateur = ExternalSortOperator.comparator(colonnes);
+        for (int i = 1; i < records.size(); i++)
+            assertTrue(comparateur.compare(records.get(i - 1), records.get(i)) <= 0, "Records mal triés à la position " + i);
+    }
+
+    @Test // Une entrée qui tient en mémoire est triée sans écrire de run
+    void testInMemory() throws Exception {
+        DBConfig.sort_buffercount = 1000;
+        int[] colonnes = { 0 };
+        ExternalSortOperator tri = new ExternalSortOperator(scan(), colonnes, bm);
+        ArrayList<MyRecord> resultats = readAll(tri);
+        assertEquals(200, resultats.size());
+        assertSorted(resultats, colonnes);
+        assertEquals(0, tri.getNbRuns());
+
+        // Le résultat en mémoire est relu après un Reset
+        tri.Reset();
+        assertEquals(resultats, readAll(tri));
+        tri.Close();
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Une entrée trop grande est écrite en runs triés puis fusionnée, en plusieurs passes s'il le faut
+    void testRunsAndMerge() throws Exception {
+        int[] colonnes = { 1, 0 };
+        ArrayList<String> attendus = expected(colonnes);
+
+        for (int memoire : new int[] { 10, 3 }) {
+            DBConfig.sort_buffercount = memoire;
+            ExternalSortOperator tri = new ExternalSortOperator(scan(), colonnes, bm);
+            ArrayList<MyRecord> resultats = readAll(tri);
+            assertTrue(tri.getNbRuns() > 1);
+            if (memoire == 3)
+                assertTrue(tri.getNbRuns() > 2, "Une seule passe de fusion avec " + tri.getNbRuns() + " runs");
+            assertSorted(resultats, colonnes);
+            // Même contenu que le tri en mémoire, l'ordre des doublons sur les deux colonnes pouvant différer
+            ArrayList<String> obtenus = new ArrayList<>();
+            for (MyRecord record : resultats)
+                obtenus.add(record.toString());
+            ArrayList<String> tries = new ArrayList<>(attendus);
+            tries.sort(null);
+            obtenus.sort(null);
+            assertEquals(tries, obtenus);
+
+            // Les pages des runs sont rendues à la fermeture
+            tri.Close();
+            assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+        }
+    }
+
+    @Test // Chaque colonne du tri a son sens, y compris à travers les runs
+    void testDecroissant() throws Exception {
+        DBConfig.sort_buffercount = 3;
+        int[] colonnes = { 1, 0 };
+        boolean[] decroissant = { true, false };
+        ExternalSortOperator tri = new ExternalSortOperator(scan(), colonnes, decroissant, bm);
+        ArrayList<MyRecord> resultats = readAll(tri);
+        assertEquals(200, resultats.size());
+        assertTrue(tri.getNbRuns() > 1);
+
+        Comparator<IRecord> comparateur = ExternalSortOperator.comparator(colonnes, decroissant);
+        for (int i = 1; i < resultats.size(); i++)
+            assertTrue(comparateur.compare(resultats.get(i - 1), resultats.get(i)) <= 0, "Records mal triés à la position " + i);
+        assertEquals("N9", resultats.get(0).get(1).getFirst());
+        assertEquals("N0", resultats.get(199).get(1).getFirst());
+        tri.Close();
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+
+        assertThrows(IllegalArgumentException.class, () -> new ExternalSortOperator(scan(), colonnes, new boolean[1], bm));
+    }
+}
@@ -0,0 +1,88 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+class TestFreeSpaceMap {
+    DiskManager dskM;
+    DBConfig dbConfig;
+    BufferManager bm;
+
+    @BeforeEach
+    void init() throws Exception {
+        dskM = DiskManager.getInstance();
+        dskM.RAZ();
+        dbConfig = DBConfig.loadConfig("src/tests/config.txt"); // Recharger la configuration
+        bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
+    }
+
+    private Relation createRelation(PageId headerPageId) throws Exception {
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        attributes.add(new Pair<>("id", new Data(DataType.INT)));
+        attributes.add(new Pair<>("name", new Data(DataType.VARCHAR, 16)));
+
+        return new Relation("relation", attributes, headerPageId, dskM, bm);
+    }
+
+    @Test // La recherche renvoie une page avec assez d'espace ou null
+    void testFind() {
+        FreeSpaceMap fsm = new FreeSpaceMap();
+        PageId header = new PageId(0, 0);
+
+        fsm.add(new PageId(0, 1), header, 12, 10);
+        fsm.add(new PageId(0, 2), header, 24, DBConfig.pagesize - 8);
+
+        assertEquals(new PageId(0, 2), fsm.find(50).getDataPageId());
+        assertNull(fsm.find(DBConfig.pagesize));
+
+        // Une fois remplie, la page 2 n'est plus proposée
+        fsm.update(fsm.get(new PageId(0, 2)), 5);
+        assertNull(fsm.find(50));
+        assertEquals(new PageId(0, 1), fsm.find(8).getDataPageId());
+
+        // Dans le seau de la demande, une page plus ancienne convient même si la dernière arrivée est trop pleine
+        int needed = 5 * ((DBConfig.pagesize + FreeSpaceMap.NB_BUCKETS - 1) / FreeSpaceMap.NB_BUCKETS) + 1;
+        fsm.add(new PageId(0, 3), header, 36, needed);
+        fsm.add(new PageId(0, 4), header, 48, needed - 1);
+        assertEquals(new PageId(0, 3), fsm.find(needed).getDataPageId());
+        fsm.remove(new PageId(0, 3));
+        fsm.remove(new PageId(0, 4));
+
+        fsm.remove(new PageId(0, 1));
+        assertNull(fsm.get(new PageId(0, 1)));
+        assertEquals(1, fsm.size());
+    }
+
+    @Test // La carte reste synchronisée avec les entrées des header Pages
+    void testSyncWithHeaderPages() throws Exception {
+        PageId headerPageId = dskM.AllocPage();
+        ByteBuffer buffer = bm.getPage(headerPageId);
+        buffer.putInt(DBConfig.pagesize - 4, -1); // Indique qu'il n'y a pas de page suivante
+        bm.freePage(headerPageId, true);
+
+        Relation relation = createRelation(headerPageId);
+
+        // Suffisamment de records pour chaîner plusieurs header Pages
+        for (int i = 0; i < 300; i++) {
+            MyRecord record = new MyRecord();
+            record.add(i, DataType.INT);
+            record.add("n" + i, DataType.VARCHAR);
+            assertNotNull(relation.InsertRecord(record));
+        }
+
+        FreeSpaceMap fsm = relation.getFreeSpaceMap();
+        assertEquals(relation.getDataPages().size(), fsm.size());
+
+        // Une carte reconstruite depuis le disque est identique
+        Relation reload = createRelation(headerPageId);
+        FreeSpaceMap rebuilt = reload.getFreeSpaceMap();
+        for (PageId id : relation.getDataPages())
+            assertEquals(fsm.get(id).getFreeBytes(), rebuilt.get(id).getFreeBytes(), "Espace libre différent pour " + id);
+
+        // Aucun cadre ne reste épinglé après les insertions
+        assertEquals(0, bm.getNbAllocFrame());
+    }
+}
@@ -0,0 +1,146 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+
+class TestHashJoinOperator {
+    DiskManager dskM;
+    DBConfig dbConfig;
+    BufferManager bm;
+    Relation relation1;
+    Relation relation2;
+
+    @BeforeEach
+    void init() throws Exception {
+        dskM = DiskManager.getInstance();
+        dskM.RAZ();
+        dbConfig = DBConfig.loadConfig("src/tests/config.txt"); // Recharger la configuration
+        bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
+
+        // R(id, name, value) avec des id uniques, S(ref, label) avec des ref répétées ou sans correspondance
+        relation1 = createRelation("R", new Pair<>("id", new Data(DataType.INT)), new Pair<>("name", new Data(DataType.VARCHAR, 16)), new Pair<>("value", new Data(DataType.REAL)));
+        for (int i = 1; i <= 100; i++) {
+            MyRecord record = new MyRecord();
+            record.add(i, DataType.INT);
+            record.add("Name" + i, DataType.VARCHAR);
+            record.add((float) i * 1.5f, DataType.REAL);
+            relation1.InsertRecord(record);
+        }
+        relation2 = createRelation("S", new Pair<>("ref", new Data(DataType.INT)), new Pair<>("label", new Data(DataType.VARCHAR, 16)));
+        for (int i = 0; i < 150; i++) {
+            MyRecord record = new MyRecord();
+            record.add(i % 120, DataType.INT);
+            record.add("L" + i, DataType.VARCHAR);
+            relation2.InsertRecord(record);
+        }
+    }
+
+    @AfterEach
+    void clean() {
+        DBConfig.join_buffercount = 0;
+    }
+
+    @SafeVarargs
+    private Relation createRelation(String nom, Pair<String, Data>... colonnes) throws Exception {
+        PageId headerPageId = dskM.AllocPage();
+        ByteBuffer buffer = bm.getPage(headerPageId);
+        buffer.putInt(DBConfig.pagesize - 4, -1); // Indique qu'il n'y a pas de page suivante
+        bm.freePage(headerPageId, true);
+
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        for (Pair<String, Data> colonne : colonnes)
+            attributes.add(colonne);
+        return new Relation(nom, attributes, headerPageId, dskM, bm);
+    }
+
+    private IRecordIterator scan(Relation relation) throws Exception {
+        return new selectOperator(new PageDirectoryIterator(relation, bm), relation, new ArrayList<>(), bm);
+    }
+
+    private ArrayList<String> readAll(IRecordIterator operateur) {
+        ArrayList<String> resultats = new ArrayList<>();
+        MyRecord record;
+        while ((record = operateur.GetNextRecord()) != null)
+            resultats.add(record.toString());
+        return resultats;
+    }
+
+    // Résultat attendu, calculé par la jointure en boucles imbriquées
+    private ArrayList<String> nestedLoop(ArrayList<Condition> conditions) throws Exception {
+        IRecordIterator gauche = scan(relation1), droite = scan(relation2);
+        JoinOperator join = new JoinOperator(new Pair<>(gauche, droite), conditions);
+        ArrayList<String> resultats = readAll(join);
+        gauche.Close(); // JoinOperator ne ferme pas ses entrées
+        droite.Close();
+        return resultats;
+    }
+
+    private ArrayList<Condition> equiJoin() {
+        ArrayList<Condition> conditions = new ArrayList<>();
+        conditions.add(new Condition(new Pair<>("R.id", 0), "=", new Pair<>("S.ref", 3)));
+        return conditions;
+    }
+
+    @Test // Table de hachage en mémoire : même résultat, et même ordre, que les boucles imbriquées
+    void testInMemory() throws Exception {
+        DBConfig.join_buffercount = 1000;
+        ArrayList<String> attendus = nestedLoop(equiJoin());
+        assertEquals(100 + 29, attendus.size()); // Les ref 1 à 29 apparaissent deux fois, 0 et 101 à 119 sans correspondance
+
+        HashJoinOperator join = new HashJoinOperator(new Pair<>(scan(relation1), scan(relation2)), equiJoin(), 3, false, bm);
+        assertEquals(attendus, readAll(join));
+        assertEquals(0, join.getNbPartitions());
+
+        // Construite à gauche, les colonnes restent dans l'ordre gauche puis droite
+        join.Close();
+        join = new HashJoinOperator(new Pair<>(scan(relation1), scan(relation2)), equiJoin(), 3, true, bm);
+        ArrayList<String> resultats = readAll(join);
+        join.Close();
+        Collections.sort(attendus);
+        Collections.sort(resultats);
+        assertEquals(attendus, resultats);
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Débordement de la mémoire : les deux entrées sont partitionnées dans des pages temporaires
+    void testGracePartitioning() throws Exception {
+        DBConfig.join_buffercount = 3;
+        ArrayList<Condition> conditions = equiJoin();
+        conditions.add(new Condition(new Pair<>("R.value", 2), ">", new Pair<>("30", -1)));  // Vérifiée sur les paires trouvées
+        ArrayList<String> attendus = nestedLoop(conditions);
+        Collections.sort(attendus);
+
+        for (boolean buildGauche : new boolean[] { false, true }) {
+            HashJoinOperator join = new HashJoinOperator(new Pair<>(scan(relation1), scan(relation2)), conditions, 3, buildGauche, bm);
+            ArrayList<String> resultats = readAll(join);
+            assertEquals(2, join.getNbPartitions());
+
+            // Après un Reset, les partitions sont reconstruites
+            join.Reset();
+            ArrayList<String> relu = readAll(join);
+            join.Close();
+            Collections.sort(resultats);
+            Collections.sort(relu);
+            assertEquals(attendus, resultats);
+            assertEquals(attendus, relu);
+        }
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Sans égalité entre les deux entrées, la jointure par hachage est refusée
+    void testCanJoin() {
+        ArrayList<Condition> conditions = new ArrayList<>();
+        conditions.add(new Condition(new Pair<>("R.id", 0), "<", new Pair<>("S.ref", 3)));
+        conditions.add(new Condition(new Pair<>("R.id", 0), "=", new Pair<>("R.value", 2)));
+        assertFalse(HashJoinOperator.canJoin(conditions, 3));
+        assertThrows(IllegalArgumentException.class, () -> new HashJoinOperator(new Pair<>(null, null), conditions, 3, false, bm));
+
+        conditions.add(new Condition(new Pair<>("S.ref", 3), "=", new Pair<>("R.id", 0)));
+        assertTrue(HashJoinOperator.canJoin(conditions, 3));
+    }
+}
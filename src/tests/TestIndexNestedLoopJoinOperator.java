@@ -0,0 +1,143 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+
+class TestIndexNestedLoopJoinOperator {
+    DiskManager dskM;
+    DBConfig dbConfig;
+    BufferManager bm;
+    Relation petite;
+    Relation grande;
+    BPlusTree index;
+
+    @BeforeEach
+    void init() throws Exception {
+        dskM = DiskManager.getInstance();
+        dskM.RAZ();
+        dbConfig = DBConfig.loadConfig("src/tests/config.txt"); // Recharger la configuration
+        bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
+
+        // R(id, cle) : quelques records, dont des clés absentes de S ; S(x, y) : beaucoup de records, x répété
+        petite = createRelation("R", "id", "cle");
+        for (int i = 0; i < 15; i++)
+            petite.InsertRecord(record(i, i * 9));
+        grande = createRelation("S", "x", "y");
+        for (int i = 0; i < 300; i++)
+            grande.InsertRecord(record((i * 17) % 100, i));
+
+        // Index sur S.x
+        ArrayList<Pair<Object, RecordId>> entrees = new ArrayList<>();
+        for (Pair<MyRecord, RecordId> rec : grande.GetAllRecords())
+            entrees.add(new Pair<>(rec.getFirst().get(0).getFirst(), rec.getSecond()));
+        index = new BPlusTree(entrees, 3);
+    }
+
+    private Relation createRelation(String nom, String... colonnes) throws Exception {
+        PageId headerPageId = dskM.AllocPage();
+        ByteBuffer buffer = bm.getPage(headerPageId);
+        buffer.putInt(DBConfig.pagesize - 4, -1); // Indique qu'il n'y a pas de page suivante
+        bm.freePage(headerPageId, true);
+
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        for (String colonne : colonnes)
+            attributes.add(new Pair<>(colonne, new Data(DataType.INT)));
+        return new Relation(nom, attributes, headerPageId, dskM, bm);
+    }
+
+    private MyRecord record(int... valeurs) {
+        MyRecord record = new MyRecord();
+        for (int valeur : valeurs)
+            record.add(valeur, DataType.INT);
+        return record;
+    }
+
+    private IRecordIterator scan(Relation relation, ArrayList<Condition> conditions) throws Exception {
+        return new selectOperator(new PageDirectoryIterator(relation, bm), relation, conditions, bm);
+    }
+
+    private ArrayList<String> readAll(IRecordIterator operateur) {
+        ArrayList<String> resultats = new ArrayList<>();
+        MyRecord record;
+        while ((record = operateur.GetNextRecord()) != null)
+            resultats.add(record.toString());
+        Collections.sort(resultats);
+        return resultats;
+    }
+
+    // Résultat attendu, calculé par la jointure en boucles imbriquées
+    private ArrayList<String> nestedLoop(Relation gauche, ArrayList<Condition> conditionsGauche, Relation droite, ArrayList<Condition> conditions) throws Exception {
+        IRecordIterator scanGauche = scan(gauche, conditionsGauche), scanDroite = scan(droite, new ArrayList<>());
+        JoinOperator join = new JoinOperator(new Pair<>(scanGauche, scanDroite), conditions);
+        ArrayList<String> resultats = readAll(join);
+        scanGauche.Close(); // JoinOperator ne ferme pas ses entrées
+        scanDroite.Close();
+        return resultats;
+    }
+
+    private ArrayList<Condition> conditions(Condition... conditions) {
+        ArrayList<Condition> liste = new ArrayList<>();
+        Collections.addAll(liste, conditions);
+        return liste;
+    }
+
+    @Test // Relation indexée à droite : une recherche dans l'index par record externe, même résultat que les boucles imbriquées
+    void testIndexADroite() throws Exception {
+        ArrayList<Condition> conditions = conditions(new Condition(new Pair<>("R.cle", 1), "=", new Pair<>("S.x", 2)));
+        ArrayList<String> attendus = nestedLoop(petite, new ArrayList<>(), grande, conditions);
+        assertFalse(attendus.isEmpty());
+
+        IndexNestedLoopJoinOperator join = new IndexNestedLoopJoinOperator(scan(petite, new ArrayList<>()), grande, index, 0,
+            new ArrayList<>(), conditions, 2, true);
+        assertEquals(attendus, readAll(join));
+        assertEquals(15, join.getNbSondages());
+
+        join.Reset();
+        assertEquals(attendus, readAll(join));
+        join.Close();
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Relation indexée à gauche, avec une condition interne et une condition de jointure en plus de l'égalité
+    void testIndexAGaucheAvecConditions() throws Exception {
+        ArrayList<Condition> internes = conditions(new Condition(new Pair<>("S.y", 1), ">", new Pair<>("150", -1)));
+        ArrayList<Condition> conditions = conditions(
+            new Condition(new Pair<>("R.cle", 3), "=", new Pair<>("S.x", 0)),
+            new Condition(new Pair<>("S.y", 1), "<>", new Pair<>("R.id", 2)));
+        ArrayList<String> attendus = nestedLoop(grande, internes, petite, conditions);
+
+        IndexNestedLoopJoinOperator join = new IndexNestedLoopJoinOperator(scan(petite, new ArrayList<>()), grande, index, 0,
+            internes, conditions, 2, false);
+        ArrayList<String> resultats = readAll(join);
+        assertFalse(resultats.isEmpty());
+        assertEquals(attendus, resultats);
+        join.Close();
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Sans égalité sur une colonne indexée, la jointure avec index est refusée
+    void testGetColonneIndexee() {
+        HashMap<Integer, BPlusTree> listeIndex = new HashMap<>();
+        listeIndex.put(0, index);
+        ArrayList<Condition> conditions = conditions(new Condition(new Pair<>("R.cle", 1), "<", new Pair<>("S.x", 2)));
+        assertEquals(-1, IndexNestedLoopJoinOperator.getColonneIndexee(conditions, 2, listeIndex, true));
+        assertThrows(IllegalArgumentException.class,
+            () -> new IndexNestedLoopJoinOperator(null, grande, index, 0, new ArrayList<>(), conditions, 2, true));
+
+        // L'égalité porte sur S.y, qui n'est pas indexée
+        conditions.add(new Condition(new Pair<>("R.cle", 1), "=", new Pair<>("S.y", 3)));
+        assertEquals(-1, IndexNestedLoopJoinOperator.getColonneIndexee(conditions, 2, listeIndex, true));
+
+        conditions.add(new Condition(new Pair<>("S.x", 2), "=", new Pair<>("R.id", 0)));
+        assertEquals(0, IndexNestedLoopJoinOperator.getColonneIndexee(conditions, 2, listeIndex, true));
+        // Vu de la gauche, la colonne 0 est R.id, égale à S.x
+        assertEquals(0, IndexNestedLoopJoinOperator.getColonneIndexee(conditions, 2, listeIndex, false));
+        conditions.remove(2);
+        assertEquals(-1, IndexNestedLoopJoinOperator.getColonneIndexee(conditions, 2, listeIndex, false));
+    }
+}
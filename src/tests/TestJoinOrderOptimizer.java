@@ -0,0 +1,221 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+class TestJoinOrderOptimizer {
+    DiskManager dskM;
+    DBConfig dbConfig;
+    BufferManager bm;
+    Relation grande;    // G(id, p) : 200 records
+    Relation petite;    // P(id, libelle) : 5 records
+    Relation moyenne;   // M(g, p) : 40 records, référence G et P
+
+    @BeforeEach
+    void init() throws Exception {
+        dskM = DiskManager.getInstance();
+        dskM.RAZ();
+        dbConfig = DBConfig.loadConfig("src/tests/config.txt"); // Recharger la configuration
+        bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
+        DBConfig.sort_buffercount = 0;
+
+        grande = createRelation("G", "id", "p");
+        for (int i = 0; i < 200; i++)
+            grande.InsertRecord(record(i, i % 5));
+        petite = createRelation("P", "id", "libelle");
+        for (int i = 0; i < 5; i++)
+            petite.InsertRecord(record(i, i * 100));
+        moyenne = createRelation("M", "g", "p");
+        for (int i = 0; i < 40; i++)
+            moyenne.InsertRecord(record((i * 7) % 200, i % 5));
+    }
+
+    private Relation createRelation(String nom, String... colonnes) throws Exception {
+        PageId headerPageId = dskM.AllocPage();
+        ByteBuffer buffer = bm.getPage(headerPageId);
+        buffer.putInt(DBConfig.pagesize - 4, -1); // Indique qu'il n'y a pas de page suivante
+        bm.freePage(headerPageId, true);
+
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        for (String colonne : colonnes)
+            attributes.add(new Pair<>(colonne, new Data(DataType.INT)));
+        return new Relation(nom, attributes, headerPageId, dskM, bm);
+    }
+
+    private MyRecord record(int... valeurs) {
+        MyRecord record = new MyRecord();
+        for (int valeur : valeurs)
+            record.add(valeur, DataType.INT);
+        return record;
+    }
+
+    // Conditions G.id = M.g et M.p = P.id, pour les relations dans l'ordre donné
+    private ArrayList<Condition> conditions(List<Relation> relations) {
+        int g = debut(relations, grande), p = debut(relations, petite), m = debut(relations, moyenne);
+        return new ArrayList<>(List.of(
+            new Condition(new Pair<>("G.id", g), "=", new Pair<>("M.g", m)),
+            new Condition(new Pair<>("M.p", m + 1), "=", new Pair<>("P.id", p))));
+    }
+
+    private int debut(List<Relation> relations, Relation relation) {
+        int debut = 0;
+        for (Relation r : relations.subList(0, relations.indexOf(relation)))
+            debut += r.getNbAttribut();
+        return debut;
+    }
+
+    // Lignes affichées par le plan de TreeAlgebra, triées
+    private ArrayList<String> execute(ArrayList<Relation> relations, HashMap<String, HashMap<Integer, BPlusTree>> index) {
+        // Projette G.id, P.libelle et M.g, quel que soit l'ordre de la requête
+        ArrayList<Integer> attributs = new ArrayList<>(List.of(
+            debut(relations, grande), debut(relations, petite) + 1, debut(relations, moyenne)));
+        return execute(relations, conditions(relations), attributs, new ArrayList<>(List.of("G.id", "P.libelle", "M.g")), index);
+    }
+
+    // Lignes affichées par le plan de TreeAlgebra pour des conditions et une projection données, triées
+    private ArrayList<String> execute(ArrayList<Relation> relations, ArrayList<Condition> conditions, ArrayList<Integer> attributs,
+            ArrayList<String> noms, HashMap<String, HashMap<Integer, BPlusTree>> index) {
+        PrintStream sortie = System.out;
+        ByteArrayOutputStream capture = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(capture));
+        try {
+            new TreeAlgebra(relations, conditions, new HashMap<>(), index, attributs, noms, bm).execute();
+        } finally {
+            System.setOut(sortie);
+        }
+        ArrayList<String> lignes = new ArrayList<>(Arrays.asList(capture.toString().split("\\R")));
+        lignes.removeIf(ligne -> !ligne.matches("[-0-9 ;]+\\."));
+        Collections.sort(lignes);
+        return lignes;
+    }
+
+    @Test // L'ordre choisi ne fait pas de produit cartésien, et le plan donne le même résultat quel que soit l'ordre de la requête
+    void testOrdreDeLaRequete() throws Exception {
+        ArrayList<String> attendus = null;
+        for (List<Relation> ordreRequete : List.of(
+                List.of(grande, petite, moyenne), List.of(petite, grande, moyenne), List.of(moyenne, petite, grande))) {
+            ArrayList<Relation> relations = new ArrayList<>(ordreRequete);
+            JoinOrderOptimizer optimiseur = new JoinOrderOptimizer(relations, conditions(relations), new HashMap<>(), new HashMap<>());
+
+            // G et P n'ont pas de condition entre elles : M est jointe avant la seconde des deux
+            List<Relation> ordonnees = optimiseur.getRelationsOrdonnees();
+            assertNotEquals(moyenne, ordonnees.get(2), "Produit cartésien de G et P");
+            for (int i = 1; i < 3; i++)
+                assertNotEquals(JoinOrderOptimizer.Algorithme.BOUCLES, optimiseur.getJointure(i).getAlgorithme());
+
+            ArrayList<String> lignes = execute(relations, new HashMap<>());
+            assertEquals(40, lignes.size());
+            if (attendus != null)
+                assertEquals(attendus, lignes);
+            attendus = lignes;
+        }
+        // M(14, 2) est joint à G(14, 4) et à P(2, 200)
+        assertTrue(attendus.contains("14 ; 200 ; 14."));
+    }
+
+    @Test // Une petite relation jointe à une grande relation indexée passe par son index, pas une relation moyenne
+
+    void testJointureAvecIndex() throws Exception {
+        ArrayList<Pair<Object, RecordId>> entrees = new ArrayList<>();
+        for (Pair<MyRecord, RecordId> rec : grande.GetAllRecords())
+            entrees.add(new Pair<>(rec.getFirst().get(0).getFirst(), rec.getSecond()));
+        HashMap<String, HashMap<Integer, BPlusTree>> index = new HashMap<>();
+        index.put(grande.getRelationName(), new HashMap<>());
+        index.get(grande.getRelationName()).put(0, new BPlusTree(entrees, 3));
+
+        // La relation indexée est donnée en premier, elle doit être lue par son index après P
+        ArrayList<Relation> relations = new ArrayList<>(List.of(grande, petite));
+        ArrayList<Condition> conditions = new ArrayList<>(List.of(new Condition(new Pair<>("G.id", 0), "=", new Pair<>("P.id", 2))));
+        JoinOrderOptimizer optimiseur = new JoinOrderOptimizer(relations, conditions, new HashMap<>(), index);
+        assertEquals(List.of(petite, grande), optimiseur.getRelationsOrdonnees());
+        assertEquals(JoinOrderOptimizer.Algorithme.INDEX, optimiseur.getJointure(1).getAlgorithme());
+        assertEquals(0, optimiseur.getJointure(1).getColonneIndex());
+
+        // Les colonnes de G passent derrière celles de P
+        assertArrayEquals(new int[] { 2, 3, 0, 1 }, optimiseur.getPositions());
+        Condition remappee = conditions.get(0).remap(optimiseur.getPositions());
+        assertEquals(new Pair<>(2, 0), remappee.getColumns());
+
+        // Avec 40 records à gauche, une seule lecture de G par hachage coûte moins que 40 recherches
+        relations = new ArrayList<>(List.of(grande, moyenne));
+        conditions = new ArrayList<>(List.of(new Condition(new Pair<>("G.id", 0), "=", new Pair<>("M.g", 2))));
+        optimiseur = new JoinOrderOptimizer(relations, conditions, new HashMap<>(), index);
+        assertEquals(JoinOrderOptimizer.Algorithme.HACHAGE, optimiseur.getJointure(1).getAlgorithme());
+
+        // Même résultat avec ou sans index
+        relations = new ArrayList<>(List.of(grande, petite, moyenne));
+        assertEquals(execute(relations, new HashMap<>()), execute(relations, index));
+    }
+
+    @Test // Une tri-fusion lit la relation indexée dans l'ordre de son index quand son tri coûterait plus cher
+    void testTriFusionAvecIndex() throws Exception {
+        ArrayList<Pair<Object, RecordId>> entrees = new ArrayList<>();
+        for (Pair<MyRecord, RecordId> rec : grande.GetAllRecords())
+            entrees.add(new Pair<>(rec.getFirst().get(0).getFirst(), rec.getSecond()));
+        HashMap<String, HashMap<Integer, BPlusTree>> index = new HashMap<>();
+        index.put(grande.getRelationName(), new HashMap<>());
+        index.get(grande.getRelationName()).put(0, new BPlusTree(entrees, 3));
+
+        // Jointure de bande M.p < G.id <= M.g : seule la tri-fusion évite les boucles imbriquées
+        ArrayList<Relation> relations = new ArrayList<>(List.of(grande, moyenne));
+        ArrayList<Condition> conditions = new ArrayList<>(List.of(
+            new Condition(new Pair<>("M.p", 3), "<", new Pair<>("G.id", 0)),
+            new Condition(new Pair<>("G.id", 0), "<=", new Pair<>("M.g", 2))));
+
+        // Avec peu de mémoire, trier G coûte plus cher que de la lire par son index
+        DBConfig.sort_buffercount = 3;
+        JoinOrderOptimizer sansIndex = new JoinOrderOptimizer(relations, conditions, new HashMap<>(), new HashMap<>());
+        JoinOrderOptimizer optimiseur = new JoinOrderOptimizer(relations, conditions, new HashMap<>(), index);
+        assertEquals(List.of(moyenne, grande), optimiseur.getRelationsOrdonnees());
+        assertEquals(JoinOrderOptimizer.Algorithme.TRI_FUSION, optimiseur.getJointure(1).getAlgorithme());
+        assertEquals(0, optimiseur.getJointure(1).getColonneIndex());
+        assertTrue(optimiseur.getCout() < sansIndex.getCout());
+
+        // Même résultat avec ou sans index
+        ArrayList<Integer> attributs = new ArrayList<>(List.of(0, 2));
+        ArrayList<String> noms = new ArrayList<>(List.of("G.id", "M.g"));
+        ArrayList<String> lignes = execute(relations, conditions, attributs, noms, index);
+        assertFalse(lignes.isEmpty());
+        assertEquals(execute(relations, conditions, attributs, noms, new HashMap<>()), lignes);
+    }
+
+    @Test // Au-delà du seuil, l'ordre est construit de façon gloutonne en suivant les conditions
+    void testRechercheGloutonne() throws Exception {
+        // Une chaîne de relations R0 - R1 - ... - R11, données dans le désordre
+        ArrayList<Relation> relations = new ArrayList<>();
+        int n = JoinOrderOptimizer.SEUIL_PROGRAMMATION_DYNAMIQUE + 2;
+        for (int i = 0; i < n; i++) {
+            Relation relation = createRelation("R" + i, "a", "b");
+            for (int j = 0; j < 3 + i; j++)
+                relation.InsertRecord(record(j, j));
+            relations.add(relation);
+        }
+        Collections.shuffle(relations, new java.util.Random(7));
+        ArrayList<Condition> conditions = new ArrayList<>();
+        for (int i = 0; i + 1 < n; i++) {
+            final int k = i;
+            Relation gauche = relations.stream().filter(x -> x.getRelationName().equalsIgnoreCase("R" + k)).findFirst().get();
+            Relation droite = relations.stream().filter(x -> x.getRelationName().equalsIgnoreCase("R" + (k + 1))).findFirst().get();
+            conditions.add(new Condition(new Pair<>("g.b", debut(relations, gauche) + 1), "=", new Pair<>("d.a", debut(relations, droite))));
+        }
+
+        JoinOrderOptimizer optimiseur = new JoinOrderOptimizer(relations, conditions, new HashMap<>(), new HashMap<>());
+        int[] ordre = optimiseur.getOrdre();
+        assertEquals(n, Arrays.stream(ordre).distinct().count());
+
+        // La plus petite relation d'abord, puis chaque relation ajoutée est voisine d'une relation déjà jointe
+        List<Relation> ordonnees = optimiseur.getRelationsOrdonnees();
+        assertEquals("R0", ordonnees.get(0).getRelationName().toUpperCase());
+        for (int i = 1; i < n; i++)
+            assertNotEquals(JoinOrderOptimizer.Algorithme.BOUCLES, optimiseur.getJointure(i).getAlgorithme(), "Produit cartésien à la jointure " + i);
+    }
+}
@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 
 public class TestPageOrientedJoinOperator {
     private DiskManager dskM;
@@ -21,6 +22,7 @@ public class TestPageOrientedJoinOperator {
         dbConfig = DBConfig.loadConfig("src/tests/config.txt");
         DBConfig.pagesize = 250;
         DBConfig.dm_maxfilesize = 500;
+        DBConfig.bm_keepbuffercount = 0;    // Tous les cadres pour les pages de données, quel que soit le test précédent
 
         bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
 
@@ -92,15 +94,23 @@ public class TestPageOrientedJoinOperator {
             }
     
             // Parcours des tuples générés par l'opérateur et vérifie qu'ils correspondent aux attendus
+            // Les tuples sont produits bloc par bloc : seul l'ensemble des tuples est comparé, pas leur ordre
             int index = 0;
             MyRecord actualTuple;
+            ArrayList<String> actualTuples = new ArrayList<>();
     
             while ((actualTuple = PageOrientedJoinOperator.GetNextRecord()) != null) {
-                assertEquals(expectedTuples.get(index), actualTuple, "Tuple incorrect à l'index " + index);
+                actualTuples.add(actualTuple.toString());
                 index++;
             }
             // Vérifie qu'il n'y a pas de tuples manquants
             assertEquals(expectedTuples.size(), index, "Nombre incorrect de tuples générés.");
+            ArrayList<String> expectedStrings = new ArrayList<>();
+            for (MyRecord expected : expectedTuples)
+                expectedStrings.add(expected.toString());
+            Collections.sort(expectedStrings);
+            Collections.sort(actualTuples);
+            assertEquals(expectedStrings, actualTuples);
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -142,6 +152,54 @@ public class TestPageOrientedJoinOperator {
         }
     }
 
+    @Test // La relation interne n'est parcourue qu'une fois par bloc de pages externes
+    void testBlockSize() throws Exception {
+        ArrayList<Condition> conditions = new ArrayList<>();
+        conditions.add(new Condition(new Pair<>("R1.id", 0), "<", new Pair<>("R2.id", 3)));
+        int nbPagesExternes = relation1.getDataPages().size();
+        ArrayList<String> attendus = null;
+
+        for (int nbCadres : new int[] { 3, 5, 8 }) {
+            PageOrientedJoinOperator join = new PageOrientedJoinOperator(new PageDirectoryIterator(relation1, bm), new PageDirectoryIterator(relation2, bm), conditions, nbCadres);
+            ArrayList<String> resultats = new ArrayList<>();
+            MyRecord record;
+            while ((record = join.GetNextRecord()) != null)
+                resultats.add(record.toString());
+            assertEquals(nbCadres - 2, join.getNbPagesBloc());
+            assertEquals((nbPagesExternes + nbCadres - 3) / (nbCadres - 2), join.getNbParcoursInternes());
+            join.Close();
+            assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+
+            // Même résultat quelle que soit la taille des blocs
+            Collections.sort(resultats);
+            if (attendus == null)
+                attendus = resultats;
+            assertEquals(4950, resultats.size());
+            assertEquals(attendus, resultats);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new PageOrientedJoinOperator(new PageDirectoryIterator(relation1, bm), new PageDirectoryIterator(relation2, bm), conditions, 2));
+        // Plus de cadres que le pool des pages de données n'en a
+        int trop = DBConfig.bm_buffercount - DBConfig.bm_keepbuffercount + 1;
+        assertThrows(IllegalArgumentException.class, () -> new PageOrientedJoinOperator(new PageDirectoryIterator(relation1, bm), new PageDirectoryIterator(relation2, bm), conditions, trop));
+    }
+
+    @Test // Une relation externe sans tuple donne une jointure vide, sans construire de schéma
+    void testRelationExterneVide() throws Exception {
+        // Toutes les pages externes existent mais ne contiennent plus aucun tuple
+        relation1.DeleteRecords(new ArrayList<>(), null);
+        PageOrientedJoinOperator join = new PageOrientedJoinOperator(new PageDirectoryIterator(relation1, bm), new PageDirectoryIterator(relation2, bm), new ArrayList<>(), 3);
+        assertNull(join.GetNextRecord());
+        join.Reset();
+        assertNull(join.GetNextRecord());
+        join.Close();
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+
+        // Sans aucune data Page, l'erreur est explicite
+        Relation vide = createRelation("Vide");
+        RuntimeException e = assertThrows(RuntimeException.class, () -> new PageOrientedJoinOperator(new PageDirectoryIterator(vide, bm), new PageDirectoryIterator(relation2, bm), new ArrayList<>(), 3));
+        assertFalse(e instanceof NullPointerException);
+    }
+
     @Test
     void testClose() {
         try {
@@ -10,6 +10,8 @@ import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 class TestRelation {
     DiskManager dskM;
@@ -204,6 +206,343 @@ class TestRelation {
             e.printStackTrace();
         }
     }
+    @Test // Insertion en lot : les RecordId renvoyés permettent de relire chaque record
+    void testInsertRecords() throws Exception {
+        ArrayList<MyRecord> records = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            MyRecord record = new MyRecord();
+            record.add(i, DataType.INT);
+            record.add("Name" + i, DataType.VARCHAR);
+            record.add("pseudo" + i, DataType.CHAR);
+            record.add((float) i, DataType.REAL);
+            records.add(record);
+        }
+
+        ArrayList<RecordId> rids = relation.InsertRecords(records.iterator());
+        assertEquals(records.size(), rids.size());
+
+        // Chaque RecordId désigne le bon record
+        for (int i = 0; i < rids.size(); i++)
+            assertIterableEquals(records.get(i), relation.getRecordInDataPage(rids.get(i)), "Record " + i + " incorrect");
+
+        // Les RecordId de GetAllRecords suivent la même convention
+        for (Pair<MyRecord, RecordId> pair : relation.GetAllRecords())
+            assertIterableEquals(pair.getFirst(), relation.getRecordInDataPage(pair.getSecond()));
+
+        // L'espace libre des header Pages correspond au contenu des pages
+        assertEquals(relation.getDataPages().size(), relation.getFreeSpaceMap().size());
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Format compact : les chaînes en UTF-8 sont relues à l'identique et prennent moins de place
+    void testCompactEncoding() throws Exception {
+        Relation compact = new Relation("compact", relation.getAttribut(), relation.getHeaderPageId(), dskM, bm, RecordEncoding.COMPACT);
+
+        MyRecord record = new MyRecord();
+        record.add(7, DataType.INT);
+        record.add("Éloïse 😀", DataType.VARCHAR);
+        record.add("ab", DataType.CHAR);
+        record.add(1.5f, DataType.REAL);
+
+        ByteBuffer buffer = ByteBuffer.allocate(DBConfig.pagesize);
+        int taille = compact.writeRecordToBuffer(record, buffer, 10);
+        assertEquals(record.getSizeOctet(compact) + 5 * Integer.BYTES, taille);
+        assertTrue(taille < record.getSizeOctet(relation) + 5 * Integer.BYTES);
+
+        MyRecord lu = new MyRecord();
+        assertEquals(taille, compact.readRecordFromBuffer(lu, buffer, 10));
+        assertIterableEquals(record, lu);
+
+        // Les insertions utilisent la même taille que l'écriture
+        RecordId rid = compact.InsertRecord(record);
+        assertNotNull(rid);
+        assertIterableEquals(record, compact.getRecordInDataPage(rid));
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Pages colonnaires : les records sont relus à l'identique, par copie comme par vue
+    void testColumnarStorage() throws Exception {
+        PageId headerPageId = dskM.AllocPage();
+        bm.getPage(headerPageId).putInt(DBConfig.pagesize - 4, -1);
+        bm.freePage(headerPageId, true);
+        Relation colonnes = new Relation("colonnes", relation.getAttribut(), headerPageId, dskM, bm, RecordEncoding.UTF16, StorageLayout.COLUMNAR);
+        ColumnarLayout layout = colonnes.getColumnarLayout();
+        assertTrue(layout.getCapacite() > 0);
+        assertTrue(layout.getDebutTas() <= DBConfig.pagesize - 8);
+
+        ArrayList<MyRecord> inseres = new ArrayList<>();
+        ArrayList<RecordId> rids = new ArrayList<>();
+        for (int i = 1; i <= 3 * layout.getCapacite(); i++) {
+            MyRecord record = new MyRecord();
+            record.add(i, DataType.INT);
+            record.add("nom" + i, DataType.VARCHAR);
+            record.add((i % 2 == 0) ? "" : "pseudo" + i, DataType.CHAR);
+            record.add(i * 0.5f, DataType.REAL);
+            inseres.add(record);
+            rids.add(colonnes.InsertRecord(record));
+        }
+
+        // Chaque record se relit par son RecordId
+        for (int i = 0; i < inseres.size(); i++)
+            assertIterableEquals(inseres.get(i), colonnes.getRecordInDataPage(rids.get(i)));
+        assertEquals(inseres.size(), colonnes.GetAllRecords().size());
+        // Une page ne reçoit pas plus de lignes que sa capacité
+        assertTrue(colonnes.getDataPages().size() >= 3);
+
+        // Un parcours par vue lit les colonnes dans les minipages
+        PageId premiere = colonnes.getDataPages().get(0);
+        DataPageHoldRecordIterator iterator = new DataPageHoldRecordIterator(colonnes, bm.getPage(premiere), bm, premiere);
+        IRecord vue = iterator.GetNextView();
+        assertEquals(1, vue.getInt(0));
+        assertEquals("NOM1", vue.getString(1));
+        assertEquals(0.5f, vue.getFloat(3));
+        assertIterableEquals(inseres.get(0), vue.toRecord());
+        iterator.Close();
+
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Les colonnes avec dictionnaire ne stockent que le code de leurs valeurs
+    void testDictionaryEncoding() throws Exception {
+        MyRecord record = new MyRecord();
+        record.add(7, DataType.INT);
+        record.add("Actif", DataType.VARCHAR);
+        record.add("France", DataType.CHAR);
+        record.add(1.5f, DataType.REAL);
+        int tailleSansDictionnaire = record.getSizeOctet(relation);
+
+        relation.setDictionary("name", new StringDictionary());
+        relation.setDictionary("pseudo", new StringDictionary());
+        assertThrows(IllegalArgumentException.class, () -> relation.setDictionary("id", new StringDictionary()));
+        assertThrows(IllegalArgumentException.class, () -> relation.setDictionary("inconnue", new StringDictionary()));
+        assertEquals(4 + 4 + 4 + 4, record.getSizeOctet(relation));
+        assertTrue(record.getSizeOctet(relation) < tailleSansDictionnaire);
+
+        ByteBuffer buffer = ByteBuffer.allocate(DBConfig.pagesize);
+        int taille = relation.writeRecordToBuffer(record, buffer, 0);
+        MyRecord lu = new MyRecord();
+        assertEquals(taille, relation.readRecordFromBuffer(lu, buffer, 0));
+        assertIterableEquals(record, lu);
+        assertEquals(0, relation.getDictionary(1).getCode("ACTIF"));
+
+        // Une même valeur garde son code, une nouvelle en reçoit un autre
+        for (int i = 0; i < 50; i++) {
+            MyRecord r = new MyRecord();
+            r.add(i, DataType.INT);
+            r.add((i % 2 == 0) ? "Actif" : "Inactif", DataType.VARCHAR);
+            r.add("France", DataType.CHAR);
+            r.add(i * 1f, DataType.REAL);
+            RecordId rid = relation.InsertRecord(r);
+            assertIterableEquals(r, relation.getRecordInDataPage(rid));
+        }
+        assertEquals(2, relation.getDictionary(1).size());
+        assertEquals(1, relation.getDictionary(2).size());
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Les records supprimés disparaissent des parcours et leur place est réutilisée
+    void testDeleteRecords() throws Exception {
+        addTuplesToRelation(relation, 200);
+        List<PageId> pages = relation.getDataPages();
+        int libreAvant = relation.getFreeSpaceMap().get(pages.get(0)).getFreeBytes();
+
+        // Suppression des 100 premiers identifiants
+        Condition premiers = new Condition(new Pair<>("id", 0), "<=", new Pair<>("100", -1));
+        ArrayList<Pair<MyRecord, RecordId>> supprimes = new ArrayList<>();
+        assertEquals(100, relation.DeleteRecords(List.of(premiers), supprimes));
+        assertEquals(100, supprimes.size());
+        assertNull(relation.getRecordInDataPage(supprimes.get(0).getSecond()));
+        assertEquals(100, relation.GetAllRecords().size());
+        for (Pair<MyRecord, RecordId> reste : relation.GetAllRecords())
+            assertTrue((int) reste.getFirst().getValue(0) > 100);
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+
+        // La place libérée est rendue à la header Page et à la carte de l'espace libre
+        assertTrue(relation.getFreeSpaceMap().get(pages.get(0)).getFreeBytes() > libreAvant);
+        Relation rechargee = new Relation("relation", relation.getAttribut(), relation.getHeaderPageId(), dskM, bm);
+        assertEquals(relation.getFreeSpaceMap().get(pages.get(0)).getFreeBytes(), rechargee.getFreeSpaceMap().get(pages.get(0)).getFreeBytes());
+
+        // Un parcours saute les slots des records supprimés
+        int vus = 0;
+        for (PageId id : pages) {
+            DataPageHoldRecordIterator iterator = new DataPageHoldRecordIterator(relation, bm.getPage(id), bm, id);
+            while (iterator.GetNextView() != null)
+                vus++;
+            iterator.Close();
+        }
+        assertEquals(100, vus);
+
+        // Les nouvelles insertions réutilisent la place sans ajouter de page
+        addTuplesToRelation(relation, 100);
+        assertEquals(pages.size(), relation.getDataPages().size());
+        assertEquals(200, relation.GetAllRecords().size());
+
+        // Suppression par RecordId
+        RecordId rid = relation.GetAllRecords().get(0).getSecond();
+        assertTrue(relation.DeleteRecord(rid));
+        assertFalse(relation.DeleteRecord(rid));
+        assertEquals(199, relation.GetAllRecords().size());
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // La compaction d'une page garde les RecordId et les valeurs des records restants
+    void testDeleteAndCompact() throws Exception {
+        for (StorageLayout storage : StorageLayout.values()) {
+            PageId headerPageId = dskM.AllocPage();
+            bm.getPage(headerPageId).putInt(DBConfig.pagesize - 4, -1);
+            bm.freePage(headerPageId, true);
+            Relation rel = new Relation("compacte", relation.getAttribut(), headerPageId, dskM, bm, RecordEncoding.UTF16, storage);
+            addTuplesToRelation(rel, 60);
+            ArrayList<Pair<MyRecord, RecordId>> avant = rel.GetAllRecords();
+
+            // Supprime un record sur deux, puis remplit les trous avec des records plus longs
+            for (int i = 0; i < avant.size(); i += 2)
+                assertTrue(rel.DeleteRecord(avant.get(i).getSecond()));
+            for (int i = 0; i < 30; i++) {
+                MyRecord record = new MyRecord();
+                record.add(1000 + i, DataType.INT);
+                record.add("nouveau nom plus long " + i, DataType.VARCHAR);
+                record.add("p" + i, DataType.CHAR);
+                record.add(2.5f, DataType.REAL);
+                rel.InsertRecord(record);
+            }
+            for (int i = 1; i < avant.size(); i += 2)
+                assertIterableEquals(avant.get(i).getFirst(), rel.getRecordInDataPage(avant.get(i).getSecond()), storage.name());
+            assertEquals(avant.size(), rel.GetAllRecords().size());
+            assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+        }
+    }
+
+    @Test // Une mise à jour garde les RecordId, que le record soit réécrit dans son slot ou déplacé
+    void testUpdateRecords() throws Exception {
+        ArrayList<Pair<String, Data>> attributs = new ArrayList<>();
+        attributs.add(new Pair<>("id", new Data(DataType.INT)));
+        attributs.add(new Pair<>("name", new Data(DataType.VARCHAR, 40)));
+
+        for (StorageLayout storage : StorageLayout.values()) {
+            PageId headerPageId = dskM.AllocPage();
+            bm.getPage(headerPageId).putInt(DBConfig.pagesize - 4, -1);
+            bm.freePage(headerPageId, true);
+            Relation rel = new Relation("maj", attributs, headerPageId, dskM, bm, RecordEncoding.UTF16, storage);
+            for (int i = 1; i <= 40; i++) {
+                MyRecord record = new MyRecord();
+                record.add(i, DataType.INT);
+                record.add("n" + i, DataType.VARCHAR);
+                rel.InsertRecord(record);
+            }
+            ArrayList<Pair<MyRecord, RecordId>> avant = rel.GetAllRecords();
+            int nbPages = rel.getDataPages().size();
+
+            // Une nouvelle valeur plus courte est réécrite dans son slot
+            Condition premiers = new Condition(new Pair<>("id", 0), "<=", new Pair<>("10", -1));
+            ArrayList<Pair<MyRecord, RecordId>> anciens = new ArrayList<>();
+            assertEquals(10, rel.UpdateRecords(List.of(premiers), Map.of(1, "B"), anciens), storage.name());
+            assertEquals(10, anciens.size());
+            assertEquals("N1", anciens.get(0).getFirst().getValue(1));
+            assertEquals(nbPages, rel.getDataPages().size());
+
+            // Des valeurs beaucoup plus longues obligent à déplacer des records dans d'autres pages
+            Condition derniers = new Condition(new Pair<>("id", 0), ">", new Pair<>("20", -1));
+            assertEquals(20, rel.UpdateRecords(List.of(derniers), Map.of(1, "une valeur beaucoup plus longue"), null));
+            assertTrue(rel.getDataPages().size() > nbPages, storage.name());
+            // Un record déjà déplacé peut l'être à nouveau, son pointeur est alors redirigé
+            assertEquals(20, rel.UpdateRecords(List.of(derniers), Map.of(1, "une valeur encore plus longue que la precedente"), null));
+
+            // Les anciens RecordId désignent toujours les records, chacun n'est parcouru qu'une fois
+            for (Pair<MyRecord, RecordId> ligne : avant) {
+                int id = (int) ligne.getFirst().getValue(0);
+                MyRecord record = rel.getRecordInDataPage(ligne.getSecond());
+                assertEquals(id, record.getValue(0));
+                String attendu = (id <= 10) ? "B" : (id > 20) ? "UNE VALEUR ENCORE PLUS LONGUE QUE LA PRECEDENTE" : "N" + id;
+                assertEquals(attendu, record.getValue(1), storage.name());
+            }
+            ArrayList<RecordId> rids = new ArrayList<>();
+            for (Pair<MyRecord, RecordId> ligne : rel.GetAllRecords())
+                rids.add(ligne.getSecond());
+            assertEquals(40, rids.size());
+            for (Pair<MyRecord, RecordId> ligne : avant)
+                assertTrue(rids.contains(ligne.getSecond()));
+            int vus = 0;
+            for (PageId id : rel.getDataPages()) {
+                DataPageHoldRecordIterator iterator = new DataPageHoldRecordIterator(rel, bm.getPage(id), bm, id);
+                while (iterator.GetNextView() != null)
+                    vus++;
+                iterator.Close();
+            }
+            assertEquals(40, vus);
+
+            // Supprimer un record déplacé supprime aussi sa copie
+            Condition un = new Condition(new Pair<>("id", 0), "=", new Pair<>("35", -1));
+            assertEquals(1, rel.DeleteRecords(List.of(un), null));
+            for (Pair<MyRecord, RecordId> ligne : avant) {
+                if ((int) ligne.getFirst().getValue(0) == 35)
+                    assertNull(rel.getRecordInDataPage(ligne.getSecond()));
+            }
+            assertEquals(39, rel.GetAllRecords().size());
+            assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+        }
+    }
+
+    @Test // La réorganisation regroupe les records, raccourcit le répertoire et rend les pages vidées
+    void testVacuum() throws Exception {
+        for (StorageLayout storage : StorageLayout.values()) {
+            // La header Page peut être une page rendue par la réorganisation précédente : elle est remise à zéro
+            PageId headerPageId = dskM.AllocPage();
+            ByteBuffer header = bm.getPage(headerPageId);
+            header.putInt(0, 0);
+            header.putInt(DBConfig.pagesize - 4, -1);
+            bm.freePage(headerPageId, true);
+            Relation rel = new Relation("vacuum", relation.getAttribut(), headerPageId, dskM, bm, RecordEncoding.UTF16, storage);
+            addTuplesToRelation(rel, 120);
+            int nbPages = rel.getDataPages().size();
+            int nbHeaders = rel.getHeaderPages().size();
+            assertTrue(nbHeaders > 1, storage.name());
+
+            // Ne garde qu'un record sur cinq, dont certains déplacés par une mise à jour
+            ArrayList<MyRecord> attendus = new ArrayList<>();
+            for (Pair<MyRecord, RecordId> ligne : rel.GetAllRecords()) {
+                if ((int) ligne.getFirst().getValue(0) % 5 != 0)
+                    assertTrue(rel.DeleteRecord(ligne.getSecond()));
+            }
+            Condition grands = new Condition(new Pair<>("id", 0), ">", new Pair<>("100", -1));
+            rel.UpdateRecords(List.of(grands), Map.of(1, "un nom nettement plus long"), null);
+            for (Pair<MyRecord, RecordId> ligne : rel.GetAllRecords())
+                attendus.add(ligne.getFirst());
+            assertEquals(24, attendus.size());
+            int libresAvant = dskM.freePage.size();
+
+            int rendues = rel.Vacuum();
+            List<PageId> pages = rel.getDataPages();
+            assertTrue(pages.size() < nbPages / 2, storage.name());
+            assertTrue(rel.getHeaderPages().size() < nbHeaders, storage.name());
+            assertEquals(libresAvant + rendues, dskM.freePage.size());
+            assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+
+            // Les records sont les mêmes, sans pointeur ni copie déplacée (les copies déplacées changent d'ordre)
+            ArrayList<MyRecord> apres = new ArrayList<>();
+            for (Pair<MyRecord, RecordId> ligne : rel.GetAllRecords())
+                apres.add(ligne.getFirst());
+            attendus.sort((a, b) -> Integer.compare((int) a.getValue(0), (int) b.getValue(0)));
+            apres.sort((a, b) -> Integer.compare((int) a.getValue(0), (int) b.getValue(0)));
+            assertIterableEquals(attendus, apres, storage.name());
+            int vus = 0;
+            for (PageId id : pages) {
+                DataPageHoldRecordIterator iterator = new DataPageHoldRecordIterator(rel, bm.getPage(id), bm, id);
+                while (iterator.GetNextView() != null)
+                    vus++;
+                iterator.Close();
+            }
+            assertEquals(24, vus);
+
+            // Le répertoire réécrit est relu à l'identique et les insertions continuent
+            Relation rechargee = new Relation("vacuum", rel.getAttribut(), headerPageId, dskM, bm, RecordEncoding.UTF16, storage);
+            assertEquals(pages, rechargee.getDataPages());
+            addTuplesToRelation(rechargee, 10);
+            assertEquals(34, rechargee.GetAllRecords().size());
+            assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+        }
+    }
+
 /*
     @Test
     void testInsertRecord() throws Exception {
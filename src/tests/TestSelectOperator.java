@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.BitSet;
 
 public class TestSelectOperator {
     private DiskManager dskM;
@@ -160,4 +161,33 @@ public class TestSelectOperator {
 
         assertNull(selectOperator.GetNextRecord());        
     }
-}
\ No newline at end of file
+
+    @Test // Conditions et colonnes poussées dans la page : seules les colonnes du masque des records retenus sont copiées
+    void testSelectOperatorProjection() throws Exception {
+        ArrayList<Condition> conditions = new ArrayList<>();
+        conditions.add(new Condition(new Pair<>("id", 0), ">", new Pair<>("10", -1))); // ID > 10
+        conditions.add(new Condition(new Pair<>("value", 2), "<", new Pair<>("15.5", -1))); // Value < 15.5
+        BitSet colonnes = new BitSet();
+        colonnes.set(2);
+        colonnes.set(1);
+        selectOperator = new selectOperator(new PageDirectoryIterator(relation, bm), relation, conditions, colonnes, bm);
+
+        for (int passage = 0; passage < 2; passage++) {
+            ArrayList<MyRecord> selectedRecords = new ArrayList<>();
+            MyRecord record;
+            while ((record = selectOperator.GetNextRecord()) != null)
+                selectedRecords.add(record);
+
+            // Les records 11 à 14, réduits à (name, value) dans l'ordre de la relation
+            assertEquals(4, selectedRecords.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(2, selectedRecords.get(i).size());
+                assertEquals("NAME" + (11 + i), selectedRecords.get(i).get(0).getFirst());
+                assertEquals((11 + i) * 1.1f, (float) selectedRecords.get(i).get(1).getFirst());
+            }
+            selectOperator.Reset();
+        }
+        selectOperator.Close();
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+}
@@ -0,0 +1,164 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+
+class TestSortMergeJoinOperator {
+    DiskManager dskM;
+    DBConfig dbConfig;
+    BufferManager bm;
+    Relation intervalles;
+    Relation points;
+
+    @BeforeEach
+    void init() throws Exception {
+        dskM = DiskManager.getInstance();
+        dskM.RAZ();
+        dbConfig = DBConfig.loadConfig("src/tests/config.txt"); // Recharger la configuration
+        bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
+
+        // R(id, debut, fin) : des intervalles qui se chevauchent, S(x, label) : des points dans le désordre
+        intervalles = createRelation("R", "id", "debut", "fin");
+        for (int i = 0; i < 60; i++)
+            intervalles.InsertRecord(record(i, (i * 7) % 50, (i * 7) % 50 + i % 5));
+        points = createRelation("S", "x", "y");
+        for (int i = 0; i < 120; i++)
+            points.InsertRecord(record((i * 13) % 60, i));
+    }
+
+    @AfterEach
+    void clean() {
+        DBConfig.sort_buffercount = 0;
+    }
+
+    private Relation createRelation(String nom, String... colonnes) throws Exception {
+        PageId headerPageId = dskM.AllocPage();
+        ByteBuffer buffer = bm.getPage(headerPageId);
+        buffer.putInt(DBConfig.pagesize - 4, -1); // Indique qu'il n'y a pas de page suivante
+        bm.freePage(headerPageId, true);
+
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        for (String colonne : colonnes)
+            attributes.add(new Pair<>(colonne, new Data(DataType.INT)));
+        return new Relation(nom, attributes, headerPageId, dskM, bm);
+    }
+
+    private MyRecord record(int... valeurs) {
+        MyRecord record = new MyRecord();
+        for (int valeur : valeurs)
+            record.add(valeur, DataType.INT);
+        return record;
+    }
+
+    private IRecordIterator scan(Relation relation) throws Exception {
+        return new selectOperator(new PageDirectoryIterator(relation, bm), relation, new ArrayList<>(), bm);
+    }
+
+    private ArrayList<String> readAll(IRecordIterator operateur) {
+        ArrayList<String> resultats = new ArrayList<>();
+        MyRecord record;
+        while ((record = operateur.GetNextRecord()) != null)
+            resultats.add(record.toString());
+        Collections.sort(resultats);
+        return resultats;
+    }
+
+    // Résultat attendu, calculé par la jointure en boucles imbriquées
+    private ArrayList<String> nestedLoop(ArrayList<Condition> conditions) throws Exception {
+        IRecordIterator gauche = scan(intervalles), droite = scan(points);
+        JoinOperator join = new JoinOperator(new Pair<>(gauche, droite), conditions);
+        ArrayList<String> resultats = readAll(join);
+        gauche.Close(); // JoinOperator ne ferme pas ses entrées
+        droite.Close();
+        return resultats;
+    }
+
+    private ArrayList<Condition> conditions(Condition... conditions) {
+        ArrayList<Condition> liste = new ArrayList<>();
+        Collections.addAll(liste, conditions);
+        return liste;
+    }
+
+    @Test // Équi-jointure : même résultat que les boucles imbriquées, avec ou sans runs sur le disque
+    void testEquiJoin() throws Exception {
+        ArrayList<Condition> conditions = conditions(new Condition(new Pair<>("R.debut", 1), "=", new Pair<>("S.x", 3)));
+        ArrayList<String> attendus = nestedLoop(conditions);
+        assertFalse(attendus.isEmpty());
+
+        for (int memoire : new int[] { 1000, 3 }) {
+            DBConfig.sort_buffercount = memoire;
+            SortMergeJoinOperator join = new SortMergeJoinOperator(new Pair<>(scan(intervalles), scan(points)), conditions, 3, bm);
+            assertEquals(2, join.getNbTris());
+            assertEquals(attendus, readAll(join));
+            join.Close();
+        }
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Jointure de bande : chaque point est joint aux intervalles qui le contiennent
+    void testBandJoin() throws Exception {
+        DBConfig.sort_buffercount = 3;
+        ArrayList<Condition> bande = conditions(
+            new Condition(new Pair<>("R.debut", 1), "<=", new Pair<>("S.x", 3)),
+            new Condition(new Pair<>("S.x", 3), "<=", new Pair<>("R.fin", 2)));
+        ArrayList<String> attendus = nestedLoop(bande);
+        assertFalse(attendus.isEmpty());
+
+        SortMergeJoinOperator join = new SortMergeJoinOperator(new Pair<>(scan(intervalles), scan(points)), bande, 3, bm);
+        assertEquals(attendus, readAll(join));
+        join.Reset();
+        assertEquals(attendus, readAll(join));
+        join.Close();
+
+        // Inégalité stricte, la colonne de fusion étant à gauche
+        ArrayList<Condition> inegalite = conditions(new Condition(new Pair<>("R.fin", 2), ">", new Pair<>("S.x", 3)));
+        join = new SortMergeJoinOperator(new Pair<>(scan(intervalles), scan(points)), inegalite, 3, bm);
+        assertEquals(nestedLoop(inegalite), readAll(join));
+        join.Close();
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Une entrée lue par un index sur la colonne de fusion n'est pas triée à nouveau
+    void testIndexScanInput() throws Exception {
+        ArrayList<Pair<Object, RecordId>> entrees = new ArrayList<>();
+        for (Pair<MyRecord, RecordId> rec : points.GetAllRecords())
+            entrees.add(new Pair<>(rec.getFirst().get(0).getFirst(), rec.getSecond()));
+        BPlusTree index = new BPlusTree(entrees, 2);
+
+        // Le parcours de l'index renvoie les records dans l'ordre de la clé
+        IndexScanOperator indexScan = new IndexScanOperator(points, index, 0, new ArrayList<>());
+        int precedent = Integer.MIN_VALUE, nb = 0;
+        MyRecord record;
+        while ((record = indexScan.GetNextRecord()) != null) {
+            assertTrue((int) record.get(0).getFirst() >= precedent);
+            precedent = (int) record.get(0).getFirst();
+            nb++;
+        }
+        assertEquals(120, nb);
+        indexScan.Reset();
+
+        ArrayList<Condition> conditions = conditions(new Condition(new Pair<>("S.x", 3), "=", new Pair<>("R.id", 0)));
+        SortMergeJoinOperator join = new SortMergeJoinOperator(new Pair<>(scan(intervalles), indexScan), conditions, 3, bm);
+        assertEquals(1, join.getNbTris());
+        assertEquals(nestedLoop(conditions), readAll(join));
+        join.Close();
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Sans comparaison entre les deux entrées, la jointure par tri-fusion est refusée
+    void testCanJoin() {
+        ArrayList<Condition> conditions = conditions(
+            new Condition(new Pair<>("R.id", 0), "<>", new Pair<>("S.x", 3)),
+            new Condition(new Pair<>("R.id", 0), "<", new Pair<>("R.fin", 2)));
+        assertFalse(SortMergeJoinOperator.canJoin(conditions, 3));
+        assertThrows(IllegalArgumentException.class, () -> new SortMergeJoinOperator(new Pair<>(null, null), conditions, 3, bm));
+
+        conditions.add(new Condition(new Pair<>("S.y", 4), ">=", new Pair<>("R.debut", 1)));
+        assertTrue(SortMergeJoinOperator.canJoin(conditions, 3));
+    }
+}
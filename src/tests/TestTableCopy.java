@@ -0,0 +1,169 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Map;
+
+class TestTableCopy {
+    DiskManager dskM;
+    DBConfig dbConfig;
+    BufferManager bm;
+    Path fichier;
+
+    @BeforeEach
+    void init() throws Exception {
+        dskM = DiskManager.getInstance();
+        dskM.RAZ();
+        dbConfig = DBConfig.loadConfig("src/tests/config.txt"); // Recharger la configuration
+        bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
+        fichier = Files.createTempFile("test", ".bin");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(fichier);
+    }
+
+    private Relation createRelation(PageId headerPageId, DataType typeNom) throws Exception {
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        attributes.add(new Pair<>("id", new Data(DataType.INT)));
+        attributes.add(new Pair<>("name", new Data(typeNom, 16)));
+
+        return new Relation("relation", attributes, headerPageId, dskM, bm);
+    }
+
+    private PageId createHeaderPage() throws Exception {
+        PageId headerPageId = dskM.AllocPage();
+        ByteBuffer buffer = bm.getPage(headerPageId);
+        buffer.putInt(0, 0);
+        buffer.putInt(DBConfig.pagesize - 4, -1); // Indique qu'il n'y a pas de page suivante
+        bm.freePage(headerPageId, true);
+        return headerPageId;
+    }
+
+    @Test // Une table copiée puis rechargée contient les mêmes records
+    void testAllerRetour() throws Exception {
+        Relation source = createRelation(createHeaderPage(), DataType.VARCHAR);
+        // Suffisamment de records pour chaîner plusieurs header Pages
+        for (int i = 0; i < 300; i++) {
+            MyRecord record = new MyRecord();
+            record.add(i, DataType.INT);
+            record.add("n" + i, DataType.VARCHAR);
+            source.InsertRecord(record);
+        }
+        TableCopy copy = new TableCopy(dskM, bm);
+        int nbPages = copy.exportTable(source, fichier.toString());
+        assertEquals(source.getDataPages().size(), nbPages);
+
+        Relation cible = createRelation(createHeaderPage(), DataType.VARCHAR);
+        ArrayList<PageId> pages = copy.importTable(cible, fichier.toString());
+        assertEquals(nbPages, pages.size());
+        assertEquals(pages, cible.getDataPages());
+
+        ArrayList<Pair<MyRecord, RecordId>> attendus = source.GetAllRecords();
+        ArrayList<Pair<MyRecord, RecordId>> lus = cible.GetAllRecords();
+        assertEquals(attendus.size(), lus.size());
+        for (int i = 0; i < attendus.size(); i++) {
+            assertEquals(attendus.get(i).getFirst().getValue(0), lus.get(i).getFirst().getValue(0));
+            assertEquals(attendus.get(i).getFirst().getValue(1), lus.get(i).getFirst().getValue(1));
+        }
+
+        // Les header Pages et la carte d'espace libre restent cohérentes pour les insertions suivantes
+        Relation reload = createRelation(cible.getHeaderPageId(), DataType.VARCHAR);
+        assertEquals(nbPages, reload.getFreeSpaceMap().size());
+        MyRecord record = new MyRecord();
+        record.add(1000, DataType.INT);
+        record.add("fin", DataType.VARCHAR);
+        cible.InsertRecord(record);
+        assertEquals(attendus.size() + 1, cible.GetAllRecords().size());
+
+        // Aucun cadre ne reste épinglé
+        assertEquals(0, bm.getNbAllocFrame());
+    }
+
+    @Test // Les pointeurs des records déplacés désignent les pages rechargées
+    void testRecordsDeplaces() throws Exception {
+        Relation source = createRelation(createHeaderPage(), DataType.VARCHAR);
+        for (int i = 0; i < 60; i++) {
+            MyRecord record = new MyRecord();
+            record.add(i, DataType.INT);
+            record.add("n" + i, DataType.VARCHAR);
+            source.InsertRecord(record);
+        }
+        // Les noms allongés ne tiennent plus dans les pages pleines
+        assertEquals(60, source.UpdateRecords(new ArrayList<>(), Map.of(1, "NOM ALLONGE"), null));
+
+        TableCopy copy = new TableCopy(dskM, bm);
+        copy.exportTable(source, fichier.toString());
+        Relation cible = createRelation(createHeaderPage(), DataType.VARCHAR);
+        copy.importTable(cible, fichier.toString());
+
+        ArrayList<Pair<MyRecord, RecordId>> lus = cible.GetAllRecords();
+        assertEquals(60, lus.size());
+        for (int i = 0; i < lus.size(); i++) {
+            assertEquals(i, lus.get(i).getFirst().getValue(0));
+            assertEquals("NOM ALLONGE", lus.get(i).getFirst().getValue(1));
+            assertEquals(lus.get(i).getFirst(), cible.getRecordInDataPage(lus.get(i).getSecond()));
+        }
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Une copie d'un autre schéma est refusée
+    void testSchemaDifferent() throws Exception {
+        Relation source = createRelation(createHeaderPage(), DataType.VARCHAR);
+        MyRecord record = new MyRecord();
+        record.add(1, DataType.INT);
+        record.add("a", DataType.VARCHAR);
+        source.InsertRecord(record);
+
+        TableCopy copy = new TableCopy(dskM, bm);
+        copy.exportTable(source, fichier.toString());
+
+        Relation cible = createRelation(createHeaderPage(), DataType.CHAR);
+        assertThrows(IllegalArgumentException.class, () -> copy.importTable(cible, fichier.toString()));
+        assertEquals(0, cible.getDataPages().size());
+    }
+
+    @Test // Les dictionnaires sont copiés avec les pages, un dictionnaire incompatible est refusé
+    void testDictionnaires() throws Exception {
+        Relation source = createRelation(createHeaderPage(), DataType.VARCHAR);
+        source.setDictionary("name", new StringDictionary());
+        for (int i = 0; i < 20; i++) {
+            MyRecord record = new MyRecord();
+            record.add(i, DataType.INT);
+            record.add("statut" + (i % 3), DataType.VARCHAR);
+            source.InsertRecord(record);
+        }
+        TableCopy copy = new TableCopy(dskM, bm);
+        copy.exportTable(source, fichier.toString());
+
+        // Une table sans dictionnaire ne peut pas lire les codes
+        Relation sansDictionnaire = createRelation(createHeaderPage(), DataType.VARCHAR);
+        assertThrows(IllegalArgumentException.class, () -> copy.importTable(sansDictionnaire, fichier.toString()));
+
+        // Un dictionnaire qui attribue déjà les codes à d'autres valeurs est refusé et reste inchangé
+        Relation incompatible = createRelation(createHeaderPage(), DataType.VARCHAR);
+        incompatible.setDictionary("name", new StringDictionary());
+        incompatible.getDictionary(1).encode("AUTRE");
+        assertThrows(IllegalArgumentException.class, () -> copy.importTable(incompatible, fichier.toString()));
+        assertEquals(1, incompatible.getDictionary(1).size());
+
+        Relation cible = createRelation(createHeaderPage(), DataType.VARCHAR);
+        cible.setDictionary("name", new StringDictionary());
+        copy.importTable(cible, fichier.toString());
+        assertEquals(source.getDictionary(1).getValeurs(), cible.getDictionary(1).getValeurs());
+        ArrayList<Pair<MyRecord, RecordId>> attendus = source.GetAllRecords();
+        ArrayList<Pair<MyRecord, RecordId>> lus = cible.GetAllRecords();
+        assertEquals(attendus.size(), lus.size());
+        for (int i = 0; i < attendus.size(); i++)
+            assertIterableEquals(attendus.get(i).getFirst(), lus.get(i).getFirst());
+        assertEquals(0, bm.getNbAllocFrame());
+    }
+}
@@ -0,0 +1,106 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+class TestTopNOperator {
+    DiskManager dskM;
+    DBConfig dbConfig;
+    BufferManager bm;
+    Relation relation;
+
+    @BeforeEach
+    void init() throws Exception {
+        dskM = DiskManager.getInstance();
+        dskM.RAZ();
+        dbConfig = DBConfig.loadConfig("src/tests/config.txt"); // Recharger la configuration
+        bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
+
+        PageId headerPageId = dskM.AllocPage();
+        ByteBuffer buffer = bm.getPage(headerPageId);
+        buffer.putInt(DBConfig.pagesize - 4, -1); // Indique qu'il n'y a pas de page suivante
+        bm.freePage(headerPageId, true);
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        attributes.add(new Pair<>("id", new Data(DataType.INT)));
+        attributes.add(new Pair<>("value", new Data(DataType.REAL)));
+        relation = new Relation("relation", attributes, headerPageId, dskM, bm);
+
+        // Valeurs dans le désordre, sans doublon sur id
+        for (int i = 0; i < 300; i++) {
+            MyRecord record = new MyRecord();
+            record.add((i * 37) % 300, DataType.INT);
+            record.add((float) (i % 7), DataType.REAL);
+            relation.InsertRecord(record);
+        }
+    }
+
+    @AfterEach
+    void clean() {
+        DBConfig.sort_buffercount = 0;
+    }
+
+    private IRecordIterator scan() throws Exception {
+        return new selectOperator(new PageDirectoryIterator(relation, bm), relation, new ArrayList<>(), bm);
+    }
+
+    private ArrayList<String> readAll(IRecordIterator operateur) {
+        ArrayList<String> resultats = new ArrayList<>();
+        MyRecord record;
+        while ((record = operateur.GetNextRecord()) != null)
+            resultats.add(record.toString());
+        return resultats;
+    }
+
+    @Test // Les n premiers records sont ceux du tri externe complet, sans écrire de run même avec peu de mémoire
+    void testPremiersDuTri() throws Exception {
+        DBConfig.sort_buffercount = 3;
+        int[] colonnes = { 1, 0 };
+        boolean[] decroissant = { true, false };
+        ExternalSortOperator tri = new ExternalSortOperator(scan(), colonnes, decroissant, bm);
+        ArrayList<String> attendus = readAll(tri);
+        assertTrue(tri.getNbRuns() > 1);
+        tri.Close();
+
+        int nbPagesAvant = dskM.getCurrentCountAllocPages();
+        for (int limite : new int[] { 1, 25, 300, 500 }) {
+            TopNOperator topN = new TopNOperator(scan(), colonnes, decroissant, limite);
+            ArrayList<String> resultats = readAll(topN);
+            assertEquals(attendus.subList(0, Math.min(limite, 300)), resultats);
+
+            // Le résultat en mémoire est relu après un Reset
+            topN.Reset();
+            assertEquals(resultats, readAll(topN));
+            topN.Close();
+        }
+        assertEquals(nbPagesAvant, dskM.getCurrentCountAllocPages(), "Le Top-N a écrit sur le disque");
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+
+    @Test // Une limite nulle ne lit pas l'entrée, une limite négative ou un tri sans colonne est refusé
+    void testLimites() throws Exception {
+        IRecordIterator entree = scan();
+        TopNOperator topN = new TopNOperator(entree, new int[] { 0 }, new boolean[1], 0);
+        assertNull(topN.GetNextRecord());
+        assertNotNull(entree.GetNextRecord());
+        topN.Close();
+
+        assertThrows(IllegalArgumentException.class, () -> new TopNOperator(null, new int[] { 0 }, new boolean[1], -1));
+        assertThrows(IllegalArgumentException.class, () -> new TopNOperator(null, new int[0], new boolean[0], 5));
+
+        // LIMIT sans ORDER BY : les premiers records de l'entrée, dans son ordre
+        LimitOperator limit = new LimitOperator(scan(), 7);
+        ArrayList<String> premiers = readAll(limit);
+        assertEquals(7, premiers.size());
+        IRecordIterator tout = scan();
+        assertEquals(readAll(tout).subList(0, 7), premiers);
+        tout.Close();
+        limit.Reset();
+        assertEquals(premiers, readAll(limit));
+        limit.Close();
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+}
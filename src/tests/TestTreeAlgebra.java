@@ -1,9 +1,14 @@
+import static org.junit.jupiter.api.Assertions.*;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -80,4 +85,63 @@ public class TestTreeAlgebra {
         TreeAlgebra tree = new TreeAlgebra(relations, joinConditions, innerConditions, attbToPrint, attrbName, bm);
         tree.execute(); // Vérifie si l'exécution filtre correctement les résultats
     }
-}
\ No newline at end of file
+
+    @Test // Chaque condition de jointure va à la plus basse jointure qui dispose de toutes ses colonnes
+    void testPlacerConditions() {
+        int index2 = relations.get(0).getNbAttribut();
+        int index3 = index2 + relations.get(1).getNbAttribut();
+        Condition r1r2 = new Condition(new Pair<>("R1.id", 0), "=", new Pair<>("R2.id", index2));
+        Condition r2r3 = new Condition(new Pair<>("R3.value", index3 + 2), ">", new Pair<>("R2.value", index2 + 2));
+        Condition r1r3 = new Condition(new Pair<>("R1.id", 0), "=", new Pair<>("R3.id", index3));
+        Condition r1r1 = new Condition(new Pair<>("R1.id", 0), "<", new Pair<>("R1.value", 2));
+        ArrayList<Condition> joinConditions = new ArrayList<>(List.of(r1r2, r2r3, r1r3, r1r1));
+
+        ArrayList<ArrayList<Condition>> conditionsParJointure = TreeAlgebra.placerConditions(relations, joinConditions);
+        assertEquals(3, conditionsParJointure.size());
+        assertTrue(conditionsParJointure.get(0).isEmpty());
+        assertEquals(List.of(r1r2, r1r1), conditionsParJointure.get(1));
+        assertEquals(List.of(r2r3, r1r3), conditionsParJointure.get(2));
+    }
+
+    // Lignes de records affichées par le plan, dans l'ordre d'affichage
+    private ArrayList<String> execute(ArrayList<Relation> relationsRequete, ArrayList<Condition> joinConditions, ArrayList<Integer> attbToPrint,
+            ArrayList<Pair<Integer, Boolean>> orderBy, int limite) {
+        ArrayList<String> noms = new ArrayList<>();
+        for (int attribut : attbToPrint)
+            noms.add("c" + attribut);
+        PrintStream sortie = System.out;
+        ByteArrayOutputStream capture = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(capture));
+        try {
+            new TreeAlgebra(relationsRequete, joinConditions, new HashMap<>(), new HashMap<>(), attbToPrint, noms, orderBy, limite, bm).execute();
+        } finally {
+            System.setOut(sortie);
+        }
+        ArrayList<String> lignes = new ArrayList<>(Arrays.asList(capture.toString().split("\\R")));
+        lignes.removeIf(ligne -> !ligne.endsWith(".") || ligne.startsWith("Total"));
+        return lignes;
+    }
+
+    @Test // ORDER BY trie le résultat avant la projection, sur des colonnes affichées ou non ; LIMIT garde les premiers records
+    void testOrderByLimit() throws Exception {
+        ArrayList<Relation> une = new ArrayList<>(List.of(relations.get(0)));
+
+        // Tri décroissant sur value, qui n'est pas affichée, limité à 3 records
+        assertEquals(List.of("NAME10 ; 10.", "NAME9 ; 9.", "NAME8 ; 8."),
+            execute(une, new ArrayList<>(), new ArrayList<>(List.of(1, 0)), new ArrayList<>(List.of(new Pair<>(2, true))), 3));
+
+        // Tri croissant des chaînes sans limite, puis LIMIT seul
+        ArrayList<String> noms = execute(une, new ArrayList<>(), new ArrayList<>(List.of(1)), new ArrayList<>(List.of(new Pair<>(1, false))), -1);
+        assertEquals(List.of("NAME1.", "NAME10.", "NAME2."), noms.subList(0, 3));
+        assertEquals(10, noms.size());
+        assertEquals(4, execute(une, new ArrayList<>(), new ArrayList<>(List.of(1)), new ArrayList<>(), 4).size());
+        assertEquals(0, execute(une, new ArrayList<>(), new ArrayList<>(List.of(1)), new ArrayList<>(List.of(new Pair<>(1, false))), 0).size());
+
+        // Jointure : le tri suit les colonnes de la requête, quel que soit l'ordre choisi par l'optimiseur
+        int index2 = relations.get(0).getNbAttribut();
+        ArrayList<Condition> joinConditions = new ArrayList<>(List.of(new Condition(new Pair<>("id", 0), "=", new Pair<>("id", index2))));
+        assertEquals(List.of("10 ; 10.", "9 ; 9."), execute(new ArrayList<>(relations.subList(0, 2)), joinConditions,
+            new ArrayList<>(List.of(0, index2)), new ArrayList<>(List.of(new Pair<>(index2, true))), 2));
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+}
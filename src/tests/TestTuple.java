@@ -0,0 +1,71 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TestTuple {
+    MyRecord personne;
+    MyRecord note;
+
+    @BeforeEach
+    void init() {
+        personne = new MyRecord();
+        personne.add(7, DataType.INT);
+        personne.add("Dupont", DataType.VARCHAR);
+        personne.add(1.5f, DataType.REAL);
+
+        note = new MyRecord();
+        note.add(7, DataType.INT);
+        note.add(new Date(1, 2, 2000), DataType.DATE);
+        note.add(12.25f, DataType.REAL);
+    }
+
+    @Test // Un tuple restitue les valeurs et les types du record copié
+    void testOf() {
+        TupleSchema schema = TupleSchema.of(personne);
+        Tuple tuple = Tuple.of(personne, schema);
+
+        assertEquals(3, tuple.size());
+        assertEquals(7, tuple.getInt(0));
+        assertEquals("DUPONT", tuple.getString(1));
+        assertEquals(1.5f, tuple.getFloat(2));
+        assertEquals(DataType.VARCHAR, tuple.getType(1));
+        assertEquals(personne, tuple.toRecord());
+
+        // Un tuple n'est pas recopié
+        assertSame(tuple, Tuple.of(tuple, schema));
+    }
+
+    @Test // La concaténation place les colonnes de droite après celles de gauche
+    void testConcat() {
+        TupleSchema gauche = TupleSchema.of(personne);
+        TupleSchema droite = TupleSchema.of(note);
+        TupleSchema jointure = gauche.concat(droite);
+        Tuple tuplePersonne = Tuple.of(personne, gauche);
+
+        MyRecord attendu = new MyRecord();
+        attendu.addAll(personne);
+        attendu.addAll(note);
+
+        // Depuis un record quelconque et depuis un autre tuple
+        assertEquals(attendu, Tuple.concat(tuplePersonne, note, jointure).toRecord());
+        assertEquals(attendu, Tuple.concat(tuplePersonne, Tuple.of(note, droite), jointure).toRecord());
+
+        Tuple tuple = Tuple.concat(tuplePersonne, note, jointure);
+        assertEquals(6, tuple.size());
+        assertEquals(7, tuple.getInt(3));
+        assertEquals(12.25f, tuple.getFloat(5));
+        assertEquals(new Date(1, 2, 2000), tuple.getValue(4));
+    }
+
+    @Test // La vue d'une paire donne les mêmes valeurs que le tuple concaténé
+    void testJoinedRecord() {
+        JoinedRecord paire = new JoinedRecord().set(personne, note);
+
+        assertEquals(6, paire.size());
+        assertEquals("DUPONT", paire.getString(1));
+        assertEquals(7, paire.getInt(3));
+        assertEquals(12.25f, paire.getFloat(5));
+        assertEquals(DataType.DATE, paire.getType(4));
+    }
+}
@@ -0,0 +1,107 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+class TestZoneMap {
+    DiskManager dskM;
+    DBConfig dbConfig;
+    BufferManager bm;
+
+    @BeforeEach
+    void init() throws Exception {
+        dskM = DiskManager.getInstance();
+        dskM.RAZ();
+        dbConfig = DBConfig.loadConfig("src/tests/config.txt"); // Recharger la configuration
+        bm = new BufferManager(dbConfig, dskM); // Réinitialiser le BufferManager
+    }
+
+    private Relation createRelation(PageId headerPageId) throws Exception {
+        ArrayList<Pair<String, Data>> attributes = new ArrayList<>();
+        attributes.add(new Pair<>("id", new Data(DataType.INT)));
+        attributes.add(new Pair<>("name", new Data(DataType.VARCHAR, 16)));
+
+        return new Relation("relation", attributes, headerPageId, dskM, bm);
+    }
+
+    private MyRecord record(int id, String name) {
+        MyRecord record = new MyRecord();
+        record.add(id, DataType.INT);
+        record.add(name, DataType.VARCHAR);
+        return record;
+    }
+
+    @Test // Une condition entre une colonne et une constante est décidée par les intervalles de la page
+    void testMayMatch() {
+        ZoneMap carte = new ZoneMap(2);
+        PageId page = new PageId(0, 1);
+        carte.add(page, record(10, "B"));
+        carte.add(page, record(20, "D"));
+
+        assertTrue(carte.mayContain(page, List.of(new Condition(new Pair<>("id", 0), "=", new Pair<>("15", -1)))));
+        assertFalse(carte.mayContain(page, List.of(new Condition(new Pair<>("id", 0), "=", new Pair<>("21", -1)))));
+        assertFalse(carte.mayContain(page, List.of(new Condition(new Pair<>("id", 0), "<", new Pair<>("10", -1)))));
+        assertTrue(carte.mayContain(page, List.of(new Condition(new Pair<>("id", 0), "<=", new Pair<>("10", -1)))));
+        assertFalse(carte.mayContain(page, List.of(new Condition(new Pair<>("id", 0), ">", new Pair<>("20.5", -1)))));
+        // Constante à gauche : l'opérateur est retourné
+        assertFalse(carte.mayContain(page, List.of(new Condition(new Pair<>("30", -1), "<", new Pair<>("id", 0)))));
+        assertTrue(carte.mayContain(page, List.of(new Condition(new Pair<>("12", -1), "<", new Pair<>("id", 0)))));
+        // Chaînes, et conditions qui ne peuvent pas être décidées
+        assertFalse(carte.mayContain(page, List.of(new Condition(new Pair<>("name", 1), "=", new Pair<>("\"E\"", -1)))));
+        assertTrue(carte.mayContain(page, List.of(new Condition(new Pair<>("name", 1), "=", new Pair<>("10", -1)))));
+        assertTrue(carte.mayContain(page, List.of(new Condition(new Pair<>("id", 0), "=", new Pair<>("name", 1)))));
+        // Une page inconnue est toujours lue, une page vide jamais
+        assertTrue(carte.mayContain(new PageId(0, 2), List.of(new Condition(new Pair<>("id", 0), "=", new Pair<>("21", -1)))));
+        carte.addEmpty(new PageId(0, 2));
+        assertFalse(carte.mayContain(new PageId(0, 2), List.of(new Condition(new Pair<>("id", 0), "=", new Pair<>("21", -1)))));
+    }
+
+    @Test // Une sélection sur une clé croissante ne lit que les pages de l'intervalle
+    void testSelectSkipsPages() throws Exception {
+        PageId headerPageId = dskM.AllocPage();
+        ByteBuffer buffer = bm.getPage(headerPageId);
+        buffer.putInt(DBConfig.pagesize - 4, -1); // Indique qu'il n'y a pas de page suivante
+        bm.freePage(headerPageId, true);
+        Relation relation = createRelation(headerPageId);
+        for (int i = 0; i < 100; i++)
+            relation.InsertRecord(record(i, "n" + i));
+        int nbPages = relation.getDataPages().size();
+
+        ArrayList<Condition> conditions = new ArrayList<>();
+        conditions.add(new Condition(new Pair<>("id", 0), ">=", new Pair<>("90", -1)));
+        PageDirectoryIterator pages = new PageDirectoryIterator(relation, bm);
+        selectOperator select = new selectOperator(pages, relation, conditions, bm);
+        int nb = 0;
+        while (select.GetNextRecord() != null)
+            nb++;
+        int sautees = pages.getNbPagesSautees();
+        select.Close();
+        assertEquals(10, nb);
+        assertTrue(sautees >= nbPages - 3, sautees + " pages sautées sur " + nbPages);
+
+        // Les insertions suivantes élargissent les intervalles : un record ajouté dans une page sautée est trouvé
+        relation.DeleteRecords(List.of(new Condition(new Pair<>("id", 0), "<", new Pair<>("5", -1))), null);
+        relation.InsertRecord(record(95, "nouveau"));
+        select = new selectOperator(new PageDirectoryIterator(relation, bm), relation, conditions, bm);
+        nb = 0;
+        while (select.GetNextRecord() != null)
+            nb++;
+        select.Close();
+        assertEquals(11, nb);
+
+        // Une carte reconstruite depuis les pages donne le même résultat
+        Relation reload = createRelation(headerPageId);
+        select = new selectOperator(new PageDirectoryIterator(reload, bm), reload, conditions, bm);
+        nb = 0;
+        while (select.GetNextRecord() != null)
+            nb++;
+        select.Close();
+        assertEquals(11, nb);
+        assertEquals(nbPages, reload.getZoneMap().size());
+        assertEquals(0, bm.getNbAllocFrame(), "Des pages sont restées épinglées");
+    }
+}